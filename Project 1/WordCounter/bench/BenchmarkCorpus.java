@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The input a benchmark runs over: a bundled file of {@code data/}, named
+ * relative to the project directory, or a synthetic {@link ZipfCorpus} of a
+ * given size, named "zipf-" followed by the size ("zipf-16M"). Synthetic
+ * corpora are written once to the temporary directory and reused by later
+ * runs.
+ *
+ * <p>
+ * The number of words of the input is counted once, so that every stage can
+ * report its rate in megabytes and in words of input, whatever it works on.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+@State(Scope.Benchmark)
+public class BenchmarkCorpus {
+
+    /**
+     * Prefix of the name of a synthetic corpus.
+     */
+    private static final String ZIPF_PREFIX = "zipf-";
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+
+    /**
+     * Name of the input.
+     */
+    @Param({ "data/we.txt", "data/Quixantic.txt",
+        "data/WE SHALL FIGHT ON THE BEACHES.txt", "zipf-1M", "zipf-16M",
+        "zipf-256M", "zipf-1G" })
+    public String corpus;
+
+    /**
+     * The input file.
+     */
+    private Path file;
+
+    /**
+     * Size of the input, in megabytes.
+     */
+    private double megabytes;
+
+    /**
+     * Number of words of the input.
+     */
+    private long words;
+
+    /**
+     * Finds or writes the input file and counts its words.
+     *
+     * @throws IOException
+     *             if the input cannot be read or written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        if (this.corpus.startsWith(ZIPF_PREFIX)) {
+            this.file = ZipfCorpus.cached(
+                    Paths.get(System.getProperty("java.io.tmpdir")),
+                    ZipfCorpus.parseSize(
+                            this.corpus.substring(ZIPF_PREFIX.length())));
+        } else {
+            this.file = Paths.get(this.corpus);
+        }
+        this.megabytes = Files.size(this.file) / MEGABYTE;
+        final long[] count = new long[1];
+        MappedInput.tokenize(this.file.toString(), this.charset(),
+                new WordTokenizer(this.separators(),
+                        new WordTokenizer.WordSink() {
+                            @Override
+                            public void word(CharSequence text, int start,
+                                    int end) {
+                                count[0]++;
+                            }
+                        }));
+        this.words = count[0];
+    }
+
+    /**
+     * Returns the name of the input file.
+     *
+     * @return the file name
+     */
+    public String fileName() {
+        return this.file.toString();
+    }
+
+    /**
+     * Returns the charset of the input, the one {@code WordCounter} reads
+     * it in.
+     *
+     * @return the charset
+     */
+    public Charset charset() {
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Returns the separators the input is split with.
+     *
+     * @return the separators
+     */
+    public SeparatorSet separators() {
+        return SeparatorSet.defaultSet();
+    }
+
+    /**
+     * Returns the size of the input, in megabytes.
+     *
+     * @return the size
+     */
+    public double megabytes() {
+        return this.megabytes;
+    }
+
+    /**
+     * Returns the number of words of the input.
+     *
+     * @return the number of words
+     */
+    public long words() {
+        return this.words;
+    }
+
+}
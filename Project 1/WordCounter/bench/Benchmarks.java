@@ -0,0 +1,131 @@
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Runs the JMH benchmarks of the {@code WordCounter} stages with the GC
+ * profiler and prints, for every stage and input, the throughput in MB/s and
+ * words/s of input and the bytes allocated per word.
+ *
+ * <p>
+ * The sources in {@code bench/} need JMH ({@code org.openjdk.jmh:jmh-core}
+ * and, as an annotation processor, {@code jmh-generator-annprocess}), which
+ * the course build does not provide, on top of {@code src/} and the
+ * components library. Run from the project directory, so the bundled inputs
+ * are found, with the usual JMH options, for example
+ * </p>
+ *
+ * <pre>
+ * java -cp bin:bench-bin:jmh.jar:components.jar Benchmarks \
+ *     -p corpus=data/we.txt,zipf-16M Tokenizer
+ * </pre>
+ *
+ * <p>
+ * The inputs are the bundled {@code data/} files and {@link ZipfCorpus}
+ * texts of 1 MB to 1 GB, which the first run writes to the temporary
+ * directory; the 1 GB corpus needs the 4 GB heap the forks are given.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class Benchmarks {
+
+    /**
+     * Heap of the benchmark forks, enough for the largest corpus in memory.
+     */
+    static final String HEAP = "-Xmx4g";
+
+    /**
+     * Number of warmup iterations of each benchmark.
+     */
+    static final int WARMUP_ITERATIONS = 3;
+
+    /**
+     * Number of measurement iterations of each benchmark.
+     */
+    static final int MEASUREMENT_ITERATIONS = 5;
+
+    /**
+     * Name of the GC profiler's result of bytes allocated per operation.
+     */
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Benchmarks() {
+    }
+
+    /**
+     * Returns the score of the secondary result of {@code run} whose name
+     * ends in {@code name}, or 0 if there is none. JMH versions differ in
+     * how they prefix the names of profiler results.
+     *
+     * @param run
+     *            the result of a benchmark run
+     * @param name
+     *            the name of the secondary result
+     * @return the score
+     */
+    private static double secondary(RunResult run, String name) {
+        double result = 0;
+        for (Map.Entry<String, Result> entry : run.getSecondaryResults()
+                .entrySet()) {
+            if (entry.getKey().endsWith(name)) {
+                result = entry.getValue().getScore();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            JMH command line options
+     * @throws RunnerException
+     *             if a benchmark fails
+     * @throws CommandLineOptionException
+     *             if {@code args} are not valid JMH options
+     */
+    public static void main(String[] args)
+            throws RunnerException, CommandLineOptionException {
+        Collection<RunResult> runs = new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class).build()).run();
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(String.format(Locale.ROOT, "%-46s %-20s %9s %12s %9s",
+                "Benchmark", "Corpus", "MB/s", "words/s", "B/word"));
+        for (RunResult run : runs) {
+            double words = secondary(run, "words");
+            double bytesPerWord = 0;
+            if (words > 0) {
+                //bytes per operation times operations per second, over
+                //words per second
+                bytesPerWord = secondary(run, ALLOCATION)
+                        * run.getPrimaryResult().getScore() / words;
+            }
+            out.println(String.format(Locale.ROOT,
+                    "%-46s %-20s %9.1f %12.0f %9.2f",
+                    run.getParams().getBenchmark(),
+                    run.getParams().getParam("corpus"),
+                    secondary(run, "megabytes"), words, bytesPerWord));
+        }
+        out.close();
+    }
+
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@code WordCounter.html}: writing the report of the sorted
+ * words of the input to a channel that discards it, so the disk is not
+ * measured. Rates are in megabytes and words of the input the report was
+ * counted from.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.HEAP)
+@Warmup(iterations = Benchmarks.WARMUP_ITERATIONS)
+@Measurement(iterations = Benchmarks.MEASUREMENT_ITERATIONS)
+public class HtmlBenchmark {
+
+    /**
+     * Channel that counts and discards the bytes written to it.
+     */
+    private static final class DiscardChannel implements WritableByteChannel {
+
+        /**
+         * Number of bytes written.
+         */
+        private long written;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            this.written += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * The words of the input in report order.
+     */
+    @State(Scope.Benchmark)
+    public static class Sorted {
+
+        /**
+         * The sorted words and their counts.
+         */
+        private SortedWordCounts sorted;
+
+        /**
+         * The number of words of the input.
+         */
+        private long totalWords;
+
+        /**
+         * Counts and sorts the words of the input.
+         *
+         * @param corpus
+         *            the input
+         * @throws IOException
+         *             if the input cannot be read
+         */
+        @Setup
+        public void count(BenchmarkCorpus corpus) throws IOException {
+            WordCountTable table = new WordCountTable();
+            MappedInput.tokenize(corpus.fileName(), corpus.charset(),
+                    new WordTokenizer(corpus.separators(), table));
+            this.sorted = SortedWordCounts.alphabetical(table);
+            this.totalWords = table.totalWords();
+        }
+    }
+
+    /**
+     * Writes the report.
+     *
+     * @param corpus
+     *            the input
+     * @param sorted
+     *            the sorted words
+     * @param counters
+     *            the input processed
+     * @return the number of bytes of the report
+     * @throws IOException
+     *             if the report cannot be written
+     */
+    @Benchmark
+    public long html(BenchmarkCorpus corpus, Sorted sorted,
+            StageCounters counters) throws IOException {
+        DiscardChannel out = new DiscardChannel();
+        WordCounter.html(out, sorted.sorted, sorted.totalWords,
+                corpus.fileName(), null);
+        counters.processed(corpus);
+        return out.written;
+    }
+
+}
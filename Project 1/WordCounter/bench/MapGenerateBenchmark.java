@@ -0,0 +1,50 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Benchmark of {@link WordCounter#mapGenerate(SimpleReader, Map)}: reading
+ * the input a line at a time and counting its words into a map.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.HEAP)
+@Warmup(iterations = Benchmarks.WARMUP_ITERATIONS)
+@Measurement(iterations = Benchmarks.MEASUREMENT_ITERATIONS)
+public class MapGenerateBenchmark {
+
+    /**
+     * Counts the words of the input.
+     *
+     * @param corpus
+     *            the input
+     * @param counters
+     *            the input processed
+     * @return the map of words and their occurrences
+     */
+    @Benchmark
+    public Map<String, Integer> mapGenerate(BenchmarkCorpus corpus,
+            StageCounters counters) {
+        SimpleReader file = new SimpleReader1L(corpus.fileName());
+        Map<String, Integer> words = new Map1L<>();
+        WordCounter.mapGenerate(file, words);
+        file.close();
+        counters.processed(corpus);
+        return words;
+    }
+
+}
@@ -0,0 +1,82 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Benchmark of {@link WordCounter#sortMap}: sorting the counted words of the
+ * input alphabetically. Rates are in megabytes and words of the input the
+ * map was counted from.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.HEAP)
+@Warmup(iterations = Benchmarks.WARMUP_ITERATIONS)
+@Measurement(iterations = Benchmarks.MEASUREMENT_ITERATIONS)
+public class SortMapBenchmark {
+
+    /**
+     * The words of the input and their counts.
+     */
+    @State(Scope.Benchmark)
+    public static class Words {
+
+        /**
+         * The map of words and their occurrences.
+         */
+        private final Map<String, Integer> map = new Map1L<>();
+
+        /**
+         * Counts the words of the input.
+         *
+         * @param corpus
+         *            the input
+         */
+        @Setup
+        public void count(BenchmarkCorpus corpus) {
+            SimpleReader file = new SimpleReader1L(corpus.fileName());
+            WordCounter.mapGenerate(file, this.map);
+            file.close();
+        }
+    }
+
+    /**
+     * Sorts the words.
+     *
+     * @param corpus
+     *            the input
+     * @param words
+     *            the counted words
+     * @param counters
+     *            the input processed
+     * @return the sorted words
+     */
+    @Benchmark
+    public Queue<String> sortMap(BenchmarkCorpus corpus, Words words,
+            StageCounters counters) {
+        Queue<String> queue = new Queue1L<>();
+        WordCounter.sortMap(words.map, new WordCounter.WordComparator(),
+                queue);
+        counters.processed(corpus);
+        return queue;
+    }
+
+}
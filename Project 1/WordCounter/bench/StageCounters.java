@@ -0,0 +1,50 @@
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Megabytes and words of input processed by a benchmark. They are operation
+ * counters, which JMH divides by the time of the iteration like the primary
+ * result, so in the throughput mode of the benchmarks "megabytes" is
+ * reported in MB/s and "words" in words/s.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class StageCounters {
+
+    /**
+     * Megabytes of input processed in this iteration.
+     */
+    public double megabytes;
+
+    /**
+     * Words of input processed in this iteration.
+     */
+    public long words;
+
+    /**
+     * Resets the counters before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.megabytes = 0;
+        this.words = 0;
+    }
+
+    /**
+     * Records one pass over {@code corpus}.
+     *
+     * @param corpus
+     *            the input
+     */
+    public void processed(BenchmarkCorpus corpus) {
+        this.megabytes += corpus.megabytes();
+        this.words += corpus.words();
+    }
+
+}
@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link WordTokenizer#nextWordOrSeparatorEnd}, splitting the
+ * whole input, already in memory, into words and separator strings.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.HEAP)
+@Warmup(iterations = Benchmarks.WARMUP_ITERATIONS)
+@Measurement(iterations = Benchmarks.MEASUREMENT_ITERATIONS)
+public class TokenizerBenchmark {
+
+    /**
+     * The input as a {@code String}.
+     */
+    @State(Scope.Benchmark)
+    public static class Text {
+
+        /**
+         * The text of the input.
+         */
+        private String text;
+
+        /**
+         * Reads the input.
+         *
+         * @param corpus
+         *            the input
+         * @throws IOException
+         *             if the input cannot be read
+         */
+        @Setup
+        public void load(BenchmarkCorpus corpus) throws IOException {
+            this.text = new String(
+                    Files.readAllBytes(Paths.get(corpus.fileName())),
+                    corpus.charset());
+        }
+    }
+
+    /**
+     * Splits the input into words and separator strings.
+     *
+     * @param corpus
+     *            the input
+     * @param text
+     *            the input in memory
+     * @param counters
+     *            the input processed
+     * @return the number of words
+     */
+    @Benchmark
+    public int nextWordOrSeparatorEnd(BenchmarkCorpus corpus, Text text,
+            StageCounters counters) {
+        String s = text.text;
+        SeparatorSet separators = corpus.separators();
+        int words = 0;
+        int i = 0;
+        while (i < s.length()) {
+            int end = WordTokenizer.nextWordOrSeparatorEnd(s, i, s.length(),
+                    separators);
+            if (!separators.isSeparator(s.charAt(i))) {
+                words++;
+            }
+            i = end;
+        }
+        counters.processed(corpus);
+        return words;
+    }
+
+}
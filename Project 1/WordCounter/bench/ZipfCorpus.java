@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic ASCII text whose word frequencies follow Zipf's law: the word of
+ * rank {@code r} occurs in proportion to {@code 1 / r^s}, like the words of
+ * natural language. The word of rank {@code r} is {@code r} in bijective
+ * base 26 ("a", "b", ..., "z", "aa", ...), so frequent words are short, and
+ * the text is a fixed number of words per line. The same seed always gives
+ * the same text.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class ZipfCorpus {
+
+    /**
+     * Default number of distinct words.
+     */
+    public static final int DEFAULT_VOCABULARY = 1 << 17;
+
+    /**
+     * Default Zipf exponent, that of English text.
+     */
+    public static final double DEFAULT_EXPONENT = 1.0;
+
+    /**
+     * Default seed of the word sampler.
+     */
+    public static final long DEFAULT_SEED = 0x5EEDL;
+
+    /**
+     * Number of words per line.
+     */
+    private static final int WORDS_PER_LINE = 12;
+
+    /**
+     * Number of letters words are spelled with.
+     */
+    private static final int LETTERS = 26;
+
+    /**
+     * Shift of a size given in units of K (2^10 bytes).
+     */
+    private static final int KILO_SHIFT = 10;
+
+    /**
+     * Shift of a size given in units of M (2^20 bytes).
+     */
+    private static final int MEGA_SHIFT = 20;
+
+    /**
+     * Shift of a size given in units of G (2^30 bytes).
+     */
+    private static final int GIGA_SHIFT = 30;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ZipfCorpus() {
+    }
+
+    /**
+     * Returns the word of rank {@code rank}.
+     *
+     * @param rank
+     *            the rank, from 1
+     * @return the word
+     * @requires rank > 0
+     */
+    public static String word(int rank) {
+        assert rank > 0 : "Violation of: rank > 0";
+
+        StringBuilder result = new StringBuilder();
+        int n = rank;
+        while (n > 0) {
+            n--;
+            result.append((char) ('a' + n % LETTERS));
+            n /= LETTERS;
+        }
+        return result.reverse().toString();
+    }
+
+    /**
+     * Returns the cumulative distribution of the ranks: entry {@code i} is
+     * the probability of a rank of at most {@code i + 1}.
+     *
+     * @param vocabulary
+     *            the number of distinct words
+     * @param exponent
+     *            the Zipf exponent
+     * @return the cumulative distribution
+     */
+    private static double[] distribution(int vocabulary, double exponent) {
+        double[] result = new double[vocabulary];
+        double sum = 0;
+        for (int i = 0; i < vocabulary; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            result[i] = sum;
+        }
+        for (int i = 0; i < vocabulary; i++) {
+            result[i] /= sum;
+        }
+        return result;
+    }
+
+    /**
+     * Writes {@code size} bytes of Zipf-distributed text to {@code file},
+     * ending with a line end.
+     *
+     * @param file
+     *            the file
+     * @param size
+     *            the number of bytes
+     * @param vocabulary
+     *            the number of distinct words
+     * @param exponent
+     *            the Zipf exponent
+     * @param seed
+     *            the seed of the word sampler
+     * @throws IOException
+     *             if the file cannot be written
+     * @requires size > 0 and vocabulary > 0 and exponent > 0
+     */
+    public static void write(Path file, long size, int vocabulary,
+            double exponent, long seed) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert size > 0 : "Violation of: size > 0";
+        assert vocabulary > 0 : "Violation of: vocabulary > 0";
+        assert exponent > 0 : "Violation of: exponent > 0";
+
+        double[] cdf = distribution(vocabulary, exponent);
+        String[] words = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            words[i] = word(i + 1);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        try (Writer out = Files.newBufferedWriter(file,
+                StandardCharsets.US_ASCII)) {
+            long written = 0;
+            int column = 0;
+            while (written < size - 1) {
+                int i = Arrays.binarySearch(cdf, random.nextDouble());
+                if (i < 0) {
+                    i = Math.min(-i - 1, vocabulary - 1);
+                }
+                String word = words[i];
+                if (written + word.length() >= size - 1) {
+                    word = word.substring(0, (int) (size - 1 - written));
+                }
+                out.write(word);
+                written += word.length();
+                column++;
+                if (written < size - 1) {
+                    if (column == WORDS_PER_LINE) {
+                        out.write('\n');
+                        column = 0;
+                    } else {
+                        out.write(' ');
+                    }
+                    written++;
+                }
+            }
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Returns the size in bytes of {@code size}: a positive number of bytes,
+     * optionally followed by K, M or G for units of 2^10, 2^20 or 2^30
+     * bytes.
+     *
+     * @param size
+     *            the size
+     * @return the number of bytes
+     * @throws IllegalArgumentException
+     *             if {@code size} is not a positive size
+     */
+    public static long parseSize(String size) {
+        assert size != null : "Violation of: size is not null";
+
+        int shift = 0;
+        String digits = size;
+        if (size.endsWith("K")) {
+            shift = KILO_SHIFT;
+        } else if (size.endsWith("M")) {
+            shift = MEGA_SHIFT;
+        } else if (size.endsWith("G")) {
+            shift = GIGA_SHIFT;
+        }
+        if (shift > 0) {
+            digits = size.substring(0, size.length() - 1);
+        }
+        long result;
+        try {
+            result = Long.parseLong(digits) << shift;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a size: " + size, e);
+        }
+        if (result <= 0) {
+            throw new IllegalArgumentException("Expected a size: " + size);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the file of {@code size} bytes of the default corpus in
+     * {@code directory}, writing it first unless an earlier run did. The
+     * file is written under a temporary name and then moved into place, so
+     * a run that was cut short never leaves a partial corpus behind.
+     *
+     * @param directory
+     *            the directory
+     * @param size
+     *            the number of bytes
+     * @return the file
+     * @throws IOException
+     *             if the file cannot be written
+     * @requires size > 0
+     */
+    public static Path cached(Path directory, long size) throws IOException {
+        assert directory != null : "Violation of: directory is not null";
+        assert size > 0 : "Violation of: size > 0";
+
+        Path result = directory.resolve("wordcounter-zipf-" + size + ".txt");
+        if (!Files.exists(result) || Files.size(result) != size) {
+            Path temporary = Files.createTempFile(directory,
+                    "wordcounter-zipf", ".tmp");
+            write(temporary, size, DEFAULT_VOCABULARY, DEFAULT_EXPONENT,
+                    DEFAULT_SEED);
+            Files.move(temporary, result, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        return result;
+    }
+
+}
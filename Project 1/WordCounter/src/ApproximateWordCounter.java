@@ -0,0 +1,224 @@
+/**
+ * Counts words approximately in a fixed amount of memory, however large the
+ * vocabulary: a {@link CountMinSketch} estimates the count of every word, a
+ * {@link HyperLogLog} estimates the number of distinct words, and
+ * {@link HeavyHitters} keeps the words with the highest estimates. Each word
+ * is hashed once, to 64 bits, and that hash feeds all three; only the words
+ * kept as heavy hitters are ever copied.
+ *
+ * <p>
+ * The memory budget covers the sketches and the heavy hitters: the
+ * HyperLogLog takes about a thousandth of it, the heavy hitters an estimated
+ * {@link #HEAVY_HITTER_BYTES} each, and the Count-Min Sketch the largest
+ * power-of-two width of {@link #DEPTH} rows that fits in the rest, up to
+ * the largest width a sketch can have; see {@link #maximumMemory(int)}.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class ApproximateWordCounter implements WordTokenizer.WordSink {
+
+    /**
+     * Number of heavy hitters kept when no number is given.
+     */
+    public static final int DEFAULT_HEAVY_HITTERS = 1000;
+
+    /**
+     * Estimated memory taken by one heavy hitter: its copy of the word and
+     * its share of the heap and index arrays.
+     */
+    public static final int HEAVY_HITTER_BYTES = 128;
+
+    /**
+     * Number of Count-Min Sketch rows, for a confidence of
+     * {@code 1 - e^-5}, about 99.3%.
+     */
+    public static final int DEPTH = 5;
+
+    /**
+     * Smallest budget for the Count-Min Sketch.
+     */
+    private static final long MIN_SKETCH_BYTES = 1 << 16;
+
+    /**
+     * Precision of the HyperLogLog is the base-2 logarithm of the budget
+     * less this.
+     */
+    private static final int HLL_BUDGET_SHIFT = 10;
+
+    /**
+     * Offset basis of the FNV-1a hash.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * Prime of the FNV-1a hash.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * First multiplier of the final mix.
+     */
+    private static final long MIX1 = 0xff51afd7ed558ccdL;
+
+    /**
+     * Second multiplier of the final mix.
+     */
+    private static final long MIX2 = 0xc4ceb9fe1a85ec53L;
+
+    /**
+     * Shift of the final mix.
+     */
+    private static final int MIX_SHIFT = 33;
+
+    /**
+     * Estimated counts of all words.
+     */
+    private final CountMinSketch sketch;
+
+    /**
+     * Estimated number of distinct words.
+     */
+    private final HyperLogLog distinct;
+
+    /**
+     * Words with the highest estimated counts.
+     */
+    private final HeavyHitters heavyHitters;
+
+    /**
+     * Constructor.
+     *
+     * @param memory
+     *            the memory budget, in bytes
+     * @param k
+     *            the number of heavy hitters to keep
+     * @requires k > 0 and minimumMemory(k) <= memory <= maximumMemory(k)
+     */
+    public ApproximateWordCounter(long memory, int k) {
+        assert k > 0 : "Violation of: k > 0";
+        assert memory >= minimumMemory(k) : ""
+                + "Violation of: memory >= minimumMemory(k)";
+        assert memory <= maximumMemory(k) : ""
+                + "Violation of: memory <= maximumMemory(k)";
+
+        int precision = Math.max(HyperLogLog.MIN_PRECISION,
+                Math.min(HyperLogLog.MAX_PRECISION,
+                        Long.SIZE - 1 - Long.numberOfLeadingZeros(memory)
+                                - HLL_BUDGET_SHIFT));
+        this.distinct = new HyperLogLog(precision);
+        this.heavyHitters = new HeavyHitters(k);
+        long sketchBytes = memory - this.distinct.bytes()
+                - (long) HEAVY_HITTER_BYTES * k;
+        long width = Long.highestOneBit(sketchBytes / Integer.BYTES / DEPTH);
+        this.sketch = new CountMinSketch(
+                (int) Math.min(width, CountMinSketch.maxWidth(DEPTH)), DEPTH);
+    }
+
+    /**
+     * Returns the smallest memory budget for {@code k} heavy hitters.
+     *
+     * @param k
+     *            the number of heavy hitters
+     * @return the smallest budget, in bytes
+     */
+    public static long minimumMemory(int k) {
+        return MIN_SKETCH_BYTES
+                + (1 << HyperLogLog.MAX_PRECISION)
+                + (long) HEAVY_HITTER_BYTES * k;
+    }
+
+    /**
+     * Returns the largest memory budget for {@code k} heavy hitters, that of
+     * a Count-Min Sketch of the largest width. A larger budget could not be
+     * used.
+     *
+     * @param k
+     *            the number of heavy hitters
+     * @return the largest budget, in bytes
+     */
+    public static long maximumMemory(int k) {
+        return (long) CountMinSketch.maxWidth(DEPTH) * Integer.BYTES * DEPTH
+                + (1 << HyperLogLog.MAX_PRECISION)
+                + (long) HEAVY_HITTER_BYTES * k;
+    }
+
+    /**
+     * Returns a well-mixed 64-bit hash of {@code text[start, end)}: FNV-1a
+     * over the characters followed by the MurmurHash3 finalizer.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @return the hash
+     */
+    public static long hash64(CharSequence text, int start, int end) {
+        long h = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            h = (h ^ text.charAt(i)) * FNV_PRIME;
+        }
+        h = (h ^ (h >>> MIX_SHIFT)) * MIX1;
+        h = (h ^ (h >>> MIX_SHIFT)) * MIX2;
+        return h ^ (h >>> MIX_SHIFT);
+    }
+
+    @Override
+    public void word(CharSequence text, int start, int end) {
+        long hash = hash64(text, start, end);
+        int count = this.sketch.increment(hash);
+        this.distinct.add(hash);
+        this.heavyHitters.offer(text, start, end, hash, count);
+    }
+
+    /**
+     * Returns the estimated count of {@code word}.
+     *
+     * @param word
+     *            the word
+     * @return the estimate, never below the true count
+     */
+    public int estimate(CharSequence word) {
+        return this.sketch.estimate(hash64(word, 0, word.length()));
+    }
+
+    /**
+     * Returns the exact number of words counted.
+     *
+     * @return the number of words
+     */
+    public long totalWords() {
+        return this.sketch.total();
+    }
+
+    /**
+     * Returns the Count-Min Sketch of the word counts.
+     *
+     * @return the sketch
+     */
+    public CountMinSketch sketch() {
+        return this.sketch;
+    }
+
+    /**
+     * Returns the HyperLogLog of the distinct words.
+     *
+     * @return the HyperLogLog
+     */
+    public HyperLogLog distinct() {
+        return this.distinct;
+    }
+
+    /**
+     * Returns the table of the heavy hitters and their estimated counts.
+     *
+     * @return the table
+     */
+    public WordCountTable heavyHitters() {
+        return this.heavyHitters.toTable();
+    }
+
+}
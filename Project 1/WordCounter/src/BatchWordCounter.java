@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Batch mode of {@code WordCounter}: counts every file of a directory or glob
+ * in one JVM, on a pool of worker threads shared by all the files, writes one
+ * HTML report per file, and an aggregate report of the per-file counts merged
+ * together. The reports may be written into the directory of the inputs: the
+ * reports a run leaves there are not counted as inputs by the next run.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class BatchWordCounter {
+
+    /**
+     * Name of the aggregate report in the output directory.
+     */
+    public static final String AGGREGATE_NAME = "aggregate.html";
+
+    /**
+     * Suffix appended to an input file name to name its report.
+     */
+    public static final String REPORT_SUFFIX = ".html";
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private BatchWordCounter() {
+    }
+
+    /**
+     * Task counting one file and writing its report.
+     */
+    private static final class FileTask implements Callable<WordCountTable> {
+
+        /**
+         * The input file.
+         */
+        private final Path input;
+
+        /**
+         * Name of the report file.
+         */
+        private final String outputName;
+
+        /**
+         * The parsed command line options.
+         */
+        private final WordCounterOptions options;
+
+        /**
+         * The count index, or {@code null}.
+         */
+        private final CountIndex index;
+
+        /**
+         * Constructor.
+         *
+         * @param input
+         *            the input file
+         * @param outputName
+         *            the name of the report file
+         * @param options
+         *            the parsed command line options
+         * @param index
+         *            the count index, or {@code null}
+         */
+        FileTask(Path input, String outputName, WordCounterOptions options,
+                CountIndex index) {
+            this.input = input;
+            this.outputName = outputName;
+            this.options = options;
+            this.index = index;
+        }
+
+        @Override
+        public WordCountTable call() throws IOException {
+            String inputName = this.input.toString();
+            WordCountTable table;
+            if (this.index != null) {
+                table = this.index.count(inputName);
+            } else {
+                table = WordCounter.countFile(inputName, this.options, 1);
+            }
+            WordCounter.report(table, this.options, inputName,
+                    this.outputName);
+            return table;
+        }
+    }
+
+    /**
+     * Returns the regular files named by {@code inputs}, sorted by name.
+     * {@code inputs} is either a directory, naming the files directly in it,
+     * or a path whose last element is a glob such as {@code data/*.txt},
+     * naming the files of its parent directory that match the glob.
+     *
+     * @param inputs
+     *            the directory or glob
+     * @return the input files
+     * @throws IOException
+     *             if the directory cannot be listed
+     */
+    public static List<Path> inputs(String inputs) throws IOException {
+        assert inputs != null : "Violation of: inputs is not null";
+
+        Path path = Paths.get(inputs);
+        DirectoryStream<Path> files;
+        if (Files.isDirectory(path)) {
+            files = Files.newDirectoryStream(path);
+        } else {
+            Path parent = path.getParent();
+            if (parent == null) {
+                parent = Paths.get("");
+            }
+            files = Files.newDirectoryStream(parent,
+                    path.getFileName().toString());
+        }
+        List<Path> result = new ArrayList<>();
+        try {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    result.add(file);
+                }
+            }
+        } finally {
+            files.close();
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns {@code inputs} without the reports a batch run writes into
+     * {@code directory}: the aggregate report, and the report of any file
+     * that is one of {@code inputs} itself.
+     *
+     * @param inputs
+     *            the input files
+     * @param directory
+     *            the directory of the reports
+     * @return the input files that are not reports
+     */
+    static List<Path> withoutReports(List<Path> inputs, Path directory) {
+        Path reports = directory.toAbsolutePath().normalize();
+        Set<String> names = new HashSet<>();
+        for (Path input : inputs) {
+            names.add(input.getFileName().toString());
+        }
+        List<Path> result = new ArrayList<>();
+        for (Path input : inputs) {
+            String name = input.getFileName().toString();
+            boolean report = false;
+            if (reports.equals(input.toAbsolutePath().normalize()
+                    .getParent())) {
+                report = name.equals(AGGREGATE_NAME)
+                        || (name.endsWith(REPORT_SUFFIX)
+                                && names.contains(name.substring(0,
+                                        name.length()
+                                                - REPORT_SUFFIX.length())));
+            }
+            if (!report) {
+                result.add(input);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the result of {@code future}, waiting for it if necessary, and
+     * rethrows the I/O or runtime error of a failed task as it was thrown.
+     *
+     * @param <T>
+     *            the type of the result
+     * @param future
+     *            the result of a task
+     * @return the result of the task
+     * @throws IOException
+     *             if the task failed or the wait was interrupted
+     */
+    static <T> T result(Future<T> future) throws IOException {
+        T result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        }
+        return result;
+    }
+
+    /**
+     * Counts every file named by {@code options.inputName()} and writes their
+     * reports, and the aggregate report, into the directory
+     * {@code options.outputName()}.
+     *
+     * @param options
+     *            the parsed command line options
+     * @param index
+     *            the count index the files are counted through, or
+     *            {@code null} to count them from scratch
+     * @throws IOException
+     *             if an input file cannot be read or a report cannot be
+     *             written
+     * @throws IllegalArgumentException
+     *             if no file matches the input, or the report of a file
+     *             would be the aggregate report
+     * @requires options.batch()
+     */
+    public static void run(WordCounterOptions options, CountIndex index)
+            throws IOException {
+        assert options != null : "Violation of: options is not null";
+        assert options.batch() : "Violation of: options.batch()";
+
+        Path directory = Paths.get(options.outputName());
+        List<Path> inputs = withoutReports(inputs(options.inputName()),
+                directory);
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "No input files match " + options.inputName());
+        }
+        for (Path input : inputs) {
+            if ((input.getFileName() + REPORT_SUFFIX).equals(AGGREGATE_NAME)) {
+                throw new IllegalArgumentException("The report of " + input
+                        + " would overwrite the aggregate report");
+            }
+        }
+        Files.createDirectories(directory);
+
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(options.threads(), inputs.size()));
+        try {
+            List<Future<WordCountTable>> tables = new ArrayList<>();
+            for (Path input : inputs) {
+                String outputName = directory
+                        .resolve(input.getFileName() + REPORT_SUFFIX)
+                        .toString();
+                tables.add(pool.submit(
+                        new FileTask(input, outputName, options, index)));
+            }
+            //merge in input order while later files are still being counted
+            WordCountTable aggregate = new WordCountTable();
+            for (Future<WordCountTable> table : tables) {
+                aggregate.merge(result(table));
+            }
+            WordCounter.report(aggregate, options, options.inputName(),
+                    directory.resolve(AGGREGATE_NAME).toString());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+}
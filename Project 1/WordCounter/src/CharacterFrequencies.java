@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Frequencies of the code points of the raw text, line ends included. Code
+ * points of the Basic Multilingual Plane are counted in a flat array indexed
+ * by the character, and the rest in a {@link LongIntTable}; a surrogate pair
+ * split between two chunks of text is put back together.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class CharacterFrequencies
+        implements HtmlTextFilter.TextSink, TextStatistic {
+
+    /**
+     * Number of code points in the Basic Multilingual Plane.
+     */
+    private static final int BMP_SIZE = 1 << Character.SIZE;
+
+    /**
+     * Counts of the Basic Multilingual Plane code points.
+     */
+    private final long[] bmp = new long[BMP_SIZE];
+
+    /**
+     * Counts of the supplementary code points.
+     */
+    private final LongIntTable supplementary = new LongIntTable();
+
+    /**
+     * High surrogate ending the last chunk, or 0.
+     */
+    private char pendingHigh;
+
+    @Override
+    public void text(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (this.pendingHigh != 0 && Character.isLowSurrogate(c)) {
+                this.supplementary.increment(
+                        Character.toCodePoint(this.pendingHigh, c));
+                this.pendingHigh = 0;
+            } else {
+                if (this.pendingHigh != 0) {
+                    this.bmp[this.pendingHigh]++;
+                    this.pendingHigh = 0;
+                }
+                if (Character.isHighSurrogate(c)) {
+                    this.pendingHigh = c;
+                } else {
+                    this.bmp[c]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of occurrences of {@code codePoint}.
+     *
+     * @param codePoint
+     *            the code point
+     * @return the number of occurrences
+     */
+    public long count(int codePoint) {
+        long result;
+        if (codePoint < BMP_SIZE) {
+            result = this.bmp[codePoint];
+            if (this.pendingHigh != 0 && codePoint == this.pendingHigh) {
+                result++;
+            }
+        } else {
+            result = this.supplementary.get(codePoint);
+        }
+        return result;
+    }
+
+    /**
+     * Returns how {@code codePoint} is shown in the report: as itself, or
+     * by name or number if it is invisible.
+     *
+     * @param codePoint
+     *            the code point
+     * @return the label
+     */
+    private static String label(int codePoint) {
+        String result;
+        if (codePoint == ' ') {
+            result = "space";
+        } else if (codePoint == '\n') {
+            result = "line end";
+        } else if (codePoint == '\t') {
+            result = "tab";
+        } else if (Character.isISOControl(codePoint)
+                || Character.isWhitespace(codePoint)
+                || Character.isSpaceChar(codePoint)
+                || Character.getType(codePoint) == Character.SURROGATE) {
+            result = String.format(Locale.ROOT, "U+%04X", codePoint);
+        } else {
+            result = new String(Character.toChars(codePoint));
+        }
+        return result;
+    }
+
+    @Override
+    public void write(HtmlReportWriter report) throws IOException {
+        int n = this.supplementary.size();
+        for (int c = 0; c < BMP_SIZE; c++) {
+            if (this.count(c) > 0) {
+                n++;
+            }
+        }
+        Integer[] codePoints = new Integer[n];
+        int i = 0;
+        for (int c = 0; c < BMP_SIZE; c++) {
+            if (this.count(c) > 0) {
+                codePoints[i] = c;
+                i++;
+            }
+        }
+        for (int id = 0; id < this.supplementary.size(); id++) {
+            codePoints[i] = (int) this.supplementary.key(id);
+            i++;
+        }
+        Arrays.sort(codePoints, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = Long.compare(CharacterFrequencies.this.count(b),
+                        CharacterFrequencies.this.count(a));
+                if (result == 0) {
+                    result = Integer.compare(a, b);
+                }
+                return result;
+            }
+        });
+        report.beginSection("Characters", "Character", "Occurrences");
+        for (int codePoint : codePoints) {
+            report.sectionRow(label(codePoint), this.count(codePoint));
+        }
+        report.endSection();
+    }
+
+}
@@ -0,0 +1,299 @@
+/**
+ * {@link WordTokenizer.WordSink} that segments the runs of CJK characters in
+ * every word before passing them on. Chinese and Japanese text has no spaces,
+ * so without segmentation the tokenizer sees whole sentences as single
+ * "words".
+ *
+ * <p>
+ * A CJK run is segmented by forward maximum matching: at each position the
+ * longest word of the dictionary starting there is taken. Characters that do
+ * not start any dictionary word are collected into a stretch; a stretch of one
+ * character is passed on as is, and a longer one as its overlapping bigrams.
+ * With an empty dictionary every CJK run is therefore counted as bigrams. CJK
+ * punctuation, such as the ideographic space, the ideographic comma and full
+ * stop and the fullwidth forms of ASCII punctuation, separates words and is
+ * dropped, since the default separators are ASCII only. The rest of a word
+ * is passed on unchanged.
+ * </p>
+ *
+ * <p>
+ * Every segment is passed on as a span of the tokenizer's text, so
+ * segmentation itself allocates nothing; a {@code String} is built only for a
+ * segment the downstream sink has not seen before.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class CjkSegmenter implements WordTokenizer.WordSink {
+
+    /**
+     * Code points below this are never CJK.
+     */
+    private static final int CJK_START = 0x3000;
+
+    /**
+     * First Hiragana code point.
+     */
+    private static final int KANA_START = 0x3040;
+
+    /**
+     * Last Katakana code point.
+     */
+    private static final int KANA_END = 0x30FF;
+
+    /**
+     * First Katakana Phonetic Extensions code point.
+     */
+    private static final int KANA_EXTENSION_START = 0x31F0;
+
+    /**
+     * Last Katakana Phonetic Extensions code point.
+     */
+    private static final int KANA_EXTENSION_END = 0x31FF;
+
+    /**
+     * Last code point of the CJK Symbols and Punctuation block, which starts
+     * at {@link #CJK_START} with the ideographic space.
+     */
+    private static final int CJK_SYMBOLS_END = 0x303F;
+
+    /**
+     * First code point of the vertical forms of CJK punctuation.
+     */
+    private static final int VERTICAL_FORMS_START = 0xFE10;
+
+    /**
+     * Last code point of the vertical forms of CJK punctuation.
+     */
+    private static final int VERTICAL_FORMS_END = 0xFE1F;
+
+    /**
+     * First code point of the CJK Compatibility Forms block.
+     */
+    private static final int COMPATIBILITY_FORMS_START = 0xFE30;
+
+    /**
+     * Last code point of the CJK Compatibility Forms block.
+     */
+    private static final int COMPATIBILITY_FORMS_END = 0xFE4F;
+
+    /**
+     * First code point of the fullwidth forms of ASCII.
+     */
+    private static final int FULLWIDTH_START = 0xFF00;
+
+    /**
+     * Last code point of the fullwidth and halfwidth CJK punctuation.
+     */
+    private static final int FULLWIDTH_PUNCTUATION_END = 0xFF65;
+
+    /**
+     * The dictionary.
+     */
+    private final DoubleArrayTrie dictionary;
+
+    /**
+     * Where the segments go.
+     */
+    private final WordTokenizer.WordSink sink;
+
+    /**
+     * Constructor.
+     *
+     * @param dictionary
+     *            the dictionary
+     * @param sink
+     *            the sink the segments are passed on to
+     */
+    public CjkSegmenter(DoubleArrayTrie dictionary,
+            WordTokenizer.WordSink sink) {
+        assert dictionary != null : "Violation of: dictionary is not null";
+        assert sink != null : "Violation of: sink is not null";
+
+        this.dictionary = dictionary;
+        this.sink = sink;
+    }
+
+    /**
+     * Returns {@code sink} segmented with {@code dictionary}, or {@code sink}
+     * itself if {@code dictionary} is {@code null}.
+     *
+     * @param dictionary
+     *            the dictionary, or {@code null} for no segmentation
+     * @param sink
+     *            the sink
+     * @return the sink to tokenize into
+     */
+    public static WordTokenizer.WordSink wrap(DoubleArrayTrie dictionary,
+            WordTokenizer.WordSink sink) {
+        WordTokenizer.WordSink result = sink;
+        if (dictionary != null) {
+            result = new CjkSegmenter(dictionary, sink);
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether code point {@code cp} is a Han ideograph or a kana.
+     *
+     * @param cp
+     *            the code point
+     * @return true iff {@code cp} is CJK
+     */
+    public static boolean isCjk(int cp) {
+        return cp >= CJK_START && (Character.isIdeographic(cp)
+                || (cp >= KANA_START && cp <= KANA_END)
+                || (cp >= KANA_EXTENSION_START && cp <= KANA_EXTENSION_END));
+    }
+
+    /**
+     * Reports whether code point {@code cp} is CJK punctuation or the
+     * ideographic space: a character of the CJK symbol, vertical, compatibility
+     * or fullwidth punctuation blocks that is neither CJK nor a letter or
+     * digit, such as the ideographic full stop U+3002 or the fullwidth
+     * exclamation mark U+FF01.
+     *
+     * @param cp
+     *            the code point
+     * @return true iff {@code cp} is CJK punctuation
+     */
+    public static boolean isCjkPunctuation(int cp) {
+        boolean inBlock = (cp >= CJK_START && cp <= CJK_SYMBOLS_END)
+                || (cp >= VERTICAL_FORMS_START && cp <= VERTICAL_FORMS_END)
+                || (cp >= COMPATIBILITY_FORMS_START
+                        && cp <= COMPATIBILITY_FORMS_END)
+                || (cp >= FULLWIDTH_START && cp <= FULLWIDTH_PUNCTUATION_END);
+        return inBlock && !Character.isLetterOrDigit(cp) && !isCjk(cp);
+    }
+
+    /**
+     * Returns the number of {@code char}s of the code point at {@code i} of
+     * {@code text[.., end)}.
+     *
+     * @param text
+     *            the text
+     * @param i
+     *            the index of the code point
+     * @param end
+     *            the index the code point must end by
+     * @return 1 or 2
+     */
+    private static int charCount(CharSequence text, int i, int end) {
+        int result = 1;
+        if (Character.isHighSurrogate(text.charAt(i)) && i + 1 < end
+                && Character.isLowSurrogate(text.charAt(i + 1))) {
+            result = 2;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the code point at {@code i} of {@code text[.., end)}.
+     *
+     * @param text
+     *            the text
+     * @param i
+     *            the index of the code point
+     * @param end
+     *            the index the code point must end by
+     * @return the code point
+     */
+    private static int codePointAt(CharSequence text, int i, int end) {
+        char c = text.charAt(i);
+        int cp = c;
+        if (charCount(text, i, end) == 2) {
+            cp = Character.toCodePoint(c, text.charAt(i + 1));
+        }
+        return cp;
+    }
+
+    /**
+     * Passes on the stretch {@code text[start, end)} of characters that start
+     * no dictionary word: itself if it is one character, its overlapping
+     * bigrams otherwise.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     */
+    private void unknown(CharSequence text, int start, int end) {
+        int first = charCount(text, start, end);
+        if (start + first == end) {
+            this.sink.word(text, start, end);
+        } else {
+            int i = start;
+            int next = i + first;
+            while (next < end) {
+                int after = next + charCount(text, next, end);
+                this.sink.word(text, i, after);
+                i = next;
+                next = after;
+            }
+        }
+    }
+
+    /**
+     * Segments the CJK run {@code text[start, end)}.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     */
+    private void segment(CharSequence text, int start, int end) {
+        int stretch = -1;
+        int i = start;
+        while (i < end) {
+            int length = this.dictionary.longestMatch(text, i, end);
+            if (length > 0) {
+                if (stretch >= 0) {
+                    this.unknown(text, stretch, i);
+                    stretch = -1;
+                }
+                this.sink.word(text, i, i + length);
+                i += length;
+            } else {
+                if (stretch < 0) {
+                    stretch = i;
+                }
+                i += charCount(text, i, end);
+            }
+        }
+        if (stretch >= 0) {
+            this.unknown(text, stretch, end);
+        }
+    }
+
+    @Override
+    public void word(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end) {
+            int run = i;
+            while (i < end && !isCjk(codePointAt(text, i, end))
+                    && !isCjkPunctuation(codePointAt(text, i, end))) {
+                i += charCount(text, i, end);
+            }
+            if (i > run) {
+                this.sink.word(text, run, i);
+            }
+            run = i;
+            while (i < end && isCjk(codePointAt(text, i, end))) {
+                i += charCount(text, i, end);
+            }
+            if (i > run) {
+                this.segment(text, run, i);
+            }
+            //punctuation separates words and is not counted
+            while (i < end && isCjkPunctuation(codePointAt(text, i, end))) {
+                i += charCount(text, i, end);
+            }
+        }
+    }
+
+}
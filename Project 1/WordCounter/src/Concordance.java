@@ -0,0 +1,480 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Memory-mapped concordance: for every word of a text, where it occurs, as
+ * 1-based (line, column) positions, the column counted in {@code char}s. A
+ * {@link Builder} collects the positions during the counting pass and writes
+ * the concordance file; {@link #open(String)} maps the file, and lookups
+ * binary-search it in place, reading only the entries they touch.
+ *
+ * <p>
+ * The file holds a header, a directory of fixed-size entries sorted by the
+ * UTF-8 bytes of their words, the UTF-8 bytes of the words, and the postings
+ * of every word. An entry gives the offset and length of its word and of its
+ * postings and the number of positions. The postings of a word are its
+ * positions in order, each as the line minus the previous line followed by
+ * the column, minus the previous column if the line is the same, all as
+ * variable-length integers of seven bits per byte.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class Concordance {
+
+    /**
+     * First four bytes of a concordance file, "WCCC".
+     */
+    private static final int MAGIC = 0x57434343;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the header: magic, version and number of words.
+     */
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    /**
+     * Size of a directory entry: key offset, key length, postings offset,
+     * postings length and number of positions.
+     */
+    private static final int ENTRY_SIZE = 2 * Long.BYTES + 3 * Integer.BYTES;
+
+    /**
+     * Offset of the key length within an entry.
+     */
+    private static final int KEY_LENGTH = Long.BYTES;
+
+    /**
+     * Offset of the postings offset within an entry.
+     */
+    private static final int POSTINGS_OFFSET = Long.BYTES + Integer.BYTES;
+
+    /**
+     * Offset of the number of positions within an entry.
+     */
+    private static final int COUNT = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * Number of data bits per varint byte.
+     */
+    private static final int VARINT_SHIFT = 7;
+
+    /**
+     * Mask of the data bits of a varint byte.
+     */
+    private static final int VARINT_DATA = 0x7F;
+
+    /**
+     * Flag of a varint byte followed by another.
+     */
+    private static final int VARINT_MORE = 0x80;
+
+    /**
+     * Mask of a byte as an unsigned value.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of words.
+     */
+    private final int size;
+
+    /**
+     * Collects the positions of the words it is handed and passes the words
+     * on to another sink. The caller marks each new line with
+     * {@link #nextLine()}; the start of a word span is taken as its column,
+     * so the spans must be relative to the line.
+     */
+    public static final class Builder implements WordTokenizer.WordSink {
+
+        /**
+         * Initial capacity of the postings of a word.
+         */
+        private static final int INITIAL_POSTINGS = 8;
+
+        /**
+         * The sink the words are passed on to, or {@code null}.
+         */
+        private final WordTokenizer.WordSink next;
+
+        /**
+         * Words and their ids; the counts are the numbers of positions.
+         */
+        private final WordCountTable words = new WordCountTable();
+
+        /**
+         * Encoded postings by word id.
+         */
+        private byte[][] postings = new byte[INITIAL_POSTINGS][];
+
+        /**
+         * Length of the encoded postings by word id.
+         */
+        private int[] lengths = new int[INITIAL_POSTINGS];
+
+        /**
+         * Line of the last position by word id.
+         */
+        private int[] lastLine = new int[INITIAL_POSTINGS];
+
+        /**
+         * Column of the last position by word id.
+         */
+        private int[] lastColumn = new int[INITIAL_POSTINGS];
+
+        /**
+         * Current line, 0 before the first.
+         */
+        private int line;
+
+        /**
+         * Constructor.
+         *
+         * @param next
+         *            the sink the words are passed on to, or {@code null}
+         */
+        public Builder(WordTokenizer.WordSink next) {
+            this.next = next;
+        }
+
+        /**
+         * Moves to the next line; the first call starts line 1.
+         */
+        public void nextLine() {
+            this.line++;
+        }
+
+        /**
+         * Appends {@code n} as a varint to the postings of word {@code id}.
+         *
+         * @param id
+         *            the word id
+         * @param n
+         *            the number
+         * @requires n >= 0
+         */
+        private void append(int id, int n) {
+            final int maxVarintBytes = 5;
+            byte[] bytes = this.postings[id];
+            if (bytes == null) {
+                bytes = new byte[INITIAL_POSTINGS];
+            } else if (this.lengths[id] + maxVarintBytes > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length << 1);
+            }
+            this.postings[id] = bytes;
+            int rest = n;
+            int length = this.lengths[id];
+            while (rest > VARINT_DATA) {
+                bytes[length] = (byte) ((rest & VARINT_DATA) | VARINT_MORE);
+                length++;
+                rest >>>= VARINT_SHIFT;
+            }
+            bytes[length] = (byte) rest;
+            this.lengths[id] = length + 1;
+        }
+
+        @Override
+        public void word(CharSequence text, int start, int end) {
+            int id = this.words.increment(text, start, end);
+            if (id == this.lengths.length) {
+                int capacity = id << 1;
+                this.postings = Arrays.copyOf(this.postings, capacity);
+                this.lengths = Arrays.copyOf(this.lengths, capacity);
+                this.lastLine = Arrays.copyOf(this.lastLine, capacity);
+                this.lastColumn = Arrays.copyOf(this.lastColumn, capacity);
+            }
+            int column = start + 1;
+            int lineDelta = this.line - this.lastLine[id];
+            this.append(id, lineDelta);
+            if (lineDelta == 0) {
+                this.append(id, column - this.lastColumn[id]);
+            } else {
+                this.append(id, column);
+            }
+            this.lastLine[id] = this.line;
+            this.lastColumn[id] = column;
+            if (this.next != null) {
+                this.next.word(text, start, end);
+            }
+        }
+
+        /**
+         * Returns the number of distinct words seen.
+         *
+         * @return the number of words
+         */
+        public int size() {
+            return this.words.size();
+        }
+
+        /**
+         * Writes the concordance to the file {@code fileName}, replacing it
+         * atomically.
+         *
+         * @param fileName
+         *            the name of the concordance file
+         * @throws IOException
+         *             if the file cannot be written
+         */
+        public void write(String fileName) throws IOException {
+            assert fileName != null : "Violation of: fileName is not null";
+
+            int n = this.words.size();
+            final byte[][] keys = new byte[n][];
+            Integer[] order = new Integer[n];
+            for (int id = 0; id < n; id++) {
+                keys[id] = this.words.word(id)
+                        .getBytes(StandardCharsets.UTF_8);
+                order[id] = id;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Arrays.compareUnsigned(keys[a], keys[b]);
+                }
+            });
+
+            Path path = Paths.get(fileName).toAbsolutePath();
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(n);
+                long keyOffset = HEADER_SIZE + (long) ENTRY_SIZE * n;
+                long postingsOffset = keyOffset;
+                for (byte[] key : keys) {
+                    postingsOffset += key.length;
+                }
+                for (int id : order) {
+                    out.writeLong(keyOffset);
+                    out.writeInt(keys[id].length);
+                    out.writeLong(postingsOffset);
+                    out.writeInt(this.lengths[id]);
+                    out.writeInt(this.words.count(id));
+                    keyOffset += keys[id].length;
+                    postingsOffset += this.lengths[id];
+                }
+                for (int id : order) {
+                    out.write(keys[id]);
+                }
+                for (int id : order) {
+                    out.write(this.postings[id], 0, this.lengths[id]);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param buffer
+     *            the mapped file, its header checked
+     */
+    private Concordance(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(2 * Integer.BYTES);
+    }
+
+    /**
+     * Maps the concordance file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the concordance file
+     * @return the concordance
+     * @throws IOException
+     *             if the file cannot be read, is larger than 2 GB or is not a
+     *             concordance file
+     */
+    public static Concordance open(String fileName) throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " is too large to map");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException(fileName + " is not a concordance file");
+        }
+        return new Concordance(buffer);
+    }
+
+    /**
+     * Returns the offset of entry {@code i}.
+     *
+     * @param i
+     *            the index of the entry
+     * @return the offset
+     */
+    private static int entry(int i) {
+        return HEADER_SIZE + i * ENTRY_SIZE;
+    }
+
+    /**
+     * Compares the word of entry {@code i} with {@code key} by unsigned
+     * bytes.
+     *
+     * @param i
+     *            the index of the entry
+     * @param key
+     *            the UTF-8 bytes of a word
+     * @return negative, zero or positive as the word is less than, equal to
+     *         or greater than {@code key}
+     */
+    private int compare(int i, byte[] key) {
+        int offset = (int) this.buffer.getLong(entry(i));
+        int length = this.buffer.getInt(entry(i) + KEY_LENGTH);
+        int n = Math.min(length, key.length);
+        int result = 0;
+        int j = 0;
+        while (result == 0 && j < n) {
+            result = (this.buffer.get(offset + j) & BYTE_MASK)
+                    - (key[j] & BYTE_MASK);
+            j++;
+        }
+        if (result == 0) {
+            result = length - key.length;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the entry of {@code word}, or -1 if it is absent.
+     *
+     * @param word
+     *            the word
+     * @return the index of the entry, or -1
+     */
+    private int find(String word) {
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = this.size - 1;
+        int result = -1;
+        while (result < 0 && low <= high) {
+            int middle = (low + high) >>> 1;
+            int c = this.compare(middle, key);
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                result = middle;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distinct words.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of occurrences of {@code word}.
+     *
+     * @param word
+     *            the word
+     * @return the number of occurrences, 0 if it does not occur
+     */
+    public int count(String word) {
+        assert word != null : "Violation of: word is not null";
+
+        int i = this.find(word);
+        int result = 0;
+        if (i >= 0) {
+            result = this.buffer.getInt(entry(i) + COUNT);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a variable-length integer, seven bits per byte.
+     *
+     * @param in
+     *            the buffer, positioned on the integer
+     * @return the integer
+     * @updates in.position
+     */
+    private static int readVarint(ByteBuffer in) {
+        int result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get();
+            result |= (b & VARINT_DATA) << shift;
+            shift += VARINT_SHIFT;
+        } while ((b & VARINT_MORE) != 0);
+        return result;
+    }
+
+    /**
+     * Returns the positions of {@code word}, in order, as the line and
+     * column of the first occurrence, then of the second, and so on.
+     *
+     * @param word
+     *            the word
+     * @return the 1-based lines and columns, empty if it does not occur
+     */
+    public int[] positions(String word) {
+        assert word != null : "Violation of: word is not null";
+
+        int i = this.find(word);
+        int[] result = new int[0];
+        if (i >= 0) {
+            result = new int[2 * this.buffer.getInt(entry(i) + COUNT)];
+            ByteBuffer in = this.buffer.duplicate();
+            in.position((int) this.buffer.getLong(entry(i)
+                    + POSTINGS_OFFSET));
+            int line = 0;
+            int column = 0;
+            for (int k = 0; k < result.length; k += 2) {
+                int lineDelta = readVarint(in);
+                int value = readVarint(in);
+                line += lineDelta;
+                if (lineDelta == 0) {
+                    column += value;
+                } else {
+                    column = value;
+                }
+                result[k] = line;
+                result[k + 1] = column;
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,100 @@
+import java.io.IOException;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Program that looks words up in a concordance file written by
+ * {@code WordCounter --concordance} and prints where each occurs, one
+ * "line:column" per occurrence. The file is memory-mapped, so each lookup
+ * only touches the directory entries of its binary search and the postings
+ * of the word.
+ *
+ * <pre>
+ * ConcordanceQuery concordance word...
+ * </pre>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class ConcordanceQuery {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ConcordanceQuery() {
+    }
+
+    /**
+     * Prints the occurrences of {@code word} in {@code concordance}.
+     *
+     * @param concordance
+     *            the concordance
+     * @param word
+     *            the word
+     * @param out
+     *            the output stream
+     * @updates out.content
+     */
+    private static void lookup(Concordance concordance, String word,
+            SimpleWriter out) {
+        int[] positions = concordance.positions(word);
+        out.print(word + ": " + positions.length / 2);
+        if (positions.length == 2) {
+            out.print(" occurrence");
+        } else {
+            out.print(" occurrences");
+        }
+        for (int i = 0; i < positions.length; i += 2) {
+            if (i == 0) {
+                out.print(" at");
+            }
+            out.print(" " + positions[i] + ":" + positions[i + 1]);
+        }
+        out.println();
+    }
+
+    /**
+     * Main method. With no arguments the concordance file and then words are
+     * prompted for, until an empty line.
+     *
+     * @param args
+     *            the concordance file followed by the words to look up
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+
+        String fileName;
+        if (args.length == 0) {
+            out.print("Please enter the name of the concordance file: ");
+            fileName = in.nextLine();
+        } else {
+            fileName = args[0];
+        }
+        try {
+            Concordance concordance = Concordance.open(fileName);
+            if (args.length == 0) {
+                out.print("Word to look up (empty to quit): ");
+                String word = in.nextLine();
+                while (!word.isEmpty()) {
+                    lookup(concordance, word, out);
+                    out.print("Word to look up (empty to quit): ");
+                    word = in.nextLine();
+                }
+            } else {
+                for (int i = 1; i < args.length; i++) {
+                    lookup(concordance, args[i], out);
+                }
+            }
+        } catch (IOException e) {
+            out.println("I/O error: " + e.getMessage());
+        }
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,399 @@
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Table from words to counts that many threads can count into at once,
+ * without a lock. A word is looked up by linear probing in an array of
+ * entries, the way {@link WordCountTable} does, and a new word claims its
+ * empty slot with a compare-and-set; if another thread claims the slot first
+ * the slot is read again, so a word is never added twice. Each entry counts
+ * in a {@link LongAdder}, whose striped cells let threads incrementing the
+ * same frequent word do so without contending on one counter.
+ *
+ * <p>
+ * Growing does not stop the counting. The thread that fills a table past
+ * half its slots allocates one twice as large and moves every entry into it.
+ * Each empty slot of the old table is closed with a forwarding marker as it
+ * is passed, so a word that is not yet in the old table is added to the new
+ * one. The entries themselves are shared by both tables, so a count made
+ * through the old table during the move is not lost.
+ * </p>
+ *
+ * <p>
+ * {@link #snapshot()} copies the words and counts into a
+ * {@link WordCountTable} for the sort and report stages. It is exact once
+ * the producers have finished. While they are running, every word added and
+ * every count made before the call is in it, but the words are not all read
+ * at the same instant.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class ConcurrentWordCountTable
+        implements WordTokenizer.ByteWordSink {
+
+    /**
+     * Default number of words the table is sized for.
+     */
+    private static final int DEFAULT_EXPECTED_SIZE = 1 << 10;
+
+    /**
+     * A word and its count.
+     */
+    private static final class Entry {
+
+        /**
+         * The word.
+         */
+        private final String word;
+
+        /**
+         * Hash of the word, as {@link WordCountTable#hash} computes it.
+         */
+        private final int hash;
+
+        /**
+         * Number of occurrences.
+         */
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * Constructor.
+         *
+         * @param word
+         *            the word
+         * @param hash
+         *            the hash of the word
+         */
+        Entry(String word, int hash) {
+            this.word = word;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Marker of a slot of a table that is being moved, which was empty: the
+     * word probed for is looked for in the next table.
+     */
+    private static final Entry MOVED = new Entry(null, 0);
+
+    /**
+     * Array of slots and the table it is being moved to, if any.
+     */
+    private static final class Table {
+
+        /**
+         * Slots holding entries, {@code null} or {@link #MOVED}.
+         */
+        private final AtomicReferenceArray<Entry> slots;
+
+        /**
+         * Number of entries above which the table is moved to a larger one.
+         */
+        private final int threshold;
+
+        /**
+         * Number of entries.
+         */
+        private final AtomicInteger entries = new AtomicInteger();
+
+        /**
+         * The table this one is being moved to, or {@code null}.
+         */
+        private final AtomicReference<Table> next = new AtomicReference<>();
+
+        /**
+         * Whether every entry has been moved to the next table.
+         */
+        private volatile boolean moved;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity
+         *            the number of slots, a power of two
+         */
+        Table(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.threshold = capacity / 2;
+        }
+    }
+
+    /**
+     * The newest table that has not been moved.
+     */
+    private final AtomicReference<Table> current;
+
+    /**
+     * Number of words.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Default constructor.
+     */
+    public ConcurrentWordCountTable() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * Constructor sizing the table for {@code expectedSize} words.
+     *
+     * @param expectedSize
+     *            the number of words expected
+     * @requires expectedSize > 0
+     */
+    public ConcurrentWordCountTable(int expectedSize) {
+        assert expectedSize > 0 : "Violation of: expectedSize > 0";
+
+        this.current = new AtomicReference<>(
+                new Table(Integer.highestOneBit(expectedSize) << 2));
+    }
+
+    /**
+     * Returns the entry of the word {@code text[start, end)}, or of the ASCII
+     * bytes {@code bytes[start, end)} if {@code text} is {@code null}, in
+     * {@code table} or the tables it is moved to, adding {@code entry} or,
+     * if that is {@code null}, a new entry if the word is absent.
+     *
+     * @param table
+     *            the table to start from
+     * @param text
+     *            the text of the word, or {@code null}
+     * @param bytes
+     *            the bytes of the word if {@code text} is {@code null}
+     * @param start
+     *            the index of the first character or byte
+     * @param end
+     *            the index just past the last character or byte
+     * @param hash
+     *            the hash of the word
+     * @param entry
+     *            the entry being moved, or {@code null}
+     * @return the entry of the word
+     */
+    private Entry place(Table table, CharSequence text, ByteBuffer bytes,
+            int start, int end, int hash, Entry entry) {
+        Table t = table;
+        Entry added = entry;
+        Entry result = null;
+        while (result == null) {
+            AtomicReferenceArray<Entry> slots = t.slots;
+            int mask = slots.length() - 1;
+            int slot = WordCountTable.firstSlot(hash, mask);
+            int probed = 0;
+            Table next = null;
+            while (result == null && next == null) {
+                Entry e = slots.get(slot);
+                if (e == null) {
+                    if (added == null) {
+                        String word;
+                        if (text != null) {
+                            word = text.subSequence(start, end).toString();
+                        } else {
+                            word = WordCountTable.asciiString(bytes, start,
+                                    end);
+                        }
+                        added = new Entry(word, hash);
+                    }
+                    //on failure the slot is read again: it may be the word
+                    if (slots.compareAndSet(slot, null, added)) {
+                        result = added;
+                        if (entry == null) {
+                            this.size.incrementAndGet();
+                        }
+                        if (t.entries.incrementAndGet() > t.threshold) {
+                            this.grow(t);
+                        }
+                    }
+                } else if (e == MOVED) {
+                    next = t.next.get();
+                } else if (e.hash == hash && (e == entry || (text != null
+                        ? WordCountTable.matches(e.word, text, start, end)
+                        : WordCountTable.matches(e.word, bytes, start,
+                                end)))) {
+                    result = e;
+                } else {
+                    slot = (slot + 1) & mask;
+                    probed++;
+                    if (probed > mask) {
+                        //full of entries: the word goes to the next table
+                        this.grow(t);
+                        next = t.next.get();
+                    }
+                }
+            }
+            if (next != null) {
+                t = next;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves {@code table} to a table twice as large, unless another thread
+     * already is. Returns once the next table is known, which may be before
+     * the move is finished.
+     *
+     * @param table
+     *            the table
+     */
+    private void grow(Table table) {
+        if (table.next.get() == null && table.next.compareAndSet(null,
+                new Table(table.slots.length() << 1))) {
+            Table next = table.next.get();
+            AtomicReferenceArray<Entry> slots = table.slots;
+            for (int slot = 0; slot < slots.length(); slot++) {
+                //only this thread writes MOVED, so a slot is null or an entry
+                Entry e = slots.get(slot);
+                while (e == null && !slots.compareAndSet(slot, null, MOVED)) {
+                    e = slots.get(slot);
+                }
+                if (e != null) {
+                    this.place(next, e.word, null, 0, e.word.length(), e.hash,
+                            e);
+                }
+            }
+            table.moved = true;
+            //whoever finishes last advances past every moved table
+            Table t = this.current.get();
+            while (t.moved) {
+                this.current.compareAndSet(t, t.next.get());
+                t = this.current.get();
+            }
+        }
+    }
+
+    /**
+     * Adds one to the count of {@code text[start, end)}.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @requires 0 <= start < end <= |text|
+     */
+    public void increment(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+        assert 0 <= start : "Violation of: 0 <= start";
+        assert start < end : "Violation of: start < end";
+        assert end <= text.length() : "Violation of: end <= |text|";
+
+        this.place(this.current.get(), text, null, start, end,
+                WordCountTable.hash(text, start, end), null).count.increment();
+    }
+
+    /**
+     * Adds one to the count of the word of the ASCII bytes
+     * {@code bytes[start, end)}, without decoding them.
+     *
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte
+     * @param end
+     *            the index just past the last byte
+     * @requires 0 <= start < end <= limit(bytes) and [the bytes are ASCII]
+     */
+    public void increment(ByteBuffer bytes, int start, int end) {
+        assert bytes != null : "Violation of: bytes is not null";
+        assert 0 <= start : "Violation of: 0 <= start";
+        assert start < end : "Violation of: start < end";
+        assert end <= bytes.limit() : "Violation of: end <= limit(bytes)";
+
+        this.place(this.current.get(), null, bytes, start, end,
+                WordCountTable.hash(bytes, start, end), null).count
+                        .increment();
+    }
+
+    /**
+     * Returns the count of {@code word}, or 0 if it was not seen.
+     *
+     * @param word
+     *            the word
+     * @return the count
+     */
+    public long count(String word) {
+        assert word != null : "Violation of: word is not null";
+
+        long result = 0;
+        int hash = WordCountTable.hash(word, 0, word.length());
+        Table t = this.current.get();
+        boolean done = false;
+        while (!done) {
+            AtomicReferenceArray<Entry> slots = t.slots;
+            int mask = slots.length() - 1;
+            int slot = WordCountTable.firstSlot(hash, mask);
+            int probed = 0;
+            Entry e = slots.get(slot);
+            while (e != null && e != MOVED && probed <= mask
+                    && (e.hash != hash || !e.word.equals(word))) {
+                slot = (slot + 1) & mask;
+                probed++;
+                e = slots.get(slot);
+            }
+            if (e == MOVED || (probed > mask && t.next.get() != null)) {
+                t = t.next.get();
+            } else {
+                if (e != null && probed <= mask) {
+                    result = e.count.sum();
+                }
+                done = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distinct words.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Returns a table of the words and their counts, for the sort and report
+     * stages. Counts above {@link Integer#MAX_VALUE} are capped there.
+     *
+     * @return the snapshot
+     */
+    public WordCountTable snapshot() {
+        WordCountTable result = new WordCountTable(Math.max(1, this.size()));
+        //during a move an entry is in two tables
+        Set<Entry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Table t = this.current.get();
+        while (t != null) {
+            for (int slot = 0; slot < t.slots.length(); slot++) {
+                Entry e = t.slots.get(slot);
+                if (e != null && e != MOVED && seen.add(e)) {
+                    result.add(e.word, (int) Math.min(Integer.MAX_VALUE,
+                            e.count.sum()));
+                }
+            }
+            t = t.next.get();
+        }
+        return result;
+    }
+
+    @Override
+    public void word(CharSequence text, int start, int end) {
+        this.increment(text, start, end);
+    }
+
+    @Override
+    public void word(ByteBuffer bytes, int start, int end) {
+        this.increment(bytes, start, end);
+    }
+
+}
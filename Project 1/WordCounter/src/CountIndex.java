@@ -0,0 +1,648 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Persisted word counts of input files, so that a file that only grew since
+ * the last run is recounted from where the last run stopped instead of from
+ * byte zero.
+ *
+ * <p>
+ * For every file the index keeps its size, modification time and a content
+ * checksum, together with the counts of its bytes up to the last separator
+ * byte (the "boundary"); the bytes after the boundary may be the start of a
+ * word that an append continues, so they are counted afresh on every run. A
+ * file whose size and modification time are unchanged is not read at all. A
+ * file that grew and whose checksum still matches its old length is read from
+ * its boundary on. Any other file is recounted in full.
+ * </p>
+ *
+ * <p>
+ * The checksum is a CRC-32C of the first and the last {@value #SAMPLE_SIZE}
+ * bytes of the old length, so checking it reads a bounded amount of the old
+ * content however large the file is; it catches truncation, rotation and
+ * rewrites of the head or the tail, but not an edit confined to the middle of
+ * a file that also grew.
+ * </p>
+ *
+ * <p>
+ * The index file stores the vocabulary once, followed by every file's counts
+ * as delta-coded word ids and counts in variable-length integers. It is only
+ * used with the separators, CJK dictionary and charset it was built with;
+ * otherwise it is discarded and every file is recounted.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class CountIndex {
+
+    /**
+     * First four bytes of an index file, "WCIX".
+     */
+    private static final int MAGIC = 0x57434958;
+
+    /**
+     * Version of the index file format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Number of bytes at each end of the old content that are checksummed.
+     */
+    public static final int SAMPLE_SIZE = 1 << 16;
+
+    /**
+     * Bits of a variable-length integer byte holding data.
+     */
+    private static final int VARINT_SHIFT = 7;
+
+    /**
+     * Mask of the data bits of a variable-length integer byte.
+     */
+    private static final int VARINT_DATA = 0x7F;
+
+    /**
+     * Flag of a variable-length integer byte that more bytes follow.
+     */
+    private static final int VARINT_MORE = 0x80;
+
+    /**
+     * What the index knows about one file.
+     */
+    private static final class FileEntry {
+
+        /**
+         * Size of the file in bytes.
+         */
+        private final long size;
+
+        /**
+         * Modification time of the file in milliseconds.
+         */
+        private final long modified;
+
+        /**
+         * Index just past the last separator byte, or 0.
+         */
+        private final long boundary;
+
+        /**
+         * Checksum of the content, see {@link CountIndex#checksum}.
+         */
+        private final long checksum;
+
+        /**
+         * Counts of the words in the bytes {@code [0, boundary)}.
+         */
+        private final WordCountTable counts;
+
+        /**
+         * Constructor.
+         *
+         * @param size
+         *            the size of the file
+         * @param modified
+         *            the modification time of the file
+         * @param boundary
+         *            the index just past the last separator byte, or 0
+         * @param checksum
+         *            the checksum of the content
+         * @param counts
+         *            the counts of the words before {@code boundary}
+         */
+        FileEntry(long size, long modified, long boundary, long checksum,
+                WordCountTable counts) {
+            this.size = size;
+            this.modified = modified;
+            this.boundary = boundary;
+            this.checksum = checksum;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * Separator characters the counts were made with.
+     */
+    private final SeparatorSet separators;
+
+    /**
+     * CJK segmentation dictionary the counts were made with, or {@code null}.
+     */
+    private final DoubleArrayTrie dictionary;
+
+    /**
+     * Charset the files are decoded from.
+     */
+    private final Charset charset;
+
+    /**
+     * Entries by absolute path.
+     */
+    private final Map<String, FileEntry> entries = new LinkedHashMap<>();
+
+    /**
+     * Number of bytes tokenized since this index was created or loaded.
+     */
+    private long bytesCounted;
+
+    /**
+     * Constructor of an empty index.
+     *
+     * @param separators
+     *            the separator characters
+     * @param dictionary
+     *            the CJK segmentation dictionary, or {@code null}
+     * @param charset
+     *            the charset of the files
+     */
+    public CountIndex(SeparatorSet separators, DoubleArrayTrie dictionary,
+            Charset charset) {
+        assert separators != null : "Violation of: separators is not null";
+        assert charset != null : "Violation of: charset is not null";
+
+        this.separators = separators;
+        this.dictionary = dictionary;
+        this.charset = charset;
+    }
+
+    /**
+     * Writes {@code n} as a variable-length integer, seven bits per byte.
+     *
+     * @param out
+     *            the output
+     * @param n
+     *            the number
+     * @throws IOException
+     *             if the output cannot be written
+     * @requires n >= 0
+     */
+    static void writeVarint(DataOutput out, long n)
+            throws IOException {
+        long rest = n;
+        while (rest > VARINT_DATA) {
+            out.writeByte((int) (rest & VARINT_DATA) | VARINT_MORE);
+            rest >>>= VARINT_SHIFT;
+        }
+        out.writeByte((int) rest);
+    }
+
+    /**
+     * Reads a variable-length integer written by
+     * {@link #writeVarint(DataOutput, long)}.
+     *
+     * @param in
+     *            the input
+     * @return the number
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    static long readVarint(DataInput in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            result |= (long) (b & VARINT_DATA) << shift;
+            shift += VARINT_SHIFT;
+        } while ((b & VARINT_MORE) != 0);
+        return result;
+    }
+
+    /**
+     * Writes {@code s} as its UTF-8 length followed by its UTF-8 bytes.
+     *
+     * @param out
+     *            the output
+     * @param s
+     *            the string
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    private static void writeString(DataOutput out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in
+     *            the input
+     * @return the string
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds the bytes {@code [from, to)} of {@code channel} to
+     * {@code checksum}.
+     *
+     * @param channel
+     *            the file
+     * @param from
+     *            the index of the first byte
+     * @param to
+     *            the index just past the last byte
+     * @param checksum
+     *            the checksum
+     * @param bytes
+     *            a buffer
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static void update(FileChannel channel, long from, long to,
+            CRC32C checksum, ByteBuffer bytes) throws IOException {
+        long position = from;
+        while (position < to) {
+            bytes.clear();
+            bytes.limit((int) Math.min(bytes.capacity(), to - position));
+            int n = channel.read(bytes, position);
+            if (n < 0) {
+                throw new IOException("File shrank while being read");
+            }
+            bytes.flip();
+            checksum.update(bytes);
+            position += n;
+        }
+    }
+
+    /**
+     * Returns the checksum of the first {@code size} bytes of
+     * {@code channel}: a CRC-32C of the first and the last
+     * {@value #SAMPLE_SIZE} of them.
+     *
+     * @param channel
+     *            the file
+     * @param size
+     *            the number of bytes the checksum covers
+     * @return the checksum
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long checksum(FileChannel channel, long size)
+            throws IOException {
+        CRC32C checksum = new CRC32C();
+        ByteBuffer bytes = ByteBuffer.allocate(SAMPLE_SIZE);
+        long head = Math.min(size, SAMPLE_SIZE);
+        update(channel, 0, head, checksum, bytes);
+        update(channel, Math.max(head, size - SAMPLE_SIZE), size, checksum,
+                bytes);
+        return checksum.getValue();
+    }
+
+    /**
+     * Returns the index just past the last separator byte in the bytes
+     * {@code [from, to)} of {@code channel}, or {@code from} if there is none
+     * or the charset is not ASCII-compatible.
+     *
+     * @param channel
+     *            the file
+     * @param from
+     *            the index of the first byte
+     * @param to
+     *            the index just past the last byte
+     * @return the boundary
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private long boundary(FileChannel channel, long from, long to)
+            throws IOException {
+        long result = from;
+        if (ParallelWordCounter.isAsciiCompatible(this.charset)) {
+            ByteBuffer bytes = ByteBuffer.allocate(SAMPLE_SIZE);
+            long end = to;
+            boolean found = false;
+            while (!found && end > from) {
+                long start = Math.max(from, end - SAMPLE_SIZE);
+                bytes.clear();
+                bytes.limit((int) (end - start));
+                int n = 0;
+                while (n >= 0 && bytes.hasRemaining()) {
+                    n = channel.read(bytes, start + bytes.position());
+                }
+                int i = bytes.position() - 1;
+                while (!found && i >= 0) {
+                    byte b = bytes.get(i);
+                    found = b >= 0 && this.separators.isSeparator((char) b);
+                    i--;
+                }
+                if (found) {
+                    result = start + i + 2;
+                }
+                end = start;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tokenizes the bytes {@code [from, to)} of {@code channel} into
+     * {@code table}.
+     *
+     * @param channel
+     *            the file
+     * @param from
+     *            the index of the first byte
+     * @param to
+     *            the index just past the last byte
+     * @param table
+     *            the table the words are counted in
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private void tokenize(FileChannel channel, long from, long to,
+            WordCountTable table, RunMetrics metrics) throws IOException {
+        if (from < to) {
+            ParallelWordCounter.tokenizeRange(channel, from, to, this.charset,
+                    new WordTokenizer(this.separators,
+                            CjkSegmenter.wrap(this.dictionary, table)),
+                    metrics);
+            synchronized (this) {
+                this.bytesCounted += to - from;
+            }
+        }
+    }
+
+    /**
+     * Returns the counts of the words of the file {@code inputName}, reading
+     * only what changed since the index last saw the file, and records the
+     * file's new state. Several threads may count different files at once.
+     *
+     * @param inputName
+     *            the name of the input file
+     * @return the table of words and their occurrences
+     * @throws IOException
+     *             if the input file cannot be read
+     */
+    public WordCountTable count(String inputName) throws IOException {
+        return this.count(inputName, null);
+    }
+
+    /**
+     * Returns the counts of the words of the file {@code inputName}, reading
+     * only what changed since the index last saw the file, and records the
+     * file's new state. The lines of what is read are added to
+     * {@code metrics}. Several threads may count different files at once.
+     *
+     * @param inputName
+     *            the name of the input file
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @return the table of words and their occurrences
+     * @throws IOException
+     *             if the input file cannot be read
+     */
+    public WordCountTable count(String inputName, RunMetrics metrics)
+            throws IOException {
+        assert inputName != null : "Violation of: inputName is not null";
+
+        Path path = Paths.get(inputName).toAbsolutePath().normalize();
+        String key = path.toString();
+        FileEntry old;
+        synchronized (this) {
+            old = this.entries.get(key);
+        }
+        WordCountTable result;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            FileEntry entry = old;
+            if (old == null || old.size != size || old.modified != modified) {
+                long from = 0;
+                WordCountTable counts = new WordCountTable();
+                if (old != null && size > old.size
+                        && checksum(channel, old.size) == old.checksum) {
+                    // count into a copy: the stored entry must not change
+                    // if the read of the appended bytes fails part-way
+                    from = old.boundary;
+                    counts = new WordCountTable(
+                            Math.max(1, old.counts.size()));
+                    counts.merge(old.counts);
+                }
+                long boundary = this.boundary(channel, from, size);
+                this.tokenize(channel, from, boundary, counts, metrics);
+                entry = new FileEntry(size, modified, boundary,
+                        checksum(channel, size), counts);
+                synchronized (this) {
+                    this.entries.put(key, entry);
+                }
+            }
+            result = new WordCountTable(Math.max(1, entry.counts.size()));
+            result.merge(entry.counts);
+            this.tokenize(channel, entry.boundary, size, result, metrics);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the hash of the CJK dictionary stored in the index header, 0
+     * for no segmentation.
+     *
+     * @return the hash
+     */
+    private int dictionaryHash() {
+        int result = 0;
+        if (this.dictionary != null) {
+            result = this.dictionary.hashCode() | 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes read to count words since this index was
+     * created or loaded.
+     *
+     * @return the number of bytes counted
+     */
+    public synchronized long bytesCounted() {
+        return this.bytesCounted;
+    }
+
+    /**
+     * Returns the index saved in the file {@code fileName}, or an empty index
+     * if there is no such file or it was built with other separators, another
+     * dictionary or another charset.
+     *
+     * @param fileName
+     *            the name of the index file
+     * @param separators
+     *            the separator characters
+     * @param dictionary
+     *            the CJK segmentation dictionary, or {@code null}
+     * @param charset
+     *            the charset of the files
+     * @return the index
+     * @throws IOException
+     *             if the index file cannot be read
+     */
+    public static CountIndex load(String fileName, SeparatorSet separators,
+            DoubleArrayTrie dictionary, Charset charset) throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        CountIndex result = new CountIndex(separators, dictionary, charset);
+        Path path = Paths.get(fileName);
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a count index: " + fileName);
+                }
+                if (in.readInt() == VERSION
+                        && in.readInt() == separators.hashCode()
+                        && in.readInt() == result.dictionaryHash()
+                        && readString(in).equals(charset.name())) {
+                    result.read(in);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the vocabulary and the entries.
+     *
+     * @param in
+     *            the input, just past the header
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    private void read(DataInput in) throws IOException {
+        String[] words = new String[(int) readVarint(in)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = readString(in);
+        }
+        long files = readVarint(in);
+        for (long f = 0; f < files; f++) {
+            String key = readString(in);
+            long size = in.readLong();
+            long modified = in.readLong();
+            long boundary = in.readLong();
+            long checksum = in.readLong();
+            int n = (int) readVarint(in);
+            WordCountTable counts = new WordCountTable(Math.max(1, n));
+            int id = 0;
+            for (int i = 0; i < n; i++) {
+                id += (int) readVarint(in);
+                counts.add(words[id], (int) readVarint(in));
+            }
+            this.entries.put(key, new FileEntry(size, modified, boundary,
+                    checksum, counts));
+        }
+    }
+
+    /**
+     * Saves this index in the file {@code fileName}, replacing it atomically.
+     * Entries of files that no longer exist are dropped.
+     *
+     * @param fileName
+     *            the name of the index file
+     * @throws IOException
+     *             if the index file cannot be written
+     */
+    public synchronized void save(String fileName) throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        Iterator<String> keys = this.entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (!Files.exists(Paths.get(keys.next()))) {
+                keys.remove();
+            }
+        }
+        //the vocabulary of every file, each word getting its id once
+        WordCountTable vocabulary = new WordCountTable();
+        for (FileEntry entry : this.entries.values()) {
+            for (int id = 0; id < entry.counts.size(); id++) {
+                vocabulary.add(entry.counts.word(id), 0);
+            }
+        }
+
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.separators.hashCode());
+            out.writeInt(this.dictionaryHash());
+            writeString(out, this.charset.name());
+            writeVarint(out, vocabulary.size());
+            for (int id = 0; id < vocabulary.size(); id++) {
+                writeString(out, vocabulary.word(id));
+            }
+            writeVarint(out, this.entries.size());
+            for (Map.Entry<String, FileEntry> e : this.entries.entrySet()) {
+                FileEntry entry = e.getValue();
+                writeString(out, e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeLong(entry.boundary);
+                out.writeLong(entry.checksum);
+                writeCounts(out, entry.counts, vocabulary);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the counts of {@code counts} as ascending vocabulary ids, each
+     * as the difference from the previous one, and counts.
+     *
+     * @param out
+     *            the output
+     * @param counts
+     *            the counts of one file
+     * @param vocabulary
+     *            the table giving every word its id
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    private static void writeCounts(DataOutput out, WordCountTable counts,
+            WordCountTable vocabulary) throws IOException {
+        long[] pairs = new long[counts.size()];
+        for (int id = 0; id < counts.size(); id++) {
+            String word = counts.word(id);
+            long globalId = vocabulary.id(word, 0, word.length());
+            pairs[id] = globalId << Integer.SIZE | counts.count(id);
+        }
+        Arrays.sort(pairs);
+        writeVarint(out, pairs.length);
+        long previous = 0;
+        for (long pair : pairs) {
+            long globalId = pair >>> Integer.SIZE;
+            writeVarint(out, globalId - previous);
+            writeVarint(out, pair & 0xFFFFFFFFL);
+            previous = globalId;
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch: approximate counts of an unbounded number of distinct
+ * keys in {@code depth} rows of {@code width} counters. A key is counted in
+ * one counter per row, picked by hashing, and its estimate is the smallest of
+ * its counters, so an estimate is never below the true count. After
+ * {@code n} additions in total, an estimate exceeds the true count by more
+ * than {@code e / width * n} with probability at most {@code e^-depth}.
+ *
+ * <p>
+ * Counts are added with the conservative update: only the counters below
+ * the key's new estimate are raised, which keeps the same guarantee while
+ * overestimating less.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class CountMinSketch {
+
+    /**
+     * Largest number of counters, the largest array length every JVM
+     * allows.
+     */
+    public static final int MAX_COUNTERS = Integer.MAX_VALUE - 8;
+
+    /**
+     * Shift of the upper half of a 64-bit hash.
+     */
+    private static final int HALF = 32;
+
+    /**
+     * Number of counters per row, a power of two.
+     */
+    private final int width;
+
+    /**
+     * Number of rows.
+     */
+    private final int depth;
+
+    /**
+     * Counters, row by row.
+     */
+    private final int[] counters;
+
+    /**
+     * Total of all the counts added.
+     */
+    private long total;
+
+    /**
+     * Constructor.
+     *
+     * @param width
+     *            the number of counters per row, rounded up to a power of two
+     * @param depth
+     *            the number of rows
+     * @requires depth > 0 and 0 < width <= maxWidth(depth)
+     */
+    public CountMinSketch(int width, int depth) {
+        assert depth > 0 : "Violation of: depth > 0";
+        assert width > 0 : "Violation of: width > 0";
+        assert width <= maxWidth(depth) : ""
+                + "Violation of: width <= maxWidth(depth)";
+
+        if (width == 1) {
+            this.width = 1;
+        } else {
+            this.width = Integer.highestOneBit(width - 1) << 1;
+        }
+        this.depth = depth;
+        this.counters = new int[this.width * depth];
+    }
+
+    /**
+     * Returns the largest width of a sketch of {@code depth} rows: the
+     * largest power of two whose rows fit in {@link #MAX_COUNTERS} counters.
+     *
+     * @param depth
+     *            the number of rows
+     * @return the largest width
+     * @requires depth > 0
+     */
+    public static int maxWidth(int depth) {
+        assert depth > 0 : "Violation of: depth > 0";
+
+        return Integer.highestOneBit(MAX_COUNTERS / depth);
+    }
+
+    /**
+     * Returns the index of the counter of the key with hash {@code hash} in
+     * row {@code row}, derived from the two halves of the hash.
+     *
+     * @param hash
+     *            the 64-bit hash of the key
+     * @param row
+     *            the row
+     * @return the index in {@code counters}
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> HALF) | 1;
+        return row * this.width + ((h1 + row * h2) & (this.width - 1));
+    }
+
+    /**
+     * Returns the estimate of the key with hash {@code hash}.
+     *
+     * @param hash
+     *            the 64-bit hash of the key
+     * @return the estimated count
+     */
+    public int estimate(long hash) {
+        int result = Integer.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            result = Math.min(result, this.counters[this.index(hash, row)]);
+        }
+        return result;
+    }
+
+    /**
+     * Adds one to the count of the key with hash {@code hash} and returns its
+     * new estimate. Counters saturate at {@code Integer.MAX_VALUE}.
+     *
+     * @param hash
+     *            the 64-bit hash of the key
+     * @return the new estimated count
+     */
+    public int increment(long hash) {
+        int estimate = this.estimate(hash);
+        if (estimate < Integer.MAX_VALUE) {
+            estimate++;
+        }
+        for (int row = 0; row < this.depth; row++) {
+            int i = this.index(hash, row);
+            if (this.counters[i] < estimate) {
+                this.counters[i] = estimate;
+            }
+        }
+        this.total++;
+        return estimate;
+    }
+
+    /**
+     * Returns the number of counters per row.
+     *
+     * @return the width
+     */
+    public int width() {
+        return this.width;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the depth
+     */
+    public int depth() {
+        return this.depth;
+    }
+
+    /**
+     * Returns the total of all the counts added.
+     *
+     * @return the total
+     */
+    public long total() {
+        return this.total;
+    }
+
+    /**
+     * Returns the amount by which an estimate exceeds the true count at most,
+     * with probability at least {@link #confidence()}: {@code e / width}
+     * times the total, rounded up.
+     *
+     * @return the error bound
+     */
+    public long errorBound() {
+        return (long) Math.ceil(Math.E / this.width * this.total);
+    }
+
+    /**
+     * Returns the probability that an estimate is within
+     * {@link #errorBound()} of the true count: {@code 1 - e^-depth}.
+     *
+     * @return the confidence
+     */
+    public double confidence() {
+        return 1 - Math.exp(-this.depth);
+    }
+
+    /**
+     * Returns the memory taken by the counters, in bytes.
+     *
+     * @return the size of the counters
+     */
+    public long bytes() {
+        return (long) Integer.BYTES * this.counters.length;
+    }
+
+    /**
+     * Resets every counter to 0.
+     */
+    public void clear() {
+        Arrays.fill(this.counters, 0);
+        this.total = 0;
+    }
+
+}
@@ -0,0 +1,345 @@
+import java.util.Arrays;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Immutable dictionary of words stored as a double-array trie: node
+ * {@code s} has a child for character code {@code c} at index
+ * {@code t = base[s] + c} iff {@code check[t] = s}. A whole dictionary lives
+ * in two {@code int[]}s, and following an edge costs two array reads, so
+ * finding the longest dictionary word at a position of a text allocates
+ * nothing.
+ *
+ * <p>
+ * Characters are coded as their UTF-16 value plus one; code 0 marks the end
+ * of a word.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class DoubleArrayTrie {
+
+    /**
+     * Index of the root node.
+     */
+    private static final int ROOT = 1;
+
+    /**
+     * Code of the end of a word.
+     */
+    private static final int END = 0;
+
+    /**
+     * Number of character codes, including {@link #END}.
+     */
+    private static final int CODES = Character.MAX_VALUE + 2;
+
+    /**
+     * Base of every node's children, or 0 for a node with no children.
+     */
+    private int[] base;
+
+    /**
+     * Parent of every used index, 0 marking a free index.
+     */
+    private int[] check;
+
+    /**
+     * Lowest index that may still be free, where the search for a base
+     * starts.
+     */
+    private int firstFree;
+
+    /**
+     * Number of words.
+     */
+    private final int size;
+
+    /**
+     * Constructor from words sorted in {@code String} order without
+     * duplicates.
+     *
+     * @param words
+     *            the words
+     * @requires words is sorted, has no duplicates and no empty word
+     */
+    private DoubleArrayTrie(String[] words) {
+        this.base = new int[CODES + ROOT + 1];
+        this.check = new int[this.base.length];
+        //indices 0 and ROOT are never free
+        this.check[0] = -1;
+        this.check[ROOT] = -1;
+        this.firstFree = ROOT + 1;
+        this.size = words.length;
+        if (words.length > 0) {
+            this.insert(ROOT, words, 0, words.length, 0);
+        }
+        int used = this.check.length;
+        while (used > ROOT + 1 && this.check[used - 1] == 0) {
+            used--;
+        }
+        this.base = Arrays.copyOf(this.base, used);
+        this.check = Arrays.copyOf(this.check, used);
+    }
+
+    /**
+     * Returns a trie of the given words.
+     *
+     * @param words
+     *            the words, in any order and possibly repeated
+     * @return the trie
+     * @requires no word is empty
+     */
+    public static DoubleArrayTrie of(String... words) {
+        assert words != null : "Violation of: words is not null";
+
+        String[] sorted = words.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || !sorted[i].equals(sorted[n - 1])) {
+                sorted[n] = sorted[i];
+                n++;
+            }
+        }
+        return new DoubleArrayTrie(Arrays.copyOf(sorted, n));
+    }
+
+    /**
+     * Returns a trie of the words of a dictionary file, which has one word
+     * per line, optionally followed by whitespace and anything else (such as
+     * a frequency). Blank lines are ignored.
+     *
+     * @param fileName
+     *            the name of the dictionary file
+     * @return the trie
+     */
+    public static DoubleArrayTrie fromFile(String fileName) {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        String[] words = new String[1];
+        int n = 0;
+        SimpleReader file = new SimpleReader1L(fileName);
+        while (!file.atEOS()) {
+            String line = file.nextLine().trim();
+            int end = 0;
+            while (end < line.length()
+                    && !Character.isWhitespace(line.charAt(end))) {
+                end++;
+            }
+            if (end > 0) {
+                if (n == words.length) {
+                    words = Arrays.copyOf(words, 2 * n);
+                }
+                words[n] = line.substring(0, end);
+                n++;
+            }
+        }
+        file.close();
+        return of(Arrays.copyOf(words, n));
+    }
+
+    /**
+     * Returns the code of the character of {@code word} at {@code depth}, or
+     * {@link #END} if {@code word} ends there.
+     *
+     * @param word
+     *            the word
+     * @param depth
+     *            the index of the character
+     * @return the code
+     */
+    private static int code(String word, int depth) {
+        int result = END;
+        if (depth < word.length()) {
+            result = word.charAt(depth) + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Makes the arrays at least {@code length} long.
+     *
+     * @param length
+     *            the length needed
+     */
+    private void ensureLength(int length) {
+        if (length > this.check.length) {
+            int newLength = Math.max(length, 2 * this.check.length);
+            this.base = Arrays.copyOf(this.base, newLength);
+            this.check = Arrays.copyOf(this.check, newLength);
+        }
+    }
+
+    /**
+     * Returns a base at which every one of {@code codes} lands on a free
+     * index.
+     *
+     * @param codes
+     *            the child codes, ascending
+     * @param n
+     *            the number of codes
+     * @return the base
+     */
+    private int findBase(int[] codes, int n) {
+        while (this.firstFree < this.check.length
+                && this.check[this.firstFree] != 0) {
+            this.firstFree++;
+        }
+        int position = Math.max(this.firstFree, codes[0] + 1);
+        int result = 0;
+        while (result == 0) {
+            this.ensureLength(position + 1);
+            if (this.check[position] == 0) {
+                int candidate = position - codes[0];
+                this.ensureLength(candidate + codes[n - 1] + 1);
+                boolean fits = true;
+                int i = 1;
+                while (fits && i < n) {
+                    fits = this.check[candidate + codes[i]] == 0;
+                    i++;
+                }
+                if (fits) {
+                    result = candidate;
+                }
+            }
+            position++;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the children of node {@code node} for the words
+     * {@code words[lo, hi)}, which share their first {@code depth}
+     * characters, and then their subtrees.
+     *
+     * @param node
+     *            the node
+     * @param words
+     *            the sorted words
+     * @param lo
+     *            the first word
+     * @param hi
+     *            one past the last word
+     * @param depth
+     *            the length of the shared prefix
+     */
+    private void insert(int node, String[] words, int lo, int hi,
+            int depth) {
+        //the distinct codes at depth, and where each one's words start
+        int[] codes = new int[hi - lo];
+        int[] starts = new int[hi - lo + 1];
+        int n = 0;
+        for (int i = lo; i < hi; i++) {
+            int c = code(words[i], depth);
+            if (n == 0 || c != codes[n - 1]) {
+                codes[n] = c;
+                starts[n] = i;
+                n++;
+            }
+        }
+        starts[n] = hi;
+
+        int b = this.findBase(codes, n);
+        this.base[node] = b;
+        for (int i = 0; i < n; i++) {
+            this.check[b + codes[i]] = node;
+        }
+        for (int i = 0; i < n; i++) {
+            if (codes[i] != END) {
+                this.insert(b + codes[i], words, starts[i], starts[i + 1],
+                        depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the child of {@code node} for code {@code c}, or 0 if there is
+     * none.
+     *
+     * @param node
+     *            the node
+     * @param c
+     *            the code
+     * @return the child, or 0
+     */
+    private int child(int node, int c) {
+        int result = 0;
+        int b = this.base[node];
+        if (b > 0 && b + c < this.check.length
+                && this.check[b + c] == node) {
+            result = b + c;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the length of the longest word of this dictionary that
+     * {@code text[start, end)} starts with, or 0 if there is none.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index where the word must start
+     * @param end
+     *            the index the word must end by
+     * @return the length of the longest match, or 0
+     */
+    public int longestMatch(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+
+        int result = 0;
+        int node = ROOT;
+        int i = start;
+        while (node != 0) {
+            if (this.child(node, END) != 0) {
+                result = i - start;
+            }
+            if (i < end) {
+                node = this.child(node, text.charAt(i) + 1);
+                i++;
+            } else {
+                node = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether {@code word} is in this dictionary.
+     *
+     * @param word
+     *            the word
+     * @return true iff {@code word} is in the dictionary
+     */
+    public boolean contains(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        return word.length() > 0
+                && this.longestMatch(word, 0, word.length()) == word.length();
+    }
+
+    /**
+     * Returns the number of words.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof DoubleArrayTrie
+                && Arrays.equals(this.base, ((DoubleArrayTrie) obj).base)
+                && Arrays.equals(this.check, ((DoubleArrayTrie) obj).check);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.base) ^ Arrays.hashCode(this.check);
+    }
+
+}
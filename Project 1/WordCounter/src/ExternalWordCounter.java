@@ -0,0 +1,474 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts words within a memory budget however large the vocabulary is. Words
+ * are counted into a {@link WordCountTable} until its estimated size reaches
+ * the budget; the table is then sorted alphabetically, written to a temporary
+ * run file and cleared. {@link #merge()} merges the sorted runs, and what is
+ * left in the table, into one alphabetical stream of words and their total
+ * counts, so the whole vocabulary is never resident at once.
+ *
+ * <p>
+ * Words are in the order of {@link SortedWordCounts#alphabetical}. A run
+ * stores each word front-coded against the one before it: the number of
+ * leading characters they share, then the UTF-8 bytes of the rest and the
+ * count, all lengths and counts as variable-length integers. The run files
+ * are deleted when the counter is closed.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class ExternalWordCounter
+        implements WordTokenizer.WordSink, Closeable {
+
+    /**
+     * Estimated memory taken by a table entry besides the characters of its
+     * word: the word's {@code String} and its share of the table arrays.
+     */
+    public static final int ENTRY_BYTES = 96;
+
+    /**
+     * Size of the buffer of each run file.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Table the words are counted into until it is spilled.
+     */
+    private final WordCountTable table = new WordCountTable();
+
+    /**
+     * Budget for the table, in bytes.
+     */
+    private final long memory;
+
+    /**
+     * Directory of the run files.
+     */
+    private final Path directory;
+
+    /**
+     * Run files written so far, in order.
+     */
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * Estimated memory taken by the table.
+     */
+    private long tableBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param memory
+     *            the budget for the table, in bytes
+     * @param directory
+     *            the directory run files are created in
+     * @requires memory > 0
+     */
+    public ExternalWordCounter(long memory, Path directory) {
+        assert memory > 0 : "Violation of: memory > 0";
+        assert directory != null : "Violation of: directory is not null";
+
+        this.memory = memory;
+        this.directory = directory;
+    }
+
+    @Override
+    public void word(CharSequence text, int start, int end) {
+        int size = this.table.size();
+        this.table.increment(text, start, end);
+        if (this.table.size() > size) {
+            this.tableBytes += ENTRY_BYTES + (long) Character.BYTES
+                    * (end - start);
+            if (this.tableBytes >= this.memory) {
+                try {
+                    this.spill();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the table, sorted, to a new run file and clears it.
+     *
+     * @throws IOException
+     *             if the run file cannot be written
+     */
+    private void spill() throws IOException {
+        SortedWordCounts sorted = SortedWordCounts.alphabetical(this.table);
+        this.table.clear();
+        this.tableBytes = 0;
+        Path run = Files.createTempFile(this.directory, "words", ".run");
+        this.runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run),
+                        BUFFER_SIZE))) {
+            String previous = "";
+            for (int i = 0; i < sorted.size(); i++) {
+                String word = sorted.word(i);
+                int shared = 0;
+                int n = Math.min(previous.length(), word.length());
+                while (shared < n
+                        && previous.charAt(shared) == word.charAt(shared)) {
+                    shared++;
+                }
+                //never split a surrogate pair between prefix and suffix
+                if (shared > 0
+                        && Character.isHighSurrogate(word.charAt(shared - 1))) {
+                    shared--;
+                }
+                byte[] suffix = word.substring(shared)
+                        .getBytes(StandardCharsets.UTF_8);
+                CountIndex.writeVarint(out, shared);
+                CountIndex.writeVarint(out, suffix.length);
+                out.write(suffix);
+                CountIndex.writeVarint(out, sorted.count(i));
+                previous = word;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of run files written so far.
+     *
+     * @return the number of runs
+     */
+    public int runs() {
+        return this.runs.size();
+    }
+
+    /**
+     * Source of words in alphabetical order, positioned on its current word.
+     */
+    private abstract static class Cursor implements Comparable<Cursor> {
+
+        /**
+         * Collation key of the current word.
+         */
+        private String key;
+
+        /**
+         * The current word, or {@code null} once the source is exhausted.
+         */
+        private String word;
+
+        /**
+         * Count of the current word.
+         */
+        private int count;
+
+        /**
+         * Moves to the next word.
+         *
+         * @throws IOException
+         *             if the source cannot be read
+         */
+        abstract void advance() throws IOException;
+
+        /**
+         * Makes {@code word} with {@code count} the current word, or marks
+         * the source exhausted if {@code word} is {@code null}.
+         *
+         * @param word
+         *            the word, or {@code null}
+         * @param count
+         *            the count of the word
+         */
+        final void set(String word, int count) {
+            this.word = word;
+            this.count = count;
+            if (word != null) {
+                this.key = SortedWordCounts.collationKey(word);
+            }
+        }
+
+        /**
+         * Releases the source.
+         *
+         * @throws IOException
+         *             if the source cannot be closed
+         */
+        void close() throws IOException {
+        }
+
+        @Override
+        public final int compareTo(Cursor other) {
+            int result = SortedWordCounts.compareKeys(this.key, other.key);
+            if (result == 0) {
+                result = this.word.compareTo(other.word);
+            }
+            return result;
+        }
+
+        @Override
+        public final boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public final int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * Cursor over a run file.
+     */
+    private static final class RunCursor extends Cursor {
+
+        /**
+         * The run file.
+         */
+        private final DataInputStream in;
+
+        /**
+         * The word before the current one, whose prefix the next word shares.
+         */
+        private String previous = "";
+
+        /**
+         * Constructor.
+         *
+         * @param run
+         *            the run file
+         * @throws IOException
+         *             if the run file cannot be opened
+         */
+        RunCursor(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(run), BUFFER_SIZE));
+        }
+
+        @Override
+        void advance() throws IOException {
+            int shared;
+            try {
+                shared = (int) CountIndex.readVarint(this.in);
+            } catch (EOFException e) {
+                shared = -1;
+            }
+            if (shared < 0) {
+                this.set(null, 0);
+            } else {
+                byte[] suffix = new byte[(int) CountIndex.readVarint(this.in)];
+                this.in.readFully(suffix);
+                String word = this.previous.substring(0, shared)
+                        + new String(suffix, StandardCharsets.UTF_8);
+                this.set(word, (int) CountIndex.readVarint(this.in));
+                this.previous = word;
+            }
+        }
+
+        @Override
+        void close() throws IOException {
+            this.in.close();
+        }
+    }
+
+    /**
+     * Cursor over the words still in the table.
+     */
+    private static final class TableCursor extends Cursor {
+
+        /**
+         * The sorted words of the table.
+         */
+        private final SortedWordCounts sorted;
+
+        /**
+         * Position of the next word.
+         */
+        private int next;
+
+        /**
+         * Constructor.
+         *
+         * @param sorted
+         *            the sorted words of the table
+         */
+        TableCursor(SortedWordCounts sorted) {
+            this.sorted = sorted;
+        }
+
+        @Override
+        void advance() {
+            if (this.next < this.sorted.size()) {
+                this.set(this.sorted.word(this.next),
+                        this.sorted.count(this.next));
+                this.next++;
+            } else {
+                this.set(null, 0);
+            }
+        }
+    }
+
+    /**
+     * Alphabetical stream of the words counted and their total counts,
+     * merged from the runs and the table.
+     */
+    public final class Merge implements Closeable {
+
+        /**
+         * Cursors not yet exhausted, the one on the smallest word first.
+         */
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>();
+
+        /**
+         * Every cursor, to be closed.
+         */
+        private final List<Cursor> cursors = new ArrayList<>();
+
+        /**
+         * The current word.
+         */
+        private String word;
+
+        /**
+         * Total count of the current word.
+         */
+        private int count;
+
+        /**
+         * Constructor.
+         *
+         * @throws IOException
+         *             if a run file cannot be read
+         */
+        private Merge() throws IOException {
+            ExternalWordCounter outer = ExternalWordCounter.this;
+            for (Path run : outer.runs) {
+                this.add(new RunCursor(run));
+            }
+            this.add(new TableCursor(
+                    SortedWordCounts.alphabetical(outer.table)));
+            outer.table.clear();
+            outer.tableBytes = 0;
+        }
+
+        /**
+         * Positions {@code cursor} on its first word and queues it.
+         *
+         * @param cursor
+         *            the cursor
+         * @throws IOException
+         *             if the cursor cannot be read
+         */
+        private void add(Cursor cursor) throws IOException {
+            this.cursors.add(cursor);
+            cursor.advance();
+            if (cursor.word != null) {
+                this.queue.add(cursor);
+            }
+        }
+
+        /**
+         * Moves to the next word, adding up its counts from every source.
+         *
+         * @return false iff there are no more words
+         * @throws IOException
+         *             if a run file cannot be read
+         */
+        public boolean next() throws IOException {
+            boolean result = !this.queue.isEmpty();
+            if (result) {
+                Cursor first = this.queue.poll();
+                this.word = first.word;
+                this.count = first.count;
+                first.advance();
+                if (first.word != null) {
+                    this.queue.add(first);
+                }
+                while (!this.queue.isEmpty()
+                        && this.queue.peek().word.equals(this.word)) {
+                    Cursor same = this.queue.poll();
+                    this.count += same.count;
+                    same.advance();
+                    if (same.word != null) {
+                        this.queue.add(same);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the current word.
+         *
+         * @return the word
+         * @requires next() returned true
+         */
+        public String word() {
+            return this.word;
+        }
+
+        /**
+         * Returns the total count of the current word.
+         *
+         * @return the count
+         * @requires next() returned true
+         */
+        public int count() {
+            return this.count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (Cursor cursor : this.cursors) {
+                try {
+                    cursor.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Returns the alphabetical stream of every word counted and its total
+     * count. The table is empty afterwards; the run files stay until the
+     * counter is closed.
+     *
+     * @return the merged stream
+     * @throws IOException
+     *             if a run file cannot be read
+     */
+    public Merge merge() throws IOException {
+        return new Merge();
+    }
+
+    /**
+     * Deletes the run files.
+     *
+     * @throws IOException
+     *             if a run file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : this.runs) {
+            Files.deleteIfExists(run);
+        }
+        this.runs.clear();
+    }
+
+}
@@ -0,0 +1,147 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for a file to change, through a {@link WatchService} on its
+ * directory, and debounces the changes: once the file changes, further
+ * changes are collected for the debounce interval and reported as one. The
+ * interval runs from the first change, not the last, so a file appended to
+ * continuously is still reported once per interval.
+ *
+ * <p>
+ * The file is matched by name, so it is reported when it is created again
+ * after being deleted or rotated away. If the watch service loses events,
+ * the file is assumed to have changed.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class FileWatcher implements Closeable {
+
+    /**
+     * Name of the file within its directory.
+     */
+    private final Path fileName;
+
+    /**
+     * Debounce interval, in milliseconds.
+     */
+    private final long debounceMillis;
+
+    /**
+     * Watch service of the directory.
+     */
+    private final WatchService service;
+
+    /**
+     * Constructor.
+     *
+     * @param file
+     *            the file to watch
+     * @param debounceMillis
+     *            the debounce interval, in milliseconds
+     * @throws IOException
+     *             if the directory of the file cannot be watched
+     * @requires debounceMillis >= 0
+     */
+    public FileWatcher(Path file, long debounceMillis) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert debounceMillis >= 0 : "Violation of: debounceMillis >= 0";
+
+        Path absolute = file.toAbsolutePath().normalize();
+        this.fileName = absolute.getFileName();
+        this.debounceMillis = debounceMillis;
+        this.service = FileSystems.getDefault().newWatchService();
+        try {
+            absolute.getParent().register(this.service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            this.service.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns whether the events of {@code key} include a change of the
+     * file, and makes the key wait for more events.
+     *
+     * @param key
+     *            the signalled key
+     * @return true iff the file changed
+     */
+    private boolean changed(WatchKey key) {
+        boolean result = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            result |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || this.fileName.equals(event.context());
+        }
+        key.reset();
+        return result;
+    }
+
+    /**
+     * Waits until the file changes, then for the debounce interval, during
+     * which further changes are absorbed, or until {@code timeoutMillis}
+     * pass without a change.
+     *
+     * @param timeoutMillis
+     *            how long to wait for the first change, in milliseconds, or
+     *            0 to wait for as long as it takes
+     * @return true iff the file changed
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     * @requires timeoutMillis >= 0
+     */
+    public boolean awaitChange(long timeoutMillis)
+            throws InterruptedException {
+        assert timeoutMillis >= 0 : "Violation of: timeoutMillis >= 0";
+
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        boolean changed = false;
+        boolean timedOut = false;
+        while (!changed && !timedOut) {
+            WatchKey key;
+            if (timeoutMillis == 0) {
+                key = this.service.take();
+            } else {
+                key = this.service.poll(deadline - System.nanoTime(),
+                        TimeUnit.NANOSECONDS);
+            }
+            if (key == null) {
+                timedOut = true;
+            } else {
+                changed = this.changed(key);
+            }
+        }
+        if (changed) {
+            long due = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(this.debounceMillis);
+            long remaining = due - System.nanoTime();
+            while (remaining > 0) {
+                WatchKey key = this.service.poll(remaining,
+                        TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    this.changed(key);
+                }
+                remaining = due - System.nanoTime();
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.service.close();
+    }
+
+}
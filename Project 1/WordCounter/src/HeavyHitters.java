@@ -0,0 +1,292 @@
+/**
+ * Keeps the {@code k} words with the highest estimated counts seen so far,
+ * for a stream whose counts come from a {@link CountMinSketch}. The words are
+ * held in a min-heap on their estimates, with an open-addressing index from
+ * word to heap position, so a word that cannot enter the heap costs one
+ * comparison with the root and a word already in it is found without
+ * building a {@code String}. Only words that enter the heap are copied.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class HeavyHitters {
+
+    /**
+     * Shift of the upper half of a 64-bit hash.
+     */
+    private static final int HALF = 32;
+
+    /**
+     * Words in heap order.
+     */
+    private final String[] words;
+
+    /**
+     * 64-bit hashes of the words in heap order.
+     */
+    private final long[] hashes;
+
+    /**
+     * Estimated counts in heap order; the root is the smallest.
+     */
+    private final int[] counts;
+
+    /**
+     * Index slot of each heap position.
+     */
+    private final int[] slotOf;
+
+    /**
+     * Index slots, each 0 or a heap position plus one.
+     */
+    private final int[] slots;
+
+    /**
+     * Number of words kept.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param k
+     *            the number of words to keep
+     * @requires 0 < k <= 2^28
+     */
+    public HeavyHitters(int k) {
+        assert k > 0 : "Violation of: k > 0";
+        assert k <= 1 << (Integer.SIZE - 4) : "Violation of: k <= 2^28";
+
+        this.words = new String[k];
+        this.hashes = new long[k];
+        this.counts = new int[k];
+        this.slotOf = new int[k];
+        this.slots = new int[Integer.highestOneBit(k) << 2];
+    }
+
+    /**
+     * Returns the slot where probing for {@code hash} starts.
+     *
+     * @param hash
+     *            the 64-bit hash
+     * @return the first slot
+     */
+    private int firstSlot(long hash) {
+        return (int) (hash ^ (hash >>> HALF)) & (this.slots.length - 1);
+    }
+
+    /**
+     * Reports whether {@code word} equals {@code text[start, end)}.
+     *
+     * @param word
+     *            the word
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @return true iff they are equal
+     */
+    private static boolean matches(String word, CharSequence text, int start,
+            int end) {
+        boolean result = word.length() == end - start;
+        int i = 0;
+        while (result && i < word.length()) {
+            result = word.charAt(i) == text.charAt(start + i);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the slot holding {@code text[start, end)} or, if it is absent,
+     * the empty slot where it belongs.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @param hash
+     *            the 64-bit hash of the word
+     * @return the slot
+     */
+    private int find(CharSequence text, int start, int end, long hash) {
+        int mask = this.slots.length - 1;
+        int slot = this.firstSlot(hash);
+        int entry = this.slots[slot];
+        while (entry != 0 && (this.hashes[entry - 1] != hash
+                || !matches(this.words[entry - 1], text, start, end))) {
+            slot = (slot + 1) & mask;
+            entry = this.slots[slot];
+        }
+        return slot;
+    }
+
+    /**
+     * Empties {@code slot}, shifting back the entries probed past it so that
+     * every entry stays reachable from its first slot.
+     *
+     * @param slot
+     *            the slot to empty
+     */
+    private void removeSlot(int slot) {
+        int mask = this.slots.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (this.slots[next] != 0) {
+            int entry = this.slots[next];
+            int home = this.firstSlot(this.hashes[entry - 1]);
+            //move the entry into the hole unless its home lies in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                this.slots[hole] = entry;
+                this.slotOf[entry - 1] = hole;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.slots[hole] = 0;
+    }
+
+    /**
+     * Puts the word {@code word} at heap position {@code i}.
+     *
+     * @param i
+     *            the heap position
+     * @param word
+     *            the word
+     * @param hash
+     *            the 64-bit hash of the word
+     * @param count
+     *            the estimated count of the word
+     * @param slot
+     *            the index slot of the word
+     */
+    private void set(int i, String word, long hash, int count, int slot) {
+        this.words[i] = word;
+        this.hashes[i] = hash;
+        this.counts[i] = count;
+        this.slotOf[i] = slot;
+        this.slots[slot] = i + 1;
+    }
+
+    /**
+     * Restores the heap property above position {@code i}.
+     *
+     * @param i
+     *            the position of a word that may count less than its parent
+     */
+    private void siftUp(int i) {
+        String word = this.words[i];
+        long hash = this.hashes[i];
+        int count = this.counts[i];
+        int slot = this.slotOf[i];
+        int child = i;
+        while (child > 0 && this.counts[(child - 1) / 2] > count) {
+            int parent = (child - 1) / 2;
+            this.set(child, this.words[parent], this.hashes[parent],
+                    this.counts[parent], this.slotOf[parent]);
+            child = parent;
+        }
+        this.set(child, word, hash, count, slot);
+    }
+
+    /**
+     * Restores the heap property below position {@code i}.
+     *
+     * @param i
+     *            the position of a word that may count more than its
+     *            children
+     */
+    private void siftDown(int i) {
+        String word = this.words[i];
+        long hash = this.hashes[i];
+        int count = this.counts[i];
+        int slot = this.slotOf[i];
+        int parent = i;
+        boolean done = false;
+        while (!done) {
+            int child = 2 * parent + 1;
+            if (child + 1 < this.size
+                    && this.counts[child + 1] < this.counts[child]) {
+                child++;
+            }
+            if (child < this.size && this.counts[child] < count) {
+                this.set(parent, this.words[child], this.hashes[child],
+                        this.counts[child], this.slotOf[child]);
+                parent = child;
+            } else {
+                done = true;
+            }
+        }
+        this.set(parent, word, hash, count, slot);
+    }
+
+    /**
+     * Offers the word {@code text[start, end)} with its new estimated count.
+     * It is kept if it already is, if fewer than {@code k} words are kept,
+     * or if it counts more than the least of them, which is then dropped.
+     *
+     * @param text
+     *            the text containing the word
+     * @param start
+     *            the index of the first character of the word
+     * @param end
+     *            the index just past the last character of the word
+     * @param hash
+     *            the 64-bit hash of the word
+     * @param count
+     *            the estimated count of the word
+     * @requires 0 <= start < end <= |text|
+     */
+    public void offer(CharSequence text, int start, int end, long hash,
+            int count) {
+        if (this.size < this.words.length || count > this.counts[0]) {
+            int slot = this.find(text, start, end, hash);
+            int entry = this.slots[slot];
+            if (entry != 0) {
+                //estimates only grow, so the word can only move down
+                this.counts[entry - 1] = count;
+                this.siftDown(entry - 1);
+            } else {
+                String word = text.subSequence(start, end).toString();
+                if (this.size < this.words.length) {
+                    this.set(this.size, word, hash, count, slot);
+                    this.size++;
+                    this.siftUp(this.size - 1);
+                } else {
+                    this.removeSlot(this.slotOf[0]);
+                    //removal may have shifted the empty slot of the word
+                    slot = this.find(text, start, end, hash);
+                    this.set(0, word, hash, count, slot);
+                    this.siftDown(0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of words kept.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the table of the words kept and their estimated counts.
+     *
+     * @return the table
+     */
+    public WordCountTable toTable() {
+        WordCountTable result = new WordCountTable(Math.max(1, this.size));
+        for (int i = 0; i < this.size; i++) {
+            result.add(this.words[i], this.counts[i]);
+        }
+        return result;
+    }
+
+}
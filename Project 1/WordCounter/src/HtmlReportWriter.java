@@ -0,0 +1,619 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Streams the HTML word count report to a {@link WritableByteChannel}. Rows
+ * are rendered into one reusable character buffer, with words HTML-escaped in
+ * the same pass, and the buffer is encoded and written in large blocks. The
+ * total number of words is accumulated as rows are written.
+ *
+ * <p>
+ * Usage: {@link #begin(String)}, then {@link #row(String, int)} for every word
+ * in report order, then {@link #end()}. A report of approximate counts is
+ * begun with {@link #begin(String, boolean)} and gets a column for the error
+ * bound of each count, filled by {@link #row(String, int, long)}; its total
+ * is given to {@link #summary(long)}, which may be followed by explanatory
+ * {@link #paragraph(String)}s before {@link #end()}. After the summary,
+ * further two-column tables can be written as sections, each opened with
+ * {@link #beginSection(String, String, String)}, filled with
+ * {@link #sectionRow(String, long)} and closed with {@link #endSection()}.
+ * An index page, begun with {@link #beginIndex(String, long)}, has no table
+ * of words and goes straight to the sections.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class HtmlReportWriter {
+
+    /**
+     * Size of the character and byte buffers.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Longest replacement {@link #appendEscaped(CharSequence)} writes for one
+     * character.
+     */
+    private static final int MAX_ESCAPE_LENGTH = 6;
+
+    /**
+     * Number of decimal digits of the largest {@code long}.
+     */
+    private static final int MAX_DIGITS = 20;
+
+    /**
+     * Radix of written numbers.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * Line separator, the same one {@code SimpleWriter.println} writes.
+     */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /**
+     * Destination of the report.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Encoder of the report's charset.
+     */
+    private final CharsetEncoder encoder;
+
+    /**
+     * Rendered characters not yet encoded.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Encoded bytes not yet written.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Scratch space for the digits of a number.
+     */
+    private final char[] digits = new char[MAX_DIGITS];
+
+    /**
+     * Total of the counts written so far.
+     */
+    private long totalWords;
+
+    /**
+     * Whether the table has a column for error bounds.
+     */
+    private boolean bounds;
+
+    /**
+     * Whether the table has been closed and the total written.
+     */
+    private boolean summarized;
+
+    /**
+     * Constructor.
+     *
+     * @param channel
+     *            the destination of the report
+     * @param charset
+     *            the charset of the report
+     */
+    public HtmlReportWriter(WritableByteChannel channel, Charset charset) {
+        assert channel != null : "Violation of: channel is not null";
+        assert charset != null : "Violation of: charset is not null";
+
+        this.channel = channel;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Writes all encoded bytes to the channel.
+     *
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private void writeBytes() throws IOException {
+        this.bytes.flip();
+        while (this.bytes.hasRemaining()) {
+            this.channel.write(this.bytes);
+        }
+        this.bytes.clear();
+    }
+
+    /**
+     * Encodes the rendered characters and writes them to the channel. A high
+     * surrogate at the very end is kept back for the next call unless
+     * {@code endOfInput} holds.
+     *
+     * @param endOfInput
+     *            whether no more characters will be rendered
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private void drain(boolean endOfInput) throws IOException {
+        this.chars.flip();
+        CoderResult result;
+        do {
+            result = this.encoder.encode(this.chars, this.bytes, endOfInput);
+            if (!result.isOverflow() && endOfInput) {
+                result = this.encoder.flush(this.bytes);
+            }
+            this.writeBytes();
+        } while (result.isOverflow());
+        this.chars.compact();
+    }
+
+    /**
+     * Makes room for at least {@code n} more characters.
+     *
+     * @param n
+     *            the number of characters
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private void reserve(int n) throws IOException {
+        if (this.chars.remaining() < n) {
+            this.drain(false);
+        }
+    }
+
+    /**
+     * Appends {@code text} as is.
+     *
+     * @param text
+     *            the text
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private void append(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            this.reserve(1);
+            this.chars.put(text.charAt(i));
+        }
+    }
+
+    /**
+     * Appends {@code text} followed by a line separator.
+     *
+     * @param text
+     *            the text
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private void appendLine(CharSequence text) throws IOException {
+        this.append(text);
+        this.append(NEWLINE);
+    }
+
+    /**
+     * Appends {@code text} with the characters that are special in HTML
+     * replaced by character references.
+     *
+     * @param text
+     *            the text
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private void appendEscaped(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            this.reserve(MAX_ESCAPE_LENGTH);
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    this.chars.put("&amp;");
+                    break;
+                case '<':
+                    this.chars.put("&lt;");
+                    break;
+                case '>':
+                    this.chars.put("&gt;");
+                    break;
+                case '"':
+                    this.chars.put("&quot;");
+                    break;
+                case '\'':
+                    this.chars.put("&#39;");
+                    break;
+                default:
+                    this.chars.put(c);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Appends the decimal digits of {@code n} without building a
+     * {@code String}.
+     *
+     * @param n
+     *            the number
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires n >= 0
+     */
+    private void appendNumber(long n) throws IOException {
+        int i = this.digits.length;
+        long rest = n;
+        do {
+            i--;
+            this.digits[i] = (char) ('0' + rest % RADIX);
+            rest /= RADIX;
+        } while (rest > 0);
+        this.reserve(this.digits.length - i);
+        this.chars.put(this.digits, i, this.digits.length - i);
+    }
+
+    /**
+     * Appends the head of a page titled with {@code fileName}, up to the rule
+     * under its heading.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private void appendHead(String fileName) throws IOException {
+        this.appendLine("<html>");
+        this.appendLine("<head>");
+        this.append("<title>Word Counter : ");
+        this.appendEscaped(fileName);
+        this.appendLine("</title>");
+        this.appendLine("</head>");
+        this.appendLine("<body>");
+        this.append("<h2>Word Counter ");
+        this.appendEscaped(fileName);
+        this.appendLine("</h2>");
+        this.appendLine("<hr />");
+    }
+
+    /**
+     * Writes the head of the report and the table header.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public void begin(String fileName) throws IOException {
+        this.begin(fileName, false);
+    }
+
+    /**
+     * Writes the head of the report and the table header, with a column for
+     * the error bounds of approximate counts if {@code bounds} holds.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param bounds
+     *            whether rows carry an error bound
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public void begin(String fileName, boolean bounds) throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        this.totalWords = 0;
+        this.bounds = bounds;
+        this.summarized = false;
+        this.appendHead(fileName);
+        this.appendLine("<table border=\"1\">");
+        this.appendLine("<tr>");
+        this.appendLine("<th>Words</th>");
+        this.appendLine("<th>Counts</th>");
+        if (bounds) {
+            this.appendLine("<th>Overestimated by at most</th>");
+        }
+        this.appendLine("</tr>");
+    }
+
+    /**
+     * Writes the table row of one word.
+     *
+     * @param word
+     *            the word
+     * @param count
+     *            the number of occurrences of {@code word}
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires count >= 0 and the report was begun without bounds
+     */
+    public void row(String word, int count) throws IOException {
+        assert word != null : "Violation of: word is not null";
+        assert count >= 0 : "Violation of: count >= 0";
+        assert !this.bounds : "Violation of: report has no bounds";
+
+        this.appendLine("<tr>");
+        this.append("<td>");
+        this.appendEscaped(word);
+        this.appendLine("</td>");
+        this.append("<td>");
+        this.appendNumber(count);
+        this.appendLine("</td>");
+        this.appendLine("</tr>");
+        this.totalWords += count;
+    }
+
+    /**
+     * Writes the table row of one word with an approximate count.
+     *
+     * @param word
+     *            the word
+     * @param count
+     *            the estimated number of occurrences of {@code word}
+     * @param bound
+     *            the most by which {@code count} overestimates
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires count >= 0 and bound >= 0 and the report was begun with
+     *           bounds
+     */
+    public void row(String word, int count, long bound) throws IOException {
+        assert word != null : "Violation of: word is not null";
+        assert count >= 0 : "Violation of: count >= 0";
+        assert bound >= 0 : "Violation of: bound >= 0";
+        assert this.bounds : "Violation of: report has bounds";
+
+        this.appendLine("<tr>");
+        this.append("<td>");
+        this.appendEscaped(word);
+        this.appendLine("</td>");
+        this.append("<td>");
+        this.appendNumber(count);
+        this.appendLine("</td>");
+        this.append("<td>");
+        this.appendNumber(bound);
+        this.appendLine("</td>");
+        this.appendLine("</tr>");
+        this.totalWords += count;
+    }
+
+    /**
+     * Writes the end of the table and {@code totalWords} as the total number
+     * of words.
+     *
+     * @param totalWords
+     *            the total number of words
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires totalWords >= 0 and the summary has not been written
+     */
+    public void summary(long totalWords) throws IOException {
+        assert totalWords >= 0 : "Violation of: totalWords >= 0";
+        assert !this.summarized : "Violation of: summary not yet written";
+
+        this.appendLine("</table>");
+        this.appendLine("<hr />");
+        this.append("<p> Total number of words: ");
+        this.appendNumber(totalWords);
+        this.appendLine("</p>");
+        this.summarized = true;
+    }
+
+    /**
+     * Writes the head of an index page and {@code totalWords} as the total
+     * number of words, with no table of words: the page continues with
+     * sections and paragraphs, as after {@link #summary(long)}.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param totalWords
+     *            the total number of words
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires totalWords >= 0
+     */
+    public void beginIndex(String fileName, long totalWords)
+            throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+        assert totalWords >= 0 : "Violation of: totalWords >= 0";
+
+        this.totalWords = 0;
+        this.bounds = false;
+        this.appendHead(fileName);
+        this.append("<p> Total number of words: ");
+        this.appendNumber(totalWords);
+        this.appendLine("</p>");
+        this.summarized = true;
+    }
+
+    /**
+     * Writes a paragraph of links after the summary, the link to
+     * {@code hrefs[i]} reading {@code texts[i]}.
+     *
+     * @param hrefs
+     *            the targets of the links
+     * @param texts
+     *            the texts of the links
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires |hrefs| = |texts| and the summary has been written
+     */
+    public void links(String[] hrefs, String[] texts) throws IOException {
+        assert hrefs != null : "Violation of: hrefs is not null";
+        assert texts != null : "Violation of: texts is not null";
+        assert hrefs.length == texts.length : ""
+                + "Violation of: |hrefs| = |texts|";
+        assert this.summarized : "Violation of: summary written";
+
+        this.append("<p>");
+        for (int i = 0; i < hrefs.length; i++) {
+            if (i > 0) {
+                this.append(" | ");
+            }
+            this.appendLink(hrefs[i], texts[i]);
+        }
+        this.appendLine("</p>");
+    }
+
+    /**
+     * Appends a link to {@code href} reading {@code text}.
+     *
+     * @param href
+     *            the target of the link
+     * @param text
+     *            the text of the link
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private void appendLink(String href, String text) throws IOException {
+        this.append("<a href=\"");
+        this.appendEscaped(href);
+        this.append("\">");
+        this.appendEscaped(text);
+        this.append("</a>");
+    }
+
+    /**
+     * Writes a paragraph of {@code text} after the summary.
+     *
+     * @param text
+     *            the text of the paragraph
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires the summary has been written
+     */
+    public void paragraph(String text) throws IOException {
+        assert text != null : "Violation of: text is not null";
+        assert this.summarized : "Violation of: summary written";
+
+        this.append("<p>");
+        this.appendEscaped(text);
+        this.appendLine("</p>");
+    }
+
+    /**
+     * Writes the title and header of a section table after the summary.
+     *
+     * @param title
+     *            the title of the section
+     * @param labelHeader
+     *            the header of the label column
+     * @param valueHeader
+     *            the header of the value column
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires the summary has been written
+     */
+    public void beginSection(String title, String labelHeader,
+            String valueHeader) throws IOException {
+        assert title != null : "Violation of: title is not null";
+        assert labelHeader != null : "Violation of: labelHeader is not null";
+        assert valueHeader != null : "Violation of: valueHeader is not null";
+        assert this.summarized : "Violation of: summary written";
+
+        this.append("<h3>");
+        this.appendEscaped(title);
+        this.appendLine("</h3>");
+        this.appendLine("<table border=\"1\">");
+        this.appendLine("<tr>");
+        this.append("<th>");
+        this.appendEscaped(labelHeader);
+        this.appendLine("</th>");
+        this.append("<th>");
+        this.appendEscaped(valueHeader);
+        this.appendLine("</th>");
+        this.appendLine("</tr>");
+    }
+
+    /**
+     * Writes a row of a section table.
+     *
+     * @param label
+     *            the label
+     * @param value
+     *            the value
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires value >= 0
+     */
+    public void sectionRow(String label, long value) throws IOException {
+        assert label != null : "Violation of: label is not null";
+        assert value >= 0 : "Violation of: value >= 0";
+
+        this.appendLine("<tr>");
+        this.append("<td>");
+        this.appendEscaped(label);
+        this.appendLine("</td>");
+        this.append("<td>");
+        this.appendNumber(value);
+        this.appendLine("</td>");
+        this.appendLine("</tr>");
+    }
+
+    /**
+     * Writes a row of a section table whose label links to {@code href}.
+     *
+     * @param href
+     *            the target of the link
+     * @param label
+     *            the label
+     * @param value
+     *            the value
+     * @throws IOException
+     *             if the channel cannot be written
+     * @requires value >= 0
+     */
+    public void sectionLinkRow(String href, String label, long value)
+            throws IOException {
+        assert href != null : "Violation of: href is not null";
+        assert label != null : "Violation of: label is not null";
+        assert value >= 0 : "Violation of: value >= 0";
+
+        this.appendLine("<tr>");
+        this.append("<td>");
+        this.appendLink(href, label);
+        this.appendLine("</td>");
+        this.append("<td>");
+        this.appendNumber(value);
+        this.appendLine("</td>");
+        this.appendLine("</tr>");
+    }
+
+    /**
+     * Writes the end of a section table.
+     *
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public void endSection() throws IOException {
+        this.appendLine("</table>");
+    }
+
+    /**
+     * Writes the end of the report, after the end of the table and the total
+     * of the counts written unless {@link #summary(long)} wrote them, and
+     * flushes everything to the channel. The channel is left open.
+     *
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public void end() throws IOException {
+        if (!this.summarized) {
+            this.summary(this.totalWords);
+        }
+        this.appendLine("</body>");
+        this.appendLine("</html>");
+        this.drain(true);
+        this.encoder.reset();
+    }
+
+    /**
+     * Returns the total of the counts written since {@link #begin(String)}.
+     *
+     * @return the total number of words
+     */
+    public long totalWords() {
+        return this.totalWords;
+    }
+
+}
@@ -0,0 +1,671 @@
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single-pass filter passing on only the visible text of an HTML document:
+ * tags, comments, declarations and the bodies of {@code <script>} and
+ * {@code <style>} elements are skipped, and character references are decoded.
+ * The document may be fed in chunks of any size, cut anywhere; the filter is a
+ * state machine whose state is a few fields and two small fixed-size buffers,
+ * so memory does not grow with the document and no tree is built.
+ *
+ * <p>
+ * Runs of plain text are passed on as spans of the chunk they were fed in, so
+ * nothing is copied. Every tag and comment is passed on as a line break, which
+ * always separates words, so {@code <td>a</td><td>b</td>} gives two words.
+ * The named references of HTML 4 and the common typographic ones of HTML5 are
+ * decoded; {@code &nbsp;} and the other space references are decoded to a
+ * plain space. A reference ended with {@code ;} that cannot be decoded is
+ * dropped, so its name is never counted as a word. A {@code <} that cannot
+ * start a tag, and an {@code &} that does not start a reference, are passed
+ * on as text.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class HtmlTextFilter {
+
+    /**
+     * Receiver of the visible text.
+     */
+    public interface TextSink {
+
+        /**
+         * Accepts the visible text {@code text[start, end)}. The characters of
+         * {@code text} are only valid for the duration of the call.
+         *
+         * @param text
+         *            the text
+         * @param start
+         *            the index of the first character
+         * @param end
+         *            the index just past the last character
+         */
+        void text(CharSequence text, int start, int end);
+    }
+
+    /**
+     * Where the filter is in the markup.
+     */
+    private enum State {
+        /**
+         * Visible text.
+         */
+        TEXT,
+        /**
+         * Just after a {@code <}.
+         */
+        TAG_OPEN,
+        /**
+         * In the name of a tag.
+         */
+        TAG_NAME,
+        /**
+         * In a tag after its name.
+         */
+        TAG,
+        /**
+         * In a quoted attribute value.
+         */
+        QUOTED,
+        /**
+         * Just after {@code <!}.
+         */
+        DECLARATION,
+        /**
+         * In a comment.
+         */
+        COMMENT,
+        /**
+         * In the body of a {@code <script>} or {@code <style>} element.
+         */
+        RAW_TEXT,
+        /**
+         * In a character reference, after its {@code &}.
+         */
+        REFERENCE
+    }
+
+    /**
+     * What a tag or comment is passed on as.
+     */
+    private static final String BOUNDARY = "\n";
+
+    /**
+     * Longest tag name that is remembered; longer names are never
+     * {@code script} or {@code style}.
+     */
+    private static final int MAX_NAME = 8;
+
+    /**
+     * Longest character reference, without {@code &} and {@code ;}.
+     */
+    private static final int MAX_REFERENCE = 32;
+
+    /**
+     * Number of {@code -} opening and closing a comment.
+     */
+    private static final int COMMENT_DASHES = 2;
+
+    /**
+     * Radix of decimal references.
+     */
+    private static final int DECIMAL = 10;
+
+    /**
+     * Radix of hexadecimal references.
+     */
+    private static final int HEXADECIMAL = 16;
+
+    /**
+     * Character decoded from an invalid numeric reference.
+     */
+    private static final char REPLACEMENT = '\ufffd';
+
+    /**
+     * Current state.
+     */
+    private State state = State.TEXT;
+
+    /**
+     * Lower-case name of the current tag.
+     */
+    private final char[] name = new char[MAX_NAME];
+
+    /**
+     * Length of the name, or more than {@link #MAX_NAME} if it was too long.
+     */
+    private int nameLength;
+
+    /**
+     * Whether the current tag is an end tag.
+     */
+    private boolean closing;
+
+    /**
+     * Quote character of the current attribute value.
+     */
+    private char quote;
+
+    /**
+     * Number of {@code -} seen after {@code <!}, or in a row in a comment.
+     */
+    private int dashes;
+
+    /**
+     * End tag closing the current raw text, such as {@code </script}.
+     */
+    private String rawEnd;
+
+    /**
+     * Number of characters of {@link #rawEnd} matched so far.
+     */
+    private int rawMatched;
+
+    /**
+     * Characters of the current reference.
+     */
+    private final char[] reference = new char[MAX_REFERENCE];
+
+    /**
+     * Number of characters of the current reference.
+     */
+    private int referenceLength;
+
+    /**
+     * The current reference, as a {@code CharSequence}.
+     */
+    private final CharBuffer referenceText = CharBuffer.wrap(this.reference);
+
+    /**
+     * Characters a reference decodes to.
+     */
+    private final char[] decoded = new char[2];
+
+    /**
+     * The decoded characters, as a {@code CharSequence}.
+     */
+    private final CharBuffer decodedText = CharBuffer.wrap(this.decoded);
+
+    /**
+     * Names of the references to the Latin-1 characters from U+00A0 on, in
+     * code point order.
+     */
+    private static final String[] LATIN_1 = { "nbsp", "iexcl", "cent",
+        "pound", "curren", "yen", "brvbar", "sect", "uml", "copy", "ordf",
+        "laquo", "not", "shy", "reg", "macr", "deg", "plusmn", "sup2", "sup3",
+        "acute", "micro", "para", "middot", "cedil", "sup1", "ordm", "raquo",
+        "frac14", "frac12", "frac34", "iquest", "Agrave", "Aacute", "Acirc",
+        "Atilde", "Auml", "Aring", "AElig", "Ccedil", "Egrave", "Eacute",
+        "Ecirc", "Euml", "Igrave", "Iacute", "Icirc", "Iuml", "ETH", "Ntilde",
+        "Ograve", "Oacute", "Ocirc", "Otilde", "Ouml", "times", "Oslash",
+        "Ugrave", "Uacute", "Ucirc", "Uuml", "Yacute", "THORN", "szlig",
+        "agrave", "aacute", "acirc", "atilde", "auml", "aring", "aelig",
+        "ccedil", "egrave", "eacute", "ecirc", "euml", "igrave", "iacute",
+        "icirc", "iuml", "eth", "ntilde", "ograve", "oacute", "ocirc",
+        "otilde", "ouml", "divide", "oslash", "ugrave", "uacute", "ucirc",
+        "uuml", "yacute", "thorn", "yuml" };
+
+    /**
+     * First code point of {@link #LATIN_1}.
+     */
+    private static final int LATIN_1_START = 0xa0;
+
+    /**
+     * Names of the Greek capital letters from U+0391 on, in code point order;
+     * U+03A2 is unassigned.
+     */
+    private static final String[] GREEK_CAPITALS = { "Alpha", "Beta",
+        "Gamma", "Delta", "Epsilon", "Zeta", "Eta", "Theta", "Iota", "Kappa",
+        "Lambda", "Mu", "Nu", "Xi", "Omicron", "Pi", "Rho", null, "Sigma",
+        "Tau", "Upsilon", "Phi", "Chi", "Psi", "Omega" };
+
+    /**
+     * First code point of {@link #GREEK_CAPITALS}.
+     */
+    private static final int GREEK_CAPITALS_START = 0x391;
+
+    /**
+     * Names of the Greek small letters from U+03B1 on, in code point order.
+     */
+    private static final String[] GREEK_SMALL = { "alpha", "beta", "gamma",
+        "delta", "epsilon", "zeta", "eta", "theta", "iota", "kappa", "lambda",
+        "mu", "nu", "xi", "omicron", "pi", "rho", "sigmaf", "sigma", "tau",
+        "upsilon", "phi", "chi", "psi", "omega" };
+
+    /**
+     * First code point of {@link #GREEK_SMALL}.
+     */
+    private static final int GREEK_SMALL_START = 0x3b1;
+
+    /**
+     * The other named references of HTML 4 and the common typographic ones
+     * of HTML5, as pairs of a name and the character it stands for.
+     */
+    private static final String[] OTHER_NAMES = { "quot", "\"", "QUOT",
+        "\"", "amp", "&", "AMP", "&", "apos", "'", "lt", "<", "LT", "<", "gt",
+        ">", "GT", ">", "COPY", "\u00a9", "REG", "\u00ae", "OElig",
+        "\u0152", "oelig", "\u0153", "Scaron", "\u0160", "scaron",
+        "\u0161", "Yuml", "\u0178", "fnof", "\u0192", "circ", "\u02c6",
+        "tilde", "\u02dc", "thetasym", "\u03d1", "upsih", "\u03d2", "piv",
+        "\u03d6", "zwnj", "\u200c", "zwj", "\u200d", "lrm", "\u200e",
+        "rlm", "\u200f", "hyphen", "\u2010", "dash", "\u2010", "ndash",
+        "\u2013", "mdash", "\u2014", "horbar", "\u2015", "lsquo",
+        "\u2018", "rsquo", "\u2019", "rsquor", "\u2019", "sbquo",
+        "\u201a", "lsquor", "\u201a", "ldquo", "\u201c", "rdquo",
+        "\u201d", "rdquor", "\u201d", "bdquo", "\u201e", "ldquor",
+        "\u201e", "dagger", "\u2020", "Dagger", "\u2021", "bull",
+        "\u2022", "bullet", "\u2022", "nldr", "\u2025", "hellip",
+        "\u2026", "mldr", "\u2026", "permil", "\u2030", "prime", "\u2032",
+        "Prime", "\u2033", "lsaquo", "\u2039", "rsaquo", "\u203a",
+        "oline", "\u203e", "frasl", "\u2044", "euro", "\u20ac", "image",
+        "\u2111", "weierp", "\u2118", "real", "\u211c", "trade", "\u2122",
+        "TRADE", "\u2122", "alefsym", "\u2135", "larr", "\u2190", "uarr",
+        "\u2191", "rarr", "\u2192", "darr", "\u2193", "harr", "\u2194",
+        "crarr", "\u21b5", "lArr", "\u21d0", "uArr", "\u21d1", "rArr",
+        "\u21d2", "dArr", "\u21d3", "hArr", "\u21d4", "forall", "\u2200",
+        "part", "\u2202", "exist", "\u2203", "empty", "\u2205", "nabla",
+        "\u2207", "isin", "\u2208", "notin", "\u2209", "ni", "\u220b",
+        "prod", "\u220f", "sum", "\u2211", "minus", "\u2212", "lowast",
+        "\u2217", "radic", "\u221a", "prop", "\u221d", "infin", "\u221e",
+        "ang", "\u2220", "and", "\u2227", "or", "\u2228", "cap", "\u2229",
+        "cup", "\u222a", "int", "\u222b", "there4", "\u2234", "sim",
+        "\u223c", "cong", "\u2245", "asymp", "\u2248", "ne", "\u2260",
+        "equiv", "\u2261", "le", "\u2264", "ge", "\u2265", "sub", "\u2282",
+        "sup", "\u2283", "nsub", "\u2284", "sube", "\u2286", "supe",
+        "\u2287", "oplus", "\u2295", "otimes", "\u2297", "perp", "\u22a5",
+        "sdot", "\u22c5", "lceil", "\u2308", "rceil", "\u2309", "lfloor",
+        "\u230a", "rfloor", "\u230b", "lang", "\u27e8", "rang", "\u27e9",
+        "loz", "\u25ca", "spades", "\u2660", "clubs", "\u2663", "hearts",
+        "\u2665", "diams", "\u2666" };
+
+    /**
+     * Names of the space references, which are decoded to a plain space so
+     * they separate words like {@code &nbsp;}.
+     */
+    private static final String[] SPACE_NAMES = { "nbsp", "ensp", "emsp",
+        "emsp13", "emsp14", "numsp", "puncsp", "thinsp", "ThinSpace",
+        "hairsp", "VeryThinSpace", "NonBreakingSpace" };
+
+    /**
+     * The characters of the named references, by name.
+     */
+    private static final Map<String, Integer> NAMED = namedCharacters();
+
+    /**
+     * Returns the table of the named references this filter decodes.
+     *
+     * @return the characters by name
+     */
+    private static Map<String, Integer> namedCharacters() {
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < LATIN_1.length; i++) {
+            result.put(LATIN_1[i], LATIN_1_START + i);
+        }
+        for (int i = 0; i < GREEK_CAPITALS.length; i++) {
+            if (GREEK_CAPITALS[i] != null) {
+                result.put(GREEK_CAPITALS[i], GREEK_CAPITALS_START + i);
+            }
+        }
+        for (int i = 0; i < GREEK_SMALL.length; i++) {
+            result.put(GREEK_SMALL[i], GREEK_SMALL_START + i);
+        }
+        for (int i = 0; i < OTHER_NAMES.length; i += 2) {
+            result.put(OTHER_NAMES[i], OTHER_NAMES[i + 1].codePointAt(0));
+        }
+        for (String space : SPACE_NAMES) {
+            result.put(space, (int) ' ');
+        }
+        return result;
+    }
+
+    /**
+     * Returns the character named by the reference {@code name}, or -1 if it
+     * is not one this filter knows.
+     *
+     * @param name
+     *            the name of the reference
+     * @return the character, or -1
+     */
+    private static int namedCharacter(String name) {
+        Integer cp = NAMED.get(name);
+        int result = -1;
+        if (cp != null) {
+            result = cp;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the code point of the numeric reference held in
+     * {@link #reference}, which starts with {@code #}, or -1 if it is not a
+     * number.
+     *
+     * @return the code point, or -1
+     */
+    private int numericCharacter() {
+        int i = 1;
+        int radix = DECIMAL;
+        if (i < this.referenceLength && (this.reference[i] == 'x'
+                || this.reference[i] == 'X')) {
+            radix = HEXADECIMAL;
+            i++;
+        }
+        boolean valid = i < this.referenceLength;
+        long value = 0;
+        while (valid && i < this.referenceLength) {
+            int digit = Character.digit(this.reference[i], radix);
+            valid = digit >= 0;
+            if (value <= Character.MAX_CODE_POINT) {
+                value = value * radix + digit;
+            }
+            i++;
+        }
+        int result = -1;
+        if (valid) {
+            if (value == 0 || value > Character.MAX_CODE_POINT
+                    || (value >= Character.MIN_SURROGATE
+                            && value <= Character.MAX_SURROGATE)) {
+                result = REPLACEMENT;
+            } else {
+                result = (int) value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes on the current reference as it was written, for one that could
+     * not be decoded.
+     *
+     * @param sink
+     *            the receiver of the text
+     * @param terminated
+     *            whether the reference ended with {@code ;}
+     */
+    private void passReference(TextSink sink, boolean terminated) {
+        sink.text("&", 0, 1);
+        sink.text(this.referenceText, 0, this.referenceLength);
+        if (terminated) {
+            sink.text(";", 0, 1);
+        }
+    }
+
+    /**
+     * Decodes the current reference and passes on what it stands for. A
+     * reference ended with {@code ;} that cannot be decoded is dropped, so its
+     * name never shows as text; one that is not ended is passed on as it was
+     * written unless it names a character, like {@code &copy 2024}.
+     *
+     * @param sink
+     *            the receiver of the text
+     * @param terminated
+     *            whether the reference ended with {@code ;}
+     */
+    private void decodeReference(TextSink sink, boolean terminated) {
+        int cp = -1;
+        if (this.referenceLength > 0) {
+            if (this.reference[0] == '#') {
+                cp = this.numericCharacter();
+            } else {
+                cp = namedCharacter(
+                        new String(this.reference, 0, this.referenceLength));
+            }
+        }
+        if (cp >= 0) {
+            int n = Character.toChars(cp, this.decoded, 0);
+            sink.text(this.decodedText, 0, n);
+        } else if (!terminated || this.referenceLength == 0) {
+            this.passReference(sink, terminated);
+        }
+    }
+
+    /**
+     * Handles the {@code >} ending a tag.
+     *
+     * @param sink
+     *            the receiver of the text
+     */
+    private void endTag(TextSink sink) {
+        this.state = State.TEXT;
+        if (!this.closing && this.nameIs("script")) {
+            this.startRawText("</script");
+        } else if (!this.closing && this.nameIs("style")) {
+            this.startRawText("</style");
+        }
+        sink.text(BOUNDARY, 0, 1);
+    }
+
+    /**
+     * Reports whether the name of the current tag is {@code tag}.
+     *
+     * @param tag
+     *            the lower-case tag name
+     * @return true iff it is
+     */
+    private boolean nameIs(String tag) {
+        boolean result = this.nameLength == tag.length();
+        int i = 0;
+        while (result && i < this.nameLength) {
+            result = this.name[i] == tag.charAt(i);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Skips text up to the end tag {@code end}.
+     *
+     * @param end
+     *            the start of the end tag, in lower case
+     */
+    private void startRawText(String end) {
+        this.state = State.RAW_TEXT;
+        this.rawEnd = end;
+        this.rawMatched = 0;
+    }
+
+    /**
+     * Passes on the visible text starting at {@code text[start]} up to the
+     * next {@code <} or {@code &}, and moves past that character.
+     *
+     * @param text
+     *            the chunk
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character of the chunk
+     * @param sink
+     *            the receiver of the text
+     * @return the index of the first character not yet filtered
+     */
+    private int text(CharSequence text, int start, int end, TextSink sink) {
+        int i = start;
+        while (i < end && text.charAt(i) != '<' && text.charAt(i) != '&') {
+            i++;
+        }
+        if (i > start) {
+            sink.text(text, start, i);
+        }
+        if (i < end) {
+            if (text.charAt(i) == '<') {
+                this.state = State.TAG_OPEN;
+            } else {
+                this.state = State.REFERENCE;
+                this.referenceLength = 0;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skips the character {@code c} of raw text, watching for the end tag.
+     *
+     * @param c
+     *            the character
+     */
+    private void rawText(char c) {
+        char lower = Character.toLowerCase(c);
+        if (lower == this.rawEnd.charAt(this.rawMatched)) {
+            this.rawMatched++;
+        } else if (lower == '<') {
+            this.rawMatched = 1;
+        } else {
+            this.rawMatched = 0;
+        }
+        if (this.rawMatched == this.rawEnd.length()) {
+            //the rest of the end tag is skipped like any tag
+            this.nameLength = 0;
+            this.closing = true;
+            this.state = State.TAG;
+        }
+    }
+
+    /**
+     * Filters the chunk {@code text[start, end)} and passes its visible text
+     * on to {@code sink}.
+     *
+     * @param text
+     *            the chunk
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @param sink
+     *            the receiver of the text
+     * @requires 0 <= start <= end <= |text|
+     */
+    public void filter(CharSequence text, int start, int end,
+            TextSink sink) {
+        assert text != null : "Violation of: text is not null";
+        assert sink != null : "Violation of: sink is not null";
+
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            switch (this.state) {
+                case TEXT:
+                    i = this.text(text, i, end, sink);
+                    break;
+                case TAG_OPEN:
+                    this.nameLength = 0;
+                    this.closing = c == '/';
+                    if (this.closing) {
+                        this.state = State.TAG_NAME;
+                        i++;
+                    } else if (Character.isLetter(c)) {
+                        this.state = State.TAG_NAME;
+                    } else if (c == '!') {
+                        this.state = State.DECLARATION;
+                        this.dashes = 0;
+                        i++;
+                    } else if (c == '?') {
+                        this.state = State.TAG;
+                        i++;
+                    } else {
+                        //not markup, such as "a < b"
+                        sink.text("<", 0, 1);
+                        this.state = State.TEXT;
+                    }
+                    break;
+                case TAG_NAME:
+                    if (Character.isLetterOrDigit(c)) {
+                        if (this.nameLength < MAX_NAME) {
+                            this.name[this.nameLength] = Character
+                                    .toLowerCase(c);
+                        }
+                        this.nameLength++;
+                        i++;
+                    } else {
+                        this.state = State.TAG;
+                    }
+                    break;
+                case TAG:
+                    if (c == '"' || c == '\'') {
+                        this.quote = c;
+                        this.state = State.QUOTED;
+                    } else if (c == '>') {
+                        this.endTag(sink);
+                    }
+                    i++;
+                    break;
+                case QUOTED:
+                    if (c == this.quote) {
+                        this.state = State.TAG;
+                    }
+                    i++;
+                    break;
+                case DECLARATION:
+                    if (c == '-' && this.dashes < COMMENT_DASHES) {
+                        this.dashes++;
+                        i++;
+                        if (this.dashes == COMMENT_DASHES) {
+                            this.state = State.COMMENT;
+                            this.dashes = 0;
+                        }
+                    } else {
+                        //<!DOCTYPE ...> and the like end at the next '>'
+                        this.state = State.TAG;
+                    }
+                    break;
+                case COMMENT:
+                    if (c == '>' && this.dashes >= COMMENT_DASHES) {
+                        this.state = State.TEXT;
+                        sink.text(BOUNDARY, 0, 1);
+                    } else if (c == '-') {
+                        this.dashes++;
+                    } else {
+                        this.dashes = 0;
+                    }
+                    i++;
+                    break;
+                case RAW_TEXT:
+                    this.rawText(c);
+                    i++;
+                    break;
+                case REFERENCE:
+                    if (c == ';') {
+                        this.decodeReference(sink, true);
+                        this.state = State.TEXT;
+                        i++;
+                    } else if (this.referenceLength < MAX_REFERENCE
+                            && (Character.isLetterOrDigit(c)
+                                    || (c == '#'
+                                            && this.referenceLength == 0))) {
+                        this.reference[this.referenceLength] = c;
+                        this.referenceLength++;
+                        i++;
+                    } else {
+                        this.decodeReference(sink, false);
+                        this.state = State.TEXT;
+                    }
+                    break;
+                default:
+                    i++;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Ends the document: passes on a reference or {@code <} left incomplete
+     * at its end, and drops an unterminated tag, comment or raw text.
+     *
+     * @param sink
+     *            the receiver of the text
+     */
+    public void finish(TextSink sink) {
+        assert sink != null : "Violation of: sink is not null";
+
+        if (this.state == State.REFERENCE) {
+            this.decodeReference(sink, false);
+        } else if (this.state == State.TAG_OPEN) {
+            sink.text("<", 0, 1);
+        }
+        this.state = State.TEXT;
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * HyperLogLog: estimates the number of distinct keys seen, in {@code 2^p}
+ * one-byte registers. The top {@code p} bits of a key's 64-bit hash pick a
+ * register, which keeps the largest rank (position of the first 1 bit) of the
+ * remaining bits; the harmonic mean of the registers gives the estimate,
+ * with a relative standard error of {@code 1.04 / sqrt(2^p)}. Small
+ * cardinalities are estimated by linear counting of the empty registers.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class HyperLogLog {
+
+    /**
+     * Smallest precision.
+     */
+    public static final int MIN_PRECISION = 4;
+
+    /**
+     * Largest precision.
+     */
+    public static final int MAX_PRECISION = 18;
+
+    /**
+     * Factor of the standard error.
+     */
+    private static final double ERROR_FACTOR = 1.04;
+
+    /**
+     * Raw estimates up to this many times the number of registers are
+     * replaced by linear counting.
+     */
+    private static final double LINEAR_COUNTING_LIMIT = 2.5;
+
+    /**
+     * Number of index bits.
+     */
+    private final int precision;
+
+    /**
+     * Registers, each the largest rank seen for its index.
+     */
+    private final byte[] registers;
+
+    /**
+     * Constructor.
+     *
+     * @param precision
+     *            the number of index bits
+     * @requires MIN_PRECISION <= precision <= MAX_PRECISION
+     */
+    public HyperLogLog(int precision) {
+        assert precision >= MIN_PRECISION : ""
+                + "Violation of: precision >= MIN_PRECISION";
+        assert precision <= MAX_PRECISION : ""
+                + "Violation of: precision <= MAX_PRECISION";
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds the key with hash {@code hash}.
+     *
+     * @param hash
+     *            the 64-bit hash of the key
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - this.precision));
+        //the guard bit bounds the rank when the remaining bits are all 0
+        long rest = hash << this.precision | 1L << (this.precision - 1);
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (this.registers[index] < rank) {
+            this.registers[index] = rank;
+        }
+    }
+
+    /**
+     * Returns the bias correction constant for {@code m} registers.
+     *
+     * @param m
+     *            the number of registers
+     * @return alpha of {@code m}
+     */
+    private static double alpha(int m) {
+        final int m16 = 16;
+        final int m32 = 32;
+        final int m64 = 64;
+        double result;
+        if (m == m16) {
+            result = 0.673;
+        } else if (m == m32) {
+            result = 0.697;
+        } else if (m == m64) {
+            result = 0.709;
+        } else {
+            result = 0.7213 / (1 + 1.079 / m);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the estimated number of distinct keys added.
+     *
+     * @return the estimate
+     */
+    public long estimate() {
+        int m = this.registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : this.registers) {
+            sum += Math.scalb(1.0, -r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= LINEAR_COUNTING_LIMIT * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Returns the relative standard error of {@link #estimate()}.
+     *
+     * @return the standard error, as a fraction of the estimate
+     */
+    public double standardError() {
+        return ERROR_FACTOR / Math.sqrt(this.registers.length);
+    }
+
+    /**
+     * Returns the memory taken by the registers, in bytes.
+     *
+     * @return the size of the registers
+     */
+    public int bytes() {
+        return this.registers.length;
+    }
+
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+
+/**
+ * Counts the lines of the input, the blank ones among them, the characters
+ * and the length of the longest line, from the raw text. A carriage return
+ * before a line end is not counted as a character, and a last line without
+ * a line end still counts.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class LineStatistics
+        implements HtmlTextFilter.TextSink, TextStatistic {
+
+    /**
+     * Number of lines ended so far.
+     */
+    private long lines;
+
+    /**
+     * Number of lines ended so far holding only white space.
+     */
+    private long blankLines;
+
+    /**
+     * Number of characters, without line ends.
+     */
+    private long characters;
+
+    /**
+     * Length of the longest line ended so far.
+     */
+    private long longest;
+
+    /**
+     * Length of the current line.
+     */
+    private long current;
+
+    /**
+     * Whether the current line holds only white space so far.
+     */
+    private boolean currentBlank = true;
+
+    @Override
+    public void text(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                this.lines++;
+                if (this.currentBlank) {
+                    this.blankLines++;
+                }
+                this.longest = Math.max(this.longest, this.current);
+                this.current = 0;
+                this.currentBlank = true;
+            } else if (c != '\r') {
+                this.current++;
+                this.characters++;
+                if (!Character.isWhitespace(c)) {
+                    this.currentBlank = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lines, counting a last line without a line end.
+     *
+     * @return the number of lines
+     */
+    public long lines() {
+        long result = this.lines;
+        if (this.current > 0) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of lines holding only white space.
+     *
+     * @return the number of blank lines
+     */
+    public long blankLines() {
+        long result = this.blankLines;
+        if (this.current > 0 && this.currentBlank) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the length of the longest line, in characters.
+     *
+     * @return the longest line length
+     */
+    public long longest() {
+        return Math.max(this.longest, this.current);
+    }
+
+    /**
+     * Returns the number of characters, without line ends.
+     *
+     * @return the number of characters
+     */
+    public long characters() {
+        return this.characters;
+    }
+
+    @Override
+    public void write(HtmlReportWriter report) throws IOException {
+        report.beginSection("Lines", "Statistic", "Value");
+        report.sectionRow("Lines", this.lines());
+        report.sectionRow("Blank lines", this.blankLines());
+        report.sectionRow("Longest line (characters)", this.longest());
+        report.sectionRow("Characters (without line ends)",
+                this.characters());
+        report.endSection();
+    }
+
+}
@@ -0,0 +1,229 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from {@code long} keys to {@code int} counts,
+ * with no boxing. Every key gets a dense id in insertion order; the keys and
+ * counts are kept in arrays indexed by id, and a power-of-two array of slots
+ * holds {@code id + 1} (0 for an empty slot) and is probed linearly.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class LongIntTable {
+
+    /**
+     * Default number of keys the table is sized for.
+     */
+    private static final int DEFAULT_EXPECTED_SIZE = 1 << 10;
+
+    /**
+     * Multiplier spreading the bits of a key, 2^64 divided by the golden
+     * ratio.
+     */
+    private static final long SPREAD_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Shift of the upper half of a spread key.
+     */
+    private static final int HALF = 32;
+
+    /**
+     * Slots holding id + 1, or 0 if empty.
+     */
+    private int[] slots;
+
+    /**
+     * Keys by id.
+     */
+    private long[] keys;
+
+    /**
+     * Counts by id.
+     */
+    private int[] counts;
+
+    /**
+     * Number of keys.
+     */
+    private int size;
+
+    /**
+     * Default constructor.
+     */
+    public LongIntTable() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * Constructor sizing the table for {@code expectedSize} keys.
+     *
+     * @param expectedSize
+     *            the number of keys expected
+     * @requires expectedSize > 0
+     */
+    public LongIntTable(int expectedSize) {
+        assert expectedSize > 0 : "Violation of: expectedSize > 0";
+
+        int capacity = Integer.highestOneBit(expectedSize) << 1;
+        this.slots = new int[capacity << 1];
+        this.keys = new long[capacity];
+        this.counts = new int[capacity];
+    }
+
+    /**
+     * Returns the slot where probing for {@code key} starts.
+     *
+     * @param key
+     *            the key
+     * @param mask
+     *            the number of slots minus one
+     * @return the first slot
+     */
+    private static int firstSlot(long key, int mask) {
+        long h = key * SPREAD_MULTIPLIER;
+        return (int) (h ^ (h >>> HALF)) & mask;
+    }
+
+    /**
+     * Returns the slot holding {@code key} or, if it is absent, the empty
+     * slot where it belongs.
+     *
+     * @param key
+     *            the key
+     * @return the slot
+     */
+    private int find(long key) {
+        int mask = this.slots.length - 1;
+        int slot = firstSlot(key, mask);
+        int entry = this.slots[slot];
+        while (entry != 0 && this.keys[entry - 1] != key) {
+            slot = (slot + 1) & mask;
+            entry = this.slots[slot];
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the number of slots and of id entries.
+     */
+    private void grow() {
+        int capacity = this.keys.length << 1;
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.counts = Arrays.copyOf(this.counts, capacity);
+
+        int[] newSlots = new int[capacity << 1];
+        int mask = newSlots.length - 1;
+        for (int id = 0; id < this.size; id++) {
+            int slot = firstSlot(this.keys[id], mask);
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id + 1;
+        }
+        this.slots = newSlots;
+    }
+
+    /**
+     * Adds {@code count} to the count of {@code key}, adding the key if it is
+     * absent, and returns its id.
+     *
+     * @param key
+     *            the key
+     * @param count
+     *            the amount to add
+     * @return the id of the key
+     * @requires count >= 0
+     */
+    public int add(long key, int count) {
+        assert count >= 0 : "Violation of: count >= 0";
+
+        int slot = this.find(key);
+        int id = this.slots[slot] - 1;
+        if (id < 0) {
+            if (this.size == this.keys.length) {
+                this.grow();
+                slot = this.find(key);
+            }
+            id = this.size;
+            this.size++;
+            this.keys[id] = key;
+            this.slots[slot] = id + 1;
+        }
+        this.counts[id] += count;
+        return id;
+    }
+
+    /**
+     * Adds one to the count of {@code key} and returns its id.
+     *
+     * @param key
+     *            the key
+     * @return the id of the key
+     */
+    public int increment(long key) {
+        return this.add(key, 1);
+    }
+
+    /**
+     * Returns the count of {@code key}, or 0 if it is absent.
+     *
+     * @param key
+     *            the key
+     * @return the count
+     */
+    public int get(long key) {
+        int entry = this.slots[this.find(key)];
+        int result = 0;
+        if (entry != 0) {
+            result = this.counts[entry - 1];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the key with id {@code id}.
+     *
+     * @param id
+     *            the id
+     * @return the key
+     * @requires 0 <= id < size
+     */
+    public long key(int id) {
+        assert 0 <= id && id < this.size : "Violation of: 0 <= id < size";
+
+        return this.keys[id];
+    }
+
+    /**
+     * Returns the count of the key with id {@code id}.
+     *
+     * @param id
+     *            the id
+     * @return the count
+     * @requires 0 <= id < size
+     */
+    public int count(int id) {
+        assert 0 <= id && id < this.size : "Violation of: 0 <= id < size";
+
+        return this.counts[id];
+    }
+
+    /**
+     * Removes every key.
+     */
+    public void clear() {
+        Arrays.fill(this.slots, 0);
+        Arrays.fill(this.counts, 0, this.size, 0);
+        this.size = 0;
+    }
+
+}
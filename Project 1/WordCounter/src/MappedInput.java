@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Feeds a file to a {@link WordTokenizer} through {@link FileChannel#map}.
+ * The file is mapped a window at a time and decoded with one reusable
+ * {@link CharsetDecoder} into one fixed-size {@link CharBuffer}, which the
+ * tokenizer scans in place, so no line {@code String}s are built and the
+ * bytes are never copied into a second buffer before decoding.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class MappedInput {
+
+    /**
+     * Largest part of the file mapped at once.
+     */
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    /**
+     * Longest encoding of a character in the supported charsets, so a window
+     * always holds at least one whole character.
+     */
+    static final int MAX_CHARACTER_BYTES = 4;
+
+    /**
+     * Size of the decode buffer.
+     */
+    private static final int CHAR_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private MappedInput() {
+    }
+
+    /**
+     * Tokenizes the whole file {@code fileName}, encoded in {@code charset},
+     * with {@code tokenizer}.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param charset
+     *            the charset of the file
+     * @param tokenizer
+     *            the tokenizer
+     * @updates tokenizer
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static void tokenize(String fileName, Charset charset,
+            WordTokenizer tokenizer) throws IOException {
+        tokenize(fileName, charset, tokenizer, null);
+    }
+
+    /**
+     * Tokenizes the whole file {@code fileName}, encoded in {@code charset},
+     * with {@code tokenizer}, recording the bytes and lines read and the
+     * time spent mapping the file in {@code metrics}.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param charset
+     *            the charset of the file
+     * @param tokenizer
+     *            the tokenizer
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @updates tokenizer, metrics
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static void tokenize(String fileName, Charset charset,
+            WordTokenizer tokenizer, RunMetrics metrics) throws IOException {
+        tokenize(fileName, charset, tokenizer, metrics, WINDOW_SIZE);
+    }
+
+    /**
+     * Tokenizes the whole file {@code fileName}, encoded in {@code charset},
+     * with {@code tokenizer}, mapping at most {@code windowSize} bytes at a
+     * time, and records the bytes and lines read and the time spent mapping
+     * the file in {@code metrics}.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param charset
+     *            the charset of the file
+     * @param tokenizer
+     *            the tokenizer
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @param windowSize
+     *            the largest part of the file mapped at once
+     * @updates tokenizer, metrics
+     * @throws IOException
+     *             if the file cannot be read
+     * @requires windowSize >= MAX_CHARACTER_BYTES
+     */
+    static void tokenize(String fileName, Charset charset,
+            WordTokenizer tokenizer, RunMetrics metrics, long windowSize)
+            throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+        assert charset != null : "Violation of: charset is not null";
+        assert tokenizer != null : "Violation of: tokenizer is not null";
+        assert windowSize >= MAX_CHARACTER_BYTES : ""
+                + "Violation of: windowSize >= MAX_CHARACTER_BYTES";
+
+        CharsetDecoder decoder = ParallelWordCounter.newDecoder(charset);
+        CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            boolean endOfInput = size == 0;
+            while (!endOfInput) {
+                long length = Math.min(windowSize, size - position);
+                endOfInput = position + length == size;
+                long since = System.nanoTime();
+                MappedByteBuffer bytes = channel
+                        .map(FileChannel.MapMode.READ_ONLY, position, length);
+                if (metrics != null) {
+                    metrics.time(RunMetrics.Stage.READ, since);
+                }
+                tokenizer.feed(bytes, decoder, chars, endOfInput);
+                if (metrics != null) {
+                    metrics.read(bytes, 0, bytes.position());
+                }
+                //bytes of a character split by the window are mapped again
+                position += bytes.position();
+            }
+        }
+        tokenizer.finish();
+    }
+
+}
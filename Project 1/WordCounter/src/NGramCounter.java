@@ -0,0 +1,204 @@
+/**
+ * Counts the n-grams, sequences of {@code n} consecutive words, of a stream
+ * of words without building a {@code String} per n-gram. Every word is
+ * dictionary-encoded to its id in a {@link WordCountTable}, the ids of the
+ * last {@code n} words are packed into one {@code long} of {@code 64 / n}
+ * bits per id, and that key is counted in a {@link LongIntTable}. The keys
+ * are decoded back into text only by {@link #toTable()}.
+ *
+ * <p>
+ * N-grams run across line ends, since a line end is not a sentence end in
+ * wrapped text. The packing limits the vocabulary to 2^31 words for bigrams
+ * and 2^21 words for trigrams.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class NGramCounter implements WordTokenizer.WordSink {
+
+    /**
+     * Largest n-gram length.
+     */
+    public static final int MAX_N = 3;
+
+    /**
+     * Separator between the words of a decoded n-gram.
+     */
+    public static final char WORD_SEPARATOR = ' ';
+
+    /**
+     * Number of words per n-gram.
+     */
+    private final int n;
+
+    /**
+     * Number of bits per word id in a key.
+     */
+    private final int bits;
+
+    /**
+     * Largest word id a key can hold.
+     */
+    private final int maxId;
+
+    /**
+     * Mask of the bits of a key.
+     */
+    private final long keyMask;
+
+    /**
+     * Words and their ids; the counts are the unigram counts.
+     */
+    private final WordCountTable vocabulary = new WordCountTable();
+
+    /**
+     * Counts of the n-grams by key.
+     */
+    private final LongIntTable grams = new LongIntTable();
+
+    /**
+     * Ids of the last words, the latest in the lowest bits.
+     */
+    private long window;
+
+    /**
+     * Number of words seen, up to {@code n}.
+     */
+    private int seen;
+
+    /**
+     * Constructor.
+     *
+     * @param n
+     *            the number of words per n-gram
+     * @requires 2 <= n <= MAX_N
+     */
+    public NGramCounter(int n) {
+        assert n >= 2 : "Violation of: n >= 2";
+        assert n <= MAX_N : "Violation of: n <= MAX_N";
+
+        this.n = n;
+        this.bits = Long.SIZE / n;
+        this.maxId = (int) Math.min(Integer.MAX_VALUE,
+                (1L << this.bits) - 1);
+        if (n * this.bits == Long.SIZE) {
+            this.keyMask = -1L;
+        } else {
+            this.keyMask = (1L << (n * this.bits)) - 1;
+        }
+    }
+
+    /**
+     * Accepts the word {@code text[start, end)}, counting the n-gram it
+     * completes.
+     *
+     * @param text
+     *            the text containing the word
+     * @param start
+     *            the index of the first character of the word
+     * @param end
+     *            the index just past the last character of the word
+     * @throws IllegalStateException
+     *             if the vocabulary outgrows the ids a key can hold
+     */
+    @Override
+    public void word(CharSequence text, int start, int end) {
+        int id = this.vocabulary.increment(text, start, end);
+        if (id > this.maxId) {
+            throw new IllegalStateException("More than " + this.maxId
+                    + " distinct words; too many for " + this.n + "-grams");
+        }
+        this.window = ((this.window << this.bits) | id) & this.keyMask;
+        if (this.seen < this.n) {
+            this.seen++;
+        }
+        if (this.seen == this.n) {
+            this.grams.increment(this.window);
+        }
+    }
+
+    /**
+     * Returns the number of distinct n-grams.
+     *
+     * @return the number of n-grams
+     */
+    public int size() {
+        return this.grams.size();
+    }
+
+    /**
+     * Returns the table of the words counted, with their unigram counts.
+     *
+     * @return the vocabulary
+     */
+    public WordCountTable vocabulary() {
+        return this.vocabulary;
+    }
+
+    /**
+     * Returns the n-gram with key {@code key}, its words separated by
+     * {@link #WORD_SEPARATOR}.
+     *
+     * @param key
+     *            the key
+     * @param text
+     *            the buffer the n-gram is built in
+     * @return the n-gram
+     */
+    private String decode(long key, StringBuilder text) {
+        long idMask = (1L << this.bits) - 1;
+        text.setLength(0);
+        for (int i = this.n - 1; i >= 0; i--) {
+            int id = (int) ((key >>> (i * this.bits)) & idMask);
+            text.append(this.vocabulary.word(id));
+            if (i > 0) {
+                text.append(WORD_SEPARATOR);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the count of the n-gram of the given words.
+     *
+     * @param words
+     *            the words of the n-gram, in order
+     * @return the count, or 0 if the n-gram was not seen
+     * @requires |words| = n
+     */
+    public int count(String... words) {
+        assert words.length == this.n : "Violation of: |words| = n";
+
+        long key = 0;
+        boolean known = true;
+        for (String word : words) {
+            int id = this.vocabulary.id(word, 0, word.length());
+            known &= id >= 0;
+            key = (key << this.bits) | id;
+        }
+        int result = 0;
+        if (known) {
+            result = this.grams.get(key & this.keyMask);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a table of the n-grams as text and their counts, for the
+     * report.
+     *
+     * @return the table of n-grams
+     */
+    public WordCountTable toTable() {
+        WordCountTable result = new WordCountTable(
+                Math.max(1, this.grams.size()));
+        StringBuilder text = new StringBuilder();
+        for (int id = 0; id < this.grams.size(); id++) {
+            result.add(this.decode(this.grams.key(id), text),
+                    this.grams.count(id));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,274 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Paginated form of the HTML report, for vocabularies too large for one page.
+ * The sorted words are cut into pages of a fixed number of rows, each written
+ * to a file of its own, and the report file becomes an index linking the
+ * first word of every page. Once the order is known the pages are
+ * independent, so they are rendered and written on a pool of threads while
+ * the index is written on the calling thread.
+ *
+ * <p>
+ * Page {@code i} of the report {@code dir/name.html} is
+ * {@code dir/name-i.html}, numbered from 1 and zero-padded to the width of
+ * the last page number, so the pages list in order. Every page carries the
+ * total of the whole report and links to the index and to its neighbours.
+ * The statistics, if any, are on the index. The total is given by the
+ * caller, since the rows may be only some of the words counted.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class PagedReportWriter {
+
+    /**
+     * Suffix of the report and page file names.
+     */
+    private static final String SUFFIX = ".html";
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PagedReportWriter() {
+    }
+
+    /**
+     * Returns the name of page {@code page} of {@code pages} of the report
+     * {@code outputName}.
+     *
+     * @param outputName
+     *            the name of the report, which is the index
+     * @param page
+     *            the page number
+     * @param pages
+     *            the number of pages
+     * @return the name of the page file
+     * @requires 1 <= page <= pages
+     */
+    public static String pageName(String outputName, int page, int pages) {
+        assert outputName != null : "Violation of: outputName is not null";
+        assert 1 <= page && page <= pages : "Violation of: 1 <= page <= pages";
+
+        String base = outputName;
+        if (base.endsWith(SUFFIX)) {
+            base = base.substring(0, base.length() - SUFFIX.length());
+        }
+        String number = Integer.toString(page);
+        int width = Integer.toString(pages).length();
+        StringBuilder result = new StringBuilder(base).append('-');
+        for (int i = number.length(); i < width; i++) {
+            result.append('0');
+        }
+        return result.append(number).append(SUFFIX).toString();
+    }
+
+    /**
+     * Returns the last element of the path {@code name}, to link to a file
+     * in the same directory.
+     *
+     * @param name
+     *            the path
+     * @return the file name
+     */
+    private static String href(String name) {
+        return Paths.get(name).getFileName().toString();
+    }
+
+    /**
+     * Task writing one page.
+     */
+    private static final class PageTask implements Callable<Void> {
+
+        /**
+         * The words of the whole report.
+         */
+        private final SortedWordCounts sorted;
+
+        /**
+         * Position of the first word of the page.
+         */
+        private final int from;
+
+        /**
+         * Position just past the last word of the page.
+         */
+        private final int to;
+
+        /**
+         * Title of the page.
+         */
+        private final String title;
+
+        /**
+         * Name of the page file.
+         */
+        private final String pageName;
+
+        /**
+         * Total number of words of the whole report.
+         */
+        private final long totalWords;
+
+        /**
+         * Targets of the navigation links.
+         */
+        private final String[] hrefs;
+
+        /**
+         * Texts of the navigation links.
+         */
+        private final String[] texts;
+
+        /**
+         * Constructor.
+         *
+         * @param sorted
+         *            the words of the whole report
+         * @param from
+         *            the position of the first word of the page
+         * @param to
+         *            the position just past the last word of the page
+         * @param title
+         *            the title of the page
+         * @param pageName
+         *            the name of the page file
+         * @param totalWords
+         *            the total number of words of the whole report
+         * @param hrefs
+         *            the targets of the navigation links
+         * @param texts
+         *            the texts of the navigation links
+         */
+        PageTask(SortedWordCounts sorted, int from, int to, String title,
+                String pageName, long totalWords, String[] hrefs,
+                String[] texts) {
+            this.sorted = sorted;
+            this.from = from;
+            this.to = to;
+            this.title = title;
+            this.pageName = pageName;
+            this.totalWords = totalWords;
+            this.hrefs = hrefs;
+            this.texts = texts;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            try (FileChannel output = FileChannel.open(
+                    Paths.get(this.pageName), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                HtmlReportWriter report = new HtmlReportWriter(output,
+                        Charset.defaultCharset());
+                report.begin(this.title);
+                for (int i = this.from; i < this.to; i++) {
+                    report.row(this.sorted.word(i), this.sorted.count(i));
+                }
+                report.summary(this.totalWords);
+                report.links(this.hrefs, this.texts);
+                report.end();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code sorted} as pages of {@code pageSize} words, on up to
+     * {@code threads} threads, and the index of the pages, followed by a
+     * section for each of {@code statistics}, to {@code outputName}.
+     *
+     * @param sorted
+     *            the words and their occurrences in report order
+     * @param totalWords
+     *            the number of words in the input, which is more than the
+     *            sum of the rows if only some words are reported
+     * @param fileName
+     *            the name of the input file
+     * @param outputName
+     *            the name of the index file
+     * @param pageSize
+     *            the number of words per page
+     * @param threads
+     *            the number of threads writing pages
+     * @param statistics
+     *            the statistics written on the index, or {@code null}
+     * @throws IOException
+     *             if a page or the index cannot be written
+     * @requires totalWords >= 0 and pageSize > 0 and threads > 0
+     */
+    public static void write(SortedWordCounts sorted, long totalWords,
+            String fileName, String outputName, int pageSize, int threads,
+            TextStatistics statistics) throws IOException {
+        assert sorted != null : "Violation of: sorted is not null";
+        assert totalWords >= 0 : "Violation of: totalWords >= 0";
+        assert fileName != null : "Violation of: fileName is not null";
+        assert outputName != null : "Violation of: outputName is not null";
+        assert pageSize > 0 : "Violation of: pageSize > 0";
+        assert threads > 0 : "Violation of: threads > 0";
+
+        int pages = (int) ((sorted.size() + (long) pageSize - 1) / pageSize);
+        ExecutorService pool = Executors
+                .newFixedThreadPool(Math.max(1, Math.min(threads, pages)));
+        try {
+            List<Future<Void>> written = new ArrayList<>();
+            for (int page = 1; page <= pages; page++) {
+                List<String> hrefs = new ArrayList<>();
+                List<String> texts = new ArrayList<>();
+                hrefs.add(href(outputName));
+                texts.add("Index");
+                if (page > 1) {
+                    hrefs.add(href(pageName(outputName, page - 1, pages)));
+                    texts.add("Previous");
+                }
+                if (page < pages) {
+                    hrefs.add(href(pageName(outputName, page + 1, pages)));
+                    texts.add("Next");
+                }
+                int from = (page - 1) * pageSize;
+                written.add(pool.submit(new PageTask(sorted, from,
+                        Math.min(from + pageSize, sorted.size()),
+                        fileName + ", page " + page + " of " + pages,
+                        pageName(outputName, page, pages), totalWords,
+                        hrefs.toArray(new String[0]),
+                        texts.toArray(new String[0]))));
+            }
+            //the index is written while the pages are
+            try (FileChannel output = FileChannel.open(Paths.get(outputName),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                HtmlReportWriter report = new HtmlReportWriter(output,
+                        Charset.defaultCharset());
+                report.beginIndex(fileName, totalWords);
+                report.beginSection("Pages", "First word", "Page");
+                for (int page = 1; page <= pages; page++) {
+                    report.sectionLinkRow(
+                            href(pageName(outputName, page, pages)),
+                            sorted.word((page - 1) * pageSize), page);
+                }
+                report.endSection();
+                if (statistics != null) {
+                    statistics.write(report);
+                }
+                report.end();
+            }
+            for (Future<Void> page : written) {
+                BatchWordCounter.result(page);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,692 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the words of a file on several threads. The file is cut into byte
+ * ranges that each start just after a separator byte, every range is counted
+ * into its own {@link WordCountTable} by a {@link ForkJoinPool} task, and the
+ * partial tables are merged pairwise as the tasks join.
+ *
+ * <p>
+ * Cutting after an ASCII separator byte never splits a word, and in an
+ * ASCII-compatible charset such as UTF-8 it never splits a character either,
+ * so the counts are identical to those of the sequential
+ * {@code WordCounter.mapGenerate}.
+ * </p>
+ *
+ * <p>
+ * {@link #countShared} counts every range into one
+ * {@link ConcurrentWordCountTable} instead, which saves the partial tables
+ * and their merges when the vocabulary is large.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class ParallelWordCounter {
+
+    /**
+     * Smallest range worth handing to a task of its own.
+     */
+    private static final long MIN_RANGE_SIZE = 1 << 20;
+
+    /**
+     * Ranges per worker, so that a slow range does not leave workers idle.
+     */
+    private static final int RANGES_PER_WORKER = 4;
+
+    /**
+     * Size of the read and decode buffers.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParallelWordCounter() {
+    }
+
+    /**
+     * Reports whether every byte below 0x80 of text in {@code charset} is a
+     * whole ASCII character, which is what makes it safe to cut the input
+     * after such a byte.
+     *
+     * @param charset
+     *            the charset
+     * @return true iff {@code charset} is ASCII-compatible
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns a decoder for {@code charset} that replaces malformed input the
+     * way {@code SimpleReader1L} does.
+     *
+     * @param charset
+     *            the charset
+     * @return the new decoder
+     */
+    public static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Feeds the bytes {@code [from, to)} of {@code channel}, decoded from
+     * {@code charset}, to {@code tokenizer} and then finishes it. The channel
+     * is read positionally, so several threads may share it.
+     *
+     * @param channel
+     *            the file
+     * @param from
+     *            the index of the first byte
+     * @param to
+     *            the index just past the last byte
+     * @param charset
+     *            the charset of the file
+     * @param tokenizer
+     *            the tokenizer the text is fed to
+     * @throws IOException
+     *             if the file cannot be read
+     * @requires {@code from} is 0 or just after a separator byte, and the
+     *           charset is ASCII-compatible unless {@code from} is 0
+     */
+    public static void tokenizeRange(FileChannel channel, long from, long to,
+            Charset charset, WordTokenizer tokenizer) throws IOException {
+        tokenizeRange(channel, from, to, charset, tokenizer, null);
+    }
+
+    /**
+     * Feeds the bytes {@code [from, to)} of {@code channel}, decoded from
+     * {@code charset}, to {@code tokenizer} and then finishes it, adding the
+     * lines of the range to {@code metrics}. The channel is read
+     * positionally, so several threads may share it.
+     *
+     * @param channel
+     *            the file
+     * @param from
+     *            the index of the first byte
+     * @param to
+     *            the index just past the last byte
+     * @param charset
+     *            the charset of the file
+     * @param tokenizer
+     *            the tokenizer the text is fed to
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @throws IOException
+     *             if the file cannot be read
+     * @requires {@code from} is 0 or just after a separator byte, and the
+     *           charset is ASCII-compatible unless {@code from} is 0
+     */
+    public static void tokenizeRange(FileChannel channel, long from, long to,
+            Charset charset, WordTokenizer tokenizer, RunMetrics metrics)
+            throws IOException {
+        assert channel != null : "Violation of: channel is not null";
+        assert charset != null : "Violation of: charset is not null";
+        assert tokenizer != null : "Violation of: tokenizer is not null";
+
+        RunMetrics.LineCounter lines = null;
+        if (metrics != null) {
+            //a line feed starting the range may end the previous range's line
+            lines = new RunMetrics.LineCounter(
+                    byteBefore(channel, from) == '\r');
+        }
+        CharsetDecoder decoder = newDecoder(charset);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        long position = from;
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            int room = (int) Math.min(bytes.remaining(), to - position);
+            bytes.limit(bytes.position() + room);
+            int start = bytes.position();
+            int n = channel.read(bytes, position);
+            if (n > 0) {
+                position += n;
+                if (lines != null) {
+                    lines.read(bytes, start, start + n);
+                }
+            }
+            endOfInput = n < 0 || position >= to;
+            bytes.flip();
+            tokenizer.feed(bytes, decoder, chars, endOfInput);
+            bytes.compact();
+        }
+        tokenizer.finish();
+        if (metrics != null) {
+            metrics.addLines(lines, position >= channel.size());
+        }
+    }
+
+    /**
+     * Returns the byte of {@code channel} just before {@code position}, or
+     * -1 if there is none.
+     *
+     * @param channel
+     *            the file
+     * @param position
+     *            the index just past the byte
+     * @return the byte, or -1
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static int byteBefore(FileChannel channel, long position)
+            throws IOException {
+        int result = -1;
+        if (position > 0) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            if (channel.read(one, position - 1) == 1) {
+                result = one.get(0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index just past the first separator byte at or after
+     * {@code position}, or {@code size} if there is none.
+     *
+     * @param channel
+     *            the file
+     * @param position
+     *            the index to start looking at
+     * @param size
+     *            the size of the file
+     * @param separators
+     *            the separator characters
+     * @return the index just past the separator byte
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long alignedCut(FileChannel channel, long position,
+            long size, SeparatorSet separators) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        long cut = position;
+        boolean found = false;
+        while (!found && cut < size) {
+            bytes.clear();
+            int n = channel.read(bytes, cut);
+            int i = 0;
+            while (!found && i < n) {
+                byte b = bytes.get(i);
+                found = b >= 0 && separators.isSeparator((char) b);
+                i++;
+            }
+            cut += i;
+        }
+        return Math.min(cut, size);
+    }
+
+    /**
+     * Returns the boundaries of the ranges {@code [cuts[i], cuts[i + 1])} to
+     * count, each starting just after a separator byte.
+     *
+     * @param channel
+     *            the file
+     * @param workers
+     *            the number of worker threads
+     * @param separators
+     *            the separator characters
+     * @return the range boundaries, starting with 0 and ending with the size
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long[] cuts(FileChannel channel, int workers,
+            SeparatorSet separators) throws IOException {
+        long size = channel.size();
+        long ranges = Math.max(1, Math.min(
+                (long) workers * RANGES_PER_WORKER, size / MIN_RANGE_SIZE));
+        long[] result = new long[(int) ranges + 1];
+        int count = 1;
+        for (long r = 1; r < ranges; r++) {
+            long cut = alignedCut(channel, size * r / ranges, size,
+                    separators);
+            if (cut > result[count - 1] && cut < size) {
+                result[count] = cut;
+                count++;
+            }
+        }
+        result[count] = size;
+        long[] trimmed = new long[count + 1];
+        System.arraycopy(result, 0, trimmed, 0, count + 1);
+        return trimmed;
+    }
+
+    /**
+     * Task counting the words in ranges {@code lo} through {@code hi - 1}.
+     */
+    private static final class RangeTask
+            extends RecursiveTask<WordCountTable> {
+
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The file.
+         */
+        private final transient FileChannel channel;
+
+        /**
+         * Range boundaries.
+         */
+        private final long[] cuts;
+
+        /**
+         * First range of this task.
+         */
+        private final int lo;
+
+        /**
+         * One past the last range of this task.
+         */
+        private final int hi;
+
+        /**
+         * Separator characters.
+         */
+        private final transient SeparatorSet separators;
+
+        /**
+         * CJK segmentation dictionary, or {@code null}.
+         */
+        private final transient DoubleArrayTrie dictionary;
+
+        /**
+         * Stop words left out of the counts, or {@code null}.
+         */
+        private final transient StopWordSet stopWords;
+
+        /**
+         * Charset of the file.
+         */
+        private final transient Charset charset;
+
+        /**
+         * Metrics of the run, or {@code null}.
+         */
+        private final transient RunMetrics metrics;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            the file
+         * @param cuts
+         *            the range boundaries
+         * @param lo
+         *            the first range
+         * @param hi
+         *            one past the last range
+         * @param separators
+         *            the separator characters
+         * @param dictionary
+         *            the CJK segmentation dictionary, or {@code null}
+         * @param stopWords
+         *            the stop words left out, or {@code null}
+         * @param charset
+         *            the charset of the file
+         * @param metrics
+         *            the metrics of the run, or {@code null}
+         */
+        RangeTask(FileChannel channel, long[] cuts, int lo, int hi,
+                SeparatorSet separators, DoubleArrayTrie dictionary,
+                StopWordSet stopWords, Charset charset, RunMetrics metrics) {
+            this.channel = channel;
+            this.cuts = cuts;
+            this.lo = lo;
+            this.hi = hi;
+            this.separators = separators;
+            this.dictionary = dictionary;
+            this.stopWords = stopWords;
+            this.charset = charset;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected WordCountTable compute() {
+            WordCountTable result;
+            if (this.hi - this.lo == 1) {
+                result = this.countRange(this.cuts[this.lo],
+                        this.cuts[this.hi]);
+            } else {
+                int mid = (this.lo + this.hi) / 2;
+                RangeTask left = new RangeTask(this.channel, this.cuts,
+                        this.lo, mid, this.separators, this.dictionary,
+                        this.stopWords, this.charset, this.metrics);
+                RangeTask right = new RangeTask(this.channel, this.cuts, mid,
+                        this.hi, this.separators, this.dictionary,
+                        this.stopWords, this.charset, this.metrics);
+                left.fork();
+                result = right.compute();
+                WordCountTable other = left.join();
+                //merge the smaller table into the larger one
+                if (other.size() > result.size()) {
+                    WordCountTable temp = result;
+                    result = other;
+                    other = temp;
+                }
+                result.merge(other);
+            }
+            return result;
+        }
+
+        /**
+         * Counts the words in the bytes {@code [from, to)} of the file.
+         *
+         * @param from
+         *            the index of the first byte
+         * @param to
+         *            the index just past the last byte
+         * @return the table of words and their occurrences
+         */
+        private WordCountTable countRange(long from, long to) {
+            WordCountTable word = new WordCountTable();
+            WordTokenizer.WordSink sink = CjkSegmenter.wrap(this.dictionary,
+                    StopWordSet.wrap(this.stopWords, word));
+            try {
+                tokenizeRange(this.channel, from, to, this.charset,
+                        new WordTokenizer(this.separators, sink),
+                        this.metrics);
+            } catch (IOException e) {
+                throw new CountingException(e);
+            }
+            return word;
+        }
+    }
+
+    /**
+     * Task counting the words of one range into a shared table.
+     */
+    private static final class SharedRangeTask implements Callable<Void> {
+
+        /**
+         * The file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Index of the first byte.
+         */
+        private final long from;
+
+        /**
+         * Index just past the last byte.
+         */
+        private final long to;
+
+        /**
+         * Tokenizer feeding the shared table.
+         */
+        private final WordTokenizer tokenizer;
+
+        /**
+         * Metrics of the run, or {@code null}.
+         */
+        private final RunMetrics metrics;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            the file
+         * @param from
+         *            the index of the first byte
+         * @param to
+         *            the index just past the last byte
+         * @param tokenizer
+         *            the tokenizer feeding the shared table
+         * @param metrics
+         *            the metrics of the run, or {@code null}
+         */
+        SharedRangeTask(FileChannel channel, long from, long to,
+                WordTokenizer tokenizer, RunMetrics metrics) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.tokenizer = tokenizer;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            tokenizeRange(this.channel, this.from, this.to,
+                    Charset.defaultCharset(), this.tokenizer, this.metrics);
+            return null;
+        }
+    }
+
+    /**
+     * Unchecked wrapper carrying an {@link IOException} out of a task.
+     */
+    private static final class CountingException extends RuntimeException {
+
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         *
+         * @param cause
+         *            the I/O error
+         */
+        CountingException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Counts the words of the file {@code fileName} on {@code workers}
+     * threads.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param separators
+     *            the separator characters
+     * @param dictionary
+     *            the CJK segmentation dictionary, or {@code null} for no
+     *            segmentation
+     * @param workers
+     *            the number of worker threads
+     * @return the table of words and their occurrences
+     * @requires workers > 0 and [the default charset is ASCII-compatible]
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static WordCountTable count(String fileName,
+            SeparatorSet separators, DoubleArrayTrie dictionary,
+            int workers) throws IOException {
+        return count(fileName, separators, dictionary, null, workers);
+    }
+
+    /**
+     * Counts the words of the file {@code fileName} on {@code workers}
+     * threads, leaving out {@code stopWords}.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param separators
+     *            the separator characters
+     * @param dictionary
+     *            the CJK segmentation dictionary, or {@code null} for no
+     *            segmentation
+     * @param stopWords
+     *            the stop words left out of the counts, or {@code null} for
+     *            none
+     * @param workers
+     *            the number of worker threads
+     * @return the table of words and their occurrences
+     * @requires workers > 0 and [the default charset is ASCII-compatible]
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static WordCountTable count(String fileName,
+            SeparatorSet separators, DoubleArrayTrie dictionary,
+            StopWordSet stopWords, int workers) throws IOException {
+        return count(fileName, separators, dictionary, stopWords, workers,
+                null);
+    }
+
+    /**
+     * Counts the words of the file {@code fileName} on {@code workers}
+     * threads, leaving out {@code stopWords} and adding the lines of the
+     * file to {@code metrics}.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param separators
+     *            the separator characters
+     * @param dictionary
+     *            the CJK segmentation dictionary, or {@code null} for no
+     *            segmentation
+     * @param stopWords
+     *            the stop words left out of the counts, or {@code null} for
+     *            none
+     * @param workers
+     *            the number of worker threads
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @return the table of words and their occurrences
+     * @requires workers > 0 and [the default charset is ASCII-compatible]
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static WordCountTable count(String fileName,
+            SeparatorSet separators, DoubleArrayTrie dictionary,
+            StopWordSet stopWords, int workers, RunMetrics metrics)
+            throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert workers > 0 : "Violation of: workers > 0";
+        assert isAsciiCompatible(Charset.defaultCharset()) : ""
+                + "Violation of: the default charset is ASCII-compatible";
+
+        WordCountTable result;
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            long[] cuts = cuts(channel, workers, separators);
+            result = pool.invoke(new RangeTask(channel, cuts, 0,
+                    cuts.length - 1, separators, dictionary, stopWords,
+                    Charset.defaultCharset(), metrics));
+        } catch (CountingException e) {
+            throw (IOException) e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * Counts the words of the file {@code fileName} on {@code workers}
+     * threads into one {@link ConcurrentWordCountTable}, leaving out
+     * {@code stopWords}, and returns a snapshot of it once every range is
+     * counted.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param separators
+     *            the separator characters
+     * @param dictionary
+     *            the CJK segmentation dictionary, or {@code null} for no
+     *            segmentation
+     * @param stopWords
+     *            the stop words left out of the counts, or {@code null} for
+     *            none
+     * @param workers
+     *            the number of worker threads
+     * @return the table of words and their occurrences
+     * @requires workers > 0 and [the default charset is ASCII-compatible]
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static WordCountTable countShared(String fileName,
+            SeparatorSet separators, DoubleArrayTrie dictionary,
+            StopWordSet stopWords, int workers) throws IOException {
+        return countShared(fileName, separators, dictionary, stopWords,
+                workers, null);
+    }
+
+    /**
+     * Counts the words of the file {@code fileName} on {@code workers}
+     * threads into one {@link ConcurrentWordCountTable}, leaving out
+     * {@code stopWords} and adding the lines of the file to {@code metrics},
+     * and returns a snapshot of it once every range is counted.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param separators
+     *            the separator characters
+     * @param dictionary
+     *            the CJK segmentation dictionary, or {@code null} for no
+     *            segmentation
+     * @param stopWords
+     *            the stop words left out of the counts, or {@code null} for
+     *            none
+     * @param workers
+     *            the number of worker threads
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @return the table of words and their occurrences
+     * @requires workers > 0 and [the default charset is ASCII-compatible]
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static WordCountTable countShared(String fileName,
+            SeparatorSet separators, DoubleArrayTrie dictionary,
+            StopWordSet stopWords, int workers, RunMetrics metrics)
+            throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert workers > 0 : "Violation of: workers > 0";
+        assert isAsciiCompatible(Charset.defaultCharset()) : ""
+                + "Violation of: the default charset is ASCII-compatible";
+
+        ConcurrentWordCountTable table = new ConcurrentWordCountTable();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            long[] cuts = cuts(channel, workers, separators);
+            List<Future<Void>> counted = new ArrayList<>();
+            for (int i = 0; i + 1 < cuts.length; i++) {
+                //a tokenizer keeps state, so each range gets its own
+                WordTokenizer.WordSink sink = CjkSegmenter.wrap(dictionary,
+                        StopWordSet.wrap(stopWords, table));
+                counted.add(pool.submit(new SharedRangeTask(channel, cuts[i],
+                        cuts[i + 1], new WordTokenizer(separators, sink),
+                        metrics)));
+            }
+            for (Future<Void> range : counted) {
+                BatchWordCounter.result(range);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return table.snapshot();
+    }
+
+}
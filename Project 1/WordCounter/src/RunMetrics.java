@@ -0,0 +1,749 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and timers of one {@code WordCounter} run: bytes read, lines,
+ * tokens, distinct words and hash table probes, and the time spent in each
+ * {@link Stage}. A run ends with a JSON summary, from {@link #toJson()}, and
+ * with JFR events, a {@code WordCounter.Run} event spanning the run and a
+ * {@code WordCounter.Stage} event per stage, so runs can be graphed from a
+ * flight recording as well.
+ *
+ * <p>
+ * The counters are kept at the granularity the input is already handled
+ * in: the read time is taken around each buffer read, and the bytes and
+ * lines are added up per buffer, a last line without a line end counting as
+ * a line. Timing every word would cost as much as counting it, so the sink
+ * is timed on one word in {@value #SAMPLE_INTERVAL} and the count time is
+ * extrapolated from those. The clock itself takes time, which would be
+ * extrapolated with the rest, so each sample also times an empty interval
+ * and that overhead is taken out. A sample longer than
+ * {@value #EVENT_NANOS} ns is not a typical word but a rare event, such as
+ * the table growing or a garbage collection, so it is added once instead of
+ * being extrapolated; a sample whose empty interval is that long was
+ * preempted and is left out. The tokenize time is what is left of the
+ * counting pass; if the estimates leave less than nothing, the summary says
+ * the stages are not consistent rather than hide it. Mapped input is read
+ * lazily by page faults, so its reading shows up as tokenizing, and a pass
+ * on several threads is timed as a whole, as tokenizing; its lines are
+ * counted per range and added up.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class RunMetrics {
+
+    /**
+     * Stages of a run.
+     */
+    public enum Stage {
+        /**
+         * Reading the input.
+         */
+        READ,
+        /**
+         * Splitting the input into words.
+         */
+        TOKENIZE,
+        /**
+         * Counting the words.
+         */
+        COUNT,
+        /**
+         * Sorting or selecting the words to report.
+         */
+        SORT,
+        /**
+         * Writing the report.
+         */
+        RENDER;
+
+        /**
+         * Returns the name of this stage in the summary.
+         *
+         * @return the name
+         */
+        public String label() {
+            return this.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Number of words per word whose counting is timed; a power of two.
+     */
+    public static final int SAMPLE_INTERVAL = 64;
+
+    /**
+     * Time of a sampled word, in nanoseconds, beyond which it is a rare event
+     * rather than a typical word.
+     */
+    public static final long EVENT_NANOS = 100_000;
+
+    /**
+     * Number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+
+    /**
+     * JFR event of a whole run.
+     */
+    @Name("WordCounter.Run")
+    @Label("Word Counter Run")
+    @Category("Word Counter")
+    @Description("A run of WordCounter and its counters")
+    static final class RunEvent extends Event {
+
+        /**
+         * Name of the input.
+         */
+        @Label("Input")
+        String input;
+
+        /**
+         * Bytes read.
+         */
+        @Label("Bytes Read")
+        @DataAmount
+        long bytes;
+
+        /**
+         * Lines read.
+         */
+        @Label("Lines")
+        long lines;
+
+        /**
+         * Words counted.
+         */
+        @Label("Tokens")
+        long tokens;
+
+        /**
+         * Distinct words.
+         */
+        @Label("Distinct Words")
+        long distinctWords;
+
+        /**
+         * Hash table probes.
+         */
+        @Label("Table Probes")
+        long probes;
+
+        /**
+         * Whether the stage times add up to no more than the counting pass.
+         */
+        @Label("Stages Consistent")
+        boolean consistent;
+    }
+
+    /**
+     * JFR event of the time a run spent in one stage.
+     */
+    @Name("WordCounter.Stage")
+    @Label("Word Counter Stage")
+    @Category("Word Counter")
+    @Description("Time a run of WordCounter spent in one stage")
+    static final class StageEvent extends Event {
+
+        /**
+         * Name of the input.
+         */
+        @Label("Input")
+        String input;
+
+        /**
+         * Name of the stage.
+         */
+        @Label("Stage")
+        String stage;
+
+        /**
+         * Time spent in the stage.
+         */
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    /**
+     * Counter of the line ends of a stretch of the input read on its own,
+     * such as one of the ranges counted on several threads. As for
+     * {@code SimpleReader.nextLine()}, a line ends with a line feed, a
+     * carriage return or both.
+     */
+    public static final class LineCounter {
+
+        /**
+         * Line ends read.
+         */
+        private long lineEnds;
+
+        /**
+         * Whether the last byte read was a carriage return, so that a line
+         * feed right after it ends no line.
+         */
+        private boolean afterReturn;
+
+        /**
+         * Whether the last byte read was not a line end, so that a last line
+         * without a line end is open.
+         */
+        private boolean openLine;
+
+        /**
+         * Constructor.
+         *
+         * @param afterReturn
+         *            whether the byte just before the stretch is a carriage
+         *            return
+         */
+        public LineCounter(boolean afterReturn) {
+            this.afterReturn = afterReturn;
+        }
+
+        /**
+         * Adds the line ends of the bytes {@code bytes[start, end)}, which
+         * follow the bytes read so far.
+         *
+         * @param bytes
+         *            the bytes read
+         * @param start
+         *            the index of the first byte read
+         * @param end
+         *            the index just past the last byte read
+         */
+        public void read(ByteBuffer bytes, int start, int end) {
+            long n = 0;
+            for (int i = start; i < end; i++) {
+                byte b = bytes.get(i);
+                if (b == '\r' || (b == '\n' && !this.afterReturn)) {
+                    n++;
+                }
+                this.afterReturn = b == '\r';
+                this.openLine = b != '\n' && b != '\r';
+            }
+            this.lineEnds += n;
+        }
+    }
+
+    /**
+     * Sink counting every word and timing the sink it forwards to on one
+     * word in {@link #SAMPLE_INTERVAL}.
+     */
+    private static class TimedSink implements WordTokenizer.WordSink {
+
+        /**
+         * The metrics the words are counted in.
+         */
+        protected final RunMetrics metrics;
+
+        /**
+         * The sink the words are forwarded to.
+         */
+        private final WordTokenizer.WordSink sink;
+
+        /**
+         * Constructor.
+         *
+         * @param metrics
+         *            the metrics the words are counted in
+         * @param sink
+         *            the sink the words are forwarded to
+         */
+        TimedSink(RunMetrics metrics, WordTokenizer.WordSink sink) {
+            this.metrics = metrics;
+            this.sink = sink;
+        }
+
+        @Override
+        public final void word(CharSequence text, int start, int end) {
+            this.metrics.tokens++;
+            if ((this.metrics.tokens & (SAMPLE_INTERVAL - 1)) == 0) {
+                long before = System.nanoTime();
+                long since = System.nanoTime();
+                this.sink.word(text, start, end);
+                this.metrics.sample(since - before, System.nanoTime() - since);
+            } else {
+                this.sink.word(text, start, end);
+            }
+        }
+    }
+
+    /**
+     * {@link TimedSink} that passes words of ASCII bytes on as they are.
+     */
+    private static final class TimedByteSink extends TimedSink
+            implements WordTokenizer.ByteWordSink {
+
+        /**
+         * The sink the words are forwarded to.
+         */
+        private final WordTokenizer.ByteWordSink byteSink;
+
+        /**
+         * Constructor.
+         *
+         * @param metrics
+         *            the metrics the words are counted in
+         * @param sink
+         *            the sink the words are forwarded to
+         */
+        TimedByteSink(RunMetrics metrics, WordTokenizer.ByteWordSink sink) {
+            super(metrics, sink);
+            this.byteSink = sink;
+        }
+
+        @Override
+        public void word(ByteBuffer bytes, int start, int end) {
+            this.metrics.tokens++;
+            if ((this.metrics.tokens & (SAMPLE_INTERVAL - 1)) == 0) {
+                long before = System.nanoTime();
+                long since = System.nanoTime();
+                this.byteSink.word(bytes, start, end);
+                this.metrics.sample(since - before, System.nanoTime() - since);
+            } else {
+                this.byteSink.word(bytes, start, end);
+            }
+        }
+    }
+
+    /**
+     * Name of the input.
+     */
+    private final String input;
+
+    /**
+     * Whether line feed and carriage return bytes are line ends in the
+     * charset of the input.
+     */
+    private final boolean countLineEnds;
+
+    /**
+     * The run event, begun when the run began.
+     */
+    private final RunEvent event = new RunEvent();
+
+    /**
+     * When the run began, in nanoseconds.
+     */
+    private final long began = System.nanoTime();
+
+    /**
+     * Time spent in each stage, in nanoseconds, by ordinal; the tokenize
+     * time holds the whole counting pass until {@link #finish()}.
+     */
+    private final long[] nanos = new long[Stage.values().length];
+
+    /**
+     * Bytes read.
+     */
+    private long bytes;
+
+    /**
+     * Lines read a line at a time or counted from ranges of the input.
+     */
+    private long lines;
+
+    /**
+     * Line ends of the input read in order through {@link #read}.
+     */
+    private final LineCounter reading = new LineCounter(false);
+
+    /**
+     * Words counted.
+     */
+    private long tokens;
+
+    /**
+     * Distinct words, or -1 if not known.
+     */
+    private long distinctWords = -1;
+
+    /**
+     * Hash table probes.
+     */
+    private long probes;
+
+    /**
+     * Number of words whose counting was timed, rare events left out.
+     */
+    private long samples;
+
+    /**
+     * Time spent in the rare events of the samples, in nanoseconds.
+     */
+    private long events;
+
+    /**
+     * Time spent counting the sampled words, in nanoseconds, with the
+     * overhead of the clock.
+     */
+    private long sampledCount;
+
+    /**
+     * Overhead of the clock in the samples, in nanoseconds.
+     */
+    private long timerOverhead;
+
+    /**
+     * Whether the stage times add up to no more than the counting pass.
+     */
+    private boolean consistent = true;
+
+    /**
+     * Length of the run, in nanoseconds, once it is finished.
+     */
+    private long total;
+
+    /**
+     * Constructor, beginning the run.
+     *
+     * @param input
+     *            the name of the input
+     * @param charset
+     *            the charset of the input
+     */
+    public RunMetrics(String input, Charset charset) {
+        assert input != null : "Violation of: input is not null";
+        assert charset != null : "Violation of: charset is not null";
+
+        this.input = input;
+        this.countLineEnds = ParallelWordCounter.isAsciiCompatible(charset);
+        this.event.begin();
+    }
+
+    /**
+     * Adds the time from {@code since} to now to {@code stage}. The time of
+     * the tokenize stage is the whole counting pass, of which the read and
+     * count times are taken out when the run finishes.
+     *
+     * @param stage
+     *            the stage
+     * @param since
+     *            when the stage began, from {@link System#nanoTime()}
+     */
+    public void time(Stage stage, long since) {
+        this.nanos[stage.ordinal()] += System.nanoTime() - since;
+    }
+
+    /**
+     * Adds the bytes {@code bytes[start, end)} to the bytes read, and their
+     * line ends to the lines if the charset is ASCII-compatible. As for
+     * {@code SimpleReader.nextLine()}, a line ends with a line feed, a
+     * carriage return or both. The bytes of the input are to be given in
+     * order.
+     *
+     * @param bytes
+     *            the bytes read
+     * @param start
+     *            the index of the first byte read
+     * @param end
+     *            the index just past the last byte read
+     */
+    public void read(ByteBuffer bytes, int start, int end) {
+        this.bytes += end - start;
+        if (this.countLineEnds) {
+            this.reading.read(bytes, start, end);
+        }
+    }
+
+    /**
+     * Adds {@code n} bytes to the bytes read.
+     *
+     * @param n
+     *            the number of bytes
+     */
+    public void addBytes(long n) {
+        this.bytes += n;
+    }
+
+    /**
+     * Adds one line to the lines read.
+     */
+    public void addLine() {
+        this.lines++;
+    }
+
+    /**
+     * Adds the line ends of a range of the input counted by {@code range},
+     * and the line it leaves open if it is the last range, if the charset is
+     * ASCII-compatible. The ranges may be counted on several threads.
+     *
+     * @param range
+     *            the line ends of the range
+     * @param last
+     *            whether the range ends the input
+     */
+    public synchronized void addLines(LineCounter range, boolean last) {
+        assert range != null : "Violation of: range is not null";
+
+        if (this.countLineEnds) {
+            this.lines += range.lineEnds;
+            if (last && range.openLine) {
+                this.lines++;
+            }
+        }
+    }
+
+    /**
+     * Adds a timed word: {@code overhead} nanoseconds of an empty interval
+     * of the clock, and {@code elapsed} nanoseconds of the interval around
+     * the counting of the word.
+     *
+     * @param overhead
+     *            the time of the empty interval
+     * @param elapsed
+     *            the time of the counting of the word, with the overhead
+     */
+    private void sample(long overhead, long elapsed) {
+        //an empty interval that long was preempted, so it measures nothing
+        if (overhead <= EVENT_NANOS) {
+            if (elapsed - overhead > EVENT_NANOS) {
+                this.events += elapsed - overhead;
+            } else {
+                this.samples++;
+                this.timerOverhead += overhead;
+                this.sampledCount += elapsed;
+            }
+        }
+    }
+
+    /**
+     * Returns a sink forwarding to {@code sink} that counts the words and
+     * samples the time {@code sink} takes, for the count stage. It is a
+     * {@link WordTokenizer.ByteWordSink} if {@code sink} is.
+     *
+     * @param sink
+     *            the sink counting the words
+     * @return the timed sink
+     */
+    public WordTokenizer.WordSink timed(WordTokenizer.WordSink sink) {
+        assert sink != null : "Violation of: sink is not null";
+
+        WordTokenizer.WordSink result;
+        if (sink instanceof WordTokenizer.ByteWordSink) {
+            result = new TimedByteSink(this,
+                    (WordTokenizer.ByteWordSink) sink);
+        } else {
+            result = new TimedSink(this, sink);
+        }
+        return result;
+    }
+
+    /**
+     * Records the distinct words and probes of {@code table}, and its total
+     * count as the tokens if they were not counted one by one.
+     *
+     * @param table
+     *            the table the words were counted in
+     */
+    public void counted(WordCountTable table) {
+        assert table != null : "Violation of: table is not null";
+
+        this.distinctWords = table.size();
+        this.probes += table.probes();
+        if (this.tokens == 0) {
+            for (int id = 0; id < table.size(); id++) {
+                this.tokens += table.count(id);
+            }
+        }
+    }
+
+    /**
+     * Sets the number of distinct words, for counters without a table.
+     *
+     * @param n
+     *            the number of distinct words
+     */
+    public void setDistinctWords(long n) {
+        this.distinctWords = n;
+    }
+
+    /**
+     * Returns the time spent in {@code stage}, in nanoseconds. Before the
+     * run is finished, the tokenize time is the whole counting pass.
+     *
+     * @param stage
+     *            the stage
+     * @return the time
+     */
+    public long nanos(Stage stage) {
+        return this.nanos[stage.ordinal()];
+    }
+
+    /**
+     * Returns the number of bytes read.
+     *
+     * @return the bytes read
+     */
+    public long bytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Returns the number of lines read, counting a last line without a line
+     * end.
+     *
+     * @return the lines read
+     */
+    public synchronized long lines() {
+        long result = this.lines + this.reading.lineEnds;
+        if (this.reading.openLine) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of words counted.
+     *
+     * @return the tokens
+     */
+    public long tokens() {
+        return this.tokens;
+    }
+
+    /**
+     * Reports whether the read and count times of the run add up to no more
+     * than its counting pass. If they do not, the tokenize time, which is
+     * what they leave of the pass, is negative.
+     *
+     * @return true iff the stage times are consistent
+     * @requires the run is finished
+     */
+    public boolean consistent() {
+        return this.consistent;
+    }
+
+    /**
+     * Ends the run: splits the counting pass into its stages and commits the
+     * JFR events.
+     */
+    public void finish() {
+        this.total = System.nanoTime() - this.began;
+        int count = Stage.COUNT.ordinal();
+        int tokenize = Stage.TOKENIZE.ordinal();
+        if (this.samples > 0) {
+            long sampled = Math.max(0,
+                    this.sampledCount - this.timerOverhead);
+            this.nanos[count] = (long) ((double) sampled * this.tokens
+                    / this.samples);
+        }
+        this.nanos[count] += this.events;
+        this.nanos[tokenize] -= this.nanos[Stage.READ.ordinal()]
+                + this.nanos[count];
+        this.consistent = this.nanos[tokenize] >= 0;
+
+        this.event.input = this.input;
+        this.event.bytes = this.bytes;
+        this.event.lines = this.lines();
+        this.event.tokens = this.tokens;
+        this.event.distinctWords = this.distinctWords;
+        this.event.probes = this.probes;
+        this.event.consistent = this.consistent;
+        this.event.commit();
+        for (Stage stage : Stage.values()) {
+            StageEvent stageEvent = new StageEvent();
+            if (stageEvent.shouldCommit()) {
+                stageEvent.input = this.input;
+                stageEvent.stage = stage.label();
+                stageEvent.time = this.nanos(stage);
+                stageEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Appends {@code s} to {@code json} as a JSON string.
+     *
+     * @param json
+     *            the JSON text
+     * @param s
+     *            the string
+     */
+    private static void appendString(StringBuilder json, String s) {
+        final int hexDigits = 4;
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                String hex = Integer.toHexString(c);
+                json.append("\\u");
+                for (int k = hex.length(); k < hexDigits; k++) {
+                    json.append('0');
+                }
+                json.append(hex);
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Returns the rate of {@code amount} per second, with three decimals.
+     *
+     * @param amount
+     *            the amount
+     * @param nanos
+     *            the time it took, in nanoseconds
+     * @return the rate per second
+     */
+    private static String rate(double amount, long nanos) {
+        double result = 0;
+        if (nanos > 0) {
+            result = amount * NANOS_PER_SECOND / nanos;
+        }
+        return String.format(Locale.ROOT, "%.3f", result);
+    }
+
+    /**
+     * Returns the summary of the run as a JSON object: the input, the
+     * counters, the nanoseconds of each stage and of the whole run, whether
+     * the stage times are consistent, and the throughput over the whole run.
+     *
+     * @return the summary
+     * @requires the run is finished
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"input\": ");
+        appendString(json, this.input);
+        json.append(", \"bytes\": ").append(this.bytes);
+        json.append(", \"lines\": ").append(this.lines());
+        json.append(", \"tokens\": ").append(this.tokens);
+        json.append(", \"distinctWords\": ").append(this.distinctWords);
+        json.append(", \"probes\": ").append(this.probes);
+        json.append(", \"nanos\": {");
+        for (Stage stage : Stage.values()) {
+            appendString(json, stage.label());
+            json.append(": ").append(this.nanos(stage)).append(", ");
+        }
+        json.append("\"total\": ").append(this.total).append('}');
+        json.append(", \"consistent\": ").append(this.consistent);
+        json.append(", \"megabytesPerSecond\": ")
+                .append(rate(this.bytes / MEGABYTE, this.total));
+        json.append(", \"tokensPerSecond\": ")
+                .append(rate(this.tokens, this.total));
+        json.append('}');
+        return json.toString();
+    }
+
+}
@@ -0,0 +1,489 @@
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Constant-time classifier for the separator characters used to split text
+ * into words. ASCII characters are looked up in a pair of 64-bit masks; every
+ * other BMP character falls back to a 65536-bit table that is only allocated
+ * once a non-ASCII separator has been added. Nothing is boxed or hashed.
+ *
+ * <p>
+ * Separators are configured with a small spec language: every character stands
+ * for itself, except for these escapes:
+ * </p>
+ *
+ * <pre>
+ * \t \n \r \\     tab, line feed, carriage return, backslash
+ * \s              every character for which Character.isWhitespace holds
+ * \xXXXX         the BMP character with hexadecimal code XXXX
+ * \p{C}           every character in Unicode general category C, where C is
+ *                 either a major class (L, M, N, P, S, Z, C) or a
+ *                 two-letter category such as Po, Pd or Zs
+ * </pre>
+ *
+ * <p>
+ * Line terminators ({@code '\n'} and {@code '\r'}) are always separators, so
+ * the line-oriented and the buffer-oriented readers split text identically.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class SeparatorSet {
+
+    /**
+     * Separators used when none are configured.
+     */
+    public static final String DEFAULT_SEPARATORS = ""
+            + " ,.?!;:-()[]{}'\"/\\@#$%^&*";
+
+    /**
+     * Number of {@code char} values.
+     */
+    private static final int CHAR_COUNT = Character.MAX_VALUE + 1;
+
+    /**
+     * Bits per {@code long} word of the masks, as a shift.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * First character that is not ASCII.
+     */
+    private static final int ASCII_LIMIT = 128;
+
+    /**
+     * Number of hexadecimal digits in a {@code \x} escape.
+     */
+    private static final int HEX_DIGITS = 4;
+
+    /**
+     * Radix of a {@code \x} escape.
+     */
+    private static final int HEX_RADIX = 16;
+
+    /**
+     * Multiplier combining the words of the table into a hash code.
+     */
+    private static final int HASH_MULTIPLIER = 31;
+
+    /**
+     * Mask for separators among characters 0 through 63.
+     */
+    private long low;
+
+    /**
+     * Mask for separators among characters 64 through 127.
+     */
+    private long high;
+
+    /**
+     * Bit table for separators among all characters, or {@code null} while
+     * every separator is ASCII.
+     */
+    private long[] extended;
+
+    /**
+     * Constructor producing a set holding only the line terminators.
+     */
+    public SeparatorSet() {
+        this.add('\n');
+        this.add('\r');
+    }
+
+    /**
+     * Returns a set holding the line terminators and the characters described
+     * by the given spec.
+     *
+     * @param spec
+     *            the separator spec
+     * @return the new set
+     * @throws IllegalArgumentException
+     *             if {@code spec} has a malformed escape
+     */
+    public static SeparatorSet fromSpec(String spec) {
+        assert spec != null : "Violation of: spec is not null";
+
+        SeparatorSet result = new SeparatorSet();
+        result.addSpec(spec);
+        return result;
+    }
+
+    /**
+     * Returns a set holding the line terminators and the characters described
+     * by every line of the given file.
+     *
+     * @param fileName
+     *            the name of the spec file
+     * @return the new set
+     * @throws IllegalArgumentException
+     *             if the file has a malformed escape
+     */
+    public static SeparatorSet fromFile(String fileName) {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        SeparatorSet result = new SeparatorSet();
+        SimpleReader file = new SimpleReader1L(fileName);
+        while (!file.atEOS()) {
+            result.addSpec(file.nextLine());
+        }
+        file.close();
+        return result;
+    }
+
+    /**
+     * Returns a set holding the line terminators and
+     * {@link #DEFAULT_SEPARATORS}.
+     *
+     * @return the new set
+     */
+    public static SeparatorSet defaultSet() {
+        SeparatorSet result = new SeparatorSet();
+        for (int i = 0; i < DEFAULT_SEPARATORS.length(); i++) {
+            result.add(DEFAULT_SEPARATORS.charAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether {@code c} is a separator.
+     *
+     * @param c
+     *            the character to classify
+     * @return true iff {@code c} is in this set
+     */
+    public boolean isSeparator(char c) {
+        boolean result;
+        if (c < Long.SIZE) {
+            result = (this.low & (1L << c)) != 0;
+        } else if (c < ASCII_LIMIT) {
+            result = (this.high & (1L << c)) != 0;
+        } else {
+            result = this.extended != null
+                    && (this.extended[c >>> WORD_SHIFT] & (1L << c)) != 0;
+        }
+        return result;
+    }
+
+    /**
+     * Adds {@code c} to this set.
+     *
+     * @param c
+     *            the separator to add
+     */
+    public void add(char c) {
+        if (c < Long.SIZE) {
+            this.low |= 1L << c;
+        } else if (c < ASCII_LIMIT) {
+            this.high |= 1L << c;
+        }
+        if (c >= ASCII_LIMIT || this.extended != null) {
+            this.extendedTable()[c >>> WORD_SHIFT] |= 1L << c;
+        }
+    }
+
+    /**
+     * Adds every character in Unicode general category {@code type}, as
+     * reported by {@link Character#getType(char)}.
+     *
+     * @param type
+     *            the general category
+     */
+    public void addCategory(int type) {
+        for (int c = 0; c < CHAR_COUNT; c++) {
+            if (Character.getType(c) == type) {
+                this.add((char) c);
+            }
+        }
+    }
+
+    /**
+     * Adds every character for which {@link Character#isWhitespace(char)}
+     * holds.
+     */
+    public void addWhitespace() {
+        for (int c = 0; c < CHAR_COUNT; c++) {
+            if (Character.isWhitespace(c)) {
+                this.add((char) c);
+            }
+        }
+    }
+
+    /**
+     * Adds the characters described by {@code spec}.
+     *
+     * @param spec
+     *            the separator spec
+     * @throws IllegalArgumentException
+     *             if {@code spec} has a malformed escape
+     */
+    public void addSpec(String spec) {
+        assert spec != null : "Violation of: spec is not null";
+
+        int i = 0;
+        while (i < spec.length()) {
+            char c = spec.charAt(i);
+            if (c != '\\') {
+                this.add(c);
+                i++;
+            } else if (i + 1 == spec.length()) {
+                throw new IllegalArgumentException(
+                        "Dangling \\ at the end of separator spec: " + spec);
+            } else {
+                i = this.addEscape(spec, i + 1);
+            }
+        }
+    }
+
+    /**
+     * Adds the characters described by the escape whose letter is at
+     * {@code spec[position]} and returns the index just past the escape.
+     *
+     * @param spec
+     *            the separator spec
+     * @param position
+     *            the index of the character following the backslash
+     * @return the index just past the escape
+     * @throws IllegalArgumentException
+     *             if the escape is malformed
+     */
+    private int addEscape(String spec, int position) {
+        int next = position + 1;
+        char letter = spec.charAt(position);
+        switch (letter) {
+            case 't':
+                this.add('\t');
+                break;
+            case 'n':
+                this.add('\n');
+                break;
+            case 'r':
+                this.add('\r');
+                break;
+            case '\\':
+                this.add('\\');
+                break;
+            case 's':
+                this.addWhitespace();
+                break;
+            case 'x':
+                next = position + 1 + HEX_DIGITS;
+                if (next > spec.length()) {
+                    throw new IllegalArgumentException(
+                            "Truncated \\x escape in separator spec: " + spec);
+                }
+                try {
+                    this.add((char) Integer.parseInt(
+                            spec.substring(position + 1, next), HEX_RADIX));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            "Malformed \\x escape in separator spec: " + spec,
+                            e);
+                }
+                break;
+            case 'p':
+                int close = spec.indexOf('}', position);
+                if (position + 1 >= spec.length()
+                        || spec.charAt(position + 1) != '{' || close < 0) {
+                    throw new IllegalArgumentException(
+                            "Malformed \\p{...} escape in separator spec: "
+                                    + spec);
+                }
+                this.addCategories(spec.substring(position + 2, close));
+                next = close + 1;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown escape \\" + letter
+                        + " in separator spec: " + spec);
+        }
+        return next;
+    }
+
+    /**
+     * Adds every character whose general category matches {@code name}, which
+     * is either a major class such as "P" or a category such as "Po".
+     *
+     * @param name
+     *            the category name
+     * @throws IllegalArgumentException
+     *             if {@code name} is not a general category
+     */
+    private void addCategories(String name) {
+        boolean known = false;
+        for (int type = 0; type <= Character.FINAL_QUOTE_PUNCTUATION; type++) {
+            String code = categoryCode(type);
+            if (code != null && code.startsWith(name)
+                    && (name.length() == 1 || name.equals(code))) {
+                this.addCategory(type);
+                known = true;
+            }
+        }
+        if (!known) {
+            throw new IllegalArgumentException(
+                    "Unknown Unicode category in separator spec: " + name);
+        }
+    }
+
+    /**
+     * Returns the two-letter Unicode code of the general category
+     * {@code type}, or {@code null} if there is no such category.
+     *
+     * @param type
+     *            the general category, as in {@link Character#getType(int)}
+     * @return the category code
+     */
+    private static String categoryCode(int type) {
+        String result;
+        switch (type) {
+            case Character.UPPERCASE_LETTER:
+                result = "Lu";
+                break;
+            case Character.LOWERCASE_LETTER:
+                result = "Ll";
+                break;
+            case Character.TITLECASE_LETTER:
+                result = "Lt";
+                break;
+            case Character.MODIFIER_LETTER:
+                result = "Lm";
+                break;
+            case Character.OTHER_LETTER:
+                result = "Lo";
+                break;
+            case Character.NON_SPACING_MARK:
+                result = "Mn";
+                break;
+            case Character.ENCLOSING_MARK:
+                result = "Me";
+                break;
+            case Character.COMBINING_SPACING_MARK:
+                result = "Mc";
+                break;
+            case Character.DECIMAL_DIGIT_NUMBER:
+                result = "Nd";
+                break;
+            case Character.LETTER_NUMBER:
+                result = "Nl";
+                break;
+            case Character.OTHER_NUMBER:
+                result = "No";
+                break;
+            case Character.SPACE_SEPARATOR:
+                result = "Zs";
+                break;
+            case Character.LINE_SEPARATOR:
+                result = "Zl";
+                break;
+            case Character.PARAGRAPH_SEPARATOR:
+                result = "Zp";
+                break;
+            case Character.CONTROL:
+                result = "Cc";
+                break;
+            case Character.FORMAT:
+                result = "Cf";
+                break;
+            case Character.PRIVATE_USE:
+                result = "Co";
+                break;
+            case Character.SURROGATE:
+                result = "Cs";
+                break;
+            case Character.DASH_PUNCTUATION:
+                result = "Pd";
+                break;
+            case Character.START_PUNCTUATION:
+                result = "Ps";
+                break;
+            case Character.END_PUNCTUATION:
+                result = "Pe";
+                break;
+            case Character.CONNECTOR_PUNCTUATION:
+                result = "Pc";
+                break;
+            case Character.OTHER_PUNCTUATION:
+                result = "Po";
+                break;
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+                result = "Pi";
+                break;
+            case Character.FINAL_QUOTE_PUNCTUATION:
+                result = "Pf";
+                break;
+            case Character.MATH_SYMBOL:
+                result = "Sm";
+                break;
+            case Character.CURRENCY_SYMBOL:
+                result = "Sc";
+                break;
+            case Character.MODIFIER_SYMBOL:
+                result = "Sk";
+                break;
+            case Character.OTHER_SYMBOL:
+                result = "So";
+                break;
+            default:
+                result = null;
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * Returns word {@code i} of the table for all characters, which is 0 for
+     * non-ASCII words while the table is not allocated.
+     *
+     * @param i
+     *            the index of the word
+     * @return the word
+     */
+    private long tableWord(int i) {
+        long result;
+        if (this.extended != null) {
+            result = this.extended[i];
+        } else if (i == 0) {
+            result = this.low;
+        } else if (i == 1) {
+            result = this.high;
+        } else {
+            result = 0;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        boolean result = obj instanceof SeparatorSet;
+        int i = 0;
+        while (result && i < CHAR_COUNT >>> WORD_SHIFT) {
+            result = this.tableWord(i) == ((SeparatorSet) obj).tableWord(i);
+            i++;
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = 0;
+        for (int i = 0; i < CHAR_COUNT >>> WORD_SHIFT; i++) {
+            h = HASH_MULTIPLIER * h + this.tableWord(i);
+        }
+        return Long.hashCode(h);
+    }
+
+    /**
+     * Returns the table for all characters, allocating it (and copying the
+     * ASCII masks into it) on first use.
+     *
+     * @return the table
+     */
+    private long[] extendedTable() {
+        if (this.extended == null) {
+            this.extended = new long[CHAR_COUNT >>> WORD_SHIFT];
+            this.extended[0] = this.low;
+            this.extended[1] = this.high;
+        }
+        return this.extended;
+    }
+
+}
@@ -0,0 +1,451 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+import components.map.Map;
+import components.map.Map.Pair;
+
+/**
+ * Read-only list of words and their counts in report order, backed by two
+ * parallel arrays. The alphabetical factories extract the entries once, fold
+ * every word to a collation key once, and sort the array by those keys, so
+ * {@link String#compareToIgnoreCase} is never re-run inside the sort and the
+ * source is never modified. The frequency factories order by descending
+ * count with a counting sort, and only sort alphabetically within each
+ * count.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class SortedWordCounts {
+
+    /**
+     * First character of the surrogate range.
+     */
+    private static final char SURROGATE_START = '\uD800';
+
+    /**
+     * First character after the surrogate range.
+     */
+    private static final char SURROGATE_END = '\uE000';
+
+    /**
+     * Amount moving a surrogate above every other BMP character.
+     */
+    private static final int SURROGATE_SHIFT = 0x2000;
+
+    /**
+     * Amount moving a character above the surrogates down over them.
+     */
+    private static final int HIGH_BMP_SHIFT = 0x800;
+
+    /**
+     * Words in report order.
+     */
+    private final String[] words;
+
+    /**
+     * Counts of {@code words}.
+     */
+    private final int[] counts;
+
+    /**
+     * Entry of the array being sorted.
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        /**
+         * Collation key of the word.
+         */
+        private final String key;
+
+        /**
+         * The word.
+         */
+        private final String word;
+
+        /**
+         * Count of the word.
+         */
+        private final int count;
+
+        /**
+         * Constructor.
+         *
+         * @param word
+         *            the word
+         * @param count
+         *            the count of the word
+         */
+        Entry(String word, int count) {
+            this.key = collationKey(word);
+            this.word = word;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = compareKeys(this.key, other.key);
+            if (result == 0) {
+                result = this.word.compareTo(other.word);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry
+                    && this.word.equals(((Entry) other).word);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.word.hashCode();
+        }
+    }
+
+    /**
+     * Constructor from words that are already in report order.
+     *
+     * @param words
+     *            the words
+     * @param counts
+     *            the counts of {@code words}
+     * @requires |words| = |counts|
+     */
+    public SortedWordCounts(String[] words, int[] counts) {
+        assert words != null : "Violation of: words is not null";
+        assert counts != null : "Violation of: counts is not null";
+        assert words.length == counts.length : ""
+                + "Violation of: |words| = |counts|";
+
+        this.words = words;
+        this.counts = counts;
+    }
+
+    /**
+     * Constructor from sorted entries.
+     *
+     * @param entries
+     *            the entries in report order
+     */
+    private SortedWordCounts(Entry[] entries) {
+        this.words = new String[entries.length];
+        this.counts = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            this.words[i] = entries[i].word;
+            this.counts[i] = entries[i].count;
+        }
+    }
+
+    /**
+     * Returns the collation key of {@code word}: every code point folded the
+     * way {@link String#compareToIgnoreCase} folds it, to upper case and then
+     * back to lower case. Two words compare equal ignoring case iff their keys
+     * are equal.
+     *
+     * @param word
+     *            the word
+     * @return the collation key
+     */
+    public static String collationKey(String word) {
+        assert word != null : "Violation of: word is not null";
+
+        StringBuilder key = null;
+        int i = 0;
+        while (i < word.length()) {
+            int cp = word.codePointAt(i);
+            int folded = Character
+                    .toLowerCase(Character.toUpperCase(cp));
+            if (folded != cp && key == null) {
+                key = new StringBuilder(word.length());
+                key.append(word, 0, i);
+            }
+            if (key != null) {
+                key.appendCodePoint(folded);
+            }
+            i += Character.charCount(cp);
+        }
+        String result = word;
+        if (key != null) {
+            result = key.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code c} moved so that comparing the results orders UTF-16
+     * text by code point rather than by {@code char}.
+     *
+     * @param c
+     *            the character
+     * @return the comparison weight of {@code c}
+     */
+    private static int codePointWeight(char c) {
+        int result = c;
+        if (c >= SURROGATE_END) {
+            result -= HIGH_BMP_SHIFT;
+        } else if (c >= SURROGATE_START) {
+            result += SURROGATE_SHIFT;
+        }
+        return result;
+    }
+
+    /**
+     * Compares two collation keys in code point order, which is the order of
+     * {@link String#compareToIgnoreCase} on the words they came from.
+     *
+     * @param a
+     *            one key
+     * @param b
+     *            the other key
+     * @return negative, zero or positive as {@code a} is less than, equal to
+     *         or greater than {@code b}
+     */
+    public static int compareKeys(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        int result;
+        if (i < n) {
+            result = codePointWeight(a.charAt(i))
+                    - codePointWeight(b.charAt(i));
+        } else {
+            result = a.length() - b.length();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entries of the words of {@code table} that occur at least
+     * {@code minCount} times; the other words are skipped before any
+     * collation key is built.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @param minCount
+     *            the least count of a word kept
+     * @return the entries, in id order
+     */
+    private static Entry[] entries(WordCountTable table, int minCount) {
+        int n = table.size();
+        if (minCount > 1) {
+            n = 0;
+            for (int id = 0; id < table.size(); id++) {
+                if (table.count(id) >= minCount) {
+                    n++;
+                }
+            }
+        }
+        Entry[] entries = new Entry[n];
+        int i = 0;
+        for (int id = 0; id < table.size(); id++) {
+            if (table.count(id) >= minCount) {
+                entries[i] = new Entry(table.word(id), table.count(id));
+                i++;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the words of {@code table} in alphabetical order, ignoring case.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @return the sorted view
+     */
+    public static SortedWordCounts alphabetical(WordCountTable table) {
+        return alphabetical(table, 1);
+    }
+
+    /**
+     * Returns the words of {@code table} that occur at least {@code minCount}
+     * times in alphabetical order, ignoring case.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @param minCount
+     *            the least count of a word reported
+     * @return the sorted view
+     */
+    public static SortedWordCounts alphabetical(WordCountTable table,
+            int minCount) {
+        assert table != null : "Violation of: table is not null";
+
+        Entry[] entries = entries(table, minCount);
+        Arrays.sort(entries);
+        return new SortedWordCounts(entries);
+    }
+
+    /**
+     * Returns the words of {@code word} in alphabetical order, ignoring case.
+     *
+     * @param word
+     *            the map of words and their occurrences
+     * @return the sorted view
+     */
+    public static SortedWordCounts alphabetical(Map<String, Integer> word) {
+        assert word != null : "Violation of: word is not null";
+
+        Entry[] entries = new Entry[word.size()];
+        int i = 0;
+        for (Pair<String, Integer> pair : word) {
+            entries[i] = new Entry(pair.key(), pair.value());
+            i++;
+        }
+        Arrays.sort(entries);
+        return new SortedWordCounts(entries);
+    }
+
+    /**
+     * Sorts {@code entries} by descending count and then alphabetically, in
+     * O(V + C) time plus the alphabetical sorts within each count, for V
+     * entries whose counts are at most C. Counts above V are too sparse for
+     * a bucket each: the few entries with them, at most N / V for N words in
+     * total, are sorted by comparison instead.
+     *
+     * @param entries
+     *            the entries
+     * @return the entries in report order
+     */
+    private static Entry[] byFrequency(Entry[] entries) {
+        int limit = 0;
+        for (Entry e : entries) {
+            if (e.count <= entries.length) {
+                limit = Math.max(limit, e.count);
+            }
+        }
+        //bucketStart[c] is where the entries with count c begin
+        int[] bucketStart = new int[limit + 1];
+        int large = 0;
+        for (Entry e : entries) {
+            if (e.count > limit) {
+                large++;
+            } else {
+                bucketStart[e.count]++;
+            }
+        }
+        int next = large;
+        for (int c = limit; c >= 0; c--) {
+            int size = bucketStart[c];
+            bucketStart[c] = next;
+            next += size;
+        }
+        Entry[] result = new Entry[entries.length];
+        int[] fill = bucketStart.clone();
+        int largeFill = 0;
+        for (Entry e : entries) {
+            if (e.count > limit) {
+                result[largeFill] = e;
+                largeFill++;
+            } else {
+                result[fill[e.count]] = e;
+                fill[e.count]++;
+            }
+        }
+        Arrays.sort(result, 0, large, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                int c = Integer.compare(b.count, a.count);
+                if (c == 0) {
+                    c = a.compareTo(b);
+                }
+                return c;
+            }
+        });
+        for (int c = limit; c >= 0; c--) {
+            int end = result.length;
+            if (c > 0) {
+                end = bucketStart[c - 1];
+            }
+            Arrays.sort(result, bucketStart[c], end);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the words of {@code table} by descending count, and words with
+     * the same count in alphabetical order, ignoring case.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @return the sorted view
+     */
+    public static SortedWordCounts byFrequency(WordCountTable table) {
+        return byFrequency(table, 1);
+    }
+
+    /**
+     * Returns the words of {@code table} that occur at least {@code minCount}
+     * times by descending count, and words with the same count in
+     * alphabetical order, ignoring case.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @param minCount
+     *            the least count of a word reported
+     * @return the sorted view
+     */
+    public static SortedWordCounts byFrequency(WordCountTable table,
+            int minCount) {
+        assert table != null : "Violation of: table is not null";
+
+        return new SortedWordCounts(byFrequency(entries(table, minCount)));
+    }
+
+    /**
+     * Returns the words of {@code word} by descending count, and words with
+     * the same count in alphabetical order, ignoring case.
+     *
+     * @param word
+     *            the map of words and their occurrences
+     * @return the sorted view
+     */
+    public static SortedWordCounts byFrequency(Map<String, Integer> word) {
+        assert word != null : "Violation of: word is not null";
+
+        Entry[] entries = new Entry[word.size()];
+        int i = 0;
+        for (Pair<String, Integer> pair : word) {
+            entries[i] = new Entry(pair.key(), pair.value());
+            i++;
+        }
+        return new SortedWordCounts(byFrequency(entries));
+    }
+
+    /**
+     * Returns the number of words.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return this.words.length;
+    }
+
+    /**
+     * Returns the word at position {@code i}.
+     *
+     * @param i
+     *            the position
+     * @return the word
+     * @requires 0 <= i < size
+     */
+    public String word(int i) {
+        return this.words[i];
+    }
+
+    /**
+     * Returns the count of the word at position {@code i}.
+     *
+     * @param i
+     *            the position
+     * @return the count
+     * @requires 0 <= i < size
+     */
+    public int count(int i) {
+        return this.counts[i];
+    }
+
+}
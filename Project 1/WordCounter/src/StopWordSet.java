@@ -0,0 +1,480 @@
+import java.nio.ByteBuffer;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Immutable set of stop words, words left out of the counts, looked up
+ * through a minimal perfect hash: each of the {@code n} words has a slot of
+ * its own in an array of exactly {@code n} slots, so a lookup hashes the
+ * word once, reads one displacement and compares with the one word in the
+ * slot it leads to, whatever the word and however many stop words there are.
+ *
+ * <p>
+ * The hash is hash-and-displace. The 64-bit hash of a word picks one of
+ * {@code n} buckets; the words of a bucket are placed together by searching
+ * for a displacement that sends all of them to free slots, largest buckets
+ * first, and a bucket of one word is put straight into a free slot, its
+ * displacement recording the slot. Words are matched ignoring case, by
+ * {@link Character#toLowerCase(char)}; the bytes of an ASCII word hash the
+ * same as its characters, so the byte fast path of
+ * {@link WordTokenizer.ByteWordSink} is filtered without decoding.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class StopWordSet {
+
+    /**
+     * Offset basis of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+    /**
+     * Prime of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Multiplier spreading a displacement over the bits of a hash, 2^64
+     * divided by the golden ratio.
+     */
+    private static final long SPREAD_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * First multiplier of the 64-bit finalizer of MurmurHash3.
+     */
+    private static final long MIX_MULTIPLIER_1 = 0xFF51AFD7ED558CCDL;
+
+    /**
+     * Second multiplier of the 64-bit finalizer of MurmurHash3.
+     */
+    private static final long MIX_MULTIPLIER_2 = 0xC4CEB9FE1A85EC53L;
+
+    /**
+     * Shift of the finalizer of MurmurHash3.
+     */
+    private static final int MIX_SHIFT = 33;
+
+    /**
+     * Displacement of every bucket: positive for a bucket placed by
+     * displacement, {@code -(slot + 1)} for a bucket of one word put
+     * straight into {@code slot}, 0 for an empty bucket.
+     */
+    private final int[] displacements;
+
+    /**
+     * The stop words by slot, case-folded.
+     */
+    private final String[] words;
+
+    /**
+     * Constructor from case-folded words without duplicates.
+     *
+     * @param words
+     *            the words
+     * @requires words has no duplicates and every word is case-folded
+     */
+    private StopWordSet(String[] words) {
+        int n = words.length;
+        this.displacements = new int[n];
+        this.words = new String[n];
+
+        long[] hashes = new long[n];
+        int[] bucketSize = new int[n];
+        int largest = 0;
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(words[i], 0, words[i].length());
+            int b = this.bucket(hashes[i]);
+            bucketSize[b]++;
+            largest = Math.max(largest, bucketSize[b]);
+        }
+        //the words grouped by bucket, bucket b at [bucketStart[b], ...)
+        int[] bucketStart = new int[n + 1];
+        for (int b = 0; b < n; b++) {
+            bucketStart[b + 1] = bucketStart[b] + bucketSize[b];
+        }
+        int[] members = new int[n];
+        int[] fill = bucketStart.clone();
+        for (int i = 0; i < n; i++) {
+            int b = this.bucket(hashes[i]);
+            members[fill[b]] = i;
+            fill[b]++;
+        }
+
+        boolean[] taken = new boolean[n];
+        int[] trial = new int[largest];
+        for (int size = largest; size >= 2; size--) {
+            for (int b = 0; b < n; b++) {
+                if (bucketSize[b] == size) {
+                    int d = 0;
+                    boolean placed = false;
+                    while (!placed) {
+                        d++;
+                        placed = true;
+                        for (int j = 0; j < size && placed; j++) {
+                            trial[j] = this.slot(
+                                    hashes[members[bucketStart[b] + j]], d);
+                            placed = !taken[trial[j]];
+                            for (int k = 0; k < j && placed; k++) {
+                                placed = trial[k] != trial[j];
+                            }
+                        }
+                    }
+                    this.displacements[b] = d;
+                    for (int j = 0; j < size; j++) {
+                        taken[trial[j]] = true;
+                        this.words[trial[j]] = words[members[bucketStart[b]
+                                + j]];
+                    }
+                }
+            }
+        }
+        int free = 0;
+        for (int b = 0; b < n; b++) {
+            if (bucketSize[b] == 1) {
+                while (taken[free]) {
+                    free++;
+                }
+                taken[free] = true;
+                this.displacements[b] = -(free + 1);
+                this.words[free] = words[members[bucketStart[b]]];
+            }
+        }
+    }
+
+    /**
+     * Returns a set of the given words.
+     *
+     * @param words
+     *            the words, in any order and possibly repeated
+     * @return the set
+     * @requires no word is empty
+     */
+    public static StopWordSet of(String... words) {
+        assert words != null : "Violation of: words is not null";
+
+        //a table drops the duplicates, including those differing in case
+        WordCountTable unique = new WordCountTable();
+        StringBuilder folded = new StringBuilder();
+        for (String word : words) {
+            folded.setLength(0);
+            for (int i = 0; i < word.length(); i++) {
+                folded.append(fold(word.charAt(i)));
+            }
+            unique.increment(folded);
+        }
+        String[] result = new String[unique.size()];
+        for (int id = 0; id < result.length; id++) {
+            result[id] = unique.word(id);
+        }
+        return new StopWordSet(result);
+    }
+
+    /**
+     * Returns a set of the words of a stop word file, which has one word per
+     * line, optionally followed by whitespace and anything else. Blank lines
+     * and lines starting with '#' are ignored.
+     *
+     * @param fileName
+     *            the name of the stop word file
+     * @return the set
+     */
+    public static StopWordSet fromFile(String fileName) {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        WordCountTable unique = new WordCountTable();
+        StringBuilder folded = new StringBuilder();
+        SimpleReader file = new SimpleReader1L(fileName);
+        while (!file.atEOS()) {
+            String line = file.nextLine().trim();
+            if (!line.startsWith("#")) {
+                folded.setLength(0);
+                int end = 0;
+                while (end < line.length()
+                        && !Character.isWhitespace(line.charAt(end))) {
+                    folded.append(fold(line.charAt(end)));
+                    end++;
+                }
+                if (end > 0) {
+                    unique.increment(folded);
+                }
+            }
+        }
+        file.close();
+        String[] words = new String[unique.size()];
+        for (int id = 0; id < words.length; id++) {
+            words[id] = unique.word(id);
+        }
+        return new StopWordSet(words);
+    }
+
+    /**
+     * Returns {@code c} folded to lower case.
+     *
+     * @param c
+     *            the character
+     * @return the folded character
+     */
+    private static char fold(char c) {
+        char result = c;
+        if (c >= 'A' && c <= 'Z') {
+            result = (char) (c + ('a' - 'A'));
+        } else if (c >= Byte.MAX_VALUE) {
+            result = Character.toLowerCase(c);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bits of {@code h} mixed by the finalizer of MurmurHash3.
+     *
+     * @param h
+     *            the value
+     * @return the mixed value
+     */
+    private static long mix(long h) {
+        long x = h;
+        x = (x ^ (x >>> MIX_SHIFT)) * MIX_MULTIPLIER_1;
+        x = (x ^ (x >>> MIX_SHIFT)) * MIX_MULTIPLIER_2;
+        return x ^ (x >>> MIX_SHIFT);
+    }
+
+    /**
+     * Returns the 64-bit hash of {@code text[start, end)}, folded to lower
+     * case.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @return the hash
+     */
+    private static long hash(CharSequence text, int start, int end) {
+        long h = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            h = (h ^ fold(text.charAt(i))) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Returns the 64-bit hash of the ASCII bytes {@code bytes[start, end)},
+     * which is the same as the hash of the characters they encode.
+     *
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte
+     * @param end
+     *            the index just past the last byte
+     * @return the hash
+     */
+    private static long hash(ByteBuffer bytes, int start, int end) {
+        long h = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            h = (h ^ fold((char) bytes.get(i))) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Returns the bucket of the word with hash {@code h}.
+     *
+     * @param h
+     *            the hash of the word
+     * @return the bucket
+     */
+    private int bucket(long h) {
+        return (int) Long.remainderUnsigned(h, this.words.length);
+    }
+
+    /**
+     * Returns the slot the word with hash {@code h} goes to with
+     * displacement {@code d}.
+     *
+     * @param h
+     *            the hash of the word
+     * @param d
+     *            the displacement
+     * @return the slot
+     */
+    private int slot(long h, int d) {
+        return (int) Long.remainderUnsigned(mix(h ^ (d * SPREAD_MULTIPLIER)),
+                this.words.length);
+    }
+
+    /**
+     * Returns the only slot the word with hash {@code h} can be in.
+     *
+     * @param h
+     *            the hash of the word
+     * @return the slot
+     * @requires the set is not empty
+     */
+    private int find(long h) {
+        int d = this.displacements[this.bucket(h)];
+        int result;
+        if (d < 0) {
+            result = -d - 1;
+        } else {
+            result = this.slot(h, d);
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether {@code text[start, end)} is a stop word, ignoring case.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character of the word
+     * @param end
+     *            the index just past the last character of the word
+     * @return true iff the word is a stop word
+     */
+    public boolean contains(CharSequence text, int start, int end) {
+        boolean result = false;
+        if (this.words.length > 0) {
+            String word = this.words[this.find(hash(text, start, end))];
+            result = word.length() == end - start;
+            for (int i = 0; i < word.length() && result; i++) {
+                result = word.charAt(i) == fold(text.charAt(start + i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether the word of ASCII bytes {@code bytes[start, end)} is a
+     * stop word, ignoring case.
+     *
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte of the word
+     * @param end
+     *            the index just past the last byte of the word
+     * @return true iff the word is a stop word
+     */
+    public boolean contains(ByteBuffer bytes, int start, int end) {
+        boolean result = false;
+        if (this.words.length > 0) {
+            String word = this.words[this.find(hash(bytes, start, end))];
+            result = word.length() == end - start;
+            for (int i = 0; i < word.length() && result; i++) {
+                result = word.charAt(i) == fold((char) bytes.get(start + i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of stop words.
+     *
+     * @return the number of stop words
+     */
+    public int size() {
+        return this.words.length;
+    }
+
+    /**
+     * Sink passing on every word that is not a stop word.
+     */
+    private static class Filter implements WordTokenizer.WordSink {
+
+        /**
+         * The stop words.
+         */
+        protected final StopWordSet stopWords;
+
+        /**
+         * The sink the other words are passed on to.
+         */
+        private final WordTokenizer.WordSink sink;
+
+        /**
+         * Constructor.
+         *
+         * @param stopWords
+         *            the stop words
+         * @param sink
+         *            the sink the other words are passed on to
+         */
+        Filter(StopWordSet stopWords, WordTokenizer.WordSink sink) {
+            this.stopWords = stopWords;
+            this.sink = sink;
+        }
+
+        @Override
+        public final void word(CharSequence text, int start, int end) {
+            if (!this.stopWords.contains(text, start, end)) {
+                this.sink.word(text, start, end);
+            }
+        }
+    }
+
+    /**
+     * {@link Filter} that passes words of ASCII bytes on as they are.
+     */
+    private static final class ByteFilter extends Filter
+            implements WordTokenizer.ByteWordSink {
+
+        /**
+         * The sink the other words are passed on to.
+         */
+        private final WordTokenizer.ByteWordSink byteSink;
+
+        /**
+         * Constructor.
+         *
+         * @param stopWords
+         *            the stop words
+         * @param sink
+         *            the sink the other words are passed on to
+         */
+        ByteFilter(StopWordSet stopWords, WordTokenizer.ByteWordSink sink) {
+            super(stopWords, sink);
+            this.byteSink = sink;
+        }
+
+        @Override
+        public void word(ByteBuffer bytes, int start, int end) {
+            if (!this.stopWords.contains(bytes, start, end)) {
+                this.byteSink.word(bytes, start, end);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code sink} with the words of {@code stopWords} left out, or
+     * {@code sink} itself if {@code stopWords} is {@code null}. The result is
+     * a {@link WordTokenizer.ByteWordSink} if {@code sink} is.
+     *
+     * @param stopWords
+     *            the stop words, or {@code null} for none
+     * @param sink
+     *            the sink
+     * @return the sink to tokenize into
+     */
+    public static WordTokenizer.WordSink wrap(StopWordSet stopWords,
+            WordTokenizer.WordSink sink) {
+        assert sink != null : "Violation of: sink is not null";
+
+        WordTokenizer.WordSink result = sink;
+        if (stopWords != null) {
+            if (sink instanceof WordTokenizer.ByteWordSink) {
+                result = new ByteFilter(stopWords,
+                        (WordTokenizer.ByteWordSink) sink);
+            } else {
+                result = new Filter(stopWords, sink);
+            }
+        }
+        return result;
+    }
+
+}
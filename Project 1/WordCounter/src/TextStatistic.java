@@ -0,0 +1,25 @@
+import java.io.IOException;
+
+/**
+ * A statistic collected in the same pass that counts the words, and written
+ * as a section of the HTML report. A statistic observes the words by also
+ * implementing {@link WordTokenizer.WordSink}, and the raw input text by also
+ * implementing {@link HtmlTextFilter.TextSink}; {@link TextStatistics} only
+ * hands it what it implements.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public interface TextStatistic {
+
+    /**
+     * Writes the section of this statistic to {@code report}.
+     *
+     * @param report
+     *            the report, its word table already ended
+     * @throws IOException
+     *             if the report cannot be written
+     */
+    void write(HtmlReportWriter report) throws IOException;
+
+}
@@ -0,0 +1,181 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The statistics collected alongside the word counts. The words are handed
+ * to the statistics that implement {@link WordTokenizer.WordSink} by a sink
+ * placed in front of the counting sink, and the raw text to those that
+ * implement {@link HtmlTextFilter.TextSink} by the tokenizer's observer; with
+ * no statistic of a kind, nothing is placed, so a disabled statistic costs
+ * nothing per word or per character.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class TextStatistics {
+
+    /**
+     * Names of the built-in statistics, in report order.
+     */
+    public static final String[] NAMES = { "lines", "lengths",
+        "characters" };
+
+    /**
+     * Every statistic, in report order.
+     */
+    private final List<TextStatistic> all = new ArrayList<>();
+
+    /**
+     * The statistics observing words.
+     */
+    private WordTokenizer.WordSink[] words = new WordTokenizer.WordSink[0];
+
+    /**
+     * The statistics observing text.
+     */
+    private HtmlTextFilter.TextSink[] texts = new HtmlTextFilter.TextSink[0];
+
+    /**
+     * Adds {@code statistic}, to be written after those already added.
+     *
+     * @param statistic
+     *            the statistic
+     */
+    public void add(TextStatistic statistic) {
+        assert statistic != null : "Violation of: statistic is not null";
+
+        this.all.add(statistic);
+        if (statistic instanceof WordTokenizer.WordSink) {
+            this.words = Arrays.copyOf(this.words, this.words.length + 1);
+            this.words[this.words.length - 1] =
+                    (WordTokenizer.WordSink) statistic;
+        }
+        if (statistic instanceof HtmlTextFilter.TextSink) {
+            this.texts = Arrays.copyOf(this.texts, this.texts.length + 1);
+            this.texts[this.texts.length - 1] =
+                    (HtmlTextFilter.TextSink) statistic;
+        }
+    }
+
+    /**
+     * Returns the built-in statistic called {@code name}, one of
+     * {@link #NAMES}.
+     *
+     * @param name
+     *            the name
+     * @return a new statistic
+     * @throws IllegalArgumentException
+     *             if there is no statistic called {@code name}
+     */
+    public static TextStatistic named(String name) {
+        TextStatistic result;
+        switch (name) {
+            case "lines":
+                result = new LineStatistics();
+                break;
+            case "lengths":
+                result = new WordLengthHistogram();
+                break;
+            case "characters":
+                result = new CharacterFrequencies();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown statistic " + name
+                        + "; expected one of " + String.join(", ", NAMES)
+                        + " or all");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the statistics listed in {@code spec}, comma-separated names
+     * from {@link #NAMES}, or "all" for all of them.
+     *
+     * @param spec
+     *            the list of names
+     * @return the statistics
+     * @throws IllegalArgumentException
+     *             if a name is unknown
+     */
+    public static TextStatistics of(String spec) {
+        assert spec != null : "Violation of: spec is not null";
+
+        String[] names = spec.split(",");
+        if (spec.equals("all")) {
+            names = NAMES;
+        }
+        TextStatistics result = new TextStatistics();
+        for (String name : names) {
+            result.add(named(name.trim()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a sink that hands every word to the statistics observing words
+     * and then to {@code sink}, or {@code sink} itself if none does.
+     *
+     * @param sink
+     *            the sink counting the words
+     * @return the sink to tokenize into
+     */
+    public WordTokenizer.WordSink wrap(final WordTokenizer.WordSink sink) {
+        assert sink != null : "Violation of: sink is not null";
+
+        WordTokenizer.WordSink result = sink;
+        if (this.words.length > 0) {
+            final WordTokenizer.WordSink[] observers = this.words;
+            result = new WordTokenizer.WordSink() {
+                @Override
+                public void word(CharSequence text, int start, int end) {
+                    for (WordTokenizer.WordSink observer : observers) {
+                        observer.word(text, start, end);
+                    }
+                    sink.word(text, start, end);
+                }
+            };
+        }
+        return result;
+    }
+
+    /**
+     * Returns the observer of the raw text for the tokenizer, or
+     * {@code null} if no statistic observes text.
+     *
+     * @return the observer, or {@code null}
+     */
+    public HtmlTextFilter.TextSink observer() {
+        HtmlTextFilter.TextSink result = null;
+        if (this.texts.length == 1) {
+            result = this.texts[0];
+        } else if (this.texts.length > 1) {
+            final HtmlTextFilter.TextSink[] observers = this.texts;
+            result = new HtmlTextFilter.TextSink() {
+                @Override
+                public void text(CharSequence text, int start, int end) {
+                    for (HtmlTextFilter.TextSink observer : observers) {
+                        observer.text(text, start, end);
+                    }
+                }
+            };
+        }
+        return result;
+    }
+
+    /**
+     * Writes the section of every statistic to {@code report}.
+     *
+     * @param report
+     *            the report, its word table already ended
+     * @throws IOException
+     *             if the report cannot be written
+     */
+    public void write(HtmlReportWriter report) throws IOException {
+        for (TextStatistic statistic : this.all) {
+            statistic.write(report);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+import java.util.Comparator;
+
+/**
+ * Selects the {@code k} most frequent words of a {@link WordCountTable} with a
+ * bounded min-heap, in O(V log k) time for a vocabulary of V words instead of
+ * the O(V log V) of sorting all of them. Words with equal counts are ranked by
+ * the given order, so the result is the first {@code k} words of the
+ * vocabulary sorted by descending count and then by that order.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class TopKWords {
+
+    /**
+     * The table the words come from.
+     */
+    private final WordCountTable table;
+
+    /**
+     * Order of words with equal counts.
+     */
+    private final Comparator<String> order;
+
+    /**
+     * Least count of a word selected.
+     */
+    private final int minCount;
+
+    /**
+     * Heap of ids whose root is the least frequent of the words kept.
+     */
+    private final int[] heap;
+
+    /**
+     * Number of ids in the heap.
+     */
+    private int heapSize;
+
+    /**
+     * Constructor.
+     *
+     * @param table
+     *            the table the words come from
+     * @param k
+     *            the number of words to keep
+     * @param order
+     *            the order of words with equal counts
+     * @param minCount
+     *            the least count of a word selected
+     */
+    private TopKWords(WordCountTable table, int k, Comparator<String> order,
+            int minCount) {
+        this.table = table;
+        this.order = order;
+        this.minCount = minCount;
+        this.heap = new int[Math.min(k, table.size())];
+    }
+
+    /**
+     * Reports whether the word with id {@code a} ranks below the word with id
+     * {@code b}: it is less frequent or, with the same count, comes later in
+     * {@code order} (and, failing that, later in {@code String} order).
+     *
+     * @param a
+     *            the id of one word
+     * @param b
+     *            the id of the other word
+     * @return true iff {@code a} ranks below {@code b}
+     */
+    private boolean ranksBelow(int a, int b) {
+        int countA = this.table.count(a);
+        int countB = this.table.count(b);
+        boolean result;
+        if (countA != countB) {
+            result = countA < countB;
+        } else {
+            String wordA = this.table.word(a);
+            String wordB = this.table.word(b);
+            int c = this.order.compare(wordA, wordB);
+            if (c == 0) {
+                c = wordA.compareTo(wordB);
+            }
+            result = c > 0;
+        }
+        return result;
+    }
+
+    /**
+     * Restores the heap property below position {@code i}.
+     *
+     * @param i
+     *            the position of an id that may rank below its children
+     */
+    private void siftDown(int i) {
+        int top = this.heap[i];
+        int parent = i;
+        boolean done = false;
+        while (!done) {
+            int child = 2 * parent + 1;
+            if (child + 1 < this.heapSize && this.ranksBelow(
+                    this.heap[child + 1], this.heap[child])) {
+                child++;
+            }
+            if (child < this.heapSize
+                    && this.ranksBelow(this.heap[child], top)) {
+                this.heap[parent] = this.heap[child];
+                parent = child;
+            } else {
+                done = true;
+            }
+        }
+        this.heap[parent] = top;
+    }
+
+    /**
+     * Adds the id {@code id} to the heap.
+     *
+     * @param id
+     *            the id
+     */
+    private void push(int id) {
+        int child = this.heapSize;
+        this.heapSize++;
+        boolean done = false;
+        while (!done && child > 0) {
+            int parent = (child - 1) / 2;
+            if (this.ranksBelow(id, this.heap[parent])) {
+                this.heap[child] = this.heap[parent];
+                child = parent;
+            } else {
+                done = true;
+            }
+        }
+        this.heap[child] = id;
+    }
+
+    /**
+     * Returns the ids of the winners, most frequent first.
+     *
+     * @return the ids
+     */
+    private int[] select() {
+        for (int id = 0; id < this.table.size(); id++) {
+            //a word too rare to be reported is never compared
+            boolean kept = this.table.count(id) >= this.minCount;
+            if (kept && this.heapSize < this.heap.length) {
+                this.push(id);
+            } else if (kept && this.heapSize > 0
+                    && this.ranksBelow(this.heap[0], id)) {
+                this.heap[0] = id;
+                this.siftDown(0);
+            }
+        }
+        //removing the root repeatedly yields the winners from last to first
+        int[] result = new int[this.heapSize];
+        while (this.heapSize > 0) {
+            this.heapSize--;
+            result[this.heapSize] = this.heap[0];
+            this.heap[0] = this.heap[this.heapSize];
+            if (this.heapSize > 0) {
+                this.siftDown(0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@code k} most frequent words of {@code table} by
+     * descending count, with equal counts ordered by {@code order}.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @param k
+     *            the number of words to select
+     * @param order
+     *            the order of words with equal counts
+     * @return the selected words and their occurrences
+     * @requires k > 0
+     */
+    public static SortedWordCounts select(WordCountTable table, int k,
+            Comparator<String> order) {
+        return select(table, k, order, 1);
+    }
+
+    /**
+     * Returns the {@code k} most frequent words of {@code table} that occur
+     * at least {@code minCount} times, by descending count, with equal
+     * counts ordered by {@code order}.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @param k
+     *            the number of words to select
+     * @param order
+     *            the order of words with equal counts
+     * @param minCount
+     *            the least count of a word selected
+     * @return the selected words and their occurrences
+     * @requires k > 0
+     */
+    public static SortedWordCounts select(WordCountTable table, int k,
+            Comparator<String> order, int minCount) {
+        assert table != null : "Violation of: table is not null";
+        assert k > 0 : "Violation of: k > 0";
+        assert order != null : "Violation of: order is not null";
+
+        int[] ids = new TopKWords(table, k, order, minCount).select();
+        String[] words = new String[ids.length];
+        int[] counts = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            words[i] = table.word(ids[i]);
+            counts[i] = table.count(ids[i]);
+        }
+        return new SortedWordCounts(words, counts);
+    }
+
+}
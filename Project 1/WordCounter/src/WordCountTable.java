@@ -0,0 +1,605 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import components.map.Map;
+
+/**
+ * Table from words to counts specialized for counting. Words are stored once,
+ * in the order they are first seen, and identified by their dense index (their
+ * "id"); an open-addressing hash table with linear probing maps a word to its
+ * id. The hash of every word is cached next to it, so probing compares ints
+ * and only touches characters when the hashes agree, and growing the table
+ * never rehashes a {@code String}.
+ *
+ * <p>
+ * {@link #increment(CharSequence, int, int)} finds or adds a word in a single
+ * probe sequence and allocates a {@code String} only the first time the word
+ * is seen; counts are kept in an {@code int[]}, so nothing is boxed.
+ * {@link #increment(ByteBuffer, int, int)} does the same for a word of ASCII
+ * bytes, hashing and comparing the bytes themselves, so text that is only
+ * ASCII is counted without being decoded.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class WordCountTable implements WordTokenizer.ByteWordSink {
+
+    /**
+     * Default number of words the table is sized for.
+     */
+    private static final int DEFAULT_EXPECTED_SIZE = 1 << 10;
+
+    /**
+     * Multiplier spreading the bits of a hash, 2^32 divided by the golden
+     * ratio.
+     */
+    private static final int SPREAD_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * Multiplier of the polynomial hash, the same as {@link String#hashCode}.
+     */
+    private static final int HASH_MULTIPLIER = 31;
+
+    /**
+     * Hash table of {@code id + 1} for every word, 0 marking an empty slot.
+     * There are twice as many slots as id entries, so it is at most half full.
+     */
+    private int[] slots;
+
+    /**
+     * Words by id.
+     */
+    private String[] words;
+
+    /**
+     * Cached hashes by id.
+     */
+    private int[] hashes;
+
+    /**
+     * Counts by id.
+     */
+    private int[] counts;
+
+    /**
+     * Number of words.
+     */
+    private int size;
+
+    /**
+     * Number of slots examined by lookups so far, including those of the
+     * tables merged into this one.
+     */
+    private long probes;
+
+    /**
+     * Default constructor.
+     */
+    public WordCountTable() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * Constructor sizing the table for {@code expectedSize} words.
+     *
+     * @param expectedSize
+     *            the number of words expected
+     * @requires expectedSize > 0
+     */
+    public WordCountTable(int expectedSize) {
+        assert expectedSize > 0 : "Violation of: expectedSize > 0";
+
+        int capacity = Integer.highestOneBit(expectedSize) << 1;
+        this.slots = new int[capacity << 1];
+        this.words = new String[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new int[capacity];
+    }
+
+    /**
+     * Returns the hash of {@code text[start, end)}, which is the same as
+     * {@code text.subSequence(start, end).toString().hashCode()}.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @return the hash
+     */
+    public static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = HASH_MULTIPLIER * h + text.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the hash of the ASCII bytes {@code bytes[start, end)}, which is
+     * the same as the hash of the characters they encode.
+     *
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte
+     * @param end
+     *            the index just past the last byte
+     * @return the hash
+     */
+    public static int hash(ByteBuffer bytes, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = HASH_MULTIPLIER * h + bytes.get(i);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the slot where probing for {@code hash} starts: the top bits
+     * of the hash multiplied by {@link #SPREAD_MULTIPLIER}. The polynomial
+     * hashes of short words fill dense ranges, which the low bits would
+     * pack into long runs of occupied slots; the multiplication scatters
+     * them over the whole table.
+     *
+     * @param hash
+     *            the hash
+     * @param mask
+     *            the number of slots minus one
+     * @return the first slot
+     * @requires mask + 1 is a power of two greater than 1
+     */
+    static int firstSlot(int hash, int mask) {
+        int shift = Integer.numberOfLeadingZeros(mask);
+        return (hash * SPREAD_MULTIPLIER) >>> shift;
+    }
+
+    /**
+     * Reports whether {@code word} equals {@code text[start, end)}.
+     *
+     * @param word
+     *            the word
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @return true iff they are equal
+     */
+    static boolean matches(String word, CharSequence text, int start,
+            int end) {
+        boolean result = word.length() == end - start;
+        int i = 0;
+        while (result && i < word.length()) {
+            result = word.charAt(i) == text.charAt(start + i);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether {@code word} equals the characters encoded by the ASCII
+     * bytes {@code bytes[start, end)}.
+     *
+     * @param word
+     *            the word
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte
+     * @param end
+     *            the index just past the last byte
+     * @return true iff they are equal
+     */
+    static boolean matches(String word, ByteBuffer bytes, int start,
+            int end) {
+        boolean result = word.length() == end - start;
+        int i = 0;
+        while (result && i < word.length()) {
+            result = word.charAt(i) == bytes.get(start + i);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the word of the ASCII bytes {@code bytes[start, end)}.
+     *
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte
+     * @param end
+     *            the index just past the last byte
+     * @return the word
+     */
+    static String asciiString(ByteBuffer bytes, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) bytes.get(start + i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the slot holding {@code text[start, end)} or, if it is absent,
+     * the empty slot where it belongs.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @param hash
+     *            the hash of the word
+     * @return the slot
+     */
+    private int find(CharSequence text, int start, int end, int hash) {
+        int mask = this.slots.length - 1;
+        int slot = firstSlot(hash, mask);
+        int entry = this.slots[slot];
+        int probed = 1;
+        while (entry != 0 && (this.hashes[entry - 1] != hash
+                || !matches(this.words[entry - 1], text, start, end))) {
+            slot = (slot + 1) & mask;
+            entry = this.slots[slot];
+            probed++;
+        }
+        this.probes += probed;
+        return slot;
+    }
+
+    /**
+     * Returns the slot holding the word of the ASCII bytes
+     * {@code bytes[start, end)} or, if it is absent, the empty slot where it
+     * belongs.
+     *
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte
+     * @param end
+     *            the index just past the last byte
+     * @param hash
+     *            the hash of the word
+     * @return the slot
+     */
+    private int find(ByteBuffer bytes, int start, int end, int hash) {
+        int mask = this.slots.length - 1;
+        int slot = firstSlot(hash, mask);
+        int entry = this.slots[slot];
+        int probed = 1;
+        while (entry != 0 && (this.hashes[entry - 1] != hash
+                || !matches(this.words[entry - 1], bytes, start, end))) {
+            slot = (slot + 1) & mask;
+            entry = this.slots[slot];
+            probed++;
+        }
+        this.probes += probed;
+        return slot;
+    }
+
+    /**
+     * Doubles the number of slots and of id entries.
+     */
+    private void grow() {
+        int capacity = this.words.length << 1;
+        String[] newWords = new String[capacity];
+        int[] newHashes = new int[capacity];
+        int[] newCounts = new int[capacity];
+        System.arraycopy(this.words, 0, newWords, 0, this.size);
+        System.arraycopy(this.hashes, 0, newHashes, 0, this.size);
+        System.arraycopy(this.counts, 0, newCounts, 0, this.size);
+        this.words = newWords;
+        this.hashes = newHashes;
+        this.counts = newCounts;
+
+        int[] newSlots = new int[capacity << 1];
+        int mask = newSlots.length - 1;
+        for (int id = 0; id < this.size; id++) {
+            int slot = firstSlot(this.hashes[id], mask);
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id + 1;
+        }
+        this.slots = newSlots;
+    }
+
+    /**
+     * Adds {@code count} to the count of {@code text[start, end)}, adding the
+     * word if it is absent, and returns its id.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @param hash
+     *            the hash of the word
+     * @param word
+     *            the word as a {@code String}, or {@code null} to copy it out
+     *            of {@code text} if it is new
+     * @param count
+     *            the amount to add
+     * @return the id of the word
+     */
+    private int add(CharSequence text, int start, int end, int hash,
+            String word, int count) {
+        int slot = this.find(text, start, end, hash);
+        int id = this.slots[slot] - 1;
+        if (id < 0) {
+            if (this.size == this.words.length) {
+                this.grow();
+                slot = this.find(text, start, end, hash);
+            }
+            id = this.size;
+            this.size++;
+            if (word != null) {
+                this.words[id] = word;
+            } else {
+                this.words[id] = text.subSequence(start, end).toString();
+            }
+            this.hashes[id] = hash;
+            this.slots[slot] = id + 1;
+        }
+        this.counts[id] += count;
+        return id;
+    }
+
+    /**
+     * Adds one to the count of {@code text[start, end)} and returns its id.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @return the id of the word
+     * @requires 0 <= start < end <= |text|
+     */
+    public int increment(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+        assert 0 <= start : "Violation of: 0 <= start";
+        assert start < end : "Violation of: start < end";
+        assert end <= text.length() : "Violation of: end <= |text|";
+
+        return this.add(text, start, end, hash(text, start, end), null, 1);
+    }
+
+    /**
+     * Adds one to the count of the word of the ASCII bytes
+     * {@code bytes[start, end)} and returns its id. The bytes are decoded
+     * only if the word is new.
+     *
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte
+     * @param end
+     *            the index just past the last byte
+     * @return the id of the word
+     * @requires 0 <= start < end <= limit(bytes) and bytes[start, end) are
+     *           ASCII
+     */
+    public int increment(ByteBuffer bytes, int start, int end) {
+        assert bytes != null : "Violation of: bytes is not null";
+        assert 0 <= start : "Violation of: 0 <= start";
+        assert start < end : "Violation of: start < end";
+        assert end <= bytes.limit() : "Violation of: end <= limit(bytes)";
+
+        int hash = hash(bytes, start, end);
+        int id = this.slots[this.find(bytes, start, end, hash)] - 1;
+        if (id < 0) {
+            String word = asciiString(bytes, start, end);
+            id = this.add(word, 0, word.length(), hash, word, 1);
+        } else {
+            this.counts[id]++;
+        }
+        return id;
+    }
+
+    /**
+     * Adds one to the count of {@code span} and returns its id.
+     *
+     * @param span
+     *            the word
+     * @return the id of the word
+     * @requires |span| > 0
+     */
+    public int increment(CharSequence span) {
+        assert span != null : "Violation of: span is not null";
+
+        return this.increment(span, 0, span.length());
+    }
+
+    /**
+     * Adds {@code count} to the count of {@code word} and returns its id.
+     *
+     * @param word
+     *            the word
+     * @param count
+     *            the amount to add
+     * @return the id of the word
+     * @requires |word| > 0 and count >= 0
+     */
+    public int add(String word, int count) {
+        assert word != null : "Violation of: word is not null";
+        assert count >= 0 : "Violation of: count >= 0";
+
+        return this.add(word, 0, word.length(), word.hashCode(), word, count);
+    }
+
+    /**
+     * Returns the id of {@code text[start, end)}, or -1 if it is absent.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character
+     * @param end
+     *            the index just past the last character
+     * @return the id of the word, or -1
+     */
+    public int id(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+
+        return this.slots[this.find(text, start, end,
+                hash(text, start, end))] - 1;
+    }
+
+    /**
+     * Returns the count of {@code word}, which is 0 if it is absent.
+     *
+     * @param word
+     *            the word
+     * @return the count
+     */
+    public int count(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        int id = this.id(word, 0, word.length());
+        int result = 0;
+        if (id >= 0) {
+            result = this.counts[id];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distinct words.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the word with id {@code id}.
+     *
+     * @param id
+     *            the id
+     * @return the word
+     * @requires 0 <= id < size
+     */
+    public String word(int id) {
+        assert 0 <= id && id < this.size : "Violation of: 0 <= id < size";
+
+        return this.words[id];
+    }
+
+    /**
+     * Returns the count of the word with id {@code id}.
+     *
+     * @param id
+     *            the id
+     * @return the count
+     * @requires 0 <= id < size
+     */
+    public int count(int id) {
+        assert 0 <= id && id < this.size : "Violation of: 0 <= id < size";
+
+        return this.counts[id];
+    }
+
+    /**
+     * Returns the total number of words counted, the sum of the counts of
+     * every word.
+     *
+     * @return the total number of words
+     */
+    public long totalWords() {
+        long result = 0;
+        for (int id = 0; id < this.size; id++) {
+            result += this.counts[id];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of slots examined by lookups in this table, and in
+     * the tables merged into it, since it was created.
+     *
+     * @return the number of probes
+     */
+    public long probes() {
+        return this.probes;
+    }
+
+    /**
+     * Adds the counts of {@code other} to those of this table.
+     *
+     * @param other
+     *            the table whose counts are added
+     */
+    public void merge(WordCountTable other) {
+        assert other != null : "Violation of: other is not null";
+
+        this.probes += other.probes;
+        for (int id = 0; id < other.size; id++) {
+            String word = other.words[id];
+            this.add(word, 0, word.length(), other.hashes[id], word,
+                    other.counts[id]);
+        }
+    }
+
+    /**
+     * Removes every word.
+     */
+    public void clear() {
+        Arrays.fill(this.slots, 0);
+        Arrays.fill(this.words, 0, this.size, null);
+        Arrays.fill(this.counts, 0, this.size, 0);
+        this.size = 0;
+    }
+
+    /**
+     * Copies the words and counts of this table into {@code word}.
+     *
+     * @param word
+     *            the map of words and their occurrences
+     * @replaces word
+     */
+    public void toMap(Map<String, Integer> word) {
+        this.toMap(word, 1);
+    }
+
+    /**
+     * Copies the words of this table that occur at least {@code minCount}
+     * times, and their counts, into {@code word}.
+     *
+     * @param word
+     *            the map of words and their occurrences
+     * @param minCount
+     *            the least count of a word copied
+     * @replaces word
+     */
+    public void toMap(Map<String, Integer> word, int minCount) {
+        assert word != null : "Violation of: word is not null";
+
+        word.clear();
+        for (int id = 0; id < this.size; id++) {
+            if (this.counts[id] >= minCount) {
+                word.add(this.words[id], this.counts[id]);
+            }
+        }
+    }
+
+    @Override
+    public void word(CharSequence text, int start, int end) {
+        this.increment(text, start, end);
+    }
+
+    @Override
+    public void word(ByteBuffer bytes, int start, int end) {
+        this.increment(bytes, start, end);
+    }
+
+}
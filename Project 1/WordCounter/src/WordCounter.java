@@ -1,12 +1,25 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Locale;
 
 import components.map.Map;
 import components.map.Map.Pair;
-import components.map.Map1L;
 import components.queue.Queue;
-import components.queue.Queue1L;
-import components.set.Set;
-import components.set.Set1L;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
@@ -21,6 +34,11 @@ import components.simplewriter.SimpleWriter1L;
  */
 
 public final class WordCounter {
+    /**
+     * Size of the buffers a measured run reads and decodes its input in.
+     */
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
     /**
      * Private constructor so this utility class cannot be instantiated.
      */
@@ -30,178 +48,321 @@ public final class WordCounter {
     /**
      * Generate a HTML page with words' occurrence in the file.
      *
-     * @param in
-     *            the input stream
      * @param out
-     *            the output stream
-     * @param word
-     *            the map of words and their occurrences
-     * @param wordQueue
-     *            the queue of words
+     *            the channel the page is written to
+     * @param sorted
+     *            the words and their occurrences in report order
+     * @param totalWords
+     *            the number of words in the input, which is more than the
+     *            sum of the rows if only some words are reported
      * @param fileName
      *            the name of the input file
-     * @clear {@code wordQueue}, {@code word}
-     * @ensures <pre>
-     * {@code wordQueue = < >}
-     * {@code word = < >}
-     * </pre>
+     * @param statistics
+     *            the statistics written after the table, or {@code null}
+     * @throws IOException
+     *             if the page cannot be written
+     * @requires totalWords >= 0
      */
 
-    private static void html(SimpleReader in, SimpleWriter out,
-            Map<String, Integer> word, Queue<String> wordQueue,
-            String fileName) {
-        int numberOfWords = 0;
-        out.println("<html>");
-        out.println("<head>");
-        out.println("<title>Word Counter : " + fileName + "</title>");
-        out.println("</head>");
-        out.println("<body>");
-        out.println("<h2>Word Counter " + fileName + "</h2>");
-        out.println("<hr />");
-        out.println("<table border=\"1\">");
-        out.println("<tr>");
-        out.println("<th>Words</th>");
-        out.println("<th>Counts</th>");
-        out.println("</tr>");
+    static void html(WritableByteChannel out, SortedWordCounts sorted,
+            long totalWords, String fileName, TextStatistics statistics)
+            throws IOException {
+        HtmlReportWriter report = new HtmlReportWriter(out,
+                Charset.defaultCharset());
+        report.begin(fileName);
         //print the words and their occurrences in the table
-        while (!(wordQueue.length() == 0)) {
-            String word1 = wordQueue.dequeue();
-            Pair<String, Integer> pair = word.remove(word1);
-            out.println("<tr>");
-            out.println("<td>" + pair.key() + "</td>");
-            out.println("<td>" + pair.value() + "</td>");
-            out.println("</tr>");
-            numberOfWords += pair.value();
-        }
-        out.println("</table>");
-        out.println("<hr />");
-        out.println("<p> Total number of words: " + numberOfWords + "</p>");
-        out.println("</body>");
-        out.println("</html>");
-
+        for (int i = 0; i < sorted.size(); i++) {
+            report.row(sorted.word(i), sorted.count(i));
+        }
+        report.summary(totalWords);
+        if (statistics != null) {
+            statistics.write(report);
+        }
+        report.end();
     }
 
     /**
-     * Generates the set of characters in the given {@code String} into the
-     * given {@code Set}.
+     * Feeds every line of {@code file} to {@code tokenizer}.
      *
-     * @param str
-     *            the given {@code String}
-     * @param charSet
-     *            the {@code Set} to be replaced
-     * @replaces charSet
-     * @ensures charSet = entries(str)
+     * @param file
+     *            the input stream
+     * @param tokenizer
+     *            the tokenizer
+     * @updates file, tokenizer
      */
-    private static void generateElements(String str, Set<Character> charSet) {
-        assert str != null : "Violation of: str is not null";
-        assert charSet != null : "Violation of: charSet is not null";
+    private static void feedLines(SimpleReader file, WordTokenizer tokenizer) {
+        while (!file.atEOS()) {
+            String line = file.nextLine();
+            tokenizer.feedLine(line, 0, line.length());
+        }
+        tokenizer.finish();
+    }
 
-        for (int i = 0; i < str.length(); i++) {
-            if (!charSet.contains(str.charAt(i))) {
-                charSet.add(str.charAt(i));
+    /**
+     * Splitter of decoded text into the lines {@link SimpleReader#nextLine()}
+     * would return, ended by a line feed, a carriage return or both, each fed
+     * to a tokenizer and counted in the metrics of the run.
+     */
+    private static final class LineSplitter {
+
+        /**
+         * The tokenizer the lines are fed to.
+         */
+        private final WordTokenizer tokenizer;
+
+        /**
+         * The metrics the lines are counted in.
+         */
+        private final RunMetrics metrics;
+
+        /**
+         * The start of a line that runs past the text split so far.
+         */
+        private final StringBuilder line = new StringBuilder();
+
+        /**
+         * Whether the last character split was a carriage return, so that a
+         * line feed right after it ends no line.
+         */
+        private boolean afterReturn;
+
+        /**
+         * Constructor.
+         *
+         * @param tokenizer
+         *            the tokenizer the lines are fed to
+         * @param metrics
+         *            the metrics the lines are counted in
+         */
+        LineSplitter(WordTokenizer tokenizer, RunMetrics metrics) {
+            this.tokenizer = tokenizer;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Feeds the line ending with {@code text[start, end)}.
+         *
+         * @param text
+         *            the text
+         * @param start
+         *            the index of the first character
+         * @param end
+         *            the index of the line end
+         */
+        private void endLine(CharSequence text, int start, int end) {
+            this.metrics.addLine();
+            if (this.line.length() == 0) {
+                this.tokenizer.feedLine(text, start, end);
+            } else {
+                this.line.append(text, start, end);
+                this.tokenizer.feedLine(this.line, 0, this.line.length());
+                this.line.setLength(0);
+            }
+        }
+
+        /**
+         * Feeds the lines ended in {@code chars}, between its position and
+         * limit, keeping the start of a line that runs past them.
+         *
+         * @param chars
+         *            the decoded text
+         */
+        void split(CharBuffer chars) {
+            int start = 0;
+            int end = chars.remaining();
+            for (int i = 0; i < end; i++) {
+                char c = chars.charAt(i);
+                if (c == '\n' || c == '\r') {
+                    if (c == '\r' || !this.afterReturn) {
+                        this.endLine(chars, start, i);
+                    }
+                    this.afterReturn = c == '\r';
+                    start = i + 1;
+                } else {
+                    this.afterReturn = false;
+                }
+            }
+            this.line.append(chars, start, end);
+        }
+
+        /**
+         * Feeds the last line if it has no line end, and finishes the
+         * tokenizer.
+         */
+        void finish() {
+            if (this.line.length() > 0) {
+                this.metrics.addLine();
+                this.tokenizer.feedLine(this.line, 0, this.line.length());
+            }
+            this.tokenizer.finish();
+        }
+    }
+
+    /**
+     * Feeds every line of the file {@code inputName} to {@code tokenizer},
+     * recording the bytes and lines read and the time spent reading them in
+     * {@code metrics}. The file is read a buffer at a time rather than a line
+     * at a time, so that the clock is read per buffer.
+     *
+     * @param inputName
+     *            the name of the input file
+     * @param tokenizer
+     *            the tokenizer
+     * @param metrics
+     *            the metrics of the run
+     * @throws IOException
+     *             if the input file cannot be read
+     * @updates tokenizer, metrics
+     */
+    private static void feedLines(String inputName, WordTokenizer tokenizer,
+            RunMetrics metrics) throws IOException {
+        CharsetDecoder decoder = ParallelWordCounter
+                .newDecoder(Charset.defaultCharset());
+        ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+        LineSplitter lines = new LineSplitter(tokenizer, metrics);
+        try (FileChannel channel = FileChannel.open(Paths.get(inputName),
+                StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                long since = System.nanoTime();
+                int n = channel.read(bytes);
+                metrics.time(RunMetrics.Stage.READ, since);
+                endOfInput = n < 0;
+                if (n > 0) {
+                    metrics.addBytes(n);
+                }
+                bytes.flip();
+                CoderResult result = CoderResult.OVERFLOW;
+                while (result.isOverflow()) {
+                    result = decoder.decode(bytes, chars, endOfInput);
+                    chars.flip();
+                    lines.split(chars);
+                    chars.clear();
+                }
+                bytes.compact();
+            }
+            CoderResult result = CoderResult.OVERFLOW;
+            while (result.isOverflow()) {
+                result = decoder.flush(chars);
+                chars.flip();
+                lines.split(chars);
+                chars.clear();
             }
         }
+        lines.finish();
+    }
 
+    /**
+     * Generate a map of words and their occurrences, using
+     * {@link SeparatorSet#DEFAULT_SEPARATORS} as separators.
+     *
+     * @param file
+     *            the input stream
+     * @param word
+     *            the map of words and their occurrences
+     * @updates {@code word}
+     * @ensures <pre>
+     * {@code wordQueue = < >}
+     * </pre>
+     */
+    public static void mapGenerate(SimpleReader file,
+            Map<String, Integer> word) {
+        mapGenerate(file, word, SeparatorSet.defaultSet());
     }
 
     /**
-     * Returns the first "word" (maximal length string of characters not in
-     * {@code separators}) or "separator string" (maximal length string of
-     * characters in {@code separators}) in the given {@code text} starting at
-     * the given {@code position}.
+     * Generate a map of words and their occurrences.
      *
-     * @param text
-     *            the {@code String} from which to get the word or separator
-     *            string
-     * @param position
-     *            the starting index
+     * @param file
+     *            the input stream
+     * @param word
+     *            the map of words and their occurrences
      * @param separators
-     *            the {@code Set} of separator characters
-     * @return the first word or separator string found in {@code text} starting
-     *         at index {@code position}
-     * @requires 0 <= position < |text|
+     *            the separator characters
+     * @updates {@code word}
      * @ensures <pre>
-     * nextWordOrSeparator =
-     *   text[position, position + |nextWordOrSeparator|)  and
-     * if entries(text[position, position + 1)) intersection separators = {}
-     * then
-     *   entries(nextWordOrSeparator) intersection separators = {}  and
-     *   (position + |nextWordOrSeparator| = |text|  or
-     *    entries(text[position, position + |nextWordOrSeparator| + 1))
-     *      intersection separators /= {})
-     * else
-     *   entries(nextWordOrSeparator) is subset of separators  and
-     *   (position + |nextWordOrSeparator| = |text|  or
-     *    entries(text[position, position + |nextWordOrSeparator| + 1))
-     *      is not subset of separators)
+     * {@code wordQueue = < >}
      * </pre>
      */
-    private static String nextWordOrSeparator(String text, int position,
-            Set<Character> separators) {
-        assert text != null : "Violation of: text is not null";
+    public static void mapGenerate(SimpleReader file,
+            Map<String, Integer> word, SeparatorSet separators) {
+        assert file.isOpen() : "Violation of: file is open";
+        assert word != null : "Violation of: word is not null";
         assert separators != null : "Violation of: separators is not null";
-        assert 0 <= position : "Violation of: 0 <= position";
-        assert position < text.length() : "Violation of: position < |text|";
 
-        //
-        String result = "";
-        boolean isSeparator = separators.contains(text.charAt(position));
-        int i = position;
+        WordCountTable table = new WordCountTable();
+        feedLines(file, new WordTokenizer(separators, table));
+        table.toMap(word);
 
-        while (i < text.length()
-                && (isSeparator == separators.contains(text.charAt(i)))) {
-            result += text.charAt(i);
-            i++;
-        }
+    }
 
-        return result;
+    /**
+     * Generate a map of words and their occurrences, gathering
+     * {@code statistics} of the words and the text in the same pass.
+     *
+     * @param file
+     *            the input stream
+     * @param word
+     *            the map of words and their occurrences
+     * @param separators
+     *            the separator characters
+     * @param statistics
+     *            the statistics to gather
+     * @updates {@code word}, {@code statistics}
+     * @ensures <pre>
+     * {@code wordQueue = < >}
+     * </pre>
+     */
+    public static void mapGenerate(SimpleReader file,
+            Map<String, Integer> word, SeparatorSet separators,
+            TextStatistics statistics) {
+        assert file.isOpen() : "Violation of: file is open";
+        assert word != null : "Violation of: word is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert statistics != null : "Violation of: statistics is not null";
 
+        WordCountTable table = new WordCountTable();
+        feedLines(file, new WordTokenizer(separators, statistics.wrap(table),
+                null, statistics.observer()));
+        table.toMap(word);
     }
 
     /**
-     * Generate a map of words and their occurrences.
+     * Generate a map of the words that are not in {@code stopWords} and
+     * occur at least {@code minCount} times, and their occurrences. Stop
+     * words are dropped as they are read and rare words before the map is
+     * built, so neither reaches the map or the sort.
      *
      * @param file
      *            the input stream
      * @param word
      *            the map of words and their occurrences
+     * @param separators
+     *            the separator characters
+     * @param stopWords
+     *            the stop words left out
+     * @param minCount
+     *            the least count of a word kept
      * @updates {@code word}
+     * @requires minCount > 0
      * @ensures <pre>
      * {@code wordQueue = < >}
      * </pre>
      */
     public static void mapGenerate(SimpleReader file,
-            Map<String, Integer> word) {
+            Map<String, Integer> word, SeparatorSet separators,
+            StopWordSet stopWords, int minCount) {
         assert file.isOpen() : "Violation of: file is open";
         assert word != null : "Violation of: word is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert stopWords != null : "Violation of: stopWords is not null";
+        assert minCount > 0 : "Violation of: minCount > 0";
 
-        word.clear();
-        int i = 0; //position
-        Set<Character> separatorSet = new Set1L<Character>();
-
-        //common separators
-        String separators = " ,.?!;:-()[]{}'\"/\\@#$%^&*";
-        generateElements(separators, separatorSet);
-
-        while (!file.atEOS()) {
-            String line = file.nextLine();
-            i = 0;
-            while (i < line.length()) {
-                String word1 = nextWordOrSeparator(line, i, separatorSet);
-                if (!separatorSet.contains(word1.charAt(0))) {
-                    if (word.hasKey(word1)) {
-                        // word1 is in the set
-                        int value = word.value(word1);
-                        word.replaceValue(word1, value + 1);
-                    } else {
-                        // word1 is not in the set
-                        word.add(word1, 1);
-                    }
-                }
-                i += word1.length(); //update position for the next nextWordOrSeparator
-            }
-        }
-
+        WordCountTable table = new WordCountTable();
+        feedLines(file, new WordTokenizer(separators,
+                StopWordSet.wrap(stopWords, table)));
+        table.toMap(word, minCount);
     }
 
     /**
@@ -226,7 +387,11 @@ public final class WordCounter {
     }
 
     /**
-     * Sort the map of words and their occurrences in alphabetical order.
+     * Sort the map of words and their occurrences in alphabetical order. The
+     * entries are copied out once and sorted as an array; with a
+     * {@code WordComparator} itself, not a subclass of it, the words are
+     * compared through precomputed collation keys (see
+     * {@link SortedWordCounts}).
      *
      * @param word
      *            the map of words and their occurrences
@@ -234,10 +399,9 @@ public final class WordCounter {
      *            the comparator of {@code String}s
      * @param wordQueue
      *            the queue of words
-     * @updates {@code keyQueue}
-     * @clear {@code words}
+     * @replaces {@code wordQueue}
      * @ensures <pre>
-     * {@code words = < >}
+     * {@code wordQueue = [the keys of word sorted by order]}
      * </pre>
      */
     public static void sortMap(Map<String, Integer> word,
@@ -246,32 +410,563 @@ public final class WordCounter {
         assert order != null : "Violation of: order is not null";
         assert wordQueue != null : "Violation of: wordQueue is not null";
 
-        Map<String, Integer> temp = word.newInstance();
-        Queue<String> tempQueue = wordQueue.newInstance();
         wordQueue.clear();
+        //a subclass may order words its own way, which the keys do not know
+        if (order.getClass() == WordComparator.class) {
+            SortedWordCounts sorted = SortedWordCounts.alphabetical(word);
+            for (int i = 0; i < sorted.size(); i++) {
+                wordQueue.enqueue(sorted.word(i));
+            }
+        } else {
+            String[] keys = new String[word.size()];
+            int i = 0;
+            for (Pair<String, Integer> pair : word) {
+                keys[i] = pair.key();
+                i++;
+            }
+            Arrays.sort(keys, order);
+            for (String key : keys) {
+                wordQueue.enqueue(key);
+            }
+        }
+    }
 
-        while (word.iterator().hasNext()) {
-            Pair<String, Integer> pair = word.removeAny();// get one word
-            //add the pair to the temp map
-            temp.add(pair.key(), pair.value());
-            //create a queue of words with same order as the map
-            wordQueue.enqueue(pair.key());
+    /**
+     * Hands the words of the file {@code inputName} to {@code sink} on this
+     * thread, through the HTML filter, CJK segmenter and stop words
+     * {@code options} asks for, gathering {@code statistics} on the way.
+     *
+     * @param inputName
+     *            the name of the input file
+     * @param options
+     *            the parsed command line options
+     * @param sink
+     *            the receiver of the words
+     * @param statistics
+     *            the statistics to gather, or {@code null}
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @throws IOException
+     *             if the input file cannot be read
+     */
+    private static void tokenize(String inputName,
+            WordCounterOptions options, WordTokenizer.WordSink sink,
+            TextStatistics statistics, RunMetrics metrics)
+            throws IOException {
+        long since = System.nanoTime();
+        HtmlTextFilter filter = null;
+        if (options.html()) {
+            filter = new HtmlTextFilter();
         }
+        //stop words are dropped innermost, so they are still tokens
+        WordTokenizer.WordSink words = StopWordSet.wrap(options.stopWords(),
+                sink);
+        if (metrics != null) {
+            words = metrics.timed(words);
+        }
+        HtmlTextFilter.TextSink observer = null;
+        if (statistics != null) {
+            words = statistics.wrap(words);
+            observer = statistics.observer();
+        }
+        WordTokenizer tokenizer = new WordTokenizer(options.separators(),
+                CjkSegmenter.wrap(options.dictionary(), words), filter,
+                observer);
+        if (options.mapped()) {
+            MappedInput.tokenize(inputName, Charset.defaultCharset(),
+                    tokenizer, metrics);
+        } else if (metrics != null) {
+            feedLines(inputName, tokenizer, metrics);
+        } else {
+            SimpleReader file = new SimpleReader1L(inputName);
+            feedLines(file, tokenizer);
+            file.close();
+        }
+        if (metrics != null) {
+            metrics.time(RunMetrics.Stage.TOKENIZE, since);
+        }
+    }
 
-        wordQueue.sort(order);
-        while (wordQueue.iterator().hasNext()) {
-            //get one word by alphabetical order
-            String word1 = wordQueue.dequeue();
-            //get the pair of the word from the map
-            Pair<String, Integer> pair = temp.remove(word1);
-            word.add(pair.key(), pair.value());
-            tempQueue.enqueue(word1);
+    /**
+     * Sort the map of words and their occurrences by descending occurrence,
+     * and words with the same occurrence in alphabetical order. The counts
+     * are bucket-sorted, so only the words within each bucket are compared
+     * (see {@link SortedWordCounts#byFrequency(Map)}).
+     *
+     * @param word
+     *            the map of words and their occurrences
+     * @param wordQueue
+     *            the queue of words
+     * @replaces {@code wordQueue}
+     * @ensures <pre>
+     * {@code wordQueue = [the keys of word by descending value]}
+     * </pre>
+     */
+    public static void sortMapByFrequency(Map<String, Integer> word,
+            Queue<String> wordQueue) {
+        assert word != null : "Violation of: words is not null";
+        assert wordQueue != null : "Violation of: wordQueue is not null";
+
+        wordQueue.clear();
+        SortedWordCounts sorted = SortedWordCounts.byFrequency(word);
+        for (int i = 0; i < sorted.size(); i++) {
+            wordQueue.enqueue(sorted.word(i));
         }
-        wordQueue.transferFrom(tempQueue);
     }
 
     /**
-     * Main method.
+     * Counts the words of the file {@code inputName} a line at a time,
+     * writing the position of every word to the concordance file named in
+     * {@code options} as well, and adds the lines to {@code metrics}.
+     *
+     * @param inputName
+     *            the name of the input file
+     * @param options
+     *            the parsed command line options
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @return the table of words and their occurrences
+     * @throws IOException
+     *             if the input file cannot be read or the concordance file
+     *             cannot be written
+     */
+    private static WordCountTable countWithConcordance(String inputName,
+            WordCounterOptions options, RunMetrics metrics)
+            throws IOException {
+        WordCountTable table = new WordCountTable();
+        Concordance.Builder concordance = new Concordance.Builder(table);
+        WordTokenizer tokenizer = new WordTokenizer(options.separators(),
+                CjkSegmenter.wrap(options.dictionary(),
+                        StopWordSet.wrap(options.stopWords(), concordance)));
+        SimpleReader file = new SimpleReader1L(inputName);
+        while (!file.atEOS()) {
+            String line = file.nextLine();
+            if (metrics != null) {
+                metrics.addLine();
+            }
+            concordance.nextLine();
+            tokenizer.feedLine(line, 0, line.length());
+        }
+        tokenizer.finish();
+        file.close();
+        concordance.write(options.concordanceName());
+        return table;
+    }
+
+    /**
+     * Counts the words of the file {@code inputName} the way {@code options}
+     * asks for, on {@code threads} worker threads.
+     *
+     * @param inputName
+     *            the name of the input file
+     * @param options
+     *            the parsed command line options
+     * @param threads
+     *            the number of worker threads
+     * @return the table of words and their occurrences
+     * @throws IOException
+     *             if the input file cannot be read
+     * @requires threads > 0
+     */
+    static WordCountTable countFile(String inputName,
+            WordCounterOptions options, int threads) throws IOException {
+        return countFile(inputName, options, threads, null, null);
+    }
+
+    /**
+     * Counts the words of the file {@code inputName} the way {@code options}
+     * asks for, gathering {@code statistics} in the same pass and recording
+     * the counting in {@code metrics}. With statistics the file is read on
+     * this thread, in order.
+     *
+     * @param inputName
+     *            the name of the input file
+     * @param options
+     *            the parsed command line options
+     * @param threads
+     *            the number of worker threads
+     * @param statistics
+     *            the statistics to gather, or {@code null}
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @return the table of words and their occurrences
+     * @throws IOException
+     *             if the input file cannot be read
+     * @requires threads > 0
+     */
+    static WordCountTable countFile(String inputName,
+            WordCounterOptions options, int threads,
+            TextStatistics statistics, RunMetrics metrics)
+            throws IOException {
+        long since = System.nanoTime();
+        WordCountTable table;
+        WordCountTable counted;
+        //paths that do not tokenize through tokenize(...) are timed whole
+        boolean whole = true;
+        if (options.concordanceName() != null) {
+            table = countWithConcordance(inputName, options, metrics);
+            counted = table;
+        } else if (threads > 1 && statistics == null && !options.html()
+                && options.ngram() == 1
+                && ParallelWordCounter.isAsciiCompatible(
+                        Charset.defaultCharset())) {
+            if (options.sharedTable()) {
+                table = ParallelWordCounter.countShared(inputName,
+                        options.separators(), options.dictionary(),
+                        options.stopWords(), threads, metrics);
+            } else {
+                table = ParallelWordCounter.count(inputName,
+                        options.separators(), options.dictionary(),
+                        options.stopWords(), threads, metrics);
+            }
+            counted = table;
+        } else if (options.ngram() > 1) {
+            NGramCounter counter = new NGramCounter(options.ngram());
+            tokenize(inputName, options, counter, statistics, metrics);
+            table = counter.toTable();
+            counted = counter.vocabulary();
+            whole = false;
+        } else {
+            table = new WordCountTable();
+            tokenize(inputName, options, table, statistics, metrics);
+            counted = table;
+            whole = false;
+        }
+        if (metrics != null) {
+            if (whole) {
+                metrics.time(RunMetrics.Stage.TOKENIZE, since);
+                metrics.addBytes(Files.size(Paths.get(inputName)));
+            }
+            metrics.counted(counted);
+        }
+        return table;
+    }
+
+    /**
+     * Writes the HTML report of {@code table} to the file {@code outputName},
+     * with the words selected and ordered the way {@code options} asks for.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @param options
+     *            the parsed command line options
+     * @param inputName
+     *            the name the report is titled with
+     * @param outputName
+     *            the name of the output file
+     * @throws IOException
+     *             if the output file cannot be written
+     */
+    static void report(WordCountTable table, WordCounterOptions options,
+            String inputName, String outputName) throws IOException {
+        report(table, options, inputName, outputName, null, null);
+    }
+
+    /**
+     * Writes the HTML report of {@code table} to the file {@code outputName},
+     * with the words selected and ordered the way {@code options} asks for,
+     * followed by a section for each of {@code statistics}, recording the
+     * time spent sorting and writing in {@code metrics}. If {@code options}
+     * asks for pages, {@code outputName} is the index of the pages. The
+     * total is that of every word of {@code table}, reported or not.
+     *
+     * @param table
+     *            the table of words and their occurrences
+     * @param options
+     *            the parsed command line options
+     * @param inputName
+     *            the name the report is titled with
+     * @param outputName
+     *            the name of the output file
+     * @param statistics
+     *            the statistics to report, or {@code null}
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @throws IOException
+     *             if the output file cannot be written
+     */
+    static void report(WordCountTable table, WordCounterOptions options,
+            String inputName, String outputName, TextStatistics statistics,
+            RunMetrics metrics) throws IOException {
+        long since = System.nanoTime();
+        SortedWordCounts sorted;
+        if (options.top() > 0) {
+            sorted = TopKWords.select(table, options.top(),
+                    new WordComparator(), options.minCount());
+        } else if (options.byFrequency()) {
+            sorted = SortedWordCounts.byFrequency(table, options.minCount());
+        } else {
+            sorted = SortedWordCounts.alphabetical(table, options.minCount());
+        }
+        if (metrics != null) {
+            metrics.time(RunMetrics.Stage.SORT, since);
+        }
+        since = System.nanoTime();
+        if (options.pageSize() > 0) {
+            PagedReportWriter.write(sorted, table.totalWords(), inputName,
+                    outputName, options.pageSize(), options.threads(),
+                    statistics);
+        } else {
+            try (FileChannel output = FileChannel.open(Paths.get(outputName),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                html(output, sorted, table.totalWords(), inputName,
+                        statistics);
+            }
+        }
+        if (metrics != null) {
+            metrics.time(RunMetrics.Stage.RENDER, since);
+        }
+    }
+
+    /**
+     * Counts the words of the input named in {@code options} approximately
+     * and writes the HTML report of the most frequent ones, with the error
+     * bounds of their counts and the estimated number of distinct words.
+     *
+     * @param options
+     *            the parsed command line options
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written
+     */
+    private static void countApproximately(WordCounterOptions options,
+            RunMetrics metrics) throws IOException {
+        ApproximateWordCounter counter = new ApproximateWordCounter(
+                options.approximateMemory(), options.heavyHitters());
+        TextStatistics statistics = options.statistics();
+        tokenize(options.inputName(), options, counter, statistics, metrics);
+        long since = System.nanoTime();
+        SortedWordCounts sorted = TopKWords.select(counter.heavyHitters(),
+                options.heavyHitters(), new WordComparator(),
+                options.minCount());
+        CountMinSketch sketch = counter.sketch();
+        HyperLogLog distinct = counter.distinct();
+        if (metrics != null) {
+            metrics.time(RunMetrics.Stage.SORT, since);
+            metrics.setDistinctWords(distinct.estimate());
+        }
+        since = System.nanoTime();
+        try (FileChannel output = FileChannel.open(
+                Paths.get(options.outputName()), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            HtmlReportWriter report = new HtmlReportWriter(output,
+                    Charset.defaultCharset());
+            report.begin(options.inputName(), true);
+            for (int i = 0; i < sorted.size(); i++) {
+                report.row(sorted.word(i), sorted.count(i),
+                        sketch.errorBound());
+            }
+            report.summary(counter.totalWords());
+            report.paragraph("Number of distinct words: about "
+                    + distinct.estimate() + " (standard error "
+                    + percent(distinct.standardError()) + ")");
+            report.paragraph("Counts are approximate, from a Count-Min"
+                    + " Sketch of " + sketch.depth() + " x " + sketch.width()
+                    + " counters: each is at least the true count and, with"
+                    + " probability " + percent(sketch.confidence())
+                    + ", overestimates it by at most " + sketch.errorBound()
+                    + ".");
+            if (statistics != null) {
+                statistics.write(report);
+            }
+            report.end();
+        }
+        if (metrics != null) {
+            metrics.time(RunMetrics.Stage.RENDER, since);
+        }
+    }
+
+    /**
+     * Counts the words of the input named in {@code options} within the
+     * memory budget of {@code options}, spilling sorted runs of counts to
+     * temporary files, and streams the merged runs into the alphabetical HTML
+     * report. The merge is timed as rendering, since it streams into it.
+     *
+     * @param options
+     *            the parsed command line options
+     * @param metrics
+     *            the metrics of the run, or {@code null}
+     * @throws IOException
+     *             if the input file cannot be read, or a run file or the
+     *             output file cannot be written
+     */
+    private static void countExternally(WordCounterOptions options,
+            RunMetrics metrics) throws IOException {
+        try (ExternalWordCounter counter = new ExternalWordCounter(
+                options.maxMemory(),
+                Paths.get(System.getProperty("java.io.tmpdir")))) {
+            TextStatistics statistics = options.statistics();
+            try {
+                tokenize(options.inputName(), options, counter, statistics,
+                        metrics);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long since = System.nanoTime();
+            long distinct = 0;
+            long totalWords = 0;
+            try (ExternalWordCounter.Merge merge = counter.merge();
+                    FileChannel output = FileChannel.open(
+                            Paths.get(options.outputName()),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE)) {
+                HtmlReportWriter report = new HtmlReportWriter(output,
+                        Charset.defaultCharset());
+                report.begin(options.inputName());
+                while (merge.next()) {
+                    if (merge.count() >= options.minCount()) {
+                        report.row(merge.word(), merge.count());
+                    }
+                    distinct++;
+                    totalWords += merge.count();
+                }
+                //the total counts the rare words left out of the rows too
+                report.summary(totalWords);
+                if (statistics != null) {
+                    statistics.write(report);
+                }
+                report.end();
+            }
+            if (metrics != null) {
+                metrics.time(RunMetrics.Stage.RENDER, since);
+                metrics.setDistinctWords(distinct);
+            }
+        }
+    }
+
+    /**
+     * Counts the words of the input named in {@code options} with
+     * {@code index} and keeps counting them as the input grows: each time it
+     * changes, only the appended bytes are tokenized and the report is
+     * regenerated, at most once per debounce interval. The report is
+     * replaced atomically, so a reader never sees half of it. Runs until the
+     * thread is interrupted.
+     *
+     * @param options
+     *            the parsed command line options
+     * @param index
+     *            the index the counts are kept in, saved after every report
+     *            if {@code options} names an index file
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written
+     */
+    private static void watch(WordCounterOptions options, CountIndex index)
+            throws IOException {
+        Path input = Paths.get(options.inputName());
+        Path output = Paths.get(options.outputName());
+        Path temporary = Paths.get(options.outputName() + ".tmp");
+        //watch before the first count, so no append is missed
+        try (FileWatcher watcher = new FileWatcher(input,
+                options.debounceMillis())) {
+            boolean watching = true;
+            while (watching) {
+                //a rotated input is counted again once it is recreated
+                if (Files.exists(input)) {
+                    report(index.count(options.inputName()), options,
+                            options.inputName(), temporary.toString());
+                    Files.move(temporary, output,
+                            StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    if (options.indexName() != null) {
+                        index.save(options.indexName());
+                    }
+                }
+                try {
+                    watcher.awaitChange(0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    watching = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns {@code fraction} as a percentage with two decimals.
+     *
+     * @param fraction
+     *            the fraction
+     * @return the percentage, followed by "%"
+     */
+    private static String percent(double fraction) {
+        final double hundred = 100;
+        return String.format(Locale.ROOT, "%.2f%%", fraction * hundred);
+    }
+
+    /**
+     * Counts the words of the input named in {@code options} and writes the
+     * HTML report, or the batch of reports, named in {@code options}, and the
+     * metrics of the run if {@code options} names a metrics file.
+     *
+     * @param options
+     *            the parsed command line options
+     * @throws IOException
+     *             if an input file cannot be read or an output file cannot
+     *             be written
+     */
+    static void count(WordCounterOptions options) throws IOException {
+        CountIndex index = null;
+        if (options.indexName() != null) {
+            index = CountIndex.load(options.indexName(), options.separators(),
+                    options.dictionary(), Charset.defaultCharset());
+        }
+        RunMetrics metrics = null;
+        if (options.metricsName() != null) {
+            metrics = new RunMetrics(options.inputName(),
+                    Charset.defaultCharset());
+        }
+        if (options.batch()) {
+            BatchWordCounter.run(options, index);
+        } else if (options.watch()) {
+            if (index == null) {
+                index = new CountIndex(options.separators(),
+                        options.dictionary(), Charset.defaultCharset());
+            }
+            watch(options, index);
+        } else if (options.approximateMemory() > 0) {
+            countApproximately(options, metrics);
+        } else if (options.maxMemory() > 0) {
+            countExternally(options, metrics);
+        } else {
+            WordCountTable table;
+            TextStatistics statistics = options.statistics();
+            if (index != null) {
+                long since = System.nanoTime();
+                long bytes = index.bytesCounted();
+                table = index.count(options.inputName(), metrics);
+                if (metrics != null) {
+                    metrics.time(RunMetrics.Stage.TOKENIZE, since);
+                    metrics.addBytes(index.bytesCounted() - bytes);
+                    metrics.counted(table);
+                }
+            } else {
+                table = countFile(options.inputName(), options,
+                        options.threads(), statistics, metrics);
+            }
+            report(table, options, options.inputName(),
+                    options.outputName(), statistics, metrics);
+        }
+        if (options.indexName() != null) {
+            index.save(options.indexName());
+        }
+        if (metrics != null) {
+            metrics.finish();
+            Files.write(Paths.get(options.metricsName()),
+                    (metrics.toJson() + "\n")
+                            .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Main method. With no arguments the file names are prompted for;
+     * otherwise see {@link WordCounterOptions#usage()}.
      *
      * @param args
      *            the command line arguments
@@ -279,25 +974,30 @@ public final class WordCounter {
     public static void main(String[] args) {
         SimpleReader in = new SimpleReader1L();
         SimpleWriter out = new SimpleWriter1L();
-        Map<String, Integer> word = new Map1L<String, Integer>();
-        Queue<String> wordQueue = new Queue1L<String>();
-        Comparator<String> order = new WordComparator();
 
-        out.print("Please enter the name of the input file(included file): ");
-        String fileName = in.nextLine();
-        SimpleReader file = new SimpleReader1L(fileName);
-        //users should type "data/" and ".txt" in the input file name
-        out.print("Please enter the name of the output file: ");
-        SimpleWriter output = new SimpleWriter1L(in.nextLine());
+        String[] commandLine = args;
+        if (commandLine.length == 0) {
+            out.print("Please enter the name of the input file"
+                    + "(included file): ");
+            String fileName = in.nextLine();
+            //users should type "data/" and ".txt" in the input file name
+            out.print("Please enter the name of the output file: ");
+            commandLine = new String[] { fileName, in.nextLine() };
+        }
 
-        mapGenerate(file, word);
-        sortMap(word, order, wordQueue);
-        html(file, output, word, wordQueue, fileName);
+        try {
+            count(WordCounterOptions.parse(commandLine));
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            out.println(WordCounterOptions.usage());
+        } catch (IOException e) {
+            out.println("I/O error: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            out.println(e.getMessage());
+        }
 
         in.close();
         out.close();
-        file.close();
-        output.close();
 
     }
 }
@@ -0,0 +1,874 @@
+/**
+ * Command-line options of {@code WordCounter}.
+ *
+ * <pre>
+ * WordCounter [options] input output
+ * WordCounter --batch [options] inputs directory
+ *
+ * --separators SPEC        separator characters, see {@code SeparatorSet}
+ * --separators-file FILE   read the separator spec from FILE, one per line
+ * --threads N              count on N worker threads (default 1, or one
+ *                          per processor in batch and paged mode without
+ *                          --mmap)
+ * --shared-table           with several threads, count into one lock-free
+ *                          table instead of merging a table per range
+ * --mmap                   read the input through a memory-mapped buffer
+ * --top K                  report only the K most frequent words
+ * --stop-words FILE        leave the words of FILE, one per line, out of
+ *                          the counts, ignoring case
+ * --min-count N            report only the words occurring at least N times
+ * --page-size N            split the report into pages of N words, written
+ *                          in parallel, with output as the index of the
+ *                          pages
+ * --batch                  count every file of the directory or glob
+ *                          inputs concurrently, writing one report per
+ *                          file and an aggregate report into directory
+ * --index FILE             count incrementally: keep the counts in the
+ *                          index FILE and read only what was appended to
+ *                          the inputs since it was saved
+ * --cjk                    segment runs of Chinese and Japanese characters,
+ *                          into bigrams unless a dictionary is given
+ * --cjk-dict FILE          segment CJK runs by maximum matching against
+ *                          the dictionary FILE, one word per line
+ * --html                   count only the visible text of HTML input,
+ *                          skipping markup and decoding entities
+ * --approximate SIZE       count approximately in SIZE bytes (suffix K, M
+ *                          or G allowed), reporting the K most frequent
+ *                          words (default 1000) with error bounds
+ * --max-memory SIZE        keep at most about SIZE bytes of counts in
+ *                          memory, spilling sorted runs to temporary files
+ *                          and merging them into the report
+ * --ngram N                count sequences of N consecutive words instead
+ *                          of single words, for N up to 3
+ * --by-frequency           report every word by descending count instead
+ *                          of in alphabetical order
+ * --concordance FILE       also write where every word occurs to FILE, for
+ *                          lookups with {@code ConcordanceQuery}
+ * --stats LIST             also report statistics of the text gathered in
+ *                          the same pass: lines, lengths, characters or a
+ *                          comma-separated list of them, or all
+ * --watch                  keep running, counting what is appended to the
+ *                          input and regenerating the report as it grows
+ * --debounce MS            with --watch, regenerate the report at most once
+ *                          every MS milliseconds (default 1000)
+ * --metrics FILE           also write counters and per-stage timings of the
+ *                          run to FILE as JSON
+ * </pre>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class WordCounterOptions {
+
+    /**
+     * Shift of a size given in units of K (2^10 bytes).
+     */
+    private static final int KILO_SHIFT = 10;
+
+    /**
+     * Shift of a size given in units of M (2^20 bytes).
+     */
+    private static final int MEGA_SHIFT = 20;
+
+    /**
+     * Shift of a size given in units of G (2^30 bytes).
+     */
+    private static final int GIGA_SHIFT = 30;
+
+    /**
+     * Default debounce interval of watch mode, in milliseconds.
+     */
+    public static final int DEFAULT_DEBOUNCE_MILLIS = 1000;
+
+    /**
+     * Name of the input file.
+     */
+    private String inputName;
+
+    /**
+     * Name of the output file.
+     */
+    private String outputName;
+
+    /**
+     * Separator characters.
+     */
+    private SeparatorSet separators;
+
+    /**
+     * Number of worker threads, or 0 until the default is chosen.
+     */
+    private int threads;
+
+    /**
+     * Whether worker threads count into one shared table.
+     */
+    private boolean sharedTable;
+
+    /**
+     * Whether to read the input through a memory-mapped buffer.
+     */
+    private boolean mapped;
+
+    /**
+     * Number of most frequent words to report, or 0 to report all words.
+     */
+    private int top;
+
+    /**
+     * Whether the input names a batch of files and the output a directory.
+     */
+    private boolean batch;
+
+    /**
+     * Name of the count index file, or {@code null} to count from scratch.
+     */
+    private String indexName;
+
+    /**
+     * CJK segmentation dictionary, or {@code null} for no segmentation.
+     */
+    private DoubleArrayTrie dictionary;
+
+    /**
+     * Stop words left out of the counts, or {@code null} for none.
+     */
+    private StopWordSet stopWords;
+
+    /**
+     * Least count of a word reported.
+     */
+    private int minCount = 1;
+
+    /**
+     * Number of words per page of a paginated report, or 0 for one page.
+     */
+    private int pageSize;
+
+    /**
+     * Whether the input is HTML whose markup is skipped.
+     */
+    private boolean html;
+
+    /**
+     * Memory budget of approximate counting, in bytes, or 0 to count
+     * exactly.
+     */
+    private long approximateMemory;
+
+    /**
+     * Memory budget of the count table before it is spilled to disk, in
+     * bytes, or 0 to keep every count in memory.
+     */
+    private long maxMemory;
+
+    /**
+     * Number of words per counted n-gram, 1 for single words.
+     */
+    private int ngram = 1;
+
+    /**
+     * Whether every word is reported by descending count.
+     */
+    private boolean byFrequency;
+
+    /**
+     * Name of the concordance file to write, or {@code null}.
+     */
+    private String concordanceName;
+
+    /**
+     * Comma-separated names of the statistics to report, or {@code null}.
+     */
+    private String statisticsSpec;
+
+    /**
+     * Whether to keep counting the input as it grows.
+     */
+    private boolean watch;
+
+    /**
+     * Debounce interval of watch mode, in milliseconds.
+     */
+    private int debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+
+    /**
+     * Name of the file the metrics of the run are written to, or
+     * {@code null}.
+     */
+    private String metricsName;
+
+    /**
+     * Private constructor; use {@link #parse(String[])}.
+     */
+    private WordCounterOptions() {
+    }
+
+    /**
+     * Returns the usage message.
+     *
+     * @return the usage message
+     */
+    public static String usage() {
+        return "Usage: WordCounter [options] input output\n"
+                + "       WordCounter --batch [options] inputs directory\n"
+                + "  --separators SPEC       separator characters; \\s, \\t,"
+                + " \\xXXXX and \\p{P}-style\n"
+                + "                          Unicode categories are allowed\n"
+                + "  --separators-file FILE  read the separator spec from"
+                + " FILE\n"
+                + "  --threads N             count on N worker threads\n"
+                + "  --shared-table          with several threads, count"
+                + " into one lock-free table\n"
+                + "  --mmap                  read the input through a"
+                + " memory-mapped buffer\n"
+                + "  --top K                 report only the K most frequent"
+                + " words\n"
+                + "  --stop-words FILE       leave the words of FILE out of"
+                + " the counts\n"
+                + "  --min-count N           report only the words occurring"
+                + " at least N times\n"
+                + "  --page-size N           split the report into pages of"
+                + " N words, with\n"
+                + "                          output as the index of the"
+                + " pages\n"
+                + "  --batch                 count every file of the"
+                + " directory or glob inputs,\n"
+                + "                          writing one report per file and"
+                + " an aggregate\n"
+                + "                          report into directory\n"
+                + "  --index FILE            count incrementally, keeping the"
+                + " counts in FILE\n"
+                + "  --cjk                   segment Chinese and Japanese"
+                + " text into bigrams\n"
+                + "  --cjk-dict FILE         segment Chinese and Japanese"
+                + " text with the\n"
+                + "                          dictionary FILE, one word per"
+                + " line\n"
+                + "  --html                  count only the visible text of"
+                + " HTML input\n"
+                + "  --approximate SIZE      count approximately in SIZE"
+                + " bytes (K, M or G\n"
+                + "                          suffix allowed), with error"
+                + " bounds\n"
+                + "  --max-memory SIZE       keep at most about SIZE bytes of"
+                + " counts in memory,\n"
+                + "                          spilling sorted runs to"
+                + " temporary files\n"
+                + "  --ngram N               count sequences of N words,"
+                + " N up to 3\n"
+                + "  --by-frequency          report every word by"
+                + " descending count\n"
+                + "  --concordance FILE      also write the positions of"
+                + " every word to FILE\n"
+                + "  --stats LIST            also report text statistics:"
+                + " lines, lengths,\n"
+                + "                          characters, a comma-separated"
+                + " list of them, or all\n"
+                + "  --watch                 keep counting what is appended"
+                + " to the input,\n"
+                + "                          regenerating the report as it"
+                + " grows\n"
+                + "  --debounce MS           with --watch, regenerate at most"
+                + " every MS\n"
+                + "                          milliseconds (default 1000)\n"
+                + "  --metrics FILE          also write counters and stage"
+                + " timings to FILE\n"
+                + "                          as JSON";
+    }
+
+    /**
+     * Returns the value following the option at {@code args[i]}.
+     *
+     * @param args
+     *            the command line arguments
+     * @param i
+     *            the index of the option
+     * @return {@code args[i + 1]}
+     * @throws IllegalArgumentException
+     *             if there is no value
+     */
+    private static String value(String[] args, int i) {
+        if (i + 1 >= args.length) {
+            throw new IllegalArgumentException(
+                    "Missing value for option " + args[i]);
+        }
+        return args[i + 1];
+    }
+
+    /**
+     * Returns the positive integer value following the option at
+     * {@code args[i]}.
+     *
+     * @param args
+     *            the command line arguments
+     * @param i
+     *            the index of the option
+     * @return the value of {@code args[i + 1]}
+     * @throws IllegalArgumentException
+     *             if there is no value or it is not a positive integer
+     */
+    private static int positiveValue(String[] args, int i) {
+        int result;
+        try {
+            result = Integer.parseInt(value(args, i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Expected a number after " + args[i], e);
+        }
+        if (result <= 0) {
+            throw new IllegalArgumentException(
+                    "Expected a positive number after " + args[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the memory size following the option at {@code args[i]}: a
+     * positive number of bytes, optionally followed by K, M or G for units
+     * of 2^10, 2^20 or 2^30 bytes.
+     *
+     * @param args
+     *            the command line arguments
+     * @param i
+     *            the index of the option
+     * @return the size in bytes
+     * @throws IllegalArgumentException
+     *             if there is no value or it is not a positive size
+     */
+    private static long sizeValue(String[] args, int i) {
+        String size = value(args, i);
+        int shift = 0;
+        switch (size.isEmpty() ? ' '
+                : Character.toUpperCase(size.charAt(size.length() - 1))) {
+            case 'K':
+                shift = KILO_SHIFT;
+                break;
+            case 'M':
+                shift = MEGA_SHIFT;
+                break;
+            case 'G':
+                shift = GIGA_SHIFT;
+                break;
+            default:
+                break;
+        }
+        if (shift > 0) {
+            size = size.substring(0, size.length() - 1);
+        }
+        long result;
+        try {
+            result = Long.parseLong(size);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Expected a size after " + args[i], e);
+        }
+        if (result <= 0 || result > Long.MAX_VALUE >> shift) {
+            throw new IllegalArgumentException(
+                    "Expected a positive size after " + args[i]);
+        }
+        return result << shift;
+    }
+
+    /**
+     * Parses the given command line arguments.
+     *
+     * @param args
+     *            the command line arguments
+     * @return the parsed options
+     * @throws IllegalArgumentException
+     *             if {@code args} is not a valid command line
+     */
+    public static WordCounterOptions parse(String[] args) {
+        assert args != null : "Violation of: args is not null";
+
+        WordCounterOptions result = new WordCounterOptions();
+        int positional = 0;
+        int i = 0;
+        while (i < args.length) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                if (positional == 0) {
+                    result.inputName = arg;
+                } else if (positional == 1) {
+                    result.outputName = arg;
+                } else {
+                    throw new IllegalArgumentException(
+                            "Unexpected argument " + arg);
+                }
+                positional++;
+                i++;
+            } else {
+                //options take a value unless they are flags
+                int consumed = 2;
+                switch (arg) {
+                    case "--separators":
+                        result.separators = SeparatorSet
+                                .fromSpec(value(args, i));
+                        break;
+                    case "--separators-file":
+                        result.separators = SeparatorSet
+                                .fromFile(value(args, i));
+                        break;
+                    case "--threads":
+                        result.threads = positiveValue(args, i);
+                        break;
+                    case "--shared-table":
+                        result.sharedTable = true;
+                        consumed = 1;
+                        break;
+                    case "--mmap":
+                        result.mapped = true;
+                        consumed = 1;
+                        break;
+                    case "--top":
+                        result.top = positiveValue(args, i);
+                        break;
+                    case "--batch":
+                        result.batch = true;
+                        consumed = 1;
+                        break;
+                    case "--index":
+                        result.indexName = value(args, i);
+                        break;
+                    case "--cjk":
+                        if (result.dictionary == null) {
+                            result.dictionary = DoubleArrayTrie.of();
+                        }
+                        consumed = 1;
+                        break;
+                    case "--html":
+                        result.html = true;
+                        consumed = 1;
+                        break;
+                    case "--approximate":
+                        result.approximateMemory = sizeValue(args, i);
+                        break;
+                    case "--max-memory":
+                        result.maxMemory = sizeValue(args, i);
+                        break;
+                    case "--ngram":
+                        result.ngram = positiveValue(args, i);
+                        if (result.ngram > NGramCounter.MAX_N) {
+                            throw new IllegalArgumentException(
+                                    "Expected at most " + NGramCounter.MAX_N
+                                            + " after " + arg);
+                        }
+                        break;
+                    case "--by-frequency":
+                        result.byFrequency = true;
+                        consumed = 1;
+                        break;
+                    case "--concordance":
+                        result.concordanceName = value(args, i);
+                        break;
+                    case "--stats":
+                        result.statisticsSpec = value(args, i);
+                        TextStatistics.of(result.statisticsSpec);
+                        break;
+                    case "--watch":
+                        result.watch = true;
+                        consumed = 1;
+                        break;
+                    case "--debounce":
+                        result.debounceMillis = positiveValue(args, i);
+                        break;
+                    case "--metrics":
+                        result.metricsName = value(args, i);
+                        break;
+                    case "--stop-words":
+                        result.stopWords = StopWordSet
+                                .fromFile(value(args, i));
+                        break;
+                    case "--min-count":
+                        result.minCount = positiveValue(args, i);
+                        break;
+                    case "--page-size":
+                        result.pageSize = positiveValue(args, i);
+                        break;
+                    case "--cjk-dict":
+                        result.dictionary = DoubleArrayTrie
+                                .fromFile(value(args, i));
+                        break;
+                    default:
+                        throw new IllegalArgumentException(
+                                "Unknown option " + arg);
+                }
+                i += consumed;
+            }
+        }
+        if (positional < 2) {
+            throw new IllegalArgumentException(
+                    "Both an input and an output file are required");
+        }
+        if (result.html && result.indexName != null) {
+            throw new IllegalArgumentException(
+                    "--html cannot be combined with --index");
+        }
+        if (result.approximateMemory > 0
+                && (result.batch || result.indexName != null)) {
+            throw new IllegalArgumentException("--approximate cannot be"
+                    + " combined with --batch or --index");
+        }
+        if (result.maxMemory > 0 && (result.batch
+                || result.indexName != null || result.approximateMemory > 0
+                || result.top > 0)) {
+            throw new IllegalArgumentException("--max-memory cannot be"
+                    + " combined with --batch, --index, --approximate or"
+                    + " --top");
+        }
+        if (result.sharedTable && (result.batch || result.indexName != null
+                || result.watch || result.approximateMemory > 0
+                || result.maxMemory > 0 || result.ngram > 1
+                || result.statisticsSpec != null || result.html
+                || result.concordanceName != null)) {
+            throw new IllegalArgumentException("--shared-table cannot be"
+                    + " combined with --batch, --index, --watch,"
+                    + " --approximate, --max-memory, --ngram, --stats,"
+                    + " --html or --concordance");
+        }
+        if (result.mapped && (result.batch || result.indexName != null
+                || result.threads > 1)) {
+            throw new IllegalArgumentException("--mmap cannot be combined"
+                    + " with --batch, --index or --threads");
+        }
+        if (result.concordanceName != null && (result.batch || result.html
+                || result.indexName != null || result.approximateMemory > 0
+                || result.maxMemory > 0 || result.ngram > 1 || result.mapped
+                || result.threads > 1)) {
+            throw new IllegalArgumentException("--concordance cannot be"
+                    + " combined with --batch, --html, --index,"
+                    + " --approximate, --max-memory, --ngram, --mmap or"
+                    + " --threads");
+        }
+        if (result.statisticsSpec != null && (result.batch
+                || result.indexName != null || result.ngram > 1
+                || result.concordanceName != null)) {
+            throw new IllegalArgumentException("--stats cannot be combined"
+                    + " with --batch, --index, --ngram or --concordance");
+        }
+        if (result.watch && (result.batch || result.html
+                || result.approximateMemory > 0 || result.maxMemory > 0
+                || result.ngram > 1 || result.concordanceName != null
+                || result.statisticsSpec != null)) {
+            throw new IllegalArgumentException("--watch cannot be combined"
+                    + " with --batch, --html, --approximate, --max-memory,"
+                    + " --ngram, --concordance or --stats");
+        }
+        if (result.stopWords != null
+                && (result.indexName != null || result.watch)) {
+            throw new IllegalArgumentException("--stop-words cannot be"
+                    + " combined with --index or --watch");
+        }
+        if (result.pageSize > 0 && (result.batch || result.watch
+                || result.approximateMemory > 0 || result.maxMemory > 0)) {
+            throw new IllegalArgumentException("--page-size cannot be"
+                    + " combined with --batch, --watch, --approximate or"
+                    + " --max-memory");
+        }
+        if (result.metricsName != null && (result.batch || result.watch)) {
+            throw new IllegalArgumentException(
+                    "--metrics cannot be combined with --batch or --watch");
+        }
+        if (result.byFrequency && result.maxMemory > 0) {
+            throw new IllegalArgumentException(
+                    "--by-frequency cannot be combined with --max-memory");
+        }
+        if (result.ngram > 1 && (result.indexName != null
+                || result.approximateMemory > 0 || result.maxMemory > 0)) {
+            throw new IllegalArgumentException("--ngram cannot be combined"
+                    + " with --index, --approximate or --max-memory");
+        }
+        if (result.approximateMemory > 0 && result.approximateMemory
+                < ApproximateWordCounter.minimumMemory(result.heavyHitters())) {
+            throw new IllegalArgumentException("--approximate needs at least "
+                    + ApproximateWordCounter.minimumMemory(
+                            result.heavyHitters())
+                    + " bytes to keep " + result.heavyHitters() + " words");
+        }
+        if (result.approximateMemory > ApproximateWordCounter
+                .maximumMemory(result.heavyHitters())) {
+            throw new IllegalArgumentException("--approximate can use at most "
+                    + ApproximateWordCounter.maximumMemory(
+                            result.heavyHitters())
+                    + " bytes to keep " + result.heavyHitters() + " words");
+        }
+        if (result.separators == null) {
+            result.separators = SeparatorSet.defaultSet();
+        }
+        if (result.threads == 0) {
+            result.threads = 1;
+            //a mapped input is read on one thread, pages and all
+            if (result.batch || (result.pageSize > 0 && !result.mapped)) {
+                result.threads = Runtime.getRuntime().availableProcessors();
+            }
+        }
+        if (result.sharedTable && result.threads == 1) {
+            throw new IllegalArgumentException(
+                    "--shared-table needs --threads above 1");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name of the input file.
+     *
+     * @return the input file name
+     */
+    public String inputName() {
+        return this.inputName;
+    }
+
+    /**
+     * Returns the name of the output file.
+     *
+     * @return the output file name
+     */
+    public String outputName() {
+        return this.outputName;
+    }
+
+    /**
+     * Returns the separator characters.
+     *
+     * @return the separators
+     */
+    public SeparatorSet separators() {
+        return this.separators;
+    }
+
+    /**
+     * Returns the number of worker threads to count with.
+     *
+     * @return the number of threads
+     */
+    public int threads() {
+        return this.threads;
+    }
+
+    /**
+     * Reports whether several worker threads count into one
+     * {@link ConcurrentWordCountTable} rather than into a table per range
+     * that are then merged.
+     *
+     * @return true iff the workers share a table
+     */
+    public boolean sharedTable() {
+        return this.sharedTable;
+    }
+
+    /**
+     * Reports whether to read the input through a memory-mapped buffer.
+     *
+     * @return true iff the input is to be memory-mapped
+     */
+    public boolean mapped() {
+        return this.mapped;
+    }
+
+    /**
+     * Returns the number of most frequent words to report, or 0 if every
+     * word is to be reported.
+     *
+     * @return the number of words to report, or 0
+     */
+    public int top() {
+        return this.top;
+    }
+
+    /**
+     * Reports whether the input names a batch of files, given as a directory
+     * or a glob, and the output the directory their reports are written to.
+     *
+     * @return true iff in batch mode
+     */
+    public boolean batch() {
+        return this.batch;
+    }
+
+    /**
+     * Returns the name of the count index file, or {@code null} if the input
+     * is to be counted from scratch.
+     *
+     * @return the index file name, or {@code null}
+     */
+    public String indexName() {
+        return this.indexName;
+    }
+
+    /**
+     * Returns the dictionary CJK runs are segmented with, or {@code null} if
+     * they are not segmented. The dictionary is empty if only bigrams are to
+     * be counted.
+     *
+     * @return the dictionary, or {@code null}
+     */
+    public DoubleArrayTrie dictionary() {
+        return this.dictionary;
+    }
+
+    /**
+     * Returns the stop words, which are left out of the counts as they are
+     * counted, or {@code null} if every word is counted. They are loaded
+     * once, when the options are parsed.
+     *
+     * @return the stop words, or {@code null}
+     */
+    public StopWordSet stopWords() {
+        return this.stopWords;
+    }
+
+    /**
+     * Returns the least number of times a word must occur to be reported;
+     * rarer words are dropped before the words are sorted.
+     *
+     * @return the least count, at least 1
+     */
+    public int minCount() {
+        return this.minCount;
+    }
+
+    /**
+     * Returns the number of words per page of a paginated report, whose
+     * output file is the index of its pages, or 0 if the report is one
+     * page.
+     *
+     * @return the page size, or 0
+     */
+    public int pageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Reports whether the input is HTML of which only the visible text is
+     * counted. HTML is always counted on one thread, since the input cannot
+     * be cut safely without knowing where the markup is.
+     *
+     * @return true iff markup is skipped
+     */
+    public boolean html() {
+        return this.html;
+    }
+
+    /**
+     * Returns the memory budget of approximate counting, in bytes, or 0 if
+     * the input is counted exactly. Approximate counting always runs on one
+     * thread.
+     *
+     * @return the memory budget, or 0
+     */
+    public long approximateMemory() {
+        return this.approximateMemory;
+    }
+
+    /**
+     * Returns the memory budget of the count table, in bytes, beyond which
+     * counts are spilled to disk, or 0 if every count is kept in memory.
+     * Spilled counting always runs on one thread and reports every word in
+     * alphabetical order.
+     *
+     * @return the memory budget, or 0
+     */
+    public long maxMemory() {
+        return this.maxMemory;
+    }
+
+    /**
+     * Returns the number of consecutive words counted together, 1 if single
+     * words are counted. N-grams are always counted on one thread, so that
+     * none is lost where the input would be cut.
+     *
+     * @return the n-gram length
+     */
+    public int ngram() {
+        return this.ngram;
+    }
+
+    /**
+     * Reports whether every word is reported by descending count, and words
+     * with the same count alphabetically, rather than all in alphabetical
+     * order. With {@link #top()} the report is in that order anyway.
+     *
+     * @return true iff the report is ordered by frequency
+     */
+    public boolean byFrequency() {
+        return this.byFrequency;
+    }
+
+    /**
+     * Returns the name of the concordance file to write along with the
+     * report, or {@code null} if none is to be written. The input is then
+     * read a line at a time on one thread, so that every position is known.
+     *
+     * @return the concordance file name, or {@code null}
+     */
+    public String concordanceName() {
+        return this.concordanceName;
+    }
+
+    /**
+     * Returns new, empty statistics to gather along with the counts, or
+     * {@code null} if none are to be reported. Statistics of the raw text
+     * need it read in order, so the input is then counted on one thread.
+     *
+     * @return the statistics, or {@code null}
+     */
+    public TextStatistics statistics() {
+        TextStatistics result = null;
+        if (this.statisticsSpec != null) {
+            result = TextStatistics.of(this.statisticsSpec);
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether to keep running after the first report, counting only
+     * what is appended to the input and regenerating the report as it grows.
+     * The counts are kept the way {@link CountIndex} keeps them, on one
+     * thread.
+     *
+     * @return true iff in watch mode
+     */
+    public boolean watch() {
+        return this.watch;
+    }
+
+    /**
+     * Returns the debounce interval of watch mode: after the input changes,
+     * further changes are absorbed for this long before the report is
+     * regenerated.
+     *
+     * @return the debounce interval, in milliseconds
+     */
+    public int debounceMillis() {
+        return this.debounceMillis;
+    }
+
+    /**
+     * Returns the name of the file the metrics of the run are written to:
+     * bytes, lines and tokens read, distinct words, table probes and the
+     * time spent in each stage, as JSON.
+     *
+     * @return the name of the metrics file, or {@code null} if none
+     */
+    public String metricsName() {
+        return this.metricsName;
+    }
+
+    /**
+     * Returns the number of most frequent words approximate counting keeps
+     * and reports: {@link #top()}, or
+     * {@link ApproximateWordCounter#DEFAULT_HEAVY_HITTERS} if every word is
+     * to be reported.
+     *
+     * @return the number of heavy hitters
+     */
+    public int heavyHitters() {
+        int result = this.top;
+        if (result == 0) {
+            result = ApproximateWordCounter.DEFAULT_HEAVY_HITTERS;
+        }
+        return result;
+    }
+
+}
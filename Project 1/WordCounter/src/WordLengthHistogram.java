@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Histogram of the lengths of the words, in code points.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class WordLengthHistogram
+        implements WordTokenizer.WordSink, TextStatistic {
+
+    /**
+     * Initial number of lengths the histogram holds.
+     */
+    private static final int INITIAL_LENGTHS = 32;
+
+    /**
+     * Number of words by length.
+     */
+    private long[] counts = new long[INITIAL_LENGTHS];
+
+    @Override
+    public void word(CharSequence text, int start, int end) {
+        int length = Character.codePointCount(text, start, end);
+        if (length >= this.counts.length) {
+            this.counts = Arrays.copyOf(this.counts,
+                    Math.max(length + 1, this.counts.length << 1));
+        }
+        this.counts[length]++;
+    }
+
+    /**
+     * Returns the number of words of {@code length} code points.
+     *
+     * @param length
+     *            the length
+     * @return the number of words
+     * @requires length >= 0
+     */
+    public long count(int length) {
+        assert length >= 0 : "Violation of: length >= 0";
+
+        long result = 0;
+        if (length < this.counts.length) {
+            result = this.counts[length];
+        }
+        return result;
+    }
+
+    @Override
+    public void write(HtmlReportWriter report) throws IOException {
+        report.beginSection("Word lengths", "Length (characters)", "Words");
+        for (int length = 1; length < this.counts.length; length++) {
+            if (this.counts[length] > 0) {
+                report.sectionRow(Integer.toString(length),
+                        this.counts[length]);
+            }
+        }
+        report.endSection();
+    }
+
+}
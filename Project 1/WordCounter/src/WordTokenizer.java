@@ -0,0 +1,507 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Splits text into words and hands each word to a {@link WordSink} as a span
+ * of the text it was found in, so nothing is copied unless the sink decides to
+ * keep the word. Text can be fed a line at a time or in arbitrary chunks; a
+ * word cut off at the end of one chunk is carried over and completed by the
+ * next. An optional {@link HtmlTextFilter} in front of the tokenizer lets only
+ * the visible text of HTML through, and an optional observer sees the raw
+ * text as it is fed, so statistics of the text are gathered in the same pass.
+ *
+ * <p>
+ * Bytes fed in an ASCII-compatible charset to a {@link ByteWordSink}, with no
+ * filter or observer, take a fast path: runs of ASCII bytes are split into
+ * words and handed over as bytes, never decoded. Only the words holding a
+ * non-ASCII byte are decoded, from the start of the word up to the next ASCII
+ * separator byte, which in such a charset always ends a whole character.
+ * </p>
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public final class WordTokenizer {
+
+    /**
+     * The end of a line, fed to the filter after each line.
+     */
+    private static final String LINE_END = "\n";
+
+    /**
+     * Receiver of the words found by a {@code WordTokenizer}.
+     */
+    public interface WordSink {
+
+        /**
+         * Accepts the word {@code text[start, end)}. The characters of
+         * {@code text} are only valid for the duration of the call.
+         *
+         * @param text
+         *            the text containing the word
+         * @param start
+         *            the index of the first character of the word
+         * @param end
+         *            the index just past the last character of the word
+         * @requires 0 <= start < end <= |text|
+         */
+        void word(CharSequence text, int start, int end);
+    }
+
+    /**
+     * Receiver of words that also accepts a word of ASCII bytes, so that the
+     * bytes need not be decoded.
+     */
+    public interface ByteWordSink extends WordSink {
+
+        /**
+         * Accepts the word of the ASCII bytes {@code bytes[start, end)}, the
+         * indices absolute. The bytes are only valid for the duration of the
+         * call.
+         *
+         * @param bytes
+         *            the bytes containing the word
+         * @param start
+         *            the index of the first byte of the word
+         * @param end
+         *            the index just past the last byte of the word
+         * @requires 0 <= start < end <= limit(bytes) and bytes[start, end)
+         *           are ASCII
+         */
+        void word(ByteBuffer bytes, int start, int end);
+    }
+
+    /**
+     * Separator characters.
+     */
+    private final SeparatorSet separators;
+
+    /**
+     * Receiver of the words.
+     */
+    private final WordSink sink;
+
+    /**
+     * The receiver of the words if bytes can be handed to it as they are, or
+     * {@code null}.
+     */
+    private final ByteWordSink byteSink;
+
+    /**
+     * Start of a word that was cut off at the end of the last chunk.
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * Filter the text goes through first, or {@code null}.
+     */
+    private final HtmlTextFilter filter;
+
+    /**
+     * Receiver of the raw text, before any filter, or {@code null}.
+     */
+    private final HtmlTextFilter.TextSink observer;
+
+    /**
+     * Receiver of the filtered text, which tokenizes it as chunks.
+     */
+    private final HtmlTextFilter.TextSink visible = new HtmlTextFilter
+            .TextSink() {
+        @Override
+        public void text(CharSequence text, int start, int end) {
+            WordTokenizer.this.scan(text, start, end, false);
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param separators
+     *            the separator characters
+     * @param sink
+     *            the receiver of the words
+     */
+    public WordTokenizer(SeparatorSet separators, WordSink sink) {
+        this(separators, sink, null);
+    }
+
+    /**
+     * Constructor tokenizing only the text that {@code filter} lets through.
+     *
+     * @param separators
+     *            the separator characters
+     * @param sink
+     *            the receiver of the words
+     * @param filter
+     *            the filter the text goes through first, or {@code null}
+     */
+    public WordTokenizer(SeparatorSet separators, WordSink sink,
+            HtmlTextFilter filter) {
+        this(separators, sink, filter, null);
+    }
+
+    /**
+     * Constructor tokenizing only the text that {@code filter} lets through
+     * and showing all the text fed, line ends included, to {@code observer}
+     * first.
+     *
+     * @param separators
+     *            the separator characters
+     * @param sink
+     *            the receiver of the words
+     * @param filter
+     *            the filter the text goes through first, or {@code null}
+     * @param observer
+     *            the receiver of the raw text, or {@code null}
+     */
+    public WordTokenizer(SeparatorSet separators, WordSink sink,
+            HtmlTextFilter filter, HtmlTextFilter.TextSink observer) {
+        assert separators != null : "Violation of: separators is not null";
+        assert sink != null : "Violation of: sink is not null";
+
+        this.separators = separators;
+        this.sink = sink;
+        this.filter = filter;
+        this.observer = observer;
+        if (filter == null && observer == null
+                && sink instanceof ByteWordSink) {
+            this.byteSink = (ByteWordSink) sink;
+        } else {
+            this.byteSink = null;
+        }
+    }
+
+    /**
+     * Returns the end index of the first "word" (maximal length string of
+     * characters not in {@code separators}) or "separator string" (maximal
+     * length string of characters in {@code separators}) in the given
+     * {@code text} starting at the given {@code position}. No characters are
+     * copied, so the caller decides whether the span is worth a {@code String}.
+     *
+     * @param text
+     *            the {@code CharSequence} from which to get the word or
+     *            separator string
+     * @param position
+     *            the starting index
+     * @param limit
+     *            the index just past the last character to consider
+     * @param separators
+     *            the separator characters
+     * @return the index just past the first word or separator string found in
+     *         {@code text} starting at index {@code position}
+     * @requires 0 <= position < limit <= |text|
+     * @ensures <pre>
+     * position < nextWordOrSeparatorEnd <= limit  and
+     * text[position, nextWordOrSeparatorEnd) =
+     *   [the word or separator string starting at position in
+     *    text[0, limit)]
+     * </pre>
+     */
+    public static int nextWordOrSeparatorEnd(CharSequence text, int position,
+            int limit, SeparatorSet separators) {
+        assert text != null : "Violation of: text is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert 0 <= position : "Violation of: 0 <= position";
+        assert position < limit : "Violation of: position < limit";
+        assert limit <= text.length() : "Violation of: limit <= |text|";
+
+        boolean isSeparator = separators.isSeparator(text.charAt(position));
+        int i = position + 1;
+        while (i < limit
+                && isSeparator == separators.isSeparator(text.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * Tokenizes {@code text[start, end)}, treating {@code end} as a word
+     * boundary if {@code boundary} holds and carrying a word cut off at
+     * {@code end} over to the next call otherwise.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index of the first character to tokenize
+     * @param end
+     *            the index just past the last character to tokenize
+     * @param boundary
+     *            whether {@code end} ends any word in progress
+     */
+    private void scan(CharSequence text, int start, int end,
+            boolean boundary) {
+        int i = start;
+        while (i < end) {
+            int wordEnd = nextWordOrSeparatorEnd(text, i, end,
+                    this.separators);
+            if (this.separators.isSeparator(text.charAt(i))) {
+                this.finishWord();
+            } else if (this.pending.length() > 0
+                    || (wordEnd == end && !boundary)) {
+                //part of a word that spans chunks, finished below or later
+                this.pending.append(text, i, wordEnd);
+                if (wordEnd < end) {
+                    this.finishWord();
+                }
+            } else {
+                this.sink.word(text, i, wordEnd);
+            }
+            i = wordEnd;
+        }
+        if (boundary) {
+            this.finishWord();
+        }
+    }
+
+    /**
+     * Tokenizes the chunk {@code text[start, end)}. A word running up to
+     * {@code end} is not reported until a later chunk ends it or
+     * {@link #finish()} is called.
+     *
+     * @param text
+     *            the chunk
+     * @param start
+     *            the index of the first character to tokenize
+     * @param end
+     *            the index just past the last character to tokenize
+     * @requires 0 <= start <= end <= |text|
+     */
+    public void feed(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+        assert 0 <= start : "Violation of: 0 <= start";
+        assert start <= end : "Violation of: start <= end";
+        assert end <= text.length() : "Violation of: end <= |text|";
+
+        if (this.observer != null) {
+            this.observer.text(text, start, end);
+        }
+        if (this.filter == null) {
+            this.scan(text, start, end, false);
+        } else {
+            this.filter.filter(text, start, end, this.visible);
+        }
+    }
+
+    /**
+     * Tokenizes the line {@code text[start, end)}; the end of a line always
+     * ends a word.
+     *
+     * @param text
+     *            the line
+     * @param start
+     *            the index of the first character to tokenize
+     * @param end
+     *            the index just past the last character to tokenize
+     * @requires 0 <= start <= end <= |text|
+     */
+    public void feedLine(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+        assert 0 <= start : "Violation of: 0 <= start";
+        assert start <= end : "Violation of: start <= end";
+        assert end <= text.length() : "Violation of: end <= |text|";
+
+        if (this.observer != null) {
+            this.observer.text(text, start, end);
+            this.observer.text(LINE_END, 0, 1);
+        }
+        if (this.filter == null) {
+            this.scan(text, start, end, true);
+        } else {
+            //the line break is markup or text depending on where it falls
+            this.filter.filter(text, start, end, this.visible);
+            this.filter.filter(LINE_END, 0, 1, this.visible);
+        }
+    }
+
+    /**
+     * Decodes as much of {@code bytes} as possible into {@code chars} and
+     * tokenizes the result as chunks. Bytes of a character that is split at
+     * the end of {@code bytes} are left in {@code bytes} for the next call
+     * unless {@code endOfInput} holds.
+     *
+     * @param bytes
+     *            the encoded text, between its position and limit
+     * @param decoder
+     *            the decoder for the text's charset
+     * @param chars
+     *            scratch buffer for the decoded characters
+     * @param endOfInput
+     *            whether {@code bytes} holds the last of the input
+     * @updates bytes, decoder
+     */
+    public void feed(ByteBuffer bytes, CharsetDecoder decoder,
+            CharBuffer chars, boolean endOfInput) {
+        assert bytes != null : "Violation of: bytes is not null";
+        assert decoder != null : "Violation of: decoder is not null";
+        assert chars != null : "Violation of: chars is not null";
+
+        if (this.byteSink != null
+                && ParallelWordCounter.isAsciiCompatible(decoder.charset())) {
+            this.feedAscii(bytes, decoder, chars, endOfInput);
+        } else {
+            this.decode(bytes, decoder, chars, endOfInput);
+        }
+    }
+
+    /**
+     * Reports whether {@code b} is a separator on its own: an ASCII byte
+     * encoding a separator character.
+     *
+     * @param b
+     *            the byte
+     * @return true iff {@code b} is a separator byte
+     */
+    private boolean isSeparatorByte(byte b) {
+        return b >= 0 && this.separators.isSeparator((char) b);
+    }
+
+    /**
+     * Tokenizes the bytes {@code bytes[start, end)} for as long as they are
+     * ASCII, handing whole words to the byte sink, and returns where it
+     * stopped: {@code end}, or the start of the word or separator string
+     * holding the first non-ASCII byte.
+     *
+     * @param bytes
+     *            the bytes
+     * @param start
+     *            the index of the first byte to tokenize
+     * @param end
+     *            the index just past the last byte to tokenize
+     * @return the index of the first byte not tokenized
+     */
+    private int scanAscii(ByteBuffer bytes, int start, int end) {
+        int i = start;
+        int stop = end;
+        while (i < end && stop == end) {
+            byte b = bytes.get(i);
+            if (b < 0) {
+                stop = i;
+            } else {
+                boolean isSeparator = this.separators.isSeparator((char) b);
+                int j = i + 1;
+                while (j < end && bytes.get(j) >= 0 && isSeparator == this
+                        .separators.isSeparator((char) bytes.get(j))) {
+                    j++;
+                }
+                if (isSeparator) {
+                    this.finishWord();
+                    i = j;
+                } else if (j < end && bytes.get(j) < 0) {
+                    //the word goes on past ASCII, so it is decoded whole
+                    stop = i;
+                } else if (this.pending.length() > 0 || j == end) {
+                    //part of a word that spans chunks, finished below or later
+                    for (int k = i; k < j; k++) {
+                        this.pending.append((char) bytes.get(k));
+                    }
+                    if (j < end) {
+                        this.finishWord();
+                    }
+                    i = j;
+                } else {
+                    this.byteSink.word(bytes, i, j);
+                    i = j;
+                }
+            }
+        }
+        return stop;
+    }
+
+    /**
+     * Tokenizes {@code bytes} on the ASCII fast path, decoding only from the
+     * start of each word holding a non-ASCII byte through the next separator
+     * byte. Bytes of a character that is split at the end of {@code bytes}
+     * are left in {@code bytes} for the next call unless {@code endOfInput}
+     * holds.
+     *
+     * @param bytes
+     *            the encoded text, between its position and limit
+     * @param decoder
+     *            the decoder for the text's charset
+     * @param chars
+     *            scratch buffer for the decoded characters
+     * @param endOfInput
+     *            whether {@code bytes} holds the last of the input
+     * @updates bytes, decoder
+     */
+    private void feedAscii(ByteBuffer bytes, CharsetDecoder decoder,
+            CharBuffer chars, boolean endOfInput) {
+        int limit = bytes.limit();
+        int position = bytes.position();
+        boolean split = false;
+        while (position < limit && !split) {
+            int stop = this.scanAscii(bytes, position, limit);
+            if (stop < limit) {
+                int next = stop + 1;
+                while (next < limit && !this.isSeparatorByte(bytes.get(next))) {
+                    next++;
+                }
+                //with the separator byte, a cut-off character is malformed
+                //rather than left for more input
+                int end = Math.min(next + 1, limit);
+                bytes.limit(end);
+                bytes.position(stop);
+                this.decode(bytes, decoder, chars, endOfInput && end == limit);
+                stop = bytes.position();
+                split = stop < end;
+                bytes.limit(limit);
+            }
+            position = stop;
+        }
+        bytes.position(position);
+    }
+
+    /**
+     * Decodes as much of {@code bytes} as possible into {@code chars} and
+     * tokenizes the result as chunks.
+     *
+     * @param bytes
+     *            the encoded text, between its position and limit
+     * @param decoder
+     *            the decoder for the text's charset
+     * @param chars
+     *            scratch buffer for the decoded characters
+     * @param endOfInput
+     *            whether {@code bytes} holds the last of the input
+     * @updates bytes, decoder
+     */
+    private void decode(ByteBuffer bytes, CharsetDecoder decoder,
+            CharBuffer chars, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            if (!result.isOverflow() && endOfInput) {
+                result = decoder.flush(chars);
+            }
+            chars.flip();
+            this.feed(chars, 0, chars.remaining());
+            chars.clear();
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Reports the word carried over from the last chunk, if any. With a
+     * filter, also ends the document, passing on whatever text the filter
+     * held back.
+     */
+    public void finish() {
+        if (this.filter != null) {
+            this.filter.finish(this.visible);
+        }
+        this.finishWord();
+    }
+
+    /**
+     * Reports the word carried over from the last chunk, if any.
+     */
+    private void finishWord() {
+        if (this.pending.length() > 0) {
+            this.sink.word(this.pending, 0, this.pending.length());
+            this.pending.setLength(0);
+        }
+    }
+
+}
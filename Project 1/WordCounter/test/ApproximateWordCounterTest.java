@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ApproximateWordCounter} and
+ * {@code HeavyHitters}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class ApproximateWordCounterTest {
+
+    /**
+     * Test that the most frequent words of a skewed stream are kept with
+     * estimates no lower than their counts, among many rare words.
+     */
+    @Test
+    public void testHeavyHitters() {
+        final int rare = 50000;
+        final int k = 10;
+        ApproximateWordCounter counter = new ApproximateWordCounter(
+                ApproximateWordCounter.minimumMemory(k), k);
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                counter);
+        for (int i = 0; i < rare; i++) {
+            String line = "rare" + i + " the of" + (i % 2 == 0 ? " and" : "")
+                    + (i % 5 == 0 ? " to" : "");
+            tokenizer.feedLine(line, 0, line.length());
+        }
+        tokenizer.finish();
+        long total = rare + rare + rare + rare / 2 + rare / 5;
+        assertEquals(total, counter.totalWords());
+        WordCountTable top = counter.heavyHitters();
+        assertEquals(k, top.size());
+        assertTrue(top.count("the") >= rare);
+        assertTrue(top.count("of") >= rare);
+        assertTrue(top.count("and") >= rare / 2);
+        assertTrue(top.count("to") >= rare / 5);
+        long bound = counter.sketch().errorBound();
+        assertTrue(counter.estimate("the") - rare <= bound);
+        assertTrue(counter.estimate("rare7") >= 1);
+        double error = Math.abs(counter.distinct().estimate() - (rare + 4))
+                / (rare + 4.0);
+        assertTrue(error < 4 * counter.distinct().standardError());
+    }
+
+    /**
+     * Test that words dropped from and re-entering a full set of heavy
+     * hitters are tracked consistently.
+     */
+    @Test
+    public void testChurn() {
+        final int k = 4;
+        final int rounds = 2000;
+        HeavyHitters h = new HeavyHitters(k);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < rounds; i++) {
+            String word = "w" + (i * 7919 % 13);
+            int count = counts.getOrDefault(word, 0) + 1;
+            counts.put(word, count);
+            h.offer(word, 0, word.length(),
+                    ApproximateWordCounter.hash64(word, 0, word.length()),
+                    count);
+        }
+        WordCountTable table = h.toTable();
+        assertEquals(k, table.size());
+        for (int id = 0; id < table.size(); id++) {
+            assertEquals(counts.get(table.word(id)).intValue(),
+                    table.count(id));
+        }
+    }
+
+    /**
+     * Test that budgets the sketch cannot use are rejected with a message
+     * rather than overflowing the size of its counters.
+     */
+    @Test
+    public void testMemoryRange() {
+        final int k = 1000;
+        assertTrue(ApproximateWordCounter.maximumMemory(k)
+                > ApproximateWordCounter.minimumMemory(k));
+        String[] budgets = { "12G", "16G", Long.toString(
+                ApproximateWordCounter.maximumMemory(k) + 1) };
+        for (String budget : budgets) {
+            String message = null;
+            try {
+                WordCounterOptions.parse(new String[] { "--approximate",
+                    budget, "in", "out" });
+            } catch (IllegalArgumentException e) {
+                message = e.getMessage();
+            }
+            assertEquals("--approximate can use at most "
+                    + ApproximateWordCounter.maximumMemory(k)
+                    + " bytes to keep " + k + " words", message);
+        }
+        WordCounterOptions options = WordCounterOptions.parse(new String[] {
+            "--approximate", "1M", "in", "out" });
+        assertEquals(1 << 20, options.approximateMemory());
+    }
+
+}
@@ -0,0 +1,117 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code BatchWordCounter}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class BatchWordCounterTest {
+
+    /**
+     * Returns the file names of {@code paths}.
+     *
+     * @param paths
+     *            the paths
+     * @return the file names
+     */
+    private static List<String> names(List<Path> paths) {
+        List<String> result = new ArrayList<>();
+        for (Path path : paths) {
+            result.add(path.getFileName().toString());
+        }
+        return result;
+    }
+
+    /**
+     * Test the inputs named by a directory and by a glob.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be created
+     */
+    @Test
+    public void testInputs() throws IOException {
+        Path dir = Files.createTempDirectory("batch");
+        Files.createFile(dir.resolve("b.txt"));
+        Files.createFile(dir.resolve("a.txt"));
+        Files.createFile(dir.resolve("c.html"));
+        Files.createDirectory(dir.resolve("sub.txt"));
+
+        assertEquals(List.of("a.txt", "b.txt", "c.html"),
+                names(BatchWordCounter.inputs(dir.toString())));
+        assertEquals(List.of("a.txt", "b.txt"), names(BatchWordCounter
+                .inputs(dir.resolve("*.txt").toString())));
+        assertEquals(List.of("c.html"), names(BatchWordCounter
+                .inputs(dir.resolve("c.html").toString())));
+        assertEquals(List.of(), names(BatchWordCounter
+                .inputs(dir.resolve("*.md").toString())));
+    }
+
+    /**
+     * Test that reports written into the directory of the inputs are not
+     * counted as inputs by the next run.
+     *
+     * @throws IOException
+     *             if a file cannot be written or read
+     */
+    @Test
+    public void testReportsAmongInputs() throws IOException {
+        Path dir = Files.createTempDirectory("batch");
+        Files.write(dir.resolve("a.txt"),
+                "one two two".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("page.html"),
+                "three".getBytes(StandardCharsets.UTF_8));
+        WordCounterOptions options = WordCounterOptions.parse(new String[] {
+            "--batch", dir.toString(), dir.toString() });
+        BatchWordCounter.run(options, null);
+        String aggregate = new String(Files.readAllBytes(
+                dir.resolve(BatchWordCounter.AGGREGATE_NAME)),
+                StandardCharsets.UTF_8);
+        BatchWordCounter.run(options, null);
+        assertEquals(List.of("a.txt", "a.txt.html", "aggregate.html",
+                "page.html", "page.html.html"),
+                names(BatchWordCounter.inputs(dir.toString())));
+        assertEquals(List.of("a.txt", "page.html"),
+                names(BatchWordCounter.withoutReports(
+                        BatchWordCounter.inputs(dir.toString()), dir)));
+        assertEquals(aggregate, new String(Files.readAllBytes(
+                dir.resolve(BatchWordCounter.AGGREGATE_NAME)),
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test that an input whose report would be the aggregate report is
+     * rejected.
+     *
+     * @throws IOException
+     *             if a file cannot be written or read
+     */
+    @Test
+    public void testAggregateCollision() throws IOException {
+        Path dir = Files.createTempDirectory("batch");
+        Files.write(dir.resolve("aggregate"),
+                "one".getBytes(StandardCharsets.UTF_8));
+        Path output = dir.resolve("out");
+        String message = null;
+        try {
+            BatchWordCounter.run(WordCounterOptions.parse(new String[] {
+                "--batch", dir.toString(), output.toString() }), null);
+        } catch (IllegalArgumentException e) {
+            message = e.getMessage();
+        }
+        assertEquals("The report of " + dir.resolve("aggregate")
+                + " would overwrite the aggregate report", message);
+        assertFalse(Files.exists(output));
+    }
+
+}
@@ -0,0 +1,135 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code CjkSegmenter}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class CjkSegmenterTest {
+
+    /**
+     * Returns the segments of the words of {@code text}, separated by spaces
+     * in the input and by "|" in the result.
+     *
+     * @param dictionary
+     *            the dictionary
+     * @param text
+     *            the text
+     * @return the segments in order
+     */
+    private static String segments(DoubleArrayTrie dictionary, String text) {
+        final StringBuilder result = new StringBuilder();
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.fromSpec(" "),
+                new CjkSegmenter(dictionary, new WordTokenizer.WordSink() {
+                    @Override
+                    public void word(CharSequence t, int start, int end) {
+                        if (result.length() > 0) {
+                            result.append('|');
+                        }
+                        result.append(t, start, end);
+                    }
+                }));
+        tokenizer.feedLine(text, 0, text.length());
+        tokenizer.finish();
+        return result.toString();
+    }
+
+    /**
+     * Test classifying code points.
+     */
+    @Test
+    public void testIsCjk() {
+        assertTrue(CjkSegmenter.isCjk('\u4e2d'));
+        assertTrue(CjkSegmenter.isCjk('\u306e'));
+        assertTrue(CjkSegmenter.isCjk('\u30ab'));
+        assertTrue(CjkSegmenter.isCjk(0x20000));
+        assertFalse(CjkSegmenter.isCjk('a'));
+        assertFalse(CjkSegmenter.isCjk('\u3002'));
+        assertFalse(CjkSegmenter.isCjk('\ud55c'));
+    }
+
+    /**
+     * Test maximum matching with a dictionary.
+     */
+    @Test
+    public void testMaximumMatching() {
+        String research = "\u7814\u7a76";
+        String student = "\u751f";
+        String life = "\u547d";
+        String origin = "\u8d77\u6e90";
+        DoubleArrayTrie d = DoubleArrayTrie.of(research,
+                research + student, student + life, life, origin);
+        assertEquals(research + student + "|" + life + "|" + origin,
+                segments(d, research + student + life + origin));
+    }
+
+    /**
+     * Test the bigram fallback for characters starting no dictionary word.
+     */
+    @Test
+    public void testBigramFallback() {
+        String a = "\u8d77";
+        String b = "\u521d";
+        String c = "\u795e";
+        String world = "\u5929\u5730";
+        DoubleArrayTrie d = DoubleArrayTrie.of(world);
+        assertEquals(a + b + "|" + b + c + "|" + world + "|" + c,
+                segments(d, a + b + c + world + c));
+        assertEquals(a + b + "|" + b + c,
+                segments(DoubleArrayTrie.of(), a + b + c));
+    }
+
+    /**
+     * Test that mixed words keep their non-CJK parts and surrogate pairs stay
+     * whole.
+     */
+    @Test
+    public void testMixed() {
+        String world = "\u5929\u5730";
+        String ext1 = "\ud840\udc00";
+        String ext2 = "\ud840\udc01";
+        DoubleArrayTrie d = DoubleArrayTrie.of(world);
+        assertEquals("abc|" + world + "|x1",
+                segments(d, "abc" + world + "x1"));
+        assertEquals("a|" + ext1 + "|b", segments(d, "a" + ext1 + "b"));
+        assertEquals(ext1 + ext2, segments(d, ext1 + ext2));
+        assertEquals("plain|text", segments(d, "plain text"));
+    }
+
+    /**
+     * Test that CJK punctuation and the ideographic space separate words and
+     * are not counted.
+     */
+    @Test
+    public void testPunctuation() {
+        assertTrue(CjkSegmenter.isCjkPunctuation('\u3000'));
+        assertTrue(CjkSegmenter.isCjkPunctuation('\u3001'));
+        assertTrue(CjkSegmenter.isCjkPunctuation('\u3002'));
+        assertTrue(CjkSegmenter.isCjkPunctuation('\u300c'));
+        assertTrue(CjkSegmenter.isCjkPunctuation('\uff01'));
+        assertTrue(CjkSegmenter.isCjkPunctuation('\uff0c'));
+        assertFalse(CjkSegmenter.isCjkPunctuation('\u3005'));
+        assertFalse(CjkSegmenter.isCjkPunctuation('\uff21'));
+        assertFalse(CjkSegmenter.isCjkPunctuation('\u4e2d'));
+        assertFalse(CjkSegmenter.isCjkPunctuation('!'));
+
+        String hello = "\u4f60\u597d";
+        String world = "\u4e16\u754c";
+        String research = "\u7814\u7a76";
+        String life = "\u751f\u547d";
+        DoubleArrayTrie d = DoubleArrayTrie.of(hello, world, research, life);
+        assertEquals(hello + "|" + world + "|" + research + "|" + life + "|"
+                + research + "|" + life, segments(d, hello + "\uff0c" + world
+                        + "\uff01\u300c" + research + "\u300d" + life
+                        + "\u3002" + research + "\u3001" + life + "\u3000"));
+        assertEquals("abc|" + world + "|x",
+                segments(d, "abc\u3002" + world + "\uff1fx"));
+        assertEquals("\uff21\uff22", segments(d, "\uff21\uff22\u3002"));
+    }
+
+}
@@ -0,0 +1,131 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code Concordance}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class ConcordanceTest {
+
+    /**
+     * Returns the concordance of {@code lines}, written to and mapped from a
+     * temporary file.
+     *
+     * @param table
+     *            the table the words are also counted into
+     * @param lines
+     *            the lines
+     * @return the concordance
+     * @throws IOException
+     *             if the file cannot be used
+     */
+    private static Concordance concordance(WordCountTable table,
+            String... lines) throws IOException {
+        Concordance.Builder builder = new Concordance.Builder(table);
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                builder);
+        for (String line : lines) {
+            builder.nextLine();
+            tokenizer.feedLine(line, 0, line.length());
+        }
+        tokenizer.finish();
+        Path file = Files.createTempFile("concordance", ".idx");
+        builder.write(file.toString());
+        Concordance result = Concordance.open(file.toString());
+        Files.delete(file);
+        return result;
+    }
+
+    /**
+     * Test positions on one line and across lines, and absent words.
+     *
+     * @throws IOException
+     *             if the file cannot be used
+     */
+    @Test
+    public void testPositions() throws IOException {
+        WordCountTable table = new WordCountTable();
+        Concordance c = concordance(table, "the cat, the hat", "",
+                "  the end");
+        assertEquals(4, c.size());
+        assertEquals(3, c.count("the"));
+        assertEquals(3, table.count("the"));
+        assertArrayEquals(new int[] { 1, 1, 1, 10, 3, 3 },
+                c.positions("the"));
+        assertArrayEquals(new int[] { 3, 7 }, c.positions("end"));
+        assertEquals(0, c.count("The"));
+        assertArrayEquals(new int[0], c.positions("dog"));
+    }
+
+    /**
+     * Test lookups among many words, some not ASCII, with line numbers and
+     * columns needing multi-byte varints.
+     *
+     * @throws IOException
+     *             if the file cannot be used
+     */
+    @Test
+    public void testManyWords() throws IOException {
+        final int lines = 2000;
+        String[] text = new String[lines];
+        final int width = 300;
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < width; i++) {
+            padding.append(' ');
+        }
+        for (int i = 0; i < lines; i++) {
+            text[i] = "w" + i + " \u00e9" + (i % 50) + padding + "\ud83d\ude00"
+                    + (i % 7);
+        }
+        Concordance c = concordance(null, text);
+        assertEquals(lines + 50 + 7, c.size());
+        for (int i = 0; i < lines; i++) {
+            assertArrayEquals(new int[] { i + 1, 1 }, c.positions("w" + i));
+        }
+        int[] e = c.positions("\u00e9" + 3);
+        assertEquals(2 * lines / 50, e.length);
+        assertEquals(4, e[0]);
+        assertEquals(("w" + 3).length() + 2, e[1]);
+        int[] smile = c.positions("\ud83d\ude00" + 6);
+        assertEquals(7, smile[0]);
+        assertEquals(text[6].indexOf('\ud83d') + 1, smile[1]);
+    }
+
+    /**
+     * Test that the options that the concordance pass does not honor, since
+     * it reads the input line by line on one thread, are rejected.
+     */
+    @Test
+    public void testOptions() {
+        String[][] rejected = { { "--mmap" }, { "--threads", "2" } };
+        for (String[] option : rejected) {
+            String[] args = new String[option.length + 4];
+            System.arraycopy(option, 0, args, 0, option.length);
+            args[option.length] = "--concordance";
+            args[option.length + 1] = "out.idx";
+            args[option.length + 2] = "in";
+            args[option.length + 3] = "out";
+            String message = null;
+            try {
+                WordCounterOptions.parse(args);
+            } catch (IllegalArgumentException e) {
+                message = e.getMessage();
+            }
+            assertEquals("--concordance cannot be combined with --batch,"
+                    + " --html, --index, --approximate, --max-memory,"
+                    + " --ngram, --mmap or --threads", message);
+        }
+        WordCounterOptions options = WordCounterOptions.parse(new String[] {
+            "--threads", "1", "--concordance", "out.idx", "in", "out" });
+        assertEquals("out.idx", options.concordanceName());
+    }
+
+}
@@ -0,0 +1,214 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ConcurrentWordCountTable}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class ConcurrentWordCountTableTest {
+
+    /**
+     * Number of threads counting at once.
+     */
+    private static final int THREADS = 4;
+
+    /**
+     * Number of distinct words each thread counts, enough to grow the table
+     * several times while the threads count.
+     */
+    private static final int WORDS = 5000;
+
+    /**
+     * Thread counting every word {@code w0} to {@code w(WORDS - 1)}, the
+     * word {@code wi} {@code i % 3 + 1} times.
+     */
+    private static final class Producer extends Thread {
+
+        /**
+         * The table counted into.
+         */
+        private final ConcurrentWordCountTable table;
+
+        /**
+         * Whether to count through the byte path.
+         */
+        private final boolean bytes;
+
+        /**
+         * Constructor.
+         *
+         * @param table
+         *            the table counted into
+         * @param bytes
+         *            whether to count through the byte path
+         */
+        Producer(ConcurrentWordCountTable table, boolean bytes) {
+            this.table = table;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < WORDS; i++) {
+                String word = "w" + i;
+                ByteBuffer ascii = ByteBuffer
+                        .wrap(word.getBytes(StandardCharsets.US_ASCII));
+                for (int n = 0; n <= i % 3; n++) {
+                    if (this.bytes) {
+                        this.table.increment(ascii, 0, word.length());
+                    } else {
+                        this.table.increment(word, 0, word.length());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test counting on one thread.
+     */
+    @Test
+    public void testIncrement() {
+        ConcurrentWordCountTable t = new ConcurrentWordCountTable();
+        assertEquals(0, t.size());
+        assertEquals(0, t.count("word"));
+        t.increment("a word", 2, 6);
+        t.increment("word", 0, 4);
+        ByteBuffer bytes = ByteBuffer
+                .wrap("words".getBytes(StandardCharsets.US_ASCII));
+        t.increment(bytes, 0, 4);
+        t.increment(bytes, 0, 5);
+        assertEquals(2, t.size());
+        assertEquals(3, t.count("word"));
+        assertEquals(1, t.count("words"));
+        assertEquals(0, t.count("a"));
+    }
+
+    /**
+     * Test that a small table grows and keeps every count.
+     */
+    @Test
+    public void testGrow() {
+        ConcurrentWordCountTable t = new ConcurrentWordCountTable(1);
+        new Producer(t, false).run();
+        assertEquals(WORDS, t.size());
+        for (int i = 0; i < WORDS; i++) {
+            assertEquals(i % 3 + 1, t.count("w" + i));
+        }
+    }
+
+    /**
+     * Test that threads counting the same words at once, some through the
+     * byte path, lose no word and no count, and that the snapshot has them.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    @Test
+    public void testConcurrentIncrement() throws InterruptedException {
+        ConcurrentWordCountTable t = new ConcurrentWordCountTable(1);
+        Producer[] producers = new Producer[THREADS];
+        for (int p = 0; p < THREADS; p++) {
+            producers[p] = new Producer(t, p % 2 == 1);
+            producers[p].start();
+        }
+        for (Producer producer : producers) {
+            producer.join();
+        }
+        assertEquals(WORDS, t.size());
+        WordCountTable snapshot = t.snapshot();
+        assertEquals(WORDS, snapshot.size());
+        for (int i = 0; i < WORDS; i++) {
+            assertEquals(THREADS * (i % 3 + 1), t.count("w" + i));
+            assertEquals(THREADS * (i % 3 + 1), snapshot.count("w" + i));
+        }
+    }
+
+    /**
+     * Test that counting into a shared table gives the counts of merging a
+     * table per range.
+     *
+     * @throws IOException
+     *             if the temporary file cannot be written or read
+     */
+    @Test
+    public void testCountShared() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < WORDS; i++) {
+            text.append("w").append(i % 97).append(i % 5 == 0 ? '\n' : ' ');
+        }
+        Path input = Files.createTempFile("words", ".txt");
+        Files.write(input, text.toString().getBytes(StandardCharsets.UTF_8));
+        WordCountTable merged = ParallelWordCounter.count(input.toString(),
+                SeparatorSet.defaultSet(), null, StopWordSet.of("w1"),
+                THREADS);
+        WordCountTable shared = ParallelWordCounter.countShared(
+                input.toString(), SeparatorSet.defaultSet(), null,
+                StopWordSet.of("w1"), THREADS);
+        Files.delete(input);
+        assertEquals(96, shared.size());
+        assertEquals(merged.size(), shared.size());
+        for (int i = 0; i < 97; i++) {
+            assertEquals(merged.count("w" + i), shared.count("w" + i));
+        }
+    }
+
+    /**
+     * Returns the message of the error parsing {@code args}, or {@code null}
+     * if they parse.
+     *
+     * @param args
+     *            the command line
+     * @return the message, or {@code null}
+     */
+    private static String parseError(String... args) {
+        String result = null;
+        try {
+            WordCounterOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            result = e.getMessage();
+        }
+        return result;
+    }
+
+    /**
+     * Test that --shared-table is rejected where the shared table is never
+     * counted into.
+     */
+    @Test
+    public void testOptions() {
+        assertEquals("--shared-table needs --threads above 1",
+                parseError("--shared-table", "in", "out"));
+        assertEquals("--shared-table needs --threads above 1",
+                parseError("--shared-table", "--threads", "1", "in", "out"));
+        String[] rejected = { "--html", "--stats all", "--ngram 2",
+            "--index x.idx", "--approximate 1M", "--max-memory 1M" };
+        for (String option : rejected) {
+            String[] words = option.split(" ");
+            String[] args = new String[words.length + 5];
+            System.arraycopy(words, 0, args, 0, words.length);
+            args[words.length] = "--shared-table";
+            args[words.length + 1] = "--threads";
+            args[words.length + 2] = "2";
+            args[words.length + 3] = "in";
+            args[words.length + 4] = "out";
+            assertEquals(option, "--shared-table cannot be combined with"
+                    + " --batch, --index, --watch, --approximate,"
+                    + " --max-memory, --ngram, --stats, --html or"
+                    + " --concordance", parseError(args));
+        }
+        assertNull(parseError("--shared-table", "--threads", "2", "in",
+                "out"));
+    }
+
+}
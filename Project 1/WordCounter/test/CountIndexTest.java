@@ -0,0 +1,132 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code CountIndex}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class CountIndexTest {
+
+    /**
+     * Charset of the test files.
+     */
+    private static final Charset UTF8 = StandardCharsets.UTF_8;
+
+    /**
+     * Appends {@code text} to {@code file}.
+     *
+     * @param file
+     *            the file
+     * @param text
+     *            the text to append
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(UTF8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Test that an append is read from the last boundary on, and a word cut
+     * by the previous end of the file is counted whole.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be used
+     */
+    @Test
+    public void testAppend() throws IOException {
+        Path file = Files.createTempFile("log", ".txt");
+        append(file, "one two thr");
+        CountIndex index = new CountIndex(SeparatorSet.defaultSet(), null,
+                UTF8);
+        WordCountTable t = index.count(file.toString());
+        assertEquals(1, t.count("thr"));
+        assertEquals(11, index.bytesCounted());
+
+        append(file, "ee two\n");
+        t = index.count(file.toString());
+        assertEquals(3, t.size());
+        assertEquals(1, t.count("three"));
+        assertEquals(2, t.count("two"));
+        assertEquals(11 + 10, index.bytesCounted());
+
+        t = index.count(file.toString());
+        assertEquals(2, t.count("two"));
+        assertEquals(11 + 10, index.bytesCounted());
+    }
+
+    /**
+     * Test that saving and loading keeps the counts, so the next run reads
+     * only the appended bytes.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be used
+     */
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Path file = Files.createTempFile("log", ".txt");
+        Path indexFile = Files.createTempFile("index", ".bin");
+        Files.delete(indexFile);
+        append(file, "a b a \u00e9t\u00e9 ");
+        CountIndex index = CountIndex.load(indexFile.toString(),
+                SeparatorSet.defaultSet(), null, UTF8);
+        index.count(file.toString());
+        index.save(indexFile.toString());
+
+        append(file, "b c");
+        index = CountIndex.load(indexFile.toString(),
+                SeparatorSet.defaultSet(), null, UTF8);
+        WordCountTable t = index.count(file.toString());
+        assertEquals(2, t.count("a"));
+        assertEquals(2, t.count("b"));
+        assertEquals(1, t.count("c"));
+        assertEquals(1, t.count("\u00e9t\u00e9"));
+        assertEquals(3, index.bytesCounted());
+
+        index = CountIndex.load(indexFile.toString(),
+                SeparatorSet.fromSpec(" "), null, UTF8);
+        index.count(file.toString());
+        assertEquals(Files.size(file), index.bytesCounted());
+    }
+
+    /**
+     * Test that a file whose earlier content changed is recounted in full.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be used
+     */
+    @Test
+    public void testRewrite() throws IOException {
+        Path file = Files.createTempFile("log", ".txt");
+        append(file, "a b c ");
+        CountIndex index = new CountIndex(SeparatorSet.defaultSet(), null,
+                UTF8);
+        index.count(file.toString());
+
+        Files.write(file, "x b c d ".getBytes(UTF8));
+        WordCountTable t = index.count(file.toString());
+        assertEquals(0, t.count("a"));
+        assertEquals(1, t.count("x"));
+        assertEquals(1, t.count("d"));
+        assertEquals(6 + 8, index.bytesCounted());
+
+        Files.write(file, "y b c d ".getBytes(UTF8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        t = index.count(file.toString());
+        assertEquals(1, t.count("y"));
+        assertEquals(0, t.count("x"));
+    }
+
+}
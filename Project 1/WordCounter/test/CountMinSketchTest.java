@@ -0,0 +1,74 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code CountMinSketch}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class CountMinSketchTest {
+
+    /**
+     * Test sizing and the error bound.
+     */
+    @Test
+    public void testSize() {
+        CountMinSketch s = new CountMinSketch(1000, 3);
+        assertEquals(1024, s.width());
+        assertEquals(3, s.depth());
+        assertEquals(3 * 1024 * Integer.BYTES, s.bytes());
+        assertEquals(0, s.errorBound());
+        assertEquals(1, new CountMinSketch(1, 1).width());
+        final double delta = 1e-9;
+        assertEquals(1 - Math.exp(-3), s.confidence(), delta);
+    }
+
+    /**
+     * Test that the largest width is the largest power of two whose rows
+     * all fit in one array.
+     */
+    @Test
+    public void testMaxWidth() {
+        assertEquals(1 << 30, CountMinSketch.maxWidth(1));
+        for (int depth = 1; depth <= 8; depth++) {
+            long counters = (long) CountMinSketch.maxWidth(depth) * depth;
+            assertTrue(counters <= CountMinSketch.MAX_COUNTERS);
+            assertTrue(2 * counters > CountMinSketch.MAX_COUNTERS);
+        }
+    }
+
+    /**
+     * Test that estimates never undercount and stay within the bound for a
+     * skewed stream.
+     */
+    @Test
+    public void testEstimates() {
+        final int keys = 5000;
+        CountMinSketch s = new CountMinSketch(1 << 10, 5);
+        int[] counts = new int[keys];
+        for (int i = 0; i < keys; i++) {
+            counts[i] = keys / (i + 1);
+            for (int j = 0; j < counts[i]; j++) {
+                s.increment(ApproximateWordCounter.hash64("k" + i, 0,
+                        ("k" + i).length()));
+            }
+        }
+        int within = 0;
+        for (int i = 0; i < keys; i++) {
+            String key = "k" + i;
+            int estimate = s.estimate(
+                    ApproximateWordCounter.hash64(key, 0, key.length()));
+            assertTrue(estimate >= counts[i]);
+            if (estimate - counts[i] <= s.errorBound()) {
+                within++;
+            }
+        }
+        assertTrue(within >= keys * s.confidence() - keys / 100);
+        assertEquals(counts[0], s.estimate(
+                ApproximateWordCounter.hash64("k0", 0, 2)));
+    }
+
+}
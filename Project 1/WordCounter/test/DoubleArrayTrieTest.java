@@ -0,0 +1,69 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code DoubleArrayTrie}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class DoubleArrayTrieTest {
+
+    /**
+     * Test the empty dictionary.
+     */
+    @Test
+    public void testEmpty() {
+        DoubleArrayTrie t = DoubleArrayTrie.of();
+        assertEquals(0, t.size());
+        assertEquals(0, t.longestMatch("abc", 0, 3));
+        assertFalse(t.contains("a"));
+    }
+
+    /**
+     * Test longest matches among nested words.
+     */
+    @Test
+    public void testLongestMatch() {
+        String china = "\u4e2d\u534e";
+        String people = "\u4eba\u6c11";
+        DoubleArrayTrie t = DoubleArrayTrie.of(china, "\u4e2d",
+                china + people, people, china, "abc");
+        assertEquals(5, t.size());
+        String text = "\u4e2d\u534e\u4eba\u6c11\u5171\u548c\u56fd";
+        assertEquals(4, t.longestMatch(text, 0, text.length()));
+        assertEquals(2, t.longestMatch(text, 0, 3));
+        assertEquals(1, t.longestMatch(text, 0, 1));
+        assertEquals(0, t.longestMatch(text, 1, text.length()));
+        assertEquals(2, t.longestMatch(text, 2, text.length()));
+        assertEquals(0, t.longestMatch(text, 4, text.length()));
+        assertEquals(3, t.longestMatch("xabcd", 1, 5));
+        assertTrue(t.contains(china + people));
+        assertFalse(t.contains(china + "\u4eba"));
+        assertFalse(t.contains(""));
+    }
+
+    /**
+     * Test that every word of a large dictionary is found and no prefix of
+     * one is.
+     */
+    @Test
+    public void testManyWords() {
+        final int n = 3000;
+        String[] words = new String[n];
+        for (int i = 0; i < n; i++) {
+            words[i] = "w" + (char) ('\u4e00' + i % 97) + i;
+        }
+        DoubleArrayTrie t = DoubleArrayTrie.of(words);
+        assertEquals(n, t.size());
+        for (String w : words) {
+            assertTrue(t.contains(w));
+            assertFalse(t.contains(w.substring(0, 2)));
+        }
+        assertEquals(t, DoubleArrayTrie.of(words));
+    }
+
+}
@@ -0,0 +1,90 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ExternalWordCounter}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class ExternalWordCounterTest {
+
+    /**
+     * Test that spilled runs merge into the same words, counts and order as
+     * counting in memory, and that closing deletes the runs.
+     *
+     * @throws IOException
+     *             if a run file cannot be used
+     */
+    @Test
+    public void testMergeMatchesInMemory() throws IOException {
+        final int lines = 3000;
+        String[] stems = { "apple", "Apple", "apples", "b", "\ud83d\ude00x",
+            "\ud83d\ude01", "zeta" };
+        Path directory = Files.createTempDirectory("runs");
+        WordCountTable exact = new WordCountTable();
+        ExternalWordCounter counter = new ExternalWordCounter(
+                ExternalWordCounter.ENTRY_BYTES * 50L, directory);
+        WordTokenizer a = new WordTokenizer(SeparatorSet.defaultSet(), exact);
+        WordTokenizer b = new WordTokenizer(SeparatorSet.defaultSet(),
+                counter);
+        for (int i = 0; i < lines; i++) {
+            String line = stems[i % stems.length] + (i % 211) + " "
+                    + stems[i % 3];
+            a.feedLine(line, 0, line.length());
+            b.feedLine(line, 0, line.length());
+        }
+        a.finish();
+        b.finish();
+        assertTrue(counter.runs() > 1);
+        SortedWordCounts expected = SortedWordCounts.alphabetical(exact);
+        try (ExternalWordCounter.Merge merge = counter.merge()) {
+            for (int i = 0; i < expected.size(); i++) {
+                assertTrue(merge.next());
+                assertEquals(expected.word(i), merge.word());
+                assertEquals(expected.count(i), merge.count());
+            }
+            assertFalse(merge.next());
+        }
+        counter.close();
+        try (Stream<Path> left = Files.list(directory)) {
+            assertEquals(0, left.count());
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Test a counter that never spills.
+     *
+     * @throws IOException
+     *             if a run file cannot be used
+     */
+    @Test
+    public void testNoSpill() throws IOException {
+        ExternalWordCounter counter = new ExternalWordCounter(1 << 20,
+                Files.createTempDirectory("runs"));
+        counter.word("b a b", 0, 1);
+        counter.word("b a b", 2, 3);
+        counter.word("b a b", 4, 5);
+        assertEquals(0, counter.runs());
+        try (ExternalWordCounter.Merge merge = counter.merge()) {
+            assertTrue(merge.next());
+            assertEquals("a", merge.word());
+            assertEquals(1, merge.count());
+            assertTrue(merge.next());
+            assertEquals("b", merge.word());
+            assertEquals(2, merge.count());
+            assertFalse(merge.next());
+        }
+        counter.close();
+    }
+
+}
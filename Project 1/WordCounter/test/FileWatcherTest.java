@@ -0,0 +1,104 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code FileWatcher}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class FileWatcherTest {
+
+    /**
+     * How long to wait for a change that is expected, in milliseconds.
+     */
+    private static final long PATIENCE = 10000;
+
+    /**
+     * How long to wait for a change that is not expected, in milliseconds.
+     */
+    private static final long QUIET = 300;
+
+    /**
+     * Debounce interval of the watchers, in milliseconds.
+     */
+    private static final long DEBOUNCE = 200;
+
+    /**
+     * Appends {@code text} to {@code file}.
+     *
+     * @param file
+     *            the file
+     * @param text
+     *            the text to append
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Test that appends within the debounce interval are reported once, and
+     * changes to other files of the directory not at all.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be used
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testDebounce() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("watch");
+        Path file = directory.resolve("chat.log");
+        append(file, "hello\n");
+        try (FileWatcher watcher = new FileWatcher(file, DEBOUNCE)) {
+            assertFalse(watcher.awaitChange(QUIET));
+            append(file, "one\n");
+            append(file, "two\n");
+            assertTrue(watcher.awaitChange(PATIENCE));
+            assertFalse(watcher.awaitChange(QUIET));
+
+            append(directory.resolve("other.log"), "noise\n");
+            assertFalse(watcher.awaitChange(QUIET));
+        }
+    }
+
+    /**
+     * Test that an input deleted and created again is reported, and counted
+     * afresh by the index watch mode keeps its counts in.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be used
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testRotation() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("watch");
+        Path file = directory.resolve("chat.log");
+        append(file, "old old old\n");
+        CountIndex index = new CountIndex(SeparatorSet.defaultSet(), null,
+                StandardCharsets.UTF_8);
+        try (FileWatcher watcher = new FileWatcher(file, 0)) {
+            assertEquals(3, index.count(file.toString()).count("old"));
+            Files.delete(file);
+            append(file, "new\n");
+            assertTrue(watcher.awaitChange(PATIENCE));
+            WordCountTable t = index.count(file.toString());
+            assertEquals(0, t.count("old"));
+            assertEquals(1, t.count("new"));
+        }
+    }
+
+}
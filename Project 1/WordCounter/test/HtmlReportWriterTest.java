@@ -0,0 +1,143 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code HtmlReportWriter}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class HtmlReportWriterTest {
+
+    /**
+     * Line separator written by the report.
+     */
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Returns the report of the given (word, count) pairs.
+     *
+     * @param charset
+     *            the charset of the report
+     * @param fileName
+     *            the name of the input file
+     * @param args
+     *            the (word, count) pairs
+     * @return the report
+     * @throws IOException
+     *             never
+     */
+    private static String report(Charset charset, String fileName,
+            Object... args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HtmlReportWriter writer = new HtmlReportWriter(
+                Channels.newChannel(bytes), charset);
+        writer.begin(fileName);
+        for (int i = 0; i < args.length; i += 2) {
+            writer.row((String) args[i], (Integer) args[i + 1]);
+        }
+        writer.end();
+        return new String(bytes.toByteArray(), charset);
+    }
+
+    /**
+     * Test the complete report of two words.
+     *
+     * @throws IOException
+     *             never
+     */
+    @Test
+    public void testReport() throws IOException {
+        String expected = "<html>" + NL + "<head>" + NL
+                + "<title>Word Counter : in.txt</title>" + NL + "</head>" + NL
+                + "<body>" + NL + "<h2>Word Counter in.txt</h2>" + NL
+                + "<hr />" + NL + "<table border=\"1\">" + NL + "<tr>" + NL
+                + "<th>Words</th>" + NL + "<th>Counts</th>" + NL + "</tr>"
+                + NL + "<tr>" + NL + "<td>a</td>" + NL + "<td>3</td>" + NL
+                + "</tr>" + NL + "<tr>" + NL + "<td>b</td>" + NL
+                + "<td>1200</td>" + NL + "</tr>" + NL + "</table>" + NL
+                + "<hr />" + NL + "<p> Total number of words: 1203</p>" + NL
+                + "</body>" + NL + "</html>" + NL;
+        assertEquals(expected,
+                report(StandardCharsets.UTF_8, "in.txt", "a", 3, "b", 1200));
+    }
+
+    /**
+     * Test escaping of words and of the file name.
+     *
+     * @throws IOException
+     *             never
+     */
+    @Test
+    public void testEscaping() throws IOException {
+        String html = report(StandardCharsets.UTF_8, "<a&b>.txt", "<td>", 1,
+                "\"x'", 2);
+        assertTrue(html.contains("<title>Word Counter : &lt;a&amp;b&gt;.txt"));
+        assertTrue(html.contains("<td>&lt;td&gt;</td>"));
+        assertTrue(html.contains("<td>&quot;x&#39;</td>"));
+    }
+
+    /**
+     * Test a report of approximate counts with error bounds and notes.
+     *
+     * @throws IOException
+     *             never
+     */
+    @Test
+    public void testBounds() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HtmlReportWriter writer = new HtmlReportWriter(
+                Channels.newChannel(bytes), StandardCharsets.UTF_8);
+        writer.begin("big.txt", true);
+        writer.row("the", 900, 12L);
+        writer.summary(5000);
+        writer.paragraph("about 3 < 4");
+        writer.end();
+        String html = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(html.contains("<th>Counts</th>" + NL
+                + "<th>Overestimated by at most</th>" + NL));
+        assertTrue(html.contains("<td>900</td>" + NL + "<td>12</td>" + NL));
+        assertTrue(html.endsWith("<p> Total number of words: 5000</p>" + NL
+                + "<p>about 3 &lt; 4</p>" + NL + "</body>" + NL + "</html>"
+                + NL));
+    }
+
+    /**
+     * Test rows spanning many buffer flushes, with a surrogate pair in every
+     * word.
+     *
+     * @throws IOException
+     *             never
+     */
+    @Test
+    public void testLargeReport() throws IOException {
+        final int rows = 20000;
+        Object[] args = new Object[2 * rows];
+        StringBuilder cells = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            String word = "w\ud83d\ude00" + i;
+            args[2 * i] = word;
+            args[2 * i + 1] = i;
+            cells.append("<td>").append(word).append("</td>");
+        }
+        String html = report(StandardCharsets.UTF_8, "f", args);
+        StringBuilder found = new StringBuilder();
+        for (String line : html.split(NL)) {
+            if (line.startsWith("<td>w")) {
+                found.append(line);
+            }
+        }
+        assertEquals(cells.toString(), found.toString());
+        long total = (long) rows * (rows - 1) / 2;
+        assertTrue(html.contains("<p> Total number of words: " + total));
+    }
+
+}
@@ -0,0 +1,148 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code HtmlTextFilter}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class HtmlTextFilterTest {
+
+    /**
+     * Returns the visible text of {@code html} fed in chunks of
+     * {@code chunk} characters, with tags shown as "|".
+     *
+     * @param html
+     *            the document
+     * @param chunk
+     *            the size of the chunks
+     * @return the visible text
+     */
+    private static String visible(String html, int chunk) {
+        final StringBuilder result = new StringBuilder();
+        HtmlTextFilter.TextSink sink = new HtmlTextFilter.TextSink() {
+            @Override
+            public void text(CharSequence text, int start, int end) {
+                result.append(text, start, end);
+            }
+        };
+        HtmlTextFilter filter = new HtmlTextFilter();
+        for (int i = 0; i < html.length(); i += chunk) {
+            filter.filter(html, i, Math.min(i + chunk, html.length()), sink);
+        }
+        filter.finish(sink);
+        return result.toString().replace('\n', '|');
+    }
+
+    /**
+     * Returns the visible text of {@code html}, checking that it is the same
+     * however the document is cut into chunks.
+     *
+     * @param html
+     *            the document
+     * @return the visible text
+     */
+    private static String visible(String html) {
+        String result = visible(html, html.length() + 1);
+        for (int chunk = 1; chunk <= 3; chunk++) {
+            assertEquals(result, visible(html, chunk));
+        }
+        return result;
+    }
+
+    /**
+     * Test skipping tags, including quoted attribute values.
+     */
+    @Test
+    public void testTags() {
+        assertEquals("|a||b|", visible("<td>a</td><td>b</td>"));
+        assertEquals("x|link|y",
+                visible("x<a href=\"p>q\" title='>'>link</a>y"));
+        assertEquals("|text", visible("<!DOCTYPE html>text"));
+        assertEquals("|text", visible("<?xml version=\"1.0\"?>text"));
+    }
+
+    /**
+     * Test skipping comments, scripts and styles.
+     */
+    @Test
+    public void testSkippedContent() {
+        assertEquals("a|b", visible("a<!-- <td>x</td> -- -->b"));
+        assertEquals("a||b",
+                visible("a<script>if (x < y) { s = '</p>'; }</script>b"));
+        assertEquals("a||b", visible("a<STYLE>p { }</Style >b"));
+        assertEquals("a|b|", visible("a<scripts>b</scripts>"));
+    }
+
+    /**
+     * Test decoding character references.
+     */
+    @Test
+    public void testReferences() {
+        assertEquals("<a & b>", visible("&lt;a &amp; b&gt;"));
+        assertEquals("caf\u00e9 \u00e9 \ud83d\ude00",
+                visible("caf&#233; &#xE9; &#x1F600;"));
+        assertEquals("a b", visible("a&nbsp;b"));
+        assertEquals("AT&T   & &;", visible("AT&T &bogus; &#xZZ; & &;"));
+        assertEquals("\ufffd", visible("&#0;"));
+    }
+
+    /**
+     * Test decoding named references inside words.
+     */
+    @Test
+    public void testNamedReferences() {
+        assertEquals("caf\u00e9 na\u00efve r\u00e9sum\u00e9", visible(
+                "caf&eacute; na&iuml;ve r&eacute;sum&eacute;"));
+        assertEquals("\u00c6sop \u00df \u03a9\u03c9 \u20ac5 a\u2014b",
+                visible("&AElig;sop &szlig; &Omega;&omega; &euro;5"
+                        + " a&mdash;b"));
+        assertEquals("a b c", visible("a&thinsp;b&emsp;c"));
+        assertEquals("\u00a9 2024", visible("&copy 2024"));
+        assertEquals("cafe", visible("caf&unknown;e"));
+
+        WordCountTable table = new WordCountTable();
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                table, new HtmlTextFilter());
+        String line = "<p>caf&eacute; na&iuml;ve r&eacute;sum&eacute;</p>";
+        tokenizer.feedLine(line, 0, line.length());
+        tokenizer.finish();
+        assertEquals(3, table.size());
+        assertEquals(1, table.count("caf\u00e9"));
+        assertEquals(1, table.count("na\u00efve"));
+        assertEquals(1, table.count("r\u00e9sum\u00e9"));
+    }
+
+    /**
+     * Test text that only looks like markup.
+     */
+    @Test
+    public void testLiteralText() {
+        assertEquals("a < b", visible("a < b"));
+        assertEquals("1<", visible("1<"));
+        assertEquals("x", visible("x<p unterminated"));
+    }
+
+    /**
+     * Test a tokenizer reading HTML a line at a time.
+     */
+    @Test
+    public void testTokenizer() {
+        WordCountTable table = new WordCountTable();
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                table, new HtmlTextFilter());
+        String[] lines = { "<tr><td class=\"w\">word</td>",
+            "<td>2</td></tr><!-- a", "comment --><p>word&lt;more" };
+        for (String line : lines) {
+            tokenizer.feedLine(line, 0, line.length());
+        }
+        tokenizer.finish();
+        assertEquals(3, table.size());
+        assertEquals(1, table.count("word"));
+        assertEquals(1, table.count("2"));
+        assertEquals(1, table.count("word<more"));
+    }
+
+}
@@ -0,0 +1,47 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code HyperLogLog}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class HyperLogLogTest {
+
+    /**
+     * Test small exact-ish cardinalities and repeated keys.
+     */
+    @Test
+    public void testSmall() {
+        HyperLogLog h = new HyperLogLog(12);
+        assertEquals(0, h.estimate());
+        for (int r = 0; r < 3; r++) {
+            for (int i = 0; i < 100; i++) {
+                String key = "w" + i;
+                h.add(ApproximateWordCounter.hash64(key, 0, key.length()));
+            }
+        }
+        assertEquals(100, h.estimate(), 2);
+        assertEquals(4096, h.bytes());
+    }
+
+    /**
+     * Test that a large cardinality is estimated within a few standard
+     * errors.
+     */
+    @Test
+    public void testLarge() {
+        final int n = 200000;
+        HyperLogLog h = new HyperLogLog(14);
+        for (int i = 0; i < n; i++) {
+            String key = Integer.toString(i);
+            h.add(ApproximateWordCounter.hash64(key, 0, key.length()));
+        }
+        double error = Math.abs(h.estimate() - n) / (double) n;
+        assertTrue(error < 4 * h.standardError());
+    }
+
+}
@@ -0,0 +1,52 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code LongIntTable}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class LongIntTableTest {
+
+    /**
+     * Test ids, counts and absent keys, including 0 and negative keys.
+     */
+    @Test
+    public void testIncrement() {
+        LongIntTable t = new LongIntTable();
+        assertEquals(0, t.increment(0L));
+        assertEquals(1, t.increment(-1L));
+        assertEquals(0, t.increment(0L));
+        assertEquals(1, t.add(-1L, 5));
+        assertEquals(2, t.size());
+        assertEquals(2, t.get(0L));
+        assertEquals(6, t.get(-1L));
+        assertEquals(0, t.get(1L));
+        assertEquals(-1L, t.key(1));
+        assertEquals(6, t.count(1));
+        t.clear();
+        assertEquals(0, t.size());
+        assertEquals(0, t.get(0L));
+    }
+
+    /**
+     * Test that growing keeps every key and count.
+     */
+    @Test
+    public void testGrow() {
+        final int keys = 5000;
+        final long stride = 1L << 40;
+        LongIntTable t = new LongIntTable(1);
+        for (int i = 0; i < keys; i++) {
+            t.add(i * stride, i % 7 + 1);
+        }
+        assertEquals(keys, t.size());
+        for (int i = 0; i < keys; i++) {
+            assertEquals(i % 7 + 1, t.get(i * stride));
+            assertEquals(i * stride, t.key(i));
+        }
+    }
+
+}
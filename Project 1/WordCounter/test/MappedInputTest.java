@@ -0,0 +1,94 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code MappedInput}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class MappedInputTest {
+
+    /**
+     * Test that mapping a file in small windows, so that characters of two
+     * to four bytes and line ends are split between windows at every
+     * offset, gives the words, bytes and lines of mapping it whole.
+     *
+     * @throws IOException
+     *             if the temporary file cannot be written or read
+     */
+    @Test
+    public void testSplitCharacters() throws IOException {
+        String text = "caf\u00e9 \u65e5\u672c\u8a9e\r\n\ud83d\ude00x"
+                + " na\u00efve\n\u00e9t\u00e9 \ud83d\ude00x caf\u00e9\r"
+                + "\u65e5\u672c\u8a9e";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Path input = Files.createTempFile("words", ".txt");
+        Files.write(input, bytes);
+        String name = input.toString();
+
+        WordCountTable whole = new WordCountTable();
+        MappedInput.tokenize(name, StandardCharsets.UTF_8,
+                new WordTokenizer(SeparatorSet.defaultSet(), whole));
+        assertEquals(5, whole.size());
+        assertEquals(2, whole.count("caf\u00e9"));
+        assertEquals(2, whole.count("\u65e5\u672c\u8a9e"));
+        assertEquals(2, whole.count("\ud83d\ude00x"));
+        assertEquals(1, whole.count("na\u00efve"));
+        assertEquals(1, whole.count("\u00e9t\u00e9"));
+
+        for (int window = MappedInput.MAX_CHARACTER_BYTES;
+                window <= bytes.length; window++) {
+            WordCountTable table = new WordCountTable();
+            RunMetrics metrics = new RunMetrics(name, StandardCharsets.UTF_8);
+            MappedInput.tokenize(name, StandardCharsets.UTF_8,
+                    new WordTokenizer(SeparatorSet.defaultSet(), table),
+                    metrics, window);
+            assertEquals(whole.size(), table.size());
+            SortedWordCounts sorted = SortedWordCounts.alphabetical(whole);
+            for (int i = 0; i < sorted.size(); i++) {
+                assertEquals("window " + window, sorted.count(i),
+                        table.count(sorted.word(i)));
+            }
+            assertEquals(bytes.length, metrics.bytes());
+            assertEquals(4, metrics.lines());
+        }
+        Files.delete(input);
+    }
+
+    /**
+     * Test that --mmap is rejected with the options that do not read the
+     * input through {@code MappedInput}, and that a paged report of a mapped
+     * input is counted on one thread.
+     */
+    @Test
+    public void testOptions() {
+        String[][] rejected = { { "--threads", "2" }, { "--index", "x.idx" },
+            { "--batch" } };
+        for (String[] option : rejected) {
+            String[] args = new String[option.length + 3];
+            System.arraycopy(option, 0, args, 0, option.length);
+            args[option.length] = "--mmap";
+            args[option.length + 1] = "in";
+            args[option.length + 2] = "out";
+            String message = null;
+            try {
+                WordCounterOptions.parse(args);
+            } catch (IllegalArgumentException e) {
+                message = e.getMessage();
+            }
+            assertEquals("--mmap cannot be combined with --batch, --index or"
+                    + " --threads", message);
+        }
+        WordCounterOptions options = WordCounterOptions.parse(new String[] {
+            "--mmap", "--page-size", "100", "in", "out" });
+        assertEquals(1, options.threads());
+    }
+
+}
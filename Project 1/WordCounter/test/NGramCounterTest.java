@@ -0,0 +1,74 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code NGramCounter}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class NGramCounterTest {
+
+    /**
+     * Returns the counter of the n-grams of {@code lines}.
+     *
+     * @param n
+     *            the number of words per n-gram
+     * @param lines
+     *            the lines
+     * @return the counter
+     */
+    private static NGramCounter count(int n, String... lines) {
+        NGramCounter counter = new NGramCounter(n);
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                counter);
+        for (String line : lines) {
+            tokenizer.feedLine(line, 0, line.length());
+        }
+        tokenizer.finish();
+        return counter;
+    }
+
+    /**
+     * Test counting bigrams across a line end, and decoding them.
+     */
+    @Test
+    public void testBigrams() {
+        NGramCounter c = count(2, "the cat and the", "cat sat");
+        assertEquals(4, c.size());
+        assertEquals(2, c.count("the", "cat"));
+        assertEquals(1, c.count("cat", "and"));
+        assertEquals(1, c.count("cat", "sat"));
+        assertEquals(0, c.count("sat", "the"));
+        assertEquals(0, c.count("dog", "the"));
+        assertEquals(2, c.vocabulary().count("cat"));
+        WordCountTable table = c.toTable();
+        assertEquals(4, table.size());
+        assertEquals(2, table.count("the cat"));
+        assertEquals(1, table.count("and the"));
+    }
+
+    /**
+     * Test trigrams, which pack three ids into a key, over a vocabulary
+     * large enough for ids to use many bits.
+     */
+    @Test
+    public void testTrigrams() {
+        final int words = 70000;
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            line.append('w').append(i).append(' ');
+        }
+        line.append("w0 w1 w2");
+        NGramCounter c = count(3, line.toString(), "w69998 w69999 w0");
+        assertEquals(2, c.count("w0", "w1", "w2"));
+        assertEquals(2, c.count("w69998", "w69999", "w0"));
+        assertEquals(1, c.count("w69999", "w0", "w1"));
+        assertEquals(1, c.count("w1", "w2", "w3"));
+        assertEquals(0, c.count("w2", "w1", "w0"));
+        assertEquals(2, c.toTable().count("w69998 w69999 w0"));
+        assertEquals(words + 2, c.size());
+    }
+
+}
@@ -0,0 +1,159 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code PagedReportWriter}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class PagedReportWriterTest {
+
+    /**
+     * Returns the number of times {@code part} occurs in {@code text}.
+     *
+     * @param text
+     *            the text
+     * @param part
+     *            the text searched for
+     * @return the number of occurrences
+     */
+    private static int occurrences(String text, String part) {
+        int n = 0;
+        int i = text.indexOf(part);
+        while (i >= 0) {
+            n++;
+            i = text.indexOf(part, i + part.length());
+        }
+        return n;
+    }
+
+    /**
+     * Returns the contents of {@code file}.
+     *
+     * @param file
+     *            the file
+     * @return the contents
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), Charset.defaultCharset());
+    }
+
+    /**
+     * Test the names of the pages.
+     */
+    @Test
+    public void testPageName() {
+        assertEquals("out/r-1.html", PagedReportWriter.pageName(
+                "out/r.html", 1, 9));
+        assertEquals("out/r-01.html", PagedReportWriter.pageName(
+                "out/r.html", 1, 10));
+        assertEquals("r.htm-10.html", PagedReportWriter.pageName(
+                "r.htm", 10, 10));
+    }
+
+    /**
+     * Test that every word is on exactly one page, in order, that the index
+     * links the first word of every page and that the pages link to their
+     * neighbours.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be used
+     */
+    @Test
+    public void testPages() throws IOException {
+        final int words = 25;
+        final int pageSize = 10;
+        WordCountTable t = new WordCountTable();
+        for (int i = 0; i < words; i++) {
+            t.add(String.format("w%02d", i), i + 1);
+        }
+        Path directory = Files.createTempDirectory("pages");
+        Path index = directory.resolve("report.html");
+        PagedReportWriter.write(SortedWordCounts.alphabetical(t),
+                t.totalWords(), "in.txt", index.toString(), pageSize, 2,
+                null);
+
+        String text = read(index);
+        assertEquals(3, occurrences(text, "<a href="));
+        assertTrue(text.contains("<a href=\"report-1.html\">w00</a>"));
+        assertTrue(text.contains("<a href=\"report-2.html\">w10</a>"));
+        assertTrue(text.contains("<a href=\"report-3.html\">w20</a>"));
+        assertTrue(text.contains("Total number of words: 325"));
+
+        int rows = 0;
+        for (int page = 1; page <= 3; page++) {
+            Path file = directory.resolve("report-" + page + ".html");
+            String html = read(file);
+            rows += occurrences(html, "<tr>") - 1;
+            assertTrue(html.contains("in.txt, page " + page + " of 3"));
+            assertTrue(html.contains("<td>w" + (page - 1) + "0</td>"));
+            assertTrue(html.contains("Total number of words: 325"));
+            assertTrue(html.contains("<a href=\"report.html\">Index</a>"));
+            assertEquals(page > 1, html.contains("Previous"));
+            assertEquals(page < 3, html.contains("Next"));
+            Files.delete(file);
+        }
+        assertEquals(words, rows);
+        assertFalse(Files.exists(directory.resolve("report-4.html")));
+        Files.delete(index);
+        Files.delete(directory);
+    }
+
+    /**
+     * Test that an empty report is an index with no pages.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be used
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        Path index = Files.createTempFile("report", ".html");
+        PagedReportWriter.write(
+                SortedWordCounts.alphabetical(new WordCountTable()), 0,
+                "in.txt", index.toString(), 1, 1, null);
+        String text = read(index);
+        assertEquals(0, occurrences(text, "<a href="));
+        assertTrue(text.endsWith("</html>" + System.lineSeparator()));
+        Files.delete(index);
+    }
+
+    /**
+     * Test that pages of only the frequent words give the total of every
+     * word, on the index and on each page.
+     *
+     * @throws IOException
+     *             if the temporary files cannot be used
+     */
+    @Test
+    public void testFilteredTotal() throws IOException {
+        WordCountTable t = new WordCountTable();
+        t.add("rare", 1);
+        t.add("often", 5);
+        t.add("always", 9);
+        Path directory = Files.createTempDirectory("pages");
+        Path index = directory.resolve("report.html");
+        PagedReportWriter.write(SortedWordCounts.alphabetical(t, 2),
+                t.totalWords(), "in.txt", index.toString(), 1, 1, null);
+        assertTrue(read(index).contains("Total number of words: 15"));
+        for (int page = 1; page <= 2; page++) {
+            Path file = directory.resolve("report-" + page + ".html");
+            assertTrue(read(file).contains("Total number of words: 15"));
+            Files.delete(file);
+        }
+        assertFalse(Files.exists(directory.resolve("report-3.html")));
+        Files.delete(index);
+        Files.delete(directory);
+    }
+
+}
@@ -0,0 +1,78 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ParallelWordCounter}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class ParallelWordCounterTest {
+
+    /**
+     * Number of pairs of lines of the input, enough for several ranges of
+     * at least a megabyte each.
+     */
+    private static final int PAIRS = 200000;
+
+    /**
+     * Asserts that {@code actual} holds the same words and counts as
+     * {@code expected}.
+     *
+     * @param expected
+     *            the expected table
+     * @param actual
+     *            the actual table
+     */
+    private static void assertSameCounts(WordCountTable expected,
+            WordCountTable actual) {
+        assertEquals(expected.size(), actual.size());
+        SortedWordCounts sorted = SortedWordCounts.alphabetical(expected);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.word(i), sorted.count(i),
+                    actual.count(sorted.word(i)));
+        }
+    }
+
+    /**
+     * Test that counting on several threads gives the counts of the
+     * sequential path. The only separators of the input are the "\r\n" line
+     * ends, between words that start and end with multi-byte characters, so
+     * every range is cut right after a carriage return, between it and its
+     * line feed, and next to a character of two to four bytes.
+     *
+     * @throws IOException
+     *             if the temporary file cannot be written or read
+     */
+    @Test
+    public void testSameAsSequential() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < PAIRS; i++) {
+            text.append("\u65e5\u672c").append(i % 97).append("\u00e9\r\n")
+                    .append("\ud83d\ude00").append(i % 13)
+                    .append("\u00fc\r\n");
+        }
+        Path input = Files.createTempFile("words", ".txt");
+        Files.write(input, text.toString().getBytes(StandardCharsets.UTF_8));
+        String name = input.toString();
+        WordCounterOptions options = WordCounterOptions
+                .parse(new String[] { name, "out" });
+        WordCountTable sequential = WordCounter.countFile(name, options, 1);
+        assertEquals(97 + 13, sequential.size());
+        int[] threads = { 2, 3, 4, 8 };
+        for (int n : threads) {
+            assertSameCounts(sequential, ParallelWordCounter.count(name,
+                    SeparatorSet.defaultSet(), null, n));
+            assertSameCounts(sequential, WordCounter.countFile(name, options,
+                    n));
+        }
+        Files.delete(input);
+    }
+
+}
@@ -0,0 +1,224 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code RunMetrics}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class RunMetricsTest {
+
+    /**
+     * Test that the timed sink counts every word, sampled or not, and keeps
+     * the byte fast path of a table.
+     */
+    @Test
+    public void testTimedSinkCountsEveryWord() {
+        RunMetrics metrics = new RunMetrics("in", StandardCharsets.UTF_8);
+        WordCountTable table = new WordCountTable();
+        WordTokenizer.WordSink timed = metrics.timed(table);
+        assertTrue(timed instanceof WordTokenizer.ByteWordSink);
+
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                timed);
+        final int n = 3 * RunMetrics.SAMPLE_INTERVAL + 1;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            text.append("w").append(i % 10).append(' ');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(
+                text.toString().getBytes(StandardCharsets.UTF_8));
+        tokenizer.feed(bytes, StandardCharsets.UTF_8.newDecoder(),
+                CharBuffer.allocate(text.length()), true);
+        tokenizer.finish();
+        assertEquals(n, metrics.tokens());
+        assertEquals(10, table.size());
+
+        metrics.counted(table);
+        assertEquals(n, metrics.tokens());
+    }
+
+    /**
+     * Test that the bytes read and their lines are counted, a last line
+     * without a line end included.
+     */
+    @Test
+    public void testRead() {
+        RunMetrics metrics = new RunMetrics("in", StandardCharsets.US_ASCII);
+        ByteBuffer bytes = ByteBuffer
+                .wrap("a\nbb\n\nc".getBytes(StandardCharsets.US_ASCII));
+        metrics.read(bytes, 1, bytes.limit());
+        metrics.addBytes(1);
+        assertEquals(7, metrics.bytes());
+        assertEquals(4, metrics.lines());
+
+        metrics.read(ByteBuffer.wrap(new byte[] { '\n' }), 0, 1);
+        assertEquals(4, metrics.lines());
+    }
+
+    /**
+     * Test that a table counts its probes and a merge adds them up.
+     */
+    @Test
+    public void testProbes() {
+        WordCountTable table = new WordCountTable();
+        table.increment("one", 0, 3);
+        table.increment("two", 0, 3);
+        table.increment("one", 0, 3);
+        long probes = table.probes();
+        assertTrue(probes >= 3);
+
+        WordCountTable other = new WordCountTable();
+        other.increment("three", 0, 5);
+        long otherProbes = other.probes();
+        table.merge(other);
+        assertTrue(table.probes() >= probes + otherProbes);
+    }
+
+    /**
+     * Test that a table counted without the timed sink gives the tokens, and
+     * that the summary has every counter and stage.
+     */
+    @Test
+    public void testSummary() {
+        RunMetrics metrics = new RunMetrics("a \"b\".txt",
+                StandardCharsets.UTF_8);
+        WordCountTable table = new WordCountTable();
+        table.add("one", 2);
+        table.add("two", 3);
+        metrics.counted(table);
+        assertEquals(5, metrics.tokens());
+
+        long since = System.nanoTime();
+        metrics.time(RunMetrics.Stage.SORT, since);
+        metrics.finish();
+        String json = metrics.toJson();
+        assertTrue(json.startsWith("{\"input\": \"a \\\"b\\\".txt\""));
+        String[] keys = { "bytes", "lines", "tokens", "distinctWords",
+            "probes", "read", "tokenize", "count", "sort", "render", "total",
+            "megabytesPerSecond", "tokensPerSecond" };
+        for (String key : keys) {
+            assertTrue(key, json.contains("\"" + key + "\": "));
+        }
+        assertTrue(json.contains("\"distinctWords\": 2,"));
+        assertTrue(metrics.nanos(RunMetrics.Stage.SORT) >= 0);
+    }
+
+    /**
+     * Returns the number after {@code "key": } in {@code json}.
+     *
+     * @param json
+     *            the summary
+     * @param key
+     *            the key
+     * @return the number
+     */
+    private static long value(String json, String key) {
+        int start = json.indexOf("\"" + key + "\": ") + key.length() + 4;
+        int end = start;
+        while (end < json.length() && (json.charAt(end) == '-'
+                || Character.isDigit(json.charAt(end)))) {
+            end++;
+        }
+        return Long.parseLong(json.substring(start, end));
+    }
+
+    /**
+     * Test that a run over a real input, read line by line, mapped or on
+     * several threads, has time left for tokenizing once the read and count
+     * times are taken out, and that every way of reading counts the same
+     * lines, whatever their line ends.
+     *
+     * @throws IOException
+     *             if a file cannot be written or read
+     */
+    @Test
+    public void testStagesOfRun() throws IOException {
+        final int lines = 20000;
+        StringBuilder text = new StringBuilder();
+        String[] ends = { "\n", "\r\n", "\r" };
+        for (int i = 0; i < lines; i++) {
+            text.append("line ").append(i % 300).append(" of the text")
+                    .append(ends[i % ends.length]);
+        }
+        text.append("last line");
+        Path input = Files.createTempFile("words", ".txt");
+        Files.write(input, text.toString().getBytes(StandardCharsets.UTF_8));
+        Path output = Files.createTempFile("words", ".html");
+        Path summary = Files.createTempFile("metrics", ".json");
+        String[][] modes = { {}, { "--mmap" }, { "--threads", "2" },
+            { "--threads", "2", "--shared-table" } };
+        for (String[] mode : modes) {
+            String[] args = new String[mode.length + 4];
+            System.arraycopy(mode, 0, args, 0, mode.length);
+            args[mode.length] = "--metrics";
+            args[mode.length + 1] = summary.toString();
+            args[mode.length + 2] = input.toString();
+            args[mode.length + 3] = output.toString();
+            WordCounter.count(WordCounterOptions.parse(args));
+            String json = new String(Files.readAllBytes(summary),
+                    StandardCharsets.UTF_8);
+            assertEquals(lines + 1, value(json, "lines"));
+            assertEquals(text.length(), value(json, "bytes"));
+            assertTrue(json, value(json, "tokenize") > 0);
+            //a pass on several threads is timed as a whole
+            if (mode.length < 2) {
+                assertTrue(json, value(json, "count") > 0);
+            }
+            assertTrue(json, json.contains("\"consistent\": true"));
+        }
+        Files.delete(input);
+        Files.delete(output);
+        Files.delete(summary);
+    }
+
+    /**
+     * Test that the lines of an input read as two ranges add up to those of
+     * the whole input wherever it is cut, even between the carriage return
+     * and the line feed of a line end.
+     *
+     * @throws IOException
+     *             if a file cannot be written or read
+     */
+    @Test
+    public void testRangeLines() throws IOException {
+        String text = "a\r\nb\n\nc\rd\r\n\r e";
+        Path input = Files.createTempFile("lines", ".txt");
+        Files.write(input, text.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(input,
+                StandardOpenOption.READ)) {
+            for (int cut = 1; cut < text.length(); cut++) {
+                char before = text.charAt(cut - 1);
+                if (before == '\r' || before == '\n' || before == ' ') {
+                    RunMetrics metrics = new RunMetrics("in",
+                            StandardCharsets.UTF_8);
+                    WordCountTable table = new WordCountTable();
+                    ParallelWordCounter.tokenizeRange(channel, cut,
+                            text.length(), StandardCharsets.UTF_8,
+                            new WordTokenizer(SeparatorSet.defaultSet(), table),
+                            metrics);
+                    ParallelWordCounter.tokenizeRange(channel, 0, cut,
+                            StandardCharsets.UTF_8,
+                            new WordTokenizer(SeparatorSet.defaultSet(), table),
+                            metrics);
+                    assertEquals("cut at " + cut, 7, metrics.lines());
+                    assertEquals(5, table.size());
+                }
+            }
+        }
+        Files.delete(input);
+    }
+
+}
@@ -0,0 +1,140 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code SeparatorSet}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class SeparatorSetTest {
+
+    /**
+     * Test the default separators.
+     */
+    @Test
+    public void testDefaultSet() {
+        SeparatorSet s = SeparatorSet.defaultSet();
+        for (int i = 0; i < SeparatorSet.DEFAULT_SEPARATORS.length(); i++) {
+            char c = SeparatorSet.DEFAULT_SEPARATORS.charAt(i);
+            assertTrue(s.isSeparator(c));
+        }
+        assertTrue(s.isSeparator('\n'));
+        assertTrue(s.isSeparator('\r'));
+        assertFalse(s.isSeparator('a'));
+        assertFalse(s.isSeparator('Z'));
+        assertFalse(s.isSeparator('0'));
+        assertFalse(s.isSeparator('\t'));
+        assertFalse(s.isSeparator('\u00e9'));
+        assertFalse(s.isSeparator('\uff0c'));
+    }
+
+    /**
+     * Test that the empty constructor only has line terminators.
+     */
+    @Test
+    public void testConstructor() {
+        SeparatorSet s = new SeparatorSet();
+        assertTrue(s.isSeparator('\n'));
+        assertTrue(s.isSeparator('\r'));
+        assertFalse(s.isSeparator(' '));
+        assertFalse(s.isSeparator('\u3002'));
+    }
+
+    /**
+     * Test adding ASCII and non-ASCII characters one at a time.
+     */
+    @Test
+    public void testAdd() {
+        SeparatorSet s = new SeparatorSet();
+        s.add('?');
+        s.add('~');
+        s.add('\u3002');
+        s.add('\uffff');
+        assertTrue(s.isSeparator('?'));
+        assertTrue(s.isSeparator('~'));
+        assertTrue(s.isSeparator('\u3002'));
+        assertTrue(s.isSeparator('\uffff'));
+        assertFalse(s.isSeparator('\u3001'));
+        assertFalse(s.isSeparator('\u007f'));
+        assertFalse(s.isSeparator('\u00bf'));
+        s.add('\u007f');
+        assertTrue(s.isSeparator('\u007f'));
+    }
+
+    /**
+     * Test escapes in a spec.
+     */
+    @Test
+    public void testFromSpecEscapes() {
+        SeparatorSet s = SeparatorSet.fromSpec("a\\t\\\\\\x3002");
+        assertTrue(s.isSeparator('a'));
+        assertTrue(s.isSeparator('\t'));
+        assertTrue(s.isSeparator('\\'));
+        assertTrue(s.isSeparator('\u3002'));
+        assertFalse(s.isSeparator('x'));
+        assertFalse(s.isSeparator('3'));
+    }
+
+    /**
+     * Test whitespace in a spec.
+     */
+    @Test
+    public void testFromSpecWhitespace() {
+        SeparatorSet s = SeparatorSet.fromSpec("\\s");
+        assertTrue(s.isSeparator(' '));
+        assertTrue(s.isSeparator('\t'));
+        assertTrue(s.isSeparator('\u2003'));
+        assertFalse(s.isSeparator('_'));
+    }
+
+    /**
+     * Test a major Unicode category in a spec.
+     */
+    @Test
+    public void testFromSpecMajorCategory() {
+        SeparatorSet s = SeparatorSet.fromSpec("\\p{P}");
+        assertTrue(s.isSeparator('.'));
+        assertTrue(s.isSeparator('-'));
+        assertTrue(s.isSeparator('('));
+        assertTrue(s.isSeparator('\uff0c'));
+        assertTrue(s.isSeparator('\u3002'));
+        assertFalse(s.isSeparator('+'));
+        assertFalse(s.isSeparator(' '));
+        assertFalse(s.isSeparator('a'));
+    }
+
+    /**
+     * Test a two-letter Unicode category in a spec.
+     */
+    @Test
+    public void testFromSpecCategory() {
+        SeparatorSet s = SeparatorSet.fromSpec("\\p{Pd}\\p{Zs}");
+        assertTrue(s.isSeparator('-'));
+        assertTrue(s.isSeparator(' '));
+        assertTrue(s.isSeparator('\u3000'));
+        assertFalse(s.isSeparator('.'));
+    }
+
+    /**
+     * Test that malformed specs are rejected.
+     */
+    @Test
+    public void testFromSpecMalformed() {
+        String[] specs = { "\\", "\\q", "\\x12", "\\xzzzz", "\\p{Qq}",
+                "\\pP" };
+        int rejected = 0;
+        for (String spec : specs) {
+            try {
+                SeparatorSet.fromSpec(spec);
+            } catch (IllegalArgumentException e) {
+                rejected++;
+            }
+        }
+        assertEquals(specs.length, rejected);
+    }
+
+}
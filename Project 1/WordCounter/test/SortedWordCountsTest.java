@@ -0,0 +1,265 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code SortedWordCounts} and
+ * {@code WordCounter.sortMap}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class SortedWordCountsTest {
+
+    /**
+     * Words whose case-insensitive order is not their {@code String} order.
+     */
+    private static final String[] WORDS = { "b", "A", "a", "Zebra", "zoo",
+        "apple", "\u00c9t\u00e9", "ete", "\u00b5", "\u039c", "\u00ff",
+        "\u0178x", "\uff0c", "\ud83d\ude00", "_", "10", "9" };
+
+    /**
+     * Returns the sign of {@code x}.
+     *
+     * @param x
+     *            the number
+     * @return -1, 0 or 1
+     */
+    private static int sign(int x) {
+        return Integer.signum(x);
+    }
+
+    /**
+     * Test that comparing collation keys agrees with compareToIgnoreCase.
+     */
+    @Test
+    public void testCompareKeysMatchesCompareToIgnoreCase() {
+        for (String a : WORDS) {
+            for (String b : WORDS) {
+                String keyA = SortedWordCounts.collationKey(a);
+                String keyB = SortedWordCounts.collationKey(b);
+                assertEquals(a + " vs " + b, sign(a.compareToIgnoreCase(b)),
+                        sign(SortedWordCounts.compareKeys(keyA, keyB)));
+            }
+        }
+    }
+
+    /**
+     * Test that a word without upper case letters is its own key.
+     */
+    @Test
+    public void testCollationKeyIdentity() {
+        String word = "already folded";
+        assertTrue(word == SortedWordCounts.collationKey(word));
+        assertEquals("mixed", SortedWordCounts.collationKey("MiXeD"));
+    }
+
+    /**
+     * Test sorting a table alphabetically.
+     */
+    @Test
+    public void testAlphabeticalTable() {
+        WordCountTable t = new WordCountTable();
+        t.add("the", 2);
+        t.add("And", 1);
+        t.add("and", 3);
+        t.add("Beach", 1);
+        SortedWordCounts sorted = SortedWordCounts.alphabetical(t);
+        assertEquals(4, sorted.size());
+        assertEquals("And", sorted.word(0));
+        assertEquals("and", sorted.word(1));
+        assertEquals("Beach", sorted.word(2));
+        assertEquals("the", sorted.word(3));
+        assertArrayEquals(new int[] { 1, 3, 1, 2 }, new int[] {
+            sorted.count(0), sorted.count(1), sorted.count(2),
+            sorted.count(3) });
+    }
+
+    /**
+     * Test that sortMap fills the queue and leaves the map alone.
+     */
+    @Test
+    public void testSortMap() {
+        Map<String, Integer> word = new Map1L<String, Integer>();
+        word.add("we", 1);
+        word.add("Shall", 2);
+        word.add("fight", 3);
+        Map<String, Integer> expected = new Map1L<String, Integer>();
+        expected.add("we", 1);
+        expected.add("Shall", 2);
+        expected.add("fight", 3);
+        Queue<String> wordQueue = new Queue1L<String>();
+        wordQueue.enqueue("stale");
+        WordCounter.sortMap(word, new WordCounter.WordComparator(),
+                wordQueue);
+        Queue<String> expectedQueue = new Queue1L<String>();
+        expectedQueue.enqueue("fight");
+        expectedQueue.enqueue("Shall");
+        expectedQueue.enqueue("we");
+        assertEquals(expectedQueue, wordQueue);
+        assertEquals(expected, word);
+    }
+
+    /**
+     * Test that sortMap sorts with the order of a subclass of WordComparator
+     * that overrides it, not with the collation keys of WordComparator.
+     */
+    @Test
+    public void testSortMapSubclass() {
+        Map<String, Integer> word = new Map1L<String, Integer>();
+        word.add("we", 1);
+        word.add("Shall", 2);
+        word.add("fight", 3);
+        Queue<String> wordQueue = new Queue1L<String>();
+        WordCounter.sortMap(word, new WordCounter.WordComparator() {
+            @Override
+            public int compare(String o1, String o2) {
+                return -super.compare(o1, o2);
+            }
+        }, wordQueue);
+        Queue<String> expectedQueue = new Queue1L<String>();
+        expectedQueue.enqueue("we");
+        expectedQueue.enqueue("Shall");
+        expectedQueue.enqueue("fight");
+        assertEquals(expectedQueue, wordQueue);
+    }
+
+    /**
+     * Test ordering by frequency against a comparison sort, with counts above
+     * the number of words and ties broken alphabetically.
+     */
+    @Test
+    public void testByFrequencyTable() {
+        final int words = 300;
+        WordCountTable t = new WordCountTable();
+        for (int i = 0; i < words; i++) {
+            t.add("w" + (i * 37 % words), 1 + i * i % 11);
+        }
+        t.add("Big", 5000);
+        t.add("big", 5000);
+        t.add("huge", 9000);
+        SortedWordCounts sorted = SortedWordCounts.byFrequency(t);
+        assertEquals(t.size(), sorted.size());
+        assertEquals("huge", sorted.word(0));
+        assertEquals("Big", sorted.word(1));
+        assertEquals("big", sorted.word(2));
+        WordCounter.WordComparator order = new WordCounter.WordComparator();
+        for (int i = 1; i < sorted.size(); i++) {
+            int c = sorted.count(i - 1) - sorted.count(i);
+            assertTrue(c >= 0);
+            if (c == 0) {
+                assertTrue(order.compare(sorted.word(i - 1),
+                        sorted.word(i)) <= 0);
+            }
+            assertEquals(t.count(sorted.word(i)), sorted.count(i));
+        }
+    }
+
+    /**
+     * Test that words below the minimum count are dropped before sorting, in
+     * either order, and by mapGenerate along with the stop words.
+     *
+     * @throws IOException
+     *             if the temporary file cannot be used
+     */
+    @Test
+    public void testMinCount() throws IOException {
+        WordCountTable t = new WordCountTable();
+        t.add("rare", 1);
+        t.add("Often", 3);
+        t.add("some", 2);
+        t.add("all", 4);
+        SortedWordCounts sorted = SortedWordCounts.alphabetical(t, 2);
+        assertArrayEquals(new String[] { "all", "Often", "some" },
+                new String[] { sorted.word(0), sorted.word(1),
+                    sorted.word(2) });
+        assertEquals(3, sorted.size());
+        sorted = SortedWordCounts.byFrequency(t, 3);
+        assertEquals(2, sorted.size());
+        assertEquals("all", sorted.word(0));
+        assertEquals("Often", sorted.word(1));
+
+        Map<String, Integer> word = new Map1L<String, Integer>();
+        Path input = Files.createTempFile("words", ".txt");
+        String text = "We shall fight on the beaches,\nwe shall fight on"
+                + " the landing grounds\n";
+        Files.write(input, text.getBytes(StandardCharsets.UTF_8));
+        SimpleReader file = new SimpleReader1L(input.toString());
+        WordCounter.mapGenerate(file, word, SeparatorSet.defaultSet(),
+                StopWordSet.of("we", "the", "on"), 2);
+        file.close();
+        Files.delete(input);
+        assertEquals(2, word.size());
+        assertEquals(2, word.value("shall").intValue());
+        assertEquals(2, word.value("fight").intValue());
+    }
+
+    /**
+     * Test that sortMapByFrequency fills the queue by descending count.
+     */
+    @Test
+    public void testSortMapByFrequency() {
+        Map<String, Integer> word = new Map1L<String, Integer>();
+        word.add("we", 2);
+        word.add("Shall", 2);
+        word.add("fight", 3);
+        word.add("on", 1);
+        Queue<String> wordQueue = new Queue1L<String>();
+        wordQueue.enqueue("stale");
+        WordCounter.sortMapByFrequency(word, wordQueue);
+        Queue<String> expectedQueue = new Queue1L<String>();
+        expectedQueue.enqueue("fight");
+        expectedQueue.enqueue("Shall");
+        expectedQueue.enqueue("we");
+        expectedQueue.enqueue("on");
+        assertEquals(expectedQueue, wordQueue);
+        assertEquals(4, word.size());
+    }
+
+    /**
+     * Test that a report leaving out the rare words, in memory or merged
+     * from runs on disk, still gives the number of words in the input as
+     * its total.
+     *
+     * @throws IOException
+     *             if a file cannot be written or read
+     */
+    @Test
+    public void testMinCountReportTotal() throws IOException {
+        Path input = Files.createTempFile("words", ".txt");
+        Files.write(input, "a b b c c c\nd d d d\n"
+                .getBytes(StandardCharsets.UTF_8));
+        Path output = Files.createTempFile("words", ".html");
+        String[][] modes = { {}, { "--max-memory", "1M" } };
+        for (String[] mode : modes) {
+            String[] args = new String[mode.length + 4];
+            System.arraycopy(mode, 0, args, 0, mode.length);
+            args[mode.length] = "--min-count";
+            args[mode.length + 1] = "3";
+            args[mode.length + 2] = input.toString();
+            args[mode.length + 3] = output.toString();
+            WordCounter.count(WordCounterOptions.parse(args));
+            String html = new String(Files.readAllBytes(output),
+                    StandardCharsets.UTF_8);
+            assertTrue(html.contains("Total number of words: 10</p>"));
+            assertTrue(html.contains(">d<") && !html.contains(">b<"));
+        }
+        Files.delete(input);
+        Files.delete(output);
+    }
+
+}
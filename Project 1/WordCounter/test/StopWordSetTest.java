@@ -0,0 +1,126 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code StopWordSet}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class StopWordSetTest {
+
+    /**
+     * Returns the ASCII bytes of {@code s}.
+     *
+     * @param s
+     *            the text
+     * @return the bytes
+     */
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Test that every word of a large set is found, ignoring case, through
+     * characters and bytes alike, and that other words are not.
+     */
+    @Test
+    public void testMembership() {
+        final int n = 5000;
+        String[] words = new String[n];
+        for (int i = 0; i < n; i++) {
+            words[i] = "w" + Integer.toString(i, Character.MAX_RADIX);
+        }
+        StopWordSet set = StopWordSet.of(words);
+        assertEquals(n, set.size());
+        for (int i = 0; i < n; i++) {
+            String upper = words[i].toUpperCase();
+            assertTrue(words[i], set.contains(words[i], 0, words[i].length()));
+            assertTrue(set.contains("[" + upper + "]", 1,
+                    upper.length() + 1));
+            assertTrue(set.contains(bytes(upper), 0, upper.length()));
+            String other = "x" + words[i];
+            assertFalse(set.contains(other, 0, other.length()));
+            assertFalse(set.contains(bytes(other), 0, other.length()));
+            String longer = words[i] + "-";
+            assertFalse(set.contains(longer, 0, longer.length()));
+        }
+    }
+
+    /**
+     * Test small and empty sets, duplicates and non-ASCII words.
+     */
+    @Test
+    public void testSmall() {
+        StopWordSet empty = StopWordSet.of();
+        assertEquals(0, empty.size());
+        assertFalse(empty.contains("the", 0, 3));
+        assertFalse(empty.contains(bytes("the"), 0, 3));
+
+        StopWordSet set = StopWordSet.of("the", "THE", "\u00c9t\u00e9");
+        assertEquals(2, set.size());
+        assertTrue(set.contains("The", 0, 3));
+        assertTrue(set.contains("\u00e9T\u00c9", 0, 3));
+        assertFalse(set.contains("then", 0, 4));
+        assertFalse(set.contains("", 0, 0));
+    }
+
+    /**
+     * Test that stop words are dropped inside the counting loop, on the
+     * decoding path and on the ASCII byte path, and that the filter keeps
+     * the byte path of a table.
+     */
+    @Test
+    public void testWrap() {
+        StopWordSet set = StopWordSet.of("a", "the", "of");
+        WordCountTable t = new WordCountTable();
+        assertSame(t, StopWordSet.wrap(null, t));
+        WordTokenizer.WordSink filtered = StopWordSet.wrap(set, t);
+        assertTrue(filtered instanceof WordTokenizer.ByteWordSink);
+
+        String text = "The cost of a word is the cost of one lookup ";
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                filtered);
+        tokenizer.feedLine(text, 0, text.length());
+        tokenizer.feed(bytes(text), StandardCharsets.US_ASCII.newDecoder(),
+                CharBuffer.allocate(text.length()), true);
+        tokenizer.finish();
+        assertEquals(-1, t.id("the", 0, 3));
+        assertEquals(-1, t.id("The", 0, 3));
+        assertEquals(-1, t.id("of", 0, 2));
+        assertEquals(4, t.count("cost"));
+        assertEquals(2, t.count("lookup"));
+        assertEquals(5, t.size());
+    }
+
+    /**
+     * Test reading a stop word file with comments and blank lines.
+     *
+     * @throws IOException
+     *             if the temporary file cannot be used
+     */
+    @Test
+    public void testFromFile() throws IOException {
+        Path file = Files.createTempFile("stop", ".txt");
+        Files.write(file, "# English\nthe\n\n  And  \nof 12\n"
+                .getBytes(StandardCharsets.UTF_8));
+        StopWordSet set = StopWordSet.fromFile(file.toString());
+        Files.delete(file);
+        assertEquals(3, set.size());
+        assertTrue(set.contains("and", 0, 3));
+        assertTrue(set.contains("OF", 0, 2));
+        assertFalse(set.contains("#", 0, 1));
+    }
+
+}
@@ -0,0 +1,114 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code TextStatistics} and the built-in
+ * statistics.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class TextStatisticsTest {
+
+    /**
+     * Test that with no statistic nothing is placed in front of the sink or
+     * the tokenizer.
+     */
+    @Test
+    public void testNoneCostsNothing() {
+        TextStatistics statistics = new TextStatistics();
+        WordCountTable table = new WordCountTable();
+        assertSame(table, statistics.wrap(table));
+        assertNull(statistics.observer());
+    }
+
+    /**
+     * Test lines, blank lines, the longest line and the characters, fed a
+     * line at a time by the tokenizer and with a last line missing its line
+     * end.
+     */
+    @Test
+    public void testLines() {
+        LineStatistics lines = new LineStatistics();
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                new WordCountTable(), null, lines);
+        String[] input = { "one two", "", "  ", "three" };
+        for (String line : input) {
+            tokenizer.feedLine(line, 0, line.length());
+        }
+        tokenizer.finish();
+        assertEquals(4, lines.lines());
+        assertEquals(2, lines.blankLines());
+        assertEquals(7, lines.longest());
+        assertEquals(14, lines.characters());
+
+        LineStatistics chunks = new LineStatistics();
+        chunks.text("ab\r\ncd", 0, 6);
+        assertEquals(2, chunks.lines());
+        assertEquals(0, chunks.blankLines());
+        assertEquals(4, chunks.characters());
+    }
+
+    /**
+     * Test the word length histogram, in code points, alongside counting.
+     */
+    @Test
+    public void testLengths() {
+        TextStatistics statistics = TextStatistics.of("lengths");
+        WordCountTable table = new WordCountTable();
+        WordTokenizer tokenizer = new WordTokenizer(SeparatorSet.defaultSet(),
+                statistics.wrap(table), null, statistics.observer());
+        String line = "a bb cc \ud83d\ude00\ud83d\ude00 abcdefghijklmnop"
+                + "qrstuvwxyzabcdefghij";
+        tokenizer.feedLine(line, 0, line.length());
+        tokenizer.finish();
+        assertEquals(5, table.size());
+
+        WordLengthHistogram lengths = new WordLengthHistogram();
+        WordTokenizer plain = new WordTokenizer(SeparatorSet.defaultSet(),
+                lengths);
+        plain.feedLine(line, 0, line.length());
+        plain.finish();
+        assertEquals(1, lengths.count(1));
+        assertEquals(3, lengths.count(2));
+        assertEquals(1, lengths.count(36));
+        assertEquals(0, lengths.count(100));
+    }
+
+    /**
+     * Test character frequencies, with a surrogate pair split between two
+     * chunks.
+     */
+    @Test
+    public void testCharacters() {
+        CharacterFrequencies characters = new CharacterFrequencies();
+        String text = "aab\ud83d\ude00a\n";
+        characters.text(text, 0, 4);
+        characters.text(text, 4, text.length());
+        assertEquals(3, characters.count('a'));
+        assertEquals(1, characters.count('b'));
+        assertEquals(1, characters.count('\n'));
+        assertEquals(1, characters.count(0x1F600));
+        assertEquals(0, characters.count(0xD83D));
+        assertEquals(0, characters.count(0));
+    }
+
+    /**
+     * Test that "all" gathers every statistic and that an unknown name is
+     * rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNames() {
+        TextStatistics all = TextStatistics.of("all");
+        WordCountTable table = new WordCountTable();
+        assertNotSame(table, all.wrap(table));
+        assertNotNull(all.observer());
+        TextStatistics.of("lines,words");
+    }
+
+}
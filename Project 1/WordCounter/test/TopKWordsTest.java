@@ -0,0 +1,128 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code TopKWords}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class TopKWordsTest {
+
+    /**
+     * Order of words with equal counts.
+     */
+    private static final Comparator<String> ORDER = new WordCounter
+            .WordComparator();
+
+    /**
+     * Returns a table with the given words and counts.
+     *
+     * @param args
+     *            the (word, count) pairs
+     * @return the table
+     */
+    private static WordCountTable table(String... args) {
+        WordCountTable t = new WordCountTable();
+        for (int i = 0; i < args.length; i += 2) {
+            t.add(args[i], Integer.parseInt(args[i + 1]));
+        }
+        return t;
+    }
+
+    /**
+     * Returns the words of {@code sorted} in order.
+     *
+     * @param sorted
+     *            the sorted words
+     * @return the words
+     */
+    private static String[] words(SortedWordCounts sorted) {
+        String[] result = new String[sorted.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sorted.word(i);
+        }
+        return result;
+    }
+
+    /**
+     * Test selecting fewer words than there are.
+     */
+    @Test
+    public void testSelectSome() {
+        WordCountTable t = table("d", "1", "b", "5", "a", "2", "c", "5", "e",
+                "3");
+        SortedWordCounts top = TopKWords.select(t, 3, ORDER);
+        assertArrayEquals(new String[] { "b", "c", "e" }, words(top));
+        assertEquals(5, top.count(0));
+        assertEquals(5, top.count(1));
+        assertEquals(3, top.count(2));
+    }
+
+    /**
+     * Test selecting more words than there are.
+     */
+    @Test
+    public void testSelectAll() {
+        WordCountTable t = table("x", "1", "Y", "1", "a", "1", "B", "2");
+        SortedWordCounts top = TopKWords.select(t, 10, ORDER);
+        assertArrayEquals(new String[] { "B", "a", "x", "Y" }, words(top));
+    }
+
+    /**
+     * Test that ties are broken alphabetically on a larger vocabulary.
+     */
+    @Test
+    public void testTies() {
+        final int words = 1000;
+        WordCountTable t = new WordCountTable();
+        for (int i = words - 1; i >= 0; i--) {
+            t.add(String.format("w%04d", i), i % 2);
+        }
+        SortedWordCounts top = TopKWords.select(t, 3, ORDER);
+        assertArrayEquals(new String[] { "w0001", "w0003", "w0005" },
+                words(top));
+    }
+
+    /**
+     * Test that words below the minimum count are never selected, even when
+     * fewer than k words are left.
+     */
+    @Test
+    public void testMinCount() {
+        WordCountTable t = table("x", "1", "Y", "3", "a", "2", "B", "5");
+        SortedWordCounts top = TopKWords.select(t, 3, ORDER, 3);
+        assertArrayEquals(new String[] { "B", "Y" }, words(top));
+    }
+
+    /**
+     * Test that a top-K report gives the number of words in the input as
+     * its total, not the sum of the rows it shows.
+     *
+     * @throws IOException
+     *             if the report cannot be written or read
+     */
+    @Test
+    public void testReportTotal() throws IOException {
+        WordCountTable t = table("x", "1", "Y", "3", "a", "2", "B", "5");
+        Path output = Files.createTempFile("top", ".html");
+        WordCounter.report(t,
+                WordCounterOptions.parse(new String[] { "--top", "2", "in",
+                    output.toString() }),
+                "in", output.toString());
+        String html = new String(Files.readAllBytes(output),
+                Charset.defaultCharset());
+        Files.delete(output);
+        assertTrue(html.contains("Total number of words: 11</p>"));
+    }
+
+}
@@ -0,0 +1,149 @@
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code WordCountTable}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class WordCountTableTest {
+
+    /**
+     * Test the empty table.
+     */
+    @Test
+    public void testConstructor() {
+        WordCountTable t = new WordCountTable();
+        assertEquals(0, t.size());
+        assertEquals(0, t.count("word"));
+    }
+
+    /**
+     * Test that a word of ASCII bytes hashes like its characters and finds
+     * the same entry.
+     */
+    @Test
+    public void testIncrementBytes() {
+        WordCountTable t = new WordCountTable();
+        ByteBuffer bytes = ByteBuffer.wrap(
+                "the cat the".getBytes(StandardCharsets.US_ASCII));
+        assertEquals("cat".hashCode(), WordCountTable.hash(bytes, 4, 7));
+        assertEquals(0, t.increment(bytes, 0, 3));
+        assertEquals(1, t.increment("cat", 0, 3));
+        assertEquals(1, t.increment(bytes, 4, 7));
+        assertEquals(0, t.increment(bytes, 8, 11));
+        assertEquals(2, t.size());
+        assertEquals(2, t.count("the"));
+        assertEquals(2, t.count("cat"));
+        assertEquals("the", t.word(0));
+    }
+
+    /**
+     * Test incrementing spans of a larger text.
+     */
+    @Test
+    public void testIncrementSpan() {
+        WordCountTable t = new WordCountTable();
+        String text = "the cat the";
+        assertEquals(0, t.increment(text, 0, 3));
+        assertEquals(1, t.increment(text, 4, 7));
+        assertEquals(0, t.increment(text, 8, 11));
+        assertEquals(2, t.size());
+        assertEquals(2, t.count("the"));
+        assertEquals(1, t.count(new StringBuilder("cat")));
+        assertEquals("the", t.word(0));
+        assertEquals("cat", t.word(1));
+        assertEquals(-1, t.id(text, 0, 2));
+    }
+
+    /**
+     * Test that growing keeps every word and count.
+     */
+    @Test
+    public void testGrow() {
+        final int words = 5000;
+        WordCountTable t = new WordCountTable(1);
+        for (int i = 0; i < words; i++) {
+            for (int j = 0; j <= i % 3; j++) {
+                t.increment("w" + i);
+            }
+        }
+        assertEquals(words, t.size());
+        for (int i = 0; i < words; i++) {
+            assertEquals(i % 3 + 1, t.count("w" + i));
+            assertEquals("w" + i, t.word(i));
+        }
+    }
+
+    /**
+     * Test words whose hashes collide.
+     */
+    @Test
+    public void testCollidingHashes() {
+        WordCountTable t = new WordCountTable();
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        t.increment("Aa");
+        t.increment("BB");
+        t.increment("BB");
+        assertEquals(2, t.size());
+        assertEquals(1, t.count("Aa"));
+        assertEquals(2, t.count("BB"));
+    }
+
+    /**
+     * Test merging two tables.
+     */
+    @Test
+    public void testMerge() {
+        WordCountTable t1 = new WordCountTable();
+        WordCountTable t2 = new WordCountTable();
+        t1.add("a", 2);
+        t1.add("b", 1);
+        t2.add("b", 3);
+        t2.add("c", 4);
+        t1.merge(t2);
+        assertEquals(3, t1.size());
+        assertEquals(2, t1.count("a"));
+        assertEquals(4, t1.count("b"));
+        assertEquals(4, t1.count("c"));
+    }
+
+    /**
+     * Test exporting to a {@code Map}.
+     */
+    @Test
+    public void testToMap() {
+        WordCountTable t = new WordCountTable();
+        t.add("a", 2);
+        t.add("b", 1);
+        Map<String, Integer> word = new Map1L<String, Integer>();
+        word.add("old", 1);
+        t.toMap(word);
+        Map<String, Integer> expected = new Map1L<String, Integer>();
+        expected.add("a", 2);
+        expected.add("b", 1);
+        assertEquals(expected, word);
+    }
+
+    /**
+     * Test clearing the table.
+     */
+    @Test
+    public void testClear() {
+        WordCountTable t = new WordCountTable();
+        t.add("a", 2);
+        t.clear();
+        assertEquals(0, t.size());
+        assertEquals(0, t.count("a"));
+        assertEquals(0, t.increment("b"));
+    }
+
+}
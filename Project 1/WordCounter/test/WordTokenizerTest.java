@@ -0,0 +1,185 @@
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code WordTokenizer}.
+ *
+ * @author Zhuoyang Li
+ *
+ */
+public class WordTokenizerTest {
+
+    /**
+     * Sink recording the words it receives separated by "|".
+     */
+    private static final class RecordingSink
+            implements WordTokenizer.WordSink {
+
+        /**
+         * The words received so far.
+         */
+        private final StringBuilder words = new StringBuilder();
+
+        @Override
+        public void word(CharSequence text, int start, int end) {
+            this.words.append(text, start, end).append('|');
+        }
+
+        @Override
+        public String toString() {
+            return this.words.toString();
+        }
+    }
+
+    /**
+     * Test nextWordOrSeparatorEnd on a word and on a separator run.
+     */
+    @Test
+    public void testNextWordOrSeparatorEnd() {
+        SeparatorSet separators = SeparatorSet.defaultSet();
+        String text = "ab, cd";
+        assertEquals(2, WordTokenizer.nextWordOrSeparatorEnd(text, 0,
+                text.length(), separators));
+        assertEquals(4, WordTokenizer.nextWordOrSeparatorEnd(text, 2,
+                text.length(), separators));
+        assertEquals(6, WordTokenizer.nextWordOrSeparatorEnd(text, 4,
+                text.length(), separators));
+        assertEquals(5, WordTokenizer.nextWordOrSeparatorEnd(text, 4, 5,
+                separators));
+    }
+
+    /**
+     * Test feeding whole lines.
+     */
+    @Test
+    public void testFeedLine() {
+        RecordingSink sink = new RecordingSink();
+        WordTokenizer tokenizer = new WordTokenizer(
+                SeparatorSet.defaultSet(), sink);
+        tokenizer.feedLine("  we shall, fight", 0, 17);
+        tokenizer.feedLine("", 0, 0);
+        tokenizer.feedLine("on the", 0, 6);
+        assertEquals("we|shall|fight|on|the|", sink.toString());
+    }
+
+    /**
+     * Test that a word cut off at the end of a chunk is completed by the next
+     * one.
+     */
+    @Test
+    public void testFeedCarriesWordOver() {
+        RecordingSink sink = new RecordingSink();
+        WordTokenizer tokenizer = new WordTokenizer(
+                SeparatorSet.defaultSet(), sink);
+        tokenizer.feed("we sh", 0, 5);
+        tokenizer.feed("a", 0, 1);
+        tokenizer.feed("ll fig", 0, 6);
+        tokenizer.feed("ht\non", 0, 5);
+        assertEquals("we|shall|fight|", sink.toString());
+        tokenizer.finish();
+        assertEquals("we|shall|fight|on|", sink.toString());
+    }
+
+    /**
+     * Test decoding bytes whose multi-byte characters are split across calls.
+     */
+    @Test
+    public void testFeedBytes() {
+        RecordingSink sink = new RecordingSink();
+        WordTokenizer tokenizer = new WordTokenizer(
+                SeparatorSet.defaultSet(), sink);
+        byte[] text = "caf\u00e9 na\u00efve"
+                .getBytes(StandardCharsets.UTF_8);
+        ByteBuffer bytes = ByteBuffer.allocate(text.length);
+        CharBuffer chars = CharBuffer.allocate(2);
+        CharsetDecoder decoder = ParallelWordCounter
+                .newDecoder(StandardCharsets.UTF_8);
+        bytes.put(text, 0, 4).flip();
+        tokenizer.feed(bytes, decoder, chars, false);
+        assertEquals(1, bytes.remaining());
+        bytes.compact();
+        bytes.put(text, 4, text.length - 4).flip();
+        tokenizer.feed(bytes, decoder, chars, true);
+        tokenizer.finish();
+        assertEquals("caf\u00e9|na\u00efve|", sink.toString());
+    }
+
+    /**
+     * Feeds {@code text} to {@code tokenizer} as UTF-8 bytes, {@code chunk}
+     * bytes at a time, and finishes it.
+     *
+     * @param tokenizer
+     *            the tokenizer
+     * @param text
+     *            the bytes
+     * @param chunk
+     *            the number of bytes read per call
+     */
+    private static void feedInChunks(WordTokenizer tokenizer, byte[] text,
+            int chunk) {
+        final int room = 4;
+        ByteBuffer bytes = ByteBuffer.allocate(chunk + room);
+        CharBuffer chars = CharBuffer.allocate(2);
+        CharsetDecoder decoder = ParallelWordCounter
+                .newDecoder(StandardCharsets.UTF_8);
+        int position = 0;
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            int n = Math.min(chunk, text.length - position);
+            bytes.put(text, position, n);
+            position += n;
+            endOfInput = position == text.length;
+            bytes.flip();
+            tokenizer.feed(bytes, decoder, chars, endOfInput);
+            bytes.compact();
+        }
+        tokenizer.finish();
+    }
+
+    /**
+     * Test that the ASCII fast path counts the same words as decoding, for
+     * every chunk size, with non-ASCII characters at the start, middle and
+     * end of words and a character cut off before a separator.
+     */
+    @Test
+    public void testAsciiFastPath() {
+        byte[] malformed = { 'a', 'b', (byte) 0xC3, ' ', 'c', 'd', '\n' };
+        byte[] text = ("we shall caf\u00e9 na\u00efve \u00e9t\u00e9 shall\n"
+                + "fight on the beaches, we\n")
+                        .getBytes(StandardCharsets.UTF_8);
+        byte[] all = new byte[text.length + malformed.length];
+        System.arraycopy(text, 0, all, 0, text.length);
+        System.arraycopy(malformed, 0, all, text.length, malformed.length);
+        for (int chunk = 1; chunk <= all.length; chunk++) {
+            WordCountTable fast = new WordCountTable();
+            feedInChunks(new WordTokenizer(SeparatorSet.defaultSet(), fast),
+                    all, chunk);
+            final WordCountTable decoded = new WordCountTable();
+            feedInChunks(new WordTokenizer(SeparatorSet.defaultSet(),
+                    new WordTokenizer.WordSink() {
+                        @Override
+                        public void word(CharSequence text, int start,
+                                int end) {
+                            decoded.increment(text, start, end);
+                        }
+                    }), all, chunk);
+            assertEquals(decoded.size(), fast.size());
+            for (int id = 0; id < decoded.size(); id++) {
+                assertEquals(decoded.word(id), decoded.count(id),
+                        fast.count(decoded.word(id)));
+            }
+            assertEquals(2, fast.count("we"));
+            assertEquals(1, fast.count("caf\u00e9"));
+            assertEquals(1, fast.count("\u00e9t\u00e9"));
+            assertEquals(1, fast.count("ab\ufffd"));
+            assertEquals(1, fast.count("cd"));
+        }
+    }
+
+}